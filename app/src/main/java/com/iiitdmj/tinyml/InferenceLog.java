@@ -0,0 +1,277 @@
+package com.iiitdmj.tinyml;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Append-only columnar log of predictions, see {@link InferenceLogFormat} for the layout.
+ *
+ * Rows are collected into preallocated column blocks on the caller's thread. Full blocks are
+ * handed to a background thread that encodes them into a direct buffer and writes them through
+ * a {@link FileChannel}, rolling to a new segment once the current one reaches its size limit.
+ * The caller never waits for I/O: if the writer falls behind and no free block is left, the
+ * row is dropped and counted in {@link #getDroppedRows()}.
+ */
+public class InferenceLog implements Closeable {
+
+    private static final String TAG = "InferenceLog";
+    private static final int BLOCK_POOL_SIZE = 3;
+
+    private final File directory;
+    private final int topK;
+    private final int stageCount;
+    private final int rowsPerBlock;
+    private final long maxSegmentBytes;
+
+    private final BlockingQueue<Block> freeBlocks = new ArrayBlockingQueue<>(BLOCK_POOL_SIZE);
+    private final BlockingQueue<Block> pendingBlocks = new ArrayBlockingQueue<>(BLOCK_POOL_SIZE + 1);
+    private final Block closeMarker;
+    private final ByteBuffer encodeBuffer;
+    private final Thread writerThread;
+
+    private Block current;
+    private boolean closed;
+    private long droppedRows;
+    private volatile long writtenRows;
+    private volatile int segmentsWritten;
+
+    // writer thread state
+    private FileChannel channel;
+    private long segmentSequence;
+
+    public InferenceLog(File directory, int topK, int stageCount, int rowsPerBlock, long maxSegmentBytes) {
+        if (topK <= 0 || stageCount < 0 || rowsPerBlock <= 0)
+            throw new IllegalArgumentException("Invalid log shape: topK=" + topK + ", stageCount=" + stageCount + ", rowsPerBlock=" + rowsPerBlock);
+        long blockBytes = InferenceLogFormat.blockBytes(rowsPerBlock, topK, stageCount);
+        if (blockBytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Block of " + rowsPerBlock + " rows is too large: " + blockBytes + " bytes");
+        if (maxSegmentBytes < InferenceLogFormat.HEADER_BYTES + blockBytes)
+            throw new IllegalArgumentException("Segment size " + maxSegmentBytes + " cannot hold a single block");
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IllegalArgumentException("Cannot create log directory " + directory);
+
+        this.directory = directory;
+        this.topK = topK;
+        this.stageCount = stageCount;
+        this.rowsPerBlock = rowsPerBlock;
+        this.maxSegmentBytes = maxSegmentBytes;
+
+        for (int i = 0; i < BLOCK_POOL_SIZE; i++) {
+            freeBlocks.add(new Block(rowsPerBlock));
+        }
+        closeMarker = new Block(0);
+        encodeBuffer = ByteBuffer.allocateDirect((int) blockBytes)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        segmentSequence = nextSegmentSequence(directory);
+
+        writerThread = new Thread(this::writerLoop, TAG);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Records one prediction. Only the first {@code topK} entries of the index and score arrays
+     * and the first {@code stageCount} latencies are used.
+     *
+     * @return false if the row was dropped because the log is closed or the writer is behind
+     */
+    public synchronized boolean append(long timestampMs, long frameId, int modelVersion,
+                                       int[] topIndices, float[] topScores, long[] stageNanos) {
+        if (closed)
+            return false;
+        if (current == null) {
+            current = freeBlocks.poll();
+            if (current == null) {
+                droppedRows++;
+                return false;
+            }
+        }
+
+        Block b = current;
+        int row = b.rows;
+        b.timestamps[row] = timestampMs;
+        b.frameIds[row] = frameId;
+        b.modelVersions[row] = modelVersion;
+        for (int k = 0; k < topK; k++) {
+            b.topIndices[k * rowsPerBlock + row] = topIndices[k];
+            b.topScores[k * rowsPerBlock + row] = topScores[k];
+        }
+        for (int s = 0; s < stageCount; s++) {
+            b.latenciesUs[s * rowsPerBlock + row] = (int) Math.min(Integer.MAX_VALUE, stageNanos[s] / 1000);
+        }
+        b.rows = row + 1;
+
+        if (b.rows == rowsPerBlock) {
+            pendingBlocks.add(b);
+            current = null;
+        }
+        return true;
+    }
+
+    /**
+     * Hands the partially filled block to the writer thread.
+     */
+    public synchronized void flush() {
+        if (current != null && current.rows > 0) {
+            pendingBlocks.add(current);
+            current = null;
+        }
+    }
+
+    public synchronized long getDroppedRows() {
+        return droppedRows;
+    }
+
+    public long getWrittenRows() {
+        return writtenRows;
+    }
+
+    public int getSegmentsWritten() {
+        return segmentsWritten;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed)
+                return;
+            flush();
+            closed = true;
+            pendingBlocks.add(closeMarker);
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writerLoop() {
+        try {
+            while (true) {
+                Block b = pendingBlocks.take();
+                if (b == closeMarker)
+                    break;
+                try {
+                    writeBlock(b);
+                    writtenRows += b.rows;
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to write inference log block", e);
+                    closeSegment();
+                }
+                b.rows = 0;
+                freeBlocks.add(b);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeSegment();
+        }
+    }
+
+    private void writeBlock(Block b) throws IOException {
+        int n = b.rows;
+        // n <= rowsPerBlock, whose block size was checked to fit an int
+        int bytes = (int) InferenceLogFormat.blockBytes(n, topK, stageCount);
+        if (channel == null || channel.position() + bytes > maxSegmentBytes)
+            openSegment();
+
+        ByteBuffer buf = encodeBuffer;
+        buf.clear();
+        buf.putInt(n);
+        buf.asLongBuffer().put(b.timestamps, 0, n);
+        buf.position(buf.position() + n * 8);
+        buf.asLongBuffer().put(b.frameIds, 0, n);
+        buf.position(buf.position() + n * 8);
+        buf.asIntBuffer().put(b.modelVersions, 0, n);
+        buf.position(buf.position() + n * 4);
+        for (int k = 0; k < topK; k++) {
+            buf.asIntBuffer().put(b.topIndices, k * rowsPerBlock, n);
+            buf.position(buf.position() + n * 4);
+        }
+        for (int k = 0; k < topK; k++) {
+            buf.asFloatBuffer().put(b.topScores, k * rowsPerBlock, n);
+            buf.position(buf.position() + n * 4);
+        }
+        for (int s = 0; s < stageCount; s++) {
+            buf.asIntBuffer().put(b.latenciesUs, s * rowsPerBlock, n);
+            buf.position(buf.position() + n * 4);
+        }
+        buf.flip();
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    private void openSegment() throws IOException {
+        closeSegment();
+        File file = new File(directory, InferenceLogFormat.segmentName(segmentSequence++));
+        FileChannel ch = new RandomAccessFile(file, "rw").getChannel();
+        ch.truncate(0);
+
+        ByteBuffer header = ByteBuffer.allocate(InferenceLogFormat.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(InferenceLogFormat.MAGIC);
+        header.putShort(InferenceLogFormat.VERSION);
+        header.putShort((short) topK);
+        header.putShort((short) stageCount);
+        header.putShort((short) 0);
+        header.flip();
+        while (header.hasRemaining()) {
+            ch.write(header);
+        }
+        channel = ch;
+        segmentsWritten++;
+    }
+
+    private void closeSegment() {
+        if (channel == null)
+            return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to close inference log segment", e);
+        }
+        channel = null;
+    }
+
+    private static long nextSegmentSequence(File directory) {
+        long next = 0;
+        String[] names = directory.list();
+        if (names == null)
+            return next;
+        for (String name : names) {
+            long seq = InferenceLogReader.segmentSequence(name);
+            if (seq >= next)
+                next = seq + 1;
+        }
+        return next;
+    }
+
+    private final class Block {
+        final long[] timestamps;
+        final long[] frameIds;
+        final int[] modelVersions;
+        final int[] topIndices;
+        final float[] topScores;
+        final int[] latenciesUs;
+        int rows;
+
+        Block(int capacity) {
+            timestamps = new long[capacity];
+            frameIds = new long[capacity];
+            modelVersions = new int[capacity];
+            topIndices = new int[topK * capacity];
+            topScores = new float[topK * capacity];
+            latenciesUs = new int[stageCount * capacity];
+        }
+    }
+}
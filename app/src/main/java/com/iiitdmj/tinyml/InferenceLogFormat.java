@@ -0,0 +1,42 @@
+package com.iiitdmj.tinyml;
+
+import java.util.Locale;
+
+/**
+ * On-disk layout shared by {@link InferenceLog} and {@link InferenceLogReader}.
+ *
+ * A segment starts with a fixed header followed by any number of blocks. Every block stores
+ * its rows column by column, so a scan over a single column touches contiguous memory:
+ *
+ * <pre>
+ * header: int magic, short version, short topK, short stageCount, short reserved
+ * block:  int rowCount,
+ *         long[rowCount]          timestamp (ms since epoch)
+ *         long[rowCount]          frame id
+ *         int[rowCount]           model version
+ *         int[topK][rowCount]     top-K class indices, one column per rank
+ *         float[topK][rowCount]   top-K scores, one column per rank
+ *         int[stages][rowCount]   per-stage latency in microseconds, one column per stage
+ * </pre>
+ *
+ * All values are little-endian. A block cut short by a crash is ignored by the reader.
+ */
+final class InferenceLogFormat {
+
+    static final int MAGIC = 0x494C4D54; // "TMLI"
+    static final short VERSION = 1;
+    static final int HEADER_BYTES = 12;
+    static final String SEGMENT_PREFIX = "inference-";
+    static final String SEGMENT_SUFFIX = ".tmlog";
+
+    private InferenceLogFormat() {
+    }
+
+    static long blockBytes(int rows, int topK, int stageCount) {
+        return 4 + (long) rows * (8 + 8 + 4 + topK * 8 + stageCount * 4);
+    }
+
+    static String segmentName(long sequence) {
+        return String.format(Locale.US, "%s%08d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX);
+    }
+}
@@ -0,0 +1,194 @@
+package com.iiitdmj.tinyml;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reads segments written by {@link InferenceLog}. It has no Android dependencies so the same
+ * class can be used on a desktop JVM to analyze logs pulled from a device.
+ *
+ * Segments are memory-mapped and decoded one block at a time into reusable column arrays, so a
+ * scan over millions of rows allocates nothing per row:
+ *
+ * <pre>
+ * InferenceLogReader.scan(dir, block -&gt; {
+ *     for (int i = 0; i &lt; block.rows; i++)
+ *         confusion[block.topIndex(0, i)]++;
+ * });
+ * </pre>
+ */
+public class InferenceLogReader implements Closeable {
+
+    public interface BlockVisitor {
+        void visit(Block block);
+    }
+
+    /**
+     * One decoded block. Per-rank and per-stage columns are stored back to back, use the
+     * accessors or index {@code column * rows + row} directly.
+     */
+    public static final class Block {
+        public final int topK;
+        public final int stageCount;
+        public int rows;
+        public long[] timestamps = new long[0];
+        public long[] frameIds = new long[0];
+        public int[] modelVersions = new int[0];
+        public int[] topIndices = new int[0];
+        public float[] topScores = new float[0];
+        public int[] latenciesUs = new int[0];
+
+        Block(int topK, int stageCount) {
+            this.topK = topK;
+            this.stageCount = stageCount;
+        }
+
+        public int topIndex(int rank, int row) {
+            return topIndices[rank * rows + row];
+        }
+
+        public float topScore(int rank, int row) {
+            return topScores[rank * rows + row];
+        }
+
+        public int latencyUs(int stage, int row) {
+            return latenciesUs[stage * rows + row];
+        }
+
+        void ensureCapacity(int n) {
+            if (timestamps.length >= n)
+                return;
+            timestamps = new long[n];
+            frameIds = new long[n];
+            modelVersions = new int[n];
+            topIndices = new int[topK * n];
+            topScores = new float[topK * n];
+            latenciesUs = new int[stageCount * n];
+        }
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer data;
+    private final Block block;
+
+    public InferenceLogReader(File segment) throws IOException {
+        channel = new RandomAccessFile(segment, "r").getChannel();
+        try {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            data.order(ByteOrder.LITTLE_ENDIAN);
+            if (data.remaining() < InferenceLogFormat.HEADER_BYTES || data.getInt() != InferenceLogFormat.MAGIC)
+                throw new IOException("Not an inference log segment: " + segment);
+            short version = data.getShort();
+            if (version != InferenceLogFormat.VERSION)
+                throw new IOException("Unsupported inference log version " + version + " in " + segment);
+            int topK = data.getShort();
+            int stageCount = data.getShort();
+            data.getShort();
+            block = new Block(topK, stageCount);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getTopK() {
+        return block.topK;
+    }
+
+    public int getStageCount() {
+        return block.stageCount;
+    }
+
+    /**
+     * Decodes the next complete block.
+     *
+     * @return the shared block instance, overwritten by the next call, or null at the end of
+     * the segment
+     */
+    public Block next() {
+        if (data.remaining() < 4)
+            return null;
+        int start = data.position();
+        int n = data.getInt();
+        // every row takes more than one byte, so a count above the remaining bytes is corrupt
+        if (n <= 0 || n > data.remaining()
+                || data.remaining() < InferenceLogFormat.blockBytes(n, block.topK, block.stageCount) - 4) {
+            // truncated tail left by an interrupted write, or a corrupt count
+            data.position(start);
+            return null;
+        }
+
+        Block b = block;
+        b.ensureCapacity(n);
+        b.rows = n;
+        data.asLongBuffer().get(b.timestamps, 0, n);
+        data.position(data.position() + n * 8);
+        data.asLongBuffer().get(b.frameIds, 0, n);
+        data.position(data.position() + n * 8);
+        data.asIntBuffer().get(b.modelVersions, 0, n);
+        data.position(data.position() + n * 4);
+        for (int k = 0; k < b.topK; k++) {
+            data.asIntBuffer().get(b.topIndices, k * n, n);
+            data.position(data.position() + n * 4);
+        }
+        for (int k = 0; k < b.topK; k++) {
+            data.asFloatBuffer().get(b.topScores, k * n, n);
+            data.position(data.position() + n * 4);
+        }
+        for (int s = 0; s < b.stageCount; s++) {
+            data.asIntBuffer().get(b.latenciesUs, s * n, n);
+            data.position(data.position() + n * 4);
+        }
+        return b;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Visits every block of every segment in {@code directory}, oldest segment first.
+     *
+     * @return total number of rows visited
+     */
+    public static long scan(File directory, BlockVisitor visitor) throws IOException {
+        File[] segments = listSegments(directory);
+        long rows = 0;
+        for (File segment : segments) {
+            try (InferenceLogReader reader = new InferenceLogReader(segment)) {
+                Block b;
+                while ((b = reader.next()) != null) {
+                    visitor.visit(b);
+                    rows += b.rows;
+                }
+            }
+        }
+        return rows;
+    }
+
+    public static File[] listSegments(File directory) {
+        File[] files = directory.listFiles((dir, name) -> segmentSequence(name) >= 0);
+        if (files == null)
+            return new File[0];
+        Arrays.sort(files, (a, b) -> Long.compare(segmentSequence(a.getName()), segmentSequence(b.getName())));
+        return files;
+    }
+
+    static long segmentSequence(String name) {
+        if (!name.startsWith(InferenceLogFormat.SEGMENT_PREFIX) || !name.endsWith(InferenceLogFormat.SEGMENT_SUFFIX))
+            return -1;
+        String seq = name.substring(InferenceLogFormat.SEGMENT_PREFIX.length(), name.length() - InferenceLogFormat.SEGMENT_SUFFIX.length());
+        try {
+            return Long.parseLong(seq);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -25,6 +25,7 @@ import androidx.camera.view.PreviewView;
 import androidx.core.content.ContextCompat;
 import com.google.common.util.concurrent.ListenableFuture;
 import org.tensorflow.lite.Interpreter;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.MappedByteBuffer;
@@ -42,11 +43,19 @@ public class MainActivity extends AppCompatActivity {
     private static final int IMAGE_SIZE = 224;
     private static final int NUM_CLASSES = 8; // Number of classes for your model
     private static final String[] LABELS = {"Circle", "Square", "Rectangle", "Kite", "Parallelogram", "Rhombus", "Trapezoid", "Triangle"}; // Your class labels
+    private static final int MODEL_VERSION = 1; // Bump when shape_classification_model.tflite changes
+    private static final int LOG_TOP_K = 3;
+    private static final int LOG_STAGE_PREPROCESS = 0;
+    private static final int LOG_STAGE_INFERENCE = 1;
+    private static final int LOG_STAGE_COUNT = 2;
+    private static final int LOG_ROWS_PER_BLOCK = 256;
+    private static final long LOG_SEGMENT_BYTES = 4L * 1024 * 1024;
 
     private ExecutorService cameraExecutor;
     private TextView resultTextView;
     private PreviewView previewView;
     private Interpreter interpreter;
+    private InferenceLog inferenceLog;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -64,6 +73,8 @@ public class MainActivity extends AppCompatActivity {
             throw new RuntimeException("Error loading model", e);
         }
 
+        inferenceLog = new InferenceLog(new File(getFilesDir(), "inference-log"), LOG_TOP_K, LOG_STAGE_COUNT, LOG_ROWS_PER_BLOCK, LOG_SEGMENT_BYTES);
+
         // Request camera permissions
         ActivityResultLauncher<String[]> requestPermissionLauncher = registerForActivityResult(new ActivityResultContracts.RequestMultiplePermissions(), permissions -> {
             Boolean cameraGranted = permissions.get(Manifest.permission.CAMERA);
@@ -82,6 +93,13 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        cameraExecutor.shutdown();
+        inferenceLog.close();
+    }
+
     private boolean allPermissionsGranted() {
         return ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA) == PackageManager.PERMISSION_GRANTED;
     }
@@ -127,6 +145,10 @@ public class MainActivity extends AppCompatActivity {
 
     public class YourImageAnalyzer implements ImageAnalysis.Analyzer {
         private final OnResultListener onResultListener;
+        private final int[] topIndices = new int[LOG_TOP_K];
+        private final float[] topScores = new float[LOG_TOP_K];
+        private final long[] stageNanos = new long[LOG_STAGE_COUNT];
+        private long frameId;
 
         YourImageAnalyzer(OnResultListener onResultListener) {
             this.onResultListener = onResultListener;
@@ -134,12 +156,15 @@ public class MainActivity extends AppCompatActivity {
 
         @Override
         public void analyze(@NonNull ImageProxy imageProxy) {
+            long start = System.nanoTime();
             Bitmap bitmap = imageProxyToBitmap(imageProxy);
+            stageNanos[LOG_STAGE_PREPROCESS] = System.nanoTime() - start;
             if (bitmap != null) {
                 String result = runInference(bitmap);
                 onResultListener.onResult(result);
             }
             imageProxy.close();
+            frameId++;
         }
 
         private Bitmap imageProxyToBitmap(ImageProxy imageProxy) {
@@ -166,7 +191,8 @@ public class MainActivity extends AppCompatActivity {
         }
 
         private String runInference(Bitmap bitmap) {
-            // Convert the bitmap to a ByteBuffer
+            // Convert the bitmap to a ByteBuffer, timed as part of preprocessing
+            long preprocessStart = System.nanoTime();
             ByteBuffer inputBuffer = ByteBuffer.allocateDirect(IMAGE_SIZE * IMAGE_SIZE * 4);
             inputBuffer.order(ByteOrder.nativeOrder());
             int[] intValues = new int[IMAGE_SIZE * IMAGE_SIZE];
@@ -177,12 +203,19 @@ public class MainActivity extends AppCompatActivity {
                 float normalizedValue = ((pixelValue & 0xFF) / 127.5f) - 1;
                 inputBuffer.putFloat(normalizedValue);
             }
+            stageNanos[LOG_STAGE_PREPROCESS] += System.nanoTime() - preprocessStart;
 
             // Prepare output data
             float[][] output = new float[1][NUM_CLASSES];
 
             // Run model inference
+            long start = System.nanoTime();
             interpreter.run(inputBuffer, output);
+            stageNanos[LOG_STAGE_INFERENCE] = System.nanoTime() - start;
+
+            // Record the prediction for offline analysis
+            selectTopK(output[0]);
+            inferenceLog.append(System.currentTimeMillis(), frameId, MODEL_VERSION, topIndices, topScores, stageNanos);
 
             // Get classification result
             return getTopLabel(output[0]);
@@ -200,6 +233,32 @@ public class MainActivity extends AppCompatActivity {
             }
             return LABELS[maxIndex];
         }
+
+        private void selectTopK(float[] outputScores) {
+            // Insertion into a small sorted window, LOG_TOP_K is tiny
+            int filled = 0;
+            for (int i = 0; i < outputScores.length; i++) {
+                float score = outputScores[i];
+                int pos = filled;
+                while (pos > 0 && topScores[pos - 1] < score) {
+                    if (pos < LOG_TOP_K) {
+                        topScores[pos] = topScores[pos - 1];
+                        topIndices[pos] = topIndices[pos - 1];
+                    }
+                    pos--;
+                }
+                if (pos < LOG_TOP_K) {
+                    topScores[pos] = score;
+                    topIndices[pos] = i;
+                    if (filled < LOG_TOP_K)
+                        filled++;
+                }
+            }
+            for (int k = filled; k < LOG_TOP_K; k++) {
+                topIndices[k] = -1;
+                topScores[k] = 0;
+            }
+        }
     }
 
     private interface OnResultListener {
@@ -0,0 +1,390 @@
+package org.opencv.android;
+
+import java.util.ArrayDeque;
+
+import org.opencv.android.CameraBridgeViewBase.CvCameraViewFrame;
+import org.opencv.android.CameraBridgeViewBase.CvCameraViewListener2;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import android.util.Log;
+
+/**
+ * Runs frame processing asynchronously, so that the camera keeps capturing while earlier frames
+ * are still being processed.
+ *
+ * Install it as the view's listener with
+ * {@link CameraBridgeViewBase#setCvCameraViewListener(CvCameraViewListener2)}. For every camera
+ * frame, as long as fewer than {@code maxInFlight} frames are being processed, the RGBA image is
+ * copied into a pooled frame that is passed to {@link Processor#onCameraFrame} together with a
+ * {@link Completion}. The processor may return at once and complete the frame later on any
+ * thread; frames arriving while {@code maxInFlight} frames are pending are not submitted.
+ *
+ * The view always shows the most recently completed output. A completion that arrives after the
+ * completion of a newer frame is dropped as out of order instead of moving the display back in
+ * time. Completed outputs are handed to the camera thread by swapping Mats, without copying.
+ *
+ * Example use:
+ *
+ * mOpenCvCameraView.setCvCameraViewListener(new AsyncCameraViewListener(new AsyncCameraViewListener.Processor() {
+ *     public void onCameraViewStarted(int width, int height) {}
+ *     public void onCameraViewStopped() {}
+ *     public void onCameraFrame(final CvCameraViewFrame frame, final AsyncCameraViewListener.Completion completion) {
+ *         executor.execute(new Runnable() {
+ *             public void run() {
+ *                 detectAndDraw(frame.rgba(), completion.output());
+ *                 completion.complete();
+ *             }
+ *         });
+ *     }
+ * }, 2));
+ */
+public class AsyncCameraViewListener implements CvCameraViewListener2 {
+
+    private static final String TAG = "AsyncCameraViewListener";
+
+    public interface Processor {
+        public void onCameraViewStarted(int width, int height);
+
+        public void onCameraViewStopped();
+
+        /**
+         * Called on the camera thread; should hand the work over to another thread and return.
+         * {@code frame} is a copy of the camera frame that stays valid until {@code completion}
+         * is completed or cancelled, which must happen exactly once.
+         */
+        public void onCameraFrame(CvCameraViewFrame frame, Completion completion);
+    }
+
+    /**
+     * Completion handle of one submitted frame. Thread safe.
+     */
+    public interface Completion {
+        /**
+         * Mat that may be written with the result; {@link #complete()} shows it.
+         */
+        public Mat output();
+
+        /**
+         * Shows {@link #output()}. Its previous content is undefined, so the whole image must
+         * be written; use {@code complete(frame.rgba())} to show the input unchanged.
+         */
+        public void complete();
+
+        /**
+         * Shows a copy of {@code result}.
+         */
+        public void complete(Mat result);
+
+        /**
+         * Finishes the frame without showing anything.
+         */
+        public void cancel();
+
+        /**
+         * Number of the frame since the camera was started.
+         */
+        public long sequence();
+    }
+
+    private final class PendingFrame implements CvCameraViewFrame, Completion {
+        private final Mat mRgba = new Mat();
+        private final Mat mGray = new Mat();
+        private Mat mOutput = new Mat();
+        private boolean mGrayValid;
+        private long mSequence;
+        private long mSubmitNanos;
+        private int mEpoch;
+        private boolean mDone;
+
+        @Override
+        public Mat rgba() {
+            return mRgba;
+        }
+
+        @Override
+        public Mat gray() {
+            synchronized (this) {
+                if (!mGrayValid) {
+                    Imgproc.cvtColor(mRgba, mGray, Imgproc.COLOR_RGBA2GRAY);
+                    mGrayValid = true;
+                }
+            }
+            return mGray;
+        }
+
+        @Override
+        public void release() {
+            // the frame is owned by the listener until it is completed
+        }
+
+        @Override
+        public Mat output() {
+            return mOutput;
+        }
+
+        @Override
+        public long sequence() {
+            return mSequence;
+        }
+
+        @Override
+        public void complete() {
+            finish(this, true);
+        }
+
+        @Override
+        public void complete(Mat result) {
+            if (result == null)
+                throw new IllegalArgumentException("result is null, use cancel() to show nothing");
+            if (result != mOutput)
+                result.copyTo(mOutput);
+            finish(this, true);
+        }
+
+        @Override
+        public void cancel() {
+            finish(this, false);
+        }
+
+        private void dispose() {
+            mRgba.release();
+            mGray.release();
+            mOutput.release();
+        }
+    }
+
+    private final Processor mProcessor;
+    private final int mMaxInFlight;
+    private final Object mLock = new Object();
+    private final ArrayDeque<PendingFrame> mPool = new ArrayDeque<PendingFrame>();
+    private final FrameTimeMeter mLatency = new FrameTimeMeter(240, 30);
+
+    // guarded by mLock
+    private int mEpoch;
+    private boolean mStarted;
+    private int mInFlight;
+    private int mMaxObservedInFlight;
+    private PendingFrame mReady;
+    private long mLatestCompleted = -1;
+    private long mSubmitted;
+    private long mCompleted;
+    private long mCancelled;
+    private long mOutOfOrder;
+    private long mSuperseded;
+    private long mNotSubmitted;
+    private long mNextSequence;
+
+    // camera thread only
+    private Mat mDisplay = new Mat();
+
+    /**
+     * @param maxInFlight number of frames that may be processed at the same time
+     */
+    public AsyncCameraViewListener(Processor processor, int maxInFlight) {
+        if (processor == null)
+            throw new IllegalArgumentException("processor is null");
+        if (maxInFlight < 1)
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        mProcessor = processor;
+        mMaxInFlight = maxInFlight;
+    }
+
+    @Override
+    public void onCameraViewStarted(int width, int height) {
+        synchronized (mLock) {
+            // frames of a previous start still in flight no longer count
+            mEpoch++;
+            mStarted = true;
+            mInFlight = 0;
+            mLatestCompleted = -1;
+            mNextSequence = 0;
+        }
+        mProcessor.onCameraViewStarted(width, height);
+    }
+
+    @Override
+    public void onCameraViewStopped() {
+        mProcessor.onCameraViewStopped();
+        synchronized (mLock) {
+            mStarted = false;
+            if (mReady != null) {
+                mReady.dispose();
+                mReady = null;
+            }
+            // frames still in flight are freed when they complete
+            for (PendingFrame f : mPool)
+                f.dispose();
+            mPool.clear();
+            mDisplay.release();
+            Log.i(TAG, toString());
+        }
+    }
+
+    @Override
+    public Mat onCameraFrame(CvCameraViewFrame inputFrame) {
+        PendingFrame frame = null;
+        synchronized (mLock) {
+            PendingFrame ready = mReady;
+            if (ready != null) {
+                mReady = null;
+                Mat t = mDisplay;
+                mDisplay = ready.mOutput;
+                ready.mOutput = t;
+                mPool.addLast(ready);
+            }
+            if (mInFlight < mMaxInFlight) {
+                frame = mPool.pollFirst();
+                if (frame == null)
+                    frame = new PendingFrame();
+                frame.mEpoch = mEpoch;
+                frame.mDone = false;
+                frame.mSequence = mNextSequence;
+                mInFlight++;
+                if (mInFlight > mMaxObservedInFlight)
+                    mMaxObservedInFlight = mInFlight;
+                mSubmitted++;
+            } else {
+                mNotSubmitted++;
+            }
+            mNextSequence++;
+        }
+
+        if (frame != null) {
+            inputFrame.rgba().copyTo(frame.mRgba);
+            frame.mGrayValid = false;
+            frame.mSubmitNanos = System.nanoTime();
+            try {
+                mProcessor.onCameraFrame(frame, frame);
+            } catch (RuntimeException e) {
+                frame.cancel();
+                throw e;
+            }
+        }
+        return mDisplay.empty() ? null : mDisplay;
+    }
+
+    private void finish(PendingFrame frame, boolean show) {
+        long now = System.nanoTime();
+        synchronized (mLock) {
+            if (frame.mDone)
+                throw new IllegalStateException("Frame " + frame.mSequence + " has already been completed");
+            frame.mDone = true;
+            if (frame.mEpoch != mEpoch || !mStarted) {
+                // the camera was stopped while the frame was in flight
+                if (frame.mEpoch == mEpoch)
+                    mInFlight--;
+                frame.dispose();
+                return;
+            }
+            mInFlight--;
+            mLatency.add(now - frame.mSubmitNanos);
+            if (!show) {
+                mCancelled++;
+                mPool.addLast(frame);
+                return;
+            }
+            mCompleted++;
+            if (frame.mSequence < mLatestCompleted) {
+                mOutOfOrder++;
+                mPool.addLast(frame);
+                return;
+            }
+            mLatestCompleted = frame.mSequence;
+            if (mReady != null) {
+                // completed but replaced before the camera thread picked it up
+                mSuperseded++;
+                mPool.addLast(mReady);
+            }
+            mReady = frame;
+        }
+    }
+
+    /**
+     * Frames currently being processed.
+     */
+    public int getInFlight() {
+        synchronized (mLock) {
+            return mInFlight;
+        }
+    }
+
+    public int getMaxInFlight() {
+        synchronized (mLock) {
+            return mMaxObservedInFlight;
+        }
+    }
+
+    public long getSubmittedCount() {
+        synchronized (mLock) {
+            return mSubmitted;
+        }
+    }
+
+    public long getCompletedCount() {
+        synchronized (mLock) {
+            return mCompleted;
+        }
+    }
+
+    public long getCancelledCount() {
+        synchronized (mLock) {
+            return mCancelled;
+        }
+    }
+
+    /**
+     * Completions dropped because a newer frame had already completed.
+     */
+    public long getOutOfOrderCount() {
+        synchronized (mLock) {
+            return mOutOfOrder;
+        }
+    }
+
+    /**
+     * Completed outputs replaced by a newer one before they were shown.
+     */
+    public long getSupersededCount() {
+        synchronized (mLock) {
+            return mSuperseded;
+        }
+    }
+
+    /**
+     * Camera frames not submitted because {@code maxInFlight} frames were pending.
+     */
+    public long getNotSubmittedCount() {
+        synchronized (mLock) {
+            return mNotSubmitted;
+        }
+    }
+
+    public double getMeanLatencyMillis() {
+        synchronized (mLock) {
+            return mLatency.getMeanMillis();
+        }
+    }
+
+    /**
+     * Submission to completion time below which {@code percentile} percent of the recent frames
+     * fall.
+     */
+    public double getLatencyPercentileMillis(double percentile) {
+        synchronized (mLock) {
+            return mLatency.getPercentileMillis(percentile);
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (mLock) {
+            return "AsyncCameraViewListener [ maxInFlight=" + mMaxInFlight + ", inFlight=" + mInFlight
+                    + ", peak=" + mMaxObservedInFlight + ", submitted=" + mSubmitted + ", completed=" + mCompleted
+                    + ", cancelled=" + mCancelled + ", outOfOrder=" + mOutOfOrder + ", superseded=" + mSuperseded
+                    + ", notSubmitted=" + mNotSubmitted
+                    + ", latency mean/p50/p95=" + String.format("%.1f/%.1f/%.1f", mLatency.getMeanMillis(),
+                            mLatency.getP50Millis(), mLatency.getP95Millis()) + "ms ]";
+        }
+    }
+}
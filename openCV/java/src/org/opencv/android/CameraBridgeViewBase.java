@@ -5,8 +5,11 @@ import java.util.List;
 import org.opencv.BuildConfig;
 import org.opencv.R;
 import org.opencv.core.Core;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
+import org.opencv.core.MatArena;
 import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
 
 import android.app.Activity;
 import android.app.AlertDialog;
@@ -39,6 +42,14 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
 
     private int mState = STOPPED;
     private Bitmap mCacheBitmap;
+    private Bitmap mBackBitmap;
+    private final Rect mSrcRect = new Rect();
+    private final Rect mDstRect = new Rect();
+    private boolean mRenderThreadEnabled;
+    private volatile boolean mSkipDrawWhenBehind = true;
+    private volatile RenderThread mRenderThread;
+    private volatile boolean mDeliverUnrotated;
+    private Mat mDisplayRotated;
     private CvCameraViewListener2 mListener;
     private boolean mSurfaceExist;
     private final Object mSyncObject = new Object();
@@ -53,6 +64,7 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
     protected boolean mEnabled;
     protected boolean mCameraPermissionGranted = false;
     protected FpsMeter mFpsMeter = null;
+    protected FpsMeter mProcessingFpsMeter = null;
 
     public static final int CAMERA_ID_ANY   = -1;
     public static final int CAMERA_ID_BACK  = 99;
@@ -196,25 +208,116 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
         public void release();
     };
 
+    /**
+     * Optional interface of camera frames backed by semi-planar YUV data (NV21 or NV12). It lets
+     * {@link RotatedCameraFrame} rotate the planes, 1.5 bytes per pixel, and convert the rotated
+     * planes straight into the rotated RGBA image, instead of rotating the converted image.
+     */
+    public interface YuvCameraFrame extends CvCameraViewFrame {
+        /**
+         * Y plane, CV_8UC1 with the frame size.
+         */
+        public Mat yPlane();
+
+        /**
+         * Interleaved chroma plane, CV_8UC2 with half the frame size, or null if the chroma of
+         * the current frame is not interleaved.
+         */
+        public Mat uvPlane();
+
+        /**
+         * {@link Imgproc#cvtColorTwoPlane} code converting yPlane() and uvPlane() to RGBA.
+         */
+        public int rgbaConversion();
+    };
+
+    /**
+     * Frame rotated to the display orientation. Each representation is produced at most once per
+     * frame; the view calls {@link #invalidate()} when the underlying frame changes.
+     *
+     * When the wrapped frame is a {@link YuvCameraFrame}, gray() is the rotated Y plane and
+     * rgba() is converted from the rotated Y and chroma planes, so the rotated Y is shared:
+     * modify the gray Mat in place only after reading rgba().
+     *
+     * With {@link CameraBridgeViewBase#setDeliverUnrotatedFrames(boolean)} the frames are passed
+     * through unrotated and {@link #getRotation()} tells the rotation still to be applied.
+     */
     public class RotatedCameraFrame implements CvCameraViewFrame {
         @Override
         public Mat gray() {
-            if (mRotation != 0) {
-                Core.rotate(mFrame.gray(), mGrayRotated, getCvRotationCode(mRotation));
-                return mGrayRotated;
-            } else {
-                return mFrame.gray();
-            }
+            if (mGrayOut == null)
+                mGrayOut = computeGray();
+            return mGrayOut;
         }
 
         @Override
         public Mat rgba() {
-            if (mRotation != 0) {
-                Core.rotate(mFrame.rgba(), mRgbaRotated, getCvRotationCode(mRotation));
-                return mRgbaRotated;
-            } else {
+            if (mRgbaOut == null)
+                mRgbaOut = computeRgba();
+            return mRgbaOut;
+        }
+
+        /**
+         * Clockwise rotation in degrees that turns the Mats returned by this frame into the
+         * display orientation: 0 unless unrotated delivery is enabled on the view.
+         */
+        public int getRotation() {
+            return mDeliverUnrotated ? mRotation : 0;
+        }
+
+        /**
+         * Forgets the Mats produced for the previous frame. Their memory is kept for reuse.
+         */
+        public void invalidate() {
+            mGrayOut = null;
+            mRgbaOut = null;
+        }
+
+        private Mat computeGray() {
+            if (mRotation == 0 || mDeliverUnrotated)
+                return mFrame.gray();
+            Mat src = mFrame instanceof YuvCameraFrame ? ((YuvCameraFrame) mFrame).yPlane() : mFrame.gray();
+            if (mGrayRotated == null)
+                mGrayRotated = allocateRotated(src);
+            Core.rotate(src, mGrayRotated, getCvRotationCode(mRotation));
+            return mGrayRotated;
+        }
+
+        private Mat computeRgba() {
+            if (mRotation == 0 || mDeliverUnrotated)
                 return mFrame.rgba();
+            if (mFrame instanceof YuvCameraFrame) {
+                YuvCameraFrame yuv = (YuvCameraFrame) mFrame;
+                Mat uv = yuv.uvPlane();
+                if (uv != null) {
+                    Mat y;
+                    if (mGrayOut == null) {
+                        // gray() has not been handed out, so the rotated Y plane is unmodified
+                        // and can be kept as the gray result
+                        mGrayOut = computeGray();
+                        y = mGrayOut;
+                    } else {
+                        // the listener may have drawn into the gray Mat, rotate Y again
+                        Mat src = yuv.yPlane();
+                        if (mYRotated == null)
+                            mYRotated = allocateRotated(src);
+                        Core.rotate(src, mYRotated, getCvRotationCode(mRotation));
+                        y = mYRotated;
+                    }
+                    if (mUvRotated == null)
+                        mUvRotated = allocateRotated(uv);
+                    Core.rotate(uv, mUvRotated, getCvRotationCode(mRotation));
+                    if (mRgbaRotated == null)
+                        mRgbaRotated = mArena != null ? mArena.acquire(y.rows(), y.cols(), CvType.CV_8UC4) : new Mat();
+                    Imgproc.cvtColorTwoPlane(y, mUvRotated, mRgbaRotated, yuv.rgbaConversion());
+                    return mRgbaRotated;
+                }
             }
+            Mat src = mFrame.rgba();
+            if (mRgbaRotated == null)
+                mRgbaRotated = allocateRotated(src);
+            Core.rotate(src, mRgbaRotated, getCvRotationCode(mRotation));
+            return mRgbaRotated;
         }
 
         private int getCvRotationCode(int degrees) {
@@ -227,24 +330,60 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
             }
         }
 
+        private Mat allocateRotated(Mat src) {
+            if (mArena == null)
+                return new Mat();
+            if (mRotation == 180)
+                return mArena.acquire(src.rows(), src.cols(), src.type());
+            return mArena.acquire(src.cols(), src.rows(), src.type());
+        }
+
         public RotatedCameraFrame(CvCameraViewFrame frame, int rotation) {
+            this(frame, rotation, null);
+        }
+
+        /**
+         * Takes the rotated Mats from {@code arena} and returns them on {@link #release()}, so
+         * consecutive frames reuse the same native memory.
+         */
+        public RotatedCameraFrame(CvCameraViewFrame frame, int rotation, MatArena arena) {
             super();
             mFrame = frame;
-            mRgbaRotated = new Mat();
-            mGrayRotated = new Mat();
             mRotation = rotation;
+            mArena = arena;
         }
 
         @Override
         public void release() {
-            mRgbaRotated.release();
-            mGrayRotated.release();
+            invalidate();
+            releaseMat(mRgbaRotated);
+            releaseMat(mGrayRotated);
+            releaseMat(mUvRotated);
+            releaseMat(mYRotated);
+            mRgbaRotated = null;
+            mGrayRotated = null;
+            mUvRotated = null;
+            mYRotated = null;
+        }
+
+        private void releaseMat(Mat m) {
+            if (m == null)
+                return;
+            if (mArena != null)
+                mArena.recycle(m);
+            else
+                m.release();
         }
 
         public CvCameraViewFrame mFrame;
         private Mat mRgbaRotated;
         private Mat mGrayRotated;
+        private Mat mUvRotated;
+        private Mat mYRotated;
+        private Mat mRgbaOut;
+        private Mat mGrayOut;
         private int mRotation;
+        private MatArena mArena;
     };
 
     /**
@@ -353,10 +492,63 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
             mFpsMeter = new FpsMeter();
             mFpsMeter.setResolution(mFrameWidth, mFrameHeight);
         }
+        if (mProcessingFpsMeter == null) {
+            mProcessingFpsMeter = new FpsMeter();
+            mProcessingFpsMeter.setLabel("proc ");
+            mProcessingFpsMeter.setResolution(mFrameWidth, mFrameHeight);
+        }
     }
 
     public void disableFpsMeter() {
             mFpsMeter = null;
+            mProcessingFpsMeter = null;
+    }
+
+    /**
+     * Draws frames on a dedicated thread. The camera thread converts the listener's result into
+     * one of two bitmaps and continues with the next frame while the other one is drawn.
+     * Takes effect at the next camera start.
+     */
+    public void enableRenderThread() {
+        mRenderThreadEnabled = true;
+    }
+
+    public void disableRenderThread() {
+        mRenderThreadEnabled = false;
+    }
+
+    /**
+     * With the render thread enabled, selects what happens when a frame is ready before the
+     * previous one has been drawn: if true (the default) the undrawn frame is replaced, otherwise
+     * the camera thread waits for the render thread.
+     */
+    public void setSkipDrawWhenBehind(boolean skip) {
+        mSkipDrawWhenBehind = skip;
+    }
+
+    /**
+     * Lets listeners receive frames in sensor orientation, skipping the rotation for detectors that
+     * do not depend on it. {@link RotatedCameraFrame#getRotation()} gives the rotation to apply;
+     * the Mat returned by the listener is expected unrotated and is rotated for display only.
+     */
+    public void setDeliverUnrotatedFrames(boolean unrotated) {
+        mDeliverUnrotated = unrotated;
+    }
+
+    /**
+     * Number of frames drawn by the render thread since the camera was started.
+     */
+    public long getDrawnFrameCount() {
+        RenderThread t = mRenderThread;
+        return t != null ? t.drawn() : 0;
+    }
+
+    /**
+     * Number of frames replaced before the render thread could draw them.
+     */
+    public long getSkippedFrameCount() {
+        RenderThread t = mRenderThread;
+        return t != null ? t.skipped() : 0;
     }
 
     /**
@@ -473,14 +665,30 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
             });
             ad.show();
 
+        } else if (mRenderThreadEnabled && mBackBitmap != null) {
+            mRenderThread = new RenderThread(mCacheBitmap, mBackBitmap);
+            mRenderThread.start();
         }
     }
 
     private void onExitStartedState() {
         disconnectCamera();
+        if (mRenderThread != null) {
+            mRenderThread.shutdown();
+            Log.i(TAG, "Frames drawn: " + mRenderThread.drawn() + ", skipped: " + mRenderThread.skipped());
+            mRenderThread = null;
+        }
         if (mCacheBitmap != null) {
             mCacheBitmap.recycle();
         }
+        if (mBackBitmap != null) {
+            mBackBitmap.recycle();
+            mBackBitmap = null;
+        }
+        if (mDisplayRotated != null) {
+            mDisplayRotated.release();
+            mDisplayRotated = null;
+        }
     }
 
     /**
@@ -498,45 +706,169 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
             modified = frame.rgba();
         }
 
+        FpsMeter processingMeter = mProcessingFpsMeter;
+        if (processingMeter != null)
+            processingMeter.measure();
+
+        RenderThread renderThread = mRenderThread;
+        Bitmap bitmap = renderThread != null ? renderThread.acquire() : mCacheBitmap;
+        if (bitmap == null)
+            return;
+
+        if (modified != null && frame instanceof RotatedCameraFrame) {
+            int rotation = ((RotatedCameraFrame) frame).getRotation();
+            if (rotation != 0) {
+                if (mDisplayRotated == null)
+                    mDisplayRotated = new Mat();
+                Core.rotate(modified, mDisplayRotated, rotation == 90 ? Core.ROTATE_90_CLOCKWISE
+                        : rotation == 180 ? Core.ROTATE_180 : Core.ROTATE_90_COUNTERCLOCKWISE);
+                modified = mDisplayRotated;
+            }
+        }
+
         boolean bmpValid = true;
         if (modified != null) {
             try {
-                Utils.matToBitmap(modified, mCacheBitmap);
+                Utils.matToBitmap(modified, bitmap);
             } catch(Exception e) {
                 Log.e(TAG, "Mat type: " + modified);
-                Log.e(TAG, "Bitmap type: " + mCacheBitmap.getWidth() + "*" + mCacheBitmap.getHeight());
+                Log.e(TAG, "Bitmap type: " + bitmap.getWidth() + "*" + bitmap.getHeight());
                 Log.e(TAG, "Utils.matToBitmap() throws an exception: " + e.getMessage());
                 bmpValid = false;
             }
         }
 
-        if (bmpValid && mCacheBitmap != null) {
-            Canvas canvas = getHolder().lockCanvas();
-            if (canvas != null) {
-                canvas.drawColor(0, android.graphics.PorterDuff.Mode.CLEAR);
-                if (BuildConfig.DEBUG)
-                    Log.d(TAG, "mStretch value: " + mScale);
-
-                if (mScale != 0) {
-                    canvas.drawBitmap(mCacheBitmap, new Rect(0,0,mCacheBitmap.getWidth(), mCacheBitmap.getHeight()),
-                         new Rect((int)((canvas.getWidth() - mScale*mCacheBitmap.getWidth()) / 2),
-                         (int)((canvas.getHeight() - mScale*mCacheBitmap.getHeight()) / 2),
-                         (int)((canvas.getWidth() - mScale*mCacheBitmap.getWidth()) / 2 + mScale*mCacheBitmap.getWidth()),
-                         (int)((canvas.getHeight() - mScale*mCacheBitmap.getHeight()) / 2 + mScale*mCacheBitmap.getHeight())), null);
-                } else {
-                     canvas.drawBitmap(mCacheBitmap, new Rect(0,0,mCacheBitmap.getWidth(), mCacheBitmap.getHeight()),
-                         new Rect((canvas.getWidth() - mCacheBitmap.getWidth()) / 2,
-                         (canvas.getHeight() - mCacheBitmap.getHeight()) / 2,
-                         (canvas.getWidth() - mCacheBitmap.getWidth()) / 2 + mCacheBitmap.getWidth(),
-                         (canvas.getHeight() - mCacheBitmap.getHeight()) / 2 + mCacheBitmap.getHeight()), null);
-                }
+        if (renderThread != null) {
+            if (bmpValid)
+                renderThread.publish(bitmap);
+        } else if (bmpValid) {
+            drawBitmap(bitmap);
+        }
+    }
 
-                if (mFpsMeter != null) {
-                    mFpsMeter.measure();
-                    mFpsMeter.draw(canvas, 20, 30);
+    private void drawBitmap(Bitmap bitmap) {
+        Canvas canvas = getHolder().lockCanvas();
+        if (canvas != null) {
+            canvas.drawColor(0, android.graphics.PorterDuff.Mode.CLEAR);
+            if (BuildConfig.DEBUG)
+                Log.d(TAG, "mStretch value: " + mScale);
+
+            int bw = bitmap.getWidth();
+            int bh = bitmap.getHeight();
+            mSrcRect.set(0, 0, bw, bh);
+            if (mScale != 0) {
+                mDstRect.set((int)((canvas.getWidth() - mScale*bw) / 2),
+                     (int)((canvas.getHeight() - mScale*bh) / 2),
+                     (int)((canvas.getWidth() - mScale*bw) / 2 + mScale*bw),
+                     (int)((canvas.getHeight() - mScale*bh) / 2 + mScale*bh));
+            } else {
+                mDstRect.set((canvas.getWidth() - bw) / 2,
+                     (canvas.getHeight() - bh) / 2,
+                     (canvas.getWidth() - bw) / 2 + bw,
+                     (canvas.getHeight() - bh) / 2 + bh);
+            }
+            canvas.drawBitmap(bitmap, mSrcRect, mDstRect, null);
+
+            FpsMeter fpsMeter = mFpsMeter;
+            if (fpsMeter != null) {
+                fpsMeter.measure();
+                fpsMeter.draw(canvas, 20, 30);
+                FpsMeter processingMeter = mProcessingFpsMeter;
+                if (processingMeter != null && mRenderThread != null)
+                    processingMeter.draw(canvas, 20, 55);
+            }
+            getHolder().unlockCanvasAndPost(canvas);
+        }
+    }
+
+    /**
+     * Draws the bitmaps handed over by deliverAndDrawFrame. Of the two bitmaps one may be pending
+     * or being drawn, the camera thread fills the other one.
+     */
+    private class RenderThread extends Thread {
+        private final Bitmap mFirst;
+        private final Bitmap mSecond;
+        private Bitmap mPending;
+        private Bitmap mDrawing;
+        private boolean mStop;
+        private long mDrawn;
+        private long mSkipped;
+
+        RenderThread(Bitmap first, Bitmap second) {
+            super("OpenCV-Render");
+            mFirst = first;
+            mSecond = second;
+        }
+
+        synchronized Bitmap acquire() {
+            try {
+                while (!mSkipDrawWhenBehind && mPending != null && !mStop)
+                    wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (mStop)
+                return null;
+            if (mPending != null) {
+                // the render thread is behind, replace the frame it has not started yet
+                Bitmap b = mPending;
+                mPending = null;
+                mSkipped++;
+                return b;
+            }
+            return mDrawing == mFirst ? mSecond : mFirst;
+        }
+
+        synchronized void publish(Bitmap bitmap) {
+            mPending = bitmap;
+            notifyAll();
+        }
+
+        synchronized long drawn() {
+            return mDrawn;
+        }
+
+        synchronized long skipped() {
+            return mSkipped;
+        }
+
+        void shutdown() {
+            synchronized (this) {
+                mStop = true;
+                notifyAll();
+            }
+            try {
+                join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Bitmap bitmap;
+                synchronized (this) {
+                    try {
+                        while (mPending == null && !mStop)
+                            wait();
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                    if (mStop)
+                        break;
+                    bitmap = mPending;
+                    mPending = null;
+                    mDrawing = bitmap;
+                    notifyAll();
+                }
+                drawBitmap(bitmap);
+                synchronized (this) {
+                    mDrawing = null;
+                    mDrawn++;
                 }
-                getHolder().unlockCanvasAndPost(canvas);
             }
+            Log.d(TAG, "Finish render thread");
         }
     }
 
@@ -559,6 +891,11 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
     protected void AllocateCache()
     {
         mCacheBitmap = Bitmap.createBitmap(mFrameWidth, mFrameHeight, Bitmap.Config.ARGB_8888);
+        if (mBackBitmap != null)
+            mBackBitmap.recycle();
+        mBackBitmap = mRenderThreadEnabled ? Bitmap.createBitmap(mFrameWidth, mFrameHeight, Bitmap.Config.ARGB_8888) : null;
+        if (mProcessingFpsMeter != null)
+            mProcessingFpsMeter.setResolution(mFrameWidth, mFrameHeight);
     }
 
     public interface ListItemAccessor {
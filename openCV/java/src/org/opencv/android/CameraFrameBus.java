@@ -0,0 +1,424 @@
+package org.opencv.android;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opencv.android.CameraBridgeViewBase.CvCameraViewFrame;
+import org.opencv.android.CameraBridgeViewBase.CvCameraViewListener2;
+import org.opencv.core.Mat;
+
+import android.util.Log;
+
+/**
+ * Fans camera frames out to several subscribers, each running on its own {@link Executor}.
+ *
+ * Install the bus as the view's listener with
+ * {@link CameraBridgeViewBase#setCvCameraViewListener(CvCameraViewListener2)}. For every frame
+ * the bus copies the requested representations ({@link CameraBridgeViewBase#RGBA} and/or
+ * {@link CameraBridgeViewBase#GRAY}) into a pooled {@link SharedFrame} and queues it to every
+ * subscriber. The shared frame is reference counted and goes back to the pool when the last
+ * subscriber has finished with it, so its Mats are reused frame after frame.
+ *
+ * Each subscriber has its own queue and {@link Backpressure} policy and exposes delivery, drop
+ * and latency counters through its {@link Subscription}. The Mat shown on screen is the result of
+ * the display listener set with {@link #setDisplayListener(CvCameraViewListener2)}, which runs
+ * synchronously on the camera thread, or the camera RGBA frame if there is none.
+ */
+public class CameraFrameBus implements CvCameraViewListener2 {
+
+    private static final String TAG = "CameraFrameBus";
+    private static final int MAX_POOLED_FRAMES = 8;
+
+    public enum Backpressure {
+        /** When the queue is full, the oldest queued frame is dropped. */
+        DROP_OLDEST,
+        /** Only the newest frame is kept; a queued frame is replaced by the next one. */
+        LATEST_ONLY,
+        /** When the queue is full, the camera thread waits for the subscriber. */
+        BLOCK
+    }
+
+    public interface Subscriber {
+        /**
+         * Called on the subscriber's executor. The frame stays valid until this method returns,
+         * unless it is kept longer with {@link SharedFrame#retain()}.
+         */
+        public void onFrame(SharedFrame frame);
+    }
+
+    /**
+     * Copy of a camera frame shared between subscribers.
+     */
+    public final class SharedFrame implements CvCameraViewFrame {
+        private final Mat mRgba = new Mat();
+        private final Mat mGray = new Mat();
+        private final AtomicInteger mRefs = new AtomicInteger();
+        private long mSequence;
+        private long mTimestampNanos;
+
+        @Override
+        public Mat rgba() {
+            if ((mFormats & CameraBridgeViewBase.RGBA) == 0)
+                throw new IllegalStateException("The frame bus does not capture RGBA frames");
+            return mRgba;
+        }
+
+        @Override
+        public Mat gray() {
+            if ((mFormats & CameraBridgeViewBase.GRAY) == 0)
+                throw new IllegalStateException("The frame bus does not capture gray frames");
+            return mGray;
+        }
+
+        /**
+         * Number of the frame since the camera was started.
+         */
+        public long sequence() {
+            return mSequence;
+        }
+
+        /**
+         * {@link System#nanoTime()} at which the frame was published on the bus.
+         */
+        public long timestampNanos() {
+            return mTimestampNanos;
+        }
+
+        /**
+         * Keeps the frame valid after {@link Subscriber#onFrame(SharedFrame)} returns. Each call
+         * must be matched by a {@link #release()}.
+         */
+        public SharedFrame retain() {
+            if (mRefs.getAndIncrement() <= 0) {
+                mRefs.getAndDecrement();
+                throw new IllegalStateException("Frame has already been released");
+            }
+            return this;
+        }
+
+        @Override
+        public void release() {
+            int refs = mRefs.decrementAndGet();
+            if (refs == 0)
+                recycleFrame(this);
+            else if (refs < 0)
+                throw new IllegalStateException("Frame released more times than retained");
+        }
+
+        private void dispose() {
+            mRgba.release();
+            mGray.release();
+        }
+    }
+
+    /**
+     * One subscriber with its queue, policy and counters.
+     */
+    public final class Subscription {
+        private final String mName;
+        private final Subscriber mSubscriber;
+        private final Executor mExecutor;
+        private final Backpressure mPolicy;
+        private final int mCapacity;
+        private final ArrayDeque<SharedFrame> mQueue = new ArrayDeque<SharedFrame>();
+        private boolean mScheduled;
+        private boolean mClosed;
+
+        private long mDelivered;
+        private long mDropped;
+        private long mFailed;
+        private long mLatencySumNanos;
+        private long mLatencyMaxNanos;
+        private long mBlockedNanos;
+
+        private final Runnable mDrain = new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        };
+
+        Subscription(String name, Subscriber subscriber, Executor executor, Backpressure policy, int capacity) {
+            mName = name;
+            mSubscriber = subscriber;
+            mExecutor = executor;
+            mPolicy = policy;
+            mCapacity = policy == Backpressure.LATEST_ONLY ? 1 : capacity;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public Backpressure getPolicy() {
+            return mPolicy;
+        }
+
+        public synchronized long getDeliveredCount() {
+            return mDelivered;
+        }
+
+        /**
+         * Frames discarded by the backpressure policy or at unsubscribe/stop.
+         */
+        public synchronized long getDroppedCount() {
+            return mDropped;
+        }
+
+        /**
+         * Deliveries that ended with an exception from the subscriber.
+         */
+        public synchronized long getFailedCount() {
+            return mFailed;
+        }
+
+        public synchronized int getQueueDepth() {
+            return mQueue.size();
+        }
+
+        /**
+         * Mean time from publication on the bus to the end of the subscriber's callback.
+         */
+        public synchronized double getMeanLatencyMillis() {
+            return mDelivered > 0 ? mLatencySumNanos / 1e6 / mDelivered : 0;
+        }
+
+        public synchronized double getMaxLatencyMillis() {
+            return mLatencyMaxNanos / 1e6;
+        }
+
+        /**
+         * Total time the camera thread spent waiting for this subscriber ({@link Backpressure#BLOCK}).
+         */
+        public synchronized double getBlockedMillis() {
+            return mBlockedNanos / 1e6;
+        }
+
+        public synchronized void resetStats() {
+            mDelivered = mDropped = mFailed = 0;
+            mLatencySumNanos = mLatencyMaxNanos = mBlockedNanos = 0;
+        }
+
+        /**
+         * Stops deliveries to this subscriber and drops its queued frames. A callback that is
+         * already running completes normally.
+         */
+        public void unsubscribe() {
+            mSubscriptions.remove(this);
+            synchronized (this) {
+                mClosed = true;
+                clearQueue();
+                notifyAll();
+            }
+        }
+
+        void offer(SharedFrame frame) {
+            boolean schedule;
+            synchronized (this) {
+                if (mClosed)
+                    return;
+                if (mQueue.size() >= mCapacity) {
+                    if (mPolicy == Backpressure.BLOCK) {
+                        long start = System.nanoTime();
+                        try {
+                            while (mQueue.size() >= mCapacity && !mClosed)
+                                wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        mBlockedNanos += System.nanoTime() - start;
+                        if (mClosed || mQueue.size() >= mCapacity) {
+                            mDropped++;
+                            return;
+                        }
+                    } else {
+                        mQueue.pollFirst().release();
+                        mDropped++;
+                    }
+                }
+                mQueue.addLast(frame.retain());
+                schedule = !mScheduled;
+                mScheduled = true;
+            }
+            if (schedule)
+                mExecutor.execute(mDrain);
+        }
+
+        synchronized void clearQueue() {
+            SharedFrame f;
+            while ((f = mQueue.pollFirst()) != null) {
+                f.release();
+                mDropped++;
+            }
+            notifyAll();
+        }
+
+        private void drain() {
+            while (true) {
+                SharedFrame frame;
+                synchronized (this) {
+                    frame = mQueue.pollFirst();
+                    if (frame == null) {
+                        mScheduled = false;
+                        return;
+                    }
+                    notifyAll();
+                }
+                boolean ok = false;
+                try {
+                    mSubscriber.onFrame(frame);
+                    ok = true;
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Subscriber " + mName + " failed", e);
+                } finally {
+                    long latency = System.nanoTime() - frame.mTimestampNanos;
+                    frame.release();
+                    synchronized (this) {
+                        if (ok) {
+                            mDelivered++;
+                            mLatencySumNanos += latency;
+                            if (latency > mLatencyMaxNanos)
+                                mLatencyMaxNanos = latency;
+                        } else {
+                            mFailed++;
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            return mName + " [" + mPolicy + ", delivered=" + mDelivered + ", dropped=" + mDropped
+                    + ", failed=" + mFailed + ", queued=" + mQueue.size()
+                    + ", latency mean=" + String.format("%.2f", getMeanLatencyMillis())
+                    + "ms max=" + String.format("%.2f", getMaxLatencyMillis()) + "ms]";
+        }
+    }
+
+    private final int mFormats;
+    private final CopyOnWriteArrayList<Subscription> mSubscriptions = new CopyOnWriteArrayList<Subscription>();
+    private final ArrayList<SharedFrame> mPool = new ArrayList<SharedFrame>();
+    private volatile CvCameraViewListener2 mDisplayListener;
+    private long mSequence;
+    private boolean mPoolClosed;
+
+    /**
+     * @param formats representations copied for subscribers, a combination of
+     *                {@link CameraBridgeViewBase#RGBA} and {@link CameraBridgeViewBase#GRAY}
+     */
+    public CameraFrameBus(int formats) {
+        if ((formats & (CameraBridgeViewBase.RGBA | CameraBridgeViewBase.GRAY)) == 0
+                || (formats & ~(CameraBridgeViewBase.RGBA | CameraBridgeViewBase.GRAY)) != 0)
+            throw new IllegalArgumentException("formats must combine RGBA and GRAY: " + formats);
+        mFormats = formats;
+    }
+
+    /**
+     * Adds a subscriber.
+     *
+     * @param capacity maximum number of queued frames, ignored for {@link Backpressure#LATEST_ONLY}
+     */
+    public Subscription subscribe(String name, Subscriber subscriber, Executor executor, Backpressure policy, int capacity) {
+        if (subscriber == null || executor == null || policy == null)
+            throw new IllegalArgumentException("subscriber, executor and policy are required");
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        Subscription s = new Subscription(name, subscriber, executor, policy, capacity);
+        mSubscriptions.add(s);
+        return s;
+    }
+
+    /**
+     * Sets the listener whose result is displayed. It is called on the camera thread with the
+     * original frame, after the frame has been copied and published to the subscribers, so it
+     * may modify the frame's Mats in place.
+     */
+    public void setDisplayListener(CvCameraViewListener2 listener) {
+        mDisplayListener = listener;
+    }
+
+    public Subscription[] getSubscriptions() {
+        return mSubscriptions.toArray(new Subscription[0]);
+    }
+
+    @Override
+    public void onCameraViewStarted(int width, int height) {
+        mSequence = 0;
+        CvCameraViewListener2 display = mDisplayListener;
+        if (display != null)
+            display.onCameraViewStarted(width, height);
+    }
+
+    @Override
+    public void onCameraViewStopped() {
+        CvCameraViewListener2 display = mDisplayListener;
+        if (display != null)
+            display.onCameraViewStopped();
+        for (Subscription s : mSubscriptions) {
+            s.clearQueue();
+            Log.i(TAG, s.toString());
+        }
+    }
+
+    @Override
+    public Mat onCameraFrame(CvCameraViewFrame inputFrame) {
+        // publish first: the display listener may draw into the frame's Mats
+        if (!mSubscriptions.isEmpty()) {
+            SharedFrame frame = obtainFrame();
+            if ((mFormats & CameraBridgeViewBase.RGBA) != 0)
+                inputFrame.rgba().copyTo(frame.mRgba);
+            if ((mFormats & CameraBridgeViewBase.GRAY) != 0)
+                inputFrame.gray().copyTo(frame.mGray);
+            frame.mSequence = mSequence++;
+            frame.mTimestampNanos = System.nanoTime();
+            for (Subscription s : mSubscriptions)
+                s.offer(frame);
+            // drop the bus's own reference, the last subscriber returns the frame to the pool
+            frame.release();
+        }
+
+        CvCameraViewListener2 display = mDisplayListener;
+        return display != null ? display.onCameraFrame(inputFrame) : inputFrame.rgba();
+    }
+
+    /**
+     * Frees the pooled frames. Frames still referenced by subscribers are freed when released.
+     */
+    public void close() {
+        for (Subscription s : mSubscriptions)
+            s.unsubscribe();
+        synchronized (mPool) {
+            mPoolClosed = true;
+            for (SharedFrame f : mPool)
+                f.dispose();
+            mPool.clear();
+        }
+    }
+
+    private SharedFrame obtainFrame() {
+        SharedFrame frame = null;
+        synchronized (mPool) {
+            mPoolClosed = false;
+            if (!mPool.isEmpty())
+                frame = mPool.remove(mPool.size() - 1);
+        }
+        if (frame == null)
+            frame = new SharedFrame();
+        frame.mRefs.set(1);
+        return frame;
+    }
+
+    private void recycleFrame(SharedFrame frame) {
+        synchronized (mPool) {
+            if (!mPoolClosed && mPool.size() < MAX_POOLED_FRAMES) {
+                mPool.add(frame);
+                return;
+            }
+        }
+        frame.dispose();
+    }
+}
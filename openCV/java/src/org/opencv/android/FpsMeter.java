@@ -1,33 +1,37 @@
 package org.opencv.android;
 
-import java.text.DecimalFormat;
-
-import org.opencv.core.Core;
-
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.util.Log;
 
+/**
+ * On-screen frame rate overlay for {@link CameraBridgeViewBase#enableFpsMeter()}.
+ *
+ * Frame times are collected by a {@link FrameTimeMeter}; the overlay shows the frame rate, the
+ * p50/p95/p99 frame times and the jank count, and is refreshed every {@code STEP} frames into a
+ * reused character buffer, so measuring and drawing do not allocate. The buffer only grows when
+ * a longer label is set. Measuring and drawing may run on different threads; the text is
+ * rebuilt and drawn under the meter's lock.
+ */
 public class FpsMeter {
-    private static final String TAG               = "FpsMeter";
     private static final int    STEP              = 20;
-    private static final DecimalFormat FPS_FORMAT = new DecimalFormat("0.00");
+    // " @" + width + "x" + height
+    private static final int    RESOLUTION_LENGTH = 2 + 11 + 1 + 11;
 
+    private final FrameTimeMeter mMeter           = new FrameTimeMeter();
+    private char[]              mText             = new char[FrameTimeMeter.MAX_FORMAT_LENGTH + RESOLUTION_LENGTH];
+    private int                 mTextLength;
     private int                 mFramesCounter;
-    private double              mFrequency;
-    private long                mprevFrameTime;
-    private String              mStrfps;
+    private volatile String     mLabel = "";
     Paint                       mPaint;
     boolean                     mIsInitialized = false;
-    int                         mWidth = 0;
-    int                         mHeight = 0;
+    volatile int                mWidth = 0;
+    volatile int                mHeight = 0;
 
-    public void init() {
+    public synchronized void init() {
         mFramesCounter = 0;
-        mFrequency = Core.getTickFrequency();
-        mprevFrameTime = Core.getTickCount();
-        mStrfps = "";
+        mMeter.reset();
+        mTextLength = 0;
 
         mPaint = new Paint();
         mPaint.setColor(Color.BLUE);
@@ -38,30 +42,64 @@ public class FpsMeter {
         if (!mIsInitialized) {
             init();
             mIsInitialized = true;
-        } else {
-            mFramesCounter++;
-            if (mFramesCounter % STEP == 0) {
-                long time = Core.getTickCount();
-                double fps = STEP * mFrequency / (time - mprevFrameTime);
-                mprevFrameTime = time;
-                if (mWidth != 0 && mHeight != 0)
-                    mStrfps = FPS_FORMAT.format(fps) + " FPS@" + Integer.valueOf(mWidth) + "x" + Integer.valueOf(mHeight);
-                else
-                    mStrfps = FPS_FORMAT.format(fps) + " FPS";
-                Log.i(TAG, mStrfps);
-            }
         }
+        mMeter.tick(System.nanoTime());
+        mFramesCounter++;
+        if (mFramesCounter % STEP == 0)
+            updateText();
     }
 
+    /**
+     * Resolution shown after the statistics. May be called from any thread; the text is rebuilt
+     * by the measuring thread on its next update.
+     */
     public void setResolution(int width, int height) {
-        Log.d(TAG, "FpsMeter.setResolution " + Integer.valueOf(mWidth) + "x" + Integer.valueOf(mHeight));
         mWidth = width;
         mHeight = height;
     }
 
-    public void draw(Canvas canvas, float offsetx, float offsety) {
-        Log.d(TAG, mStrfps);
-        canvas.drawText(mStrfps, offsetx, offsety, mPaint);
+    /**
+     * Text put in front of the measured value, to tell several meters apart.
+     */
+    public void setLabel(String label) {
+        mLabel = label != null ? label : "";
+    }
+
+    /**
+     * Frame rate used to detect janky frames, 30 by default.
+     */
+    public void setTargetFps(double fps) {
+        mMeter.setTargetFps(fps);
+    }
+
+    /**
+     * The underlying statistics, for reading them from code. Use on the measuring thread.
+     */
+    public FrameTimeMeter getMeter() {
+        return mMeter;
+    }
+
+    public synchronized void draw(Canvas canvas, float offsetx, float offsety) {
+        if (mPaint != null && mTextLength > 0)
+            canvas.drawText(mText, 0, mTextLength, offsetx, offsety, mPaint);
     }
 
+    private synchronized void updateText() {
+        int width = mWidth;
+        int height = mHeight;
+        String label = mLabel;
+        int length = label.length() + FrameTimeMeter.MAX_FORMAT_LENGTH + RESOLUTION_LENGTH;
+        if (mText.length < length)
+            mText = new char[length];
+        int p = FrameTimeMeter.append(mText, 0, label);
+        p = mMeter.format(mText, p);
+        if (width != 0 && height != 0) {
+            mText[p++] = ' ';
+            mText[p++] = '@';
+            p = FrameTimeMeter.appendLong(mText, p, width);
+            mText[p++] = 'x';
+            p = FrameTimeMeter.appendLong(mText, p, height);
+        }
+        mTextLength = p;
+    }
 }
@@ -0,0 +1,561 @@
+package org.opencv.android;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Delivers YUV 4:2:0 frames to a {@link Listener} on the calling thread, without a camera, a
+ * view or any Android class, so frame processing can be benchmarked and tested on a plain JVM.
+ *
+ * Frames are produced by a {@link FrameSource}: a generated pattern, a sequence of image files
+ * or a raw NV21/I420 file. The listener sees onStarted with the frame size, then onFrame for
+ * every frame, whose rgba()/gray() are converted on demand and memoized, then onStopped.
+ * {@link HeadlessFrameDriver} adapts the driver to a {@link CameraBridgeViewBase.CvCameraViewListener2}.
+ *
+ * The driver reports the delivered frame rate and the per-callback latency of onFrame,
+ * separately from the time the source needed to produce the frames.
+ *
+ * Example use:
+ *
+ * FrameDriver driver = new FrameDriver(FrameDriver.patternSource(640, 480), listener);
+ * driver.setFrameRate(30);
+ * driver.run(300);
+ * System.out.println(driver);
+ */
+public class FrameDriver {
+
+    public static final int FORMAT_NV21 = 1;
+    public static final int FORMAT_I420 = 2;
+
+    /**
+     * Producer of YUV 4:2:0 frames.
+     */
+    public interface FrameSource {
+        public int width();
+
+        public int height();
+
+        /**
+         * {@link #FORMAT_NV21} or {@link #FORMAT_I420}.
+         */
+        public int format();
+
+        /**
+         * Writes the next frame into {@code yuv}, a CV_8UC1 Mat of height * 3 / 2 rows and width
+         * columns. Returns false when there are no more frames.
+         */
+        public boolean next(Mat yuv);
+
+        public void close();
+    }
+
+    /**
+     * Receives the frames, on the thread that called {@link FrameDriver#run(long)}.
+     */
+    public interface Listener {
+        public void onStarted(int width, int height);
+
+        /**
+         * The frame and its Mats are reused for the next frame; copy what must be kept.
+         */
+        public void onFrame(Frame frame);
+
+        public void onStopped();
+    }
+
+    /**
+     * One YUV frame with lazily converted representations.
+     */
+    public static class Frame {
+        private final int mWidth;
+        private final int mHeight;
+        private final int mFormat;
+        final Mat mYuv;
+        private final Mat mRgba = new Mat();
+        private Mat mYPlane;
+        private Mat mUvPlane;
+        private boolean mRgbaValid;
+        private long mIndex;
+
+        Frame(int width, int height, int format) {
+            mWidth = width;
+            mHeight = height;
+            mFormat = format;
+            mYuv = new Mat(height + height / 2, width, CvType.CV_8UC1);
+        }
+
+        public int width() {
+            return mWidth;
+        }
+
+        public int height() {
+            return mHeight;
+        }
+
+        /**
+         * {@link #FORMAT_NV21} or {@link #FORMAT_I420}.
+         */
+        public int format() {
+            return mFormat;
+        }
+
+        /**
+         * Number of the frame within the current run, starting at 0.
+         */
+        public long index() {
+            return mIndex;
+        }
+
+        /**
+         * The whole YUV buffer, CV_8UC1 with height * 3 / 2 rows.
+         */
+        public Mat yuv() {
+            return mYuv;
+        }
+
+        public Mat gray() {
+            return yPlane();
+        }
+
+        public Mat rgba() {
+            if (!mRgbaValid) {
+                Imgproc.cvtColor(mYuv, mRgba, mFormat == FORMAT_NV21 ? Imgproc.COLOR_YUV2RGBA_NV21 : Imgproc.COLOR_YUV2RGBA_I420, 4);
+                mRgbaValid = true;
+            }
+            return mRgba;
+        }
+
+        /**
+         * Y plane, CV_8UC1 with the frame size, sharing memory with {@link #yuv()}.
+         */
+        public Mat yPlane() {
+            if (mYPlane == null)
+                mYPlane = mYuv.submat(0, mHeight, 0, mWidth);
+            return mYPlane;
+        }
+
+        /**
+         * Interleaved chroma plane, CV_8UC2 with half the frame size, or null for I420 frames.
+         */
+        public Mat uvPlane() {
+            if (mFormat != FORMAT_NV21)
+                return null;
+            if (mUvPlane == null) {
+                Mat rows = mYuv.submat(mHeight, mHeight + mHeight / 2, 0, mWidth);
+                mUvPlane = rows.reshape(2);
+                rows.release();
+            }
+            return mUvPlane;
+        }
+
+        /**
+         * {@link Imgproc#cvtColorTwoPlane} code converting yPlane() and uvPlane() to RGBA.
+         */
+        public int rgbaConversion() {
+            return Imgproc.COLOR_YUV2RGBA_NV21;
+        }
+
+        void next(long index) {
+            mIndex = index;
+            mRgbaValid = false;
+            // a source may have reallocated the buffer, rebuild the plane headers
+            if (mYPlane != null && mYPlane.dataAddr() != mYuv.dataAddr())
+                releasePlanes();
+        }
+
+        void dispose() {
+            releasePlanes();
+            mRgba.release();
+            mYuv.release();
+        }
+
+        private void releasePlanes() {
+            if (mYPlane != null) {
+                mYPlane.release();
+                mYPlane = null;
+            }
+            if (mUvPlane != null) {
+                mUvPlane.release();
+                mUvPlane = null;
+            }
+        }
+    }
+
+    /**
+     * Time source of the driver, replaced by tests to check the pacing without real sleeps.
+     */
+    interface Clock {
+        long nanoTime();
+
+        void sleepNanos(long nanos);
+    }
+
+    static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void sleepNanos(long nanos) {
+            try {
+                Thread.sleep(nanos / 1000000, (int) (nanos % 1000000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    };
+
+    private final FrameSource mSource;
+    private final Listener mListener;
+    private final Frame mFrame;
+    private final FrameTimeMeter mIntervals = new FrameTimeMeter(600, 30);
+    private final FrameTimeMeter mLatency = new FrameTimeMeter(600, 30);
+    private Clock mClock = SYSTEM_CLOCK;
+    private long mFrameNanos;
+    private volatile boolean mStop;
+
+    private long mFrames;
+    private long mSourceNanos;
+    private long mElapsedNanos;
+
+    public FrameDriver(FrameSource source, Listener listener) {
+        if (source == null || listener == null)
+            throw new IllegalArgumentException("source and listener are required");
+        if (source.format() != FORMAT_NV21 && source.format() != FORMAT_I420)
+            throw new IllegalArgumentException("Unsupported frame format: " + source.format());
+        checkSize(source.width(), source.height());
+        mSource = source;
+        mListener = listener;
+        mFrame = new Frame(source.width(), source.height(), source.format());
+    }
+
+    void setClock(Clock clock) {
+        mClock = clock;
+    }
+
+    /**
+     * Paces delivery to {@code fps} frames per second; 0 (the default) delivers as fast as the
+     * listener allows. Also sets the frame budget used for the jank counts.
+     */
+    public void setFrameRate(double fps) {
+        if (fps < 0)
+            throw new IllegalArgumentException("fps must not be negative: " + fps);
+        mFrameNanos = fps > 0 ? (long) (1e9 / fps) : 0;
+        if (fps > 0) {
+            mIntervals.setTargetFps(fps);
+            mLatency.setTargetFps(fps);
+        }
+    }
+
+    /**
+     * Delivers up to {@code maxFrames} frames on the calling thread, or until the source ends or
+     * {@link #stop()} is called. Returns the number of frames delivered.
+     */
+    public long run(long maxFrames) {
+        mStop = false;
+        mFrames = 0;
+        mSourceNanos = 0;
+        mIntervals.reset();
+        mLatency.reset();
+        mListener.onStarted(mSource.width(), mSource.height());
+        Clock clock = mClock;
+        long start = clock.nanoTime();
+        long deadline = start;
+        try {
+            while (!mStop && mFrames < maxFrames) {
+                long t0 = clock.nanoTime();
+                if (!mSource.next(mFrame.mYuv))
+                    break;
+                long t1 = clock.nanoTime();
+                mSourceNanos += t1 - t0;
+
+                if (mFrameNanos > 0) {
+                    deadline += mFrameNanos;
+                    long wait = deadline - t1;
+                    if (wait > 0)
+                        clock.sleepNanos(wait);
+                    else
+                        deadline = t1; // behind schedule, do not try to catch up
+                }
+
+                mFrame.next(mFrames);
+                long t2 = clock.nanoTime();
+                mIntervals.tick(t2);
+                mListener.onFrame(mFrame);
+                mLatency.add(clock.nanoTime() - t2);
+                mFrames++;
+            }
+        } finally {
+            mElapsedNanos = clock.nanoTime() - start;
+            mListener.onStopped();
+        }
+        return mFrames;
+    }
+
+    /**
+     * Makes {@link #run(long)} return after the current frame. Can be called from any thread.
+     */
+    public void stop() {
+        mStop = true;
+    }
+
+    /**
+     * Frees the frame buffers and closes the source.
+     */
+    public void release() {
+        mFrame.dispose();
+        mSource.close();
+    }
+
+    public int width() {
+        return mSource.width();
+    }
+
+    public int height() {
+        return mSource.height();
+    }
+
+    public long getFrameCount() {
+        return mFrames;
+    }
+
+    /**
+     * Frames delivered per second over the whole last run, including pacing and source time.
+     */
+    public double getThroughputFps() {
+        return mElapsedNanos > 0 ? mFrames * 1e9 / mElapsedNanos : 0;
+    }
+
+    /**
+     * Statistics of the onFrame durations over the most recent frames.
+     */
+    public FrameTimeMeter getLatency() {
+        return mLatency;
+    }
+
+    /**
+     * Statistics of the intervals between consecutive onFrame calls.
+     */
+    public FrameTimeMeter getIntervals() {
+        return mIntervals;
+    }
+
+    public double getMeanSourceMillis() {
+        return mFrames > 0 ? mSourceNanos / 1e6 / mFrames : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "FrameDriver [ " + mSource.width() + "x" + mSource.height() + ", frames=" + mFrames
+                + ", throughput=" + String.format("%.1f", getThroughputFps()) + " FPS"
+                + ", onFrame mean/p50/p95/p99=" + String.format("%.2f/%.2f/%.2f/%.2f",
+                        mLatency.getMeanMillis(), mLatency.getP50Millis(), mLatency.getP95Millis(), mLatency.getP99Millis())
+                + "ms, source mean=" + String.format("%.2f", getMeanSourceMillis()) + "ms ]";
+    }
+
+    /**
+     * Moving white square over a static checkerboard, gray chroma.
+     */
+    public static FrameSource patternSource(final int width, final int height) {
+        checkSize(width, height);
+        return new FrameSource() {
+            private Mat mBase;
+            private long mIndex;
+
+            @Override
+            public int width() {
+                return width;
+            }
+
+            @Override
+            public int height() {
+                return height;
+            }
+
+            @Override
+            public int format() {
+                return FORMAT_NV21;
+            }
+
+            @Override
+            public boolean next(Mat yuv) {
+                if (mBase == null) {
+                    mBase = new Mat(height + height / 2, width, CvType.CV_8UC1, new Scalar(128));
+                    Mat y = mBase.submat(0, height, 0, width);
+                    y.setTo(new Scalar(40));
+                    int cell = Math.max(8, Math.min(width, height) / 8);
+                    for (int r = 0; r < height; r += cell)
+                        for (int c = (r / cell) % 2 * cell; c < width; c += 2 * cell)
+                            Imgproc.rectangle(y, new Point(c, r), new Point(c + cell - 1, r + cell - 1), new Scalar(200), -1);
+                    y.release();
+                }
+                mBase.copyTo(yuv);
+                int side = Math.max(4, Math.min(width, height) / 6);
+                int x = (int) ((mIndex * 4) % Math.max(1, width - side));
+                int top = (int) ((mIndex * 3) % Math.max(1, height - side));
+                Imgproc.rectangle(yuv, new Point(x, top), new Point(x + side - 1, top + side - 1), new Scalar(255), -1);
+                mIndex++;
+                return true;
+            }
+
+            @Override
+            public void close() {
+                if (mBase != null)
+                    mBase.release();
+            }
+        };
+    }
+
+    /**
+     * Decodes the images with {@link Imgcodecs#imread(String)}, resizes them to the frame size and
+     * converts them to I420. With {@code loop} the sequence repeats endlessly.
+     */
+    public static FrameSource imageSequenceSource(List<String> paths, final int width, final int height, final boolean loop) {
+        checkSize(width, height);
+        if (paths == null || paths.isEmpty())
+            throw new IllegalArgumentException("No images");
+        final List<String> files = new ArrayList<String>(paths);
+        return new FrameSource() {
+            private final Mat mBgr = new Mat();
+            private final Mat mResized = new Mat();
+            private final Size mSize = new Size(width, height);
+            private int mIndex;
+
+            @Override
+            public int width() {
+                return width;
+            }
+
+            @Override
+            public int height() {
+                return height;
+            }
+
+            @Override
+            public int format() {
+                return FORMAT_I420;
+            }
+
+            @Override
+            public boolean next(Mat yuv) {
+                if (mIndex == files.size()) {
+                    if (!loop)
+                        return false;
+                    mIndex = 0;
+                }
+                String path = files.get(mIndex++);
+                Mat img = Imgcodecs.imread(path);
+                if (img.empty())
+                    throw new IllegalArgumentException("Cannot read image: " + path);
+                img.copyTo(mBgr);
+                img.release();
+                Mat src = mBgr;
+                if (mBgr.cols() != width || mBgr.rows() != height) {
+                    Imgproc.resize(mBgr, mResized, mSize);
+                    src = mResized;
+                }
+                Imgproc.cvtColor(src, yuv, Imgproc.COLOR_BGR2YUV_I420);
+                return true;
+            }
+
+            @Override
+            public void close() {
+                mBgr.release();
+                mResized.release();
+            }
+        };
+    }
+
+    /**
+     * Reads consecutive raw frames of {@code width * height * 3 / 2} bytes from a file in
+     * {@link #FORMAT_NV21} or {@link #FORMAT_I420} layout. With {@code loop} the file is reopened
+     * at its end.
+     */
+    public static FrameSource rawYuvSource(final String path, final int width, final int height, final int format, final boolean loop) {
+        checkSize(width, height);
+        if (format != FORMAT_NV21 && format != FORMAT_I420)
+            throw new IllegalArgumentException("Unsupported frame format: " + format);
+        return new FrameSource() {
+            private final byte[] mBuffer = new byte[width * height * 3 / 2];
+            private InputStream mIn;
+
+            @Override
+            public int width() {
+                return width;
+            }
+
+            @Override
+            public int height() {
+                return height;
+            }
+
+            @Override
+            public int format() {
+                return format;
+            }
+
+            @Override
+            public boolean next(Mat yuv) {
+                try {
+                    if (mIn == null)
+                        mIn = new FileInputStream(path);
+                    if (!readFully()) {
+                        mIn.close();
+                        mIn = null;
+                        if (!loop)
+                            return false;
+                        mIn = new FileInputStream(path);
+                        if (!readFully())
+                            return false;
+                    }
+                } catch (IOException e) {
+                    throw new IllegalArgumentException("Cannot read " + path + ": " + e.getMessage());
+                }
+                yuv.create(height + height / 2, width, CvType.CV_8UC1);
+                yuv.put(0, 0, mBuffer);
+                return true;
+            }
+
+            // false if the stream ends before a whole frame
+            private boolean readFully() throws IOException {
+                int n = 0;
+                while (n < mBuffer.length) {
+                    int r = mIn.read(mBuffer, n, mBuffer.length - n);
+                    if (r < 0)
+                        return false;
+                    n += r;
+                }
+                return true;
+            }
+
+            @Override
+            public void close() {
+                if (mIn != null) {
+                    try {
+                        mIn.close();
+                    } catch (IOException e) {
+                        // nothing to do
+                    }
+                    mIn = null;
+                }
+            }
+        };
+    }
+
+    private static void checkSize(int width, int height) {
+        if (width <= 0 || height <= 0 || width % 2 != 0 || height % 2 != 0)
+            throw new IllegalArgumentException("Frame size must be positive and even: " + width + "x" + height);
+    }
+}
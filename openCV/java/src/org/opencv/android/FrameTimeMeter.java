@@ -0,0 +1,271 @@
+package org.opencv.android;
+
+/**
+ * Frame timing statistics over a sliding window of frame intervals.
+ *
+ * The intervals are kept in a primitive ring, and the percentiles are computed on a scratch
+ * copy with an in-place selection, so neither {@link #tick(long)} nor the statistics allocate.
+ * A frame whose interval exceeds twice the target frame time counts as jank; two or more janky
+ * frames in a row form a stutter streak.
+ *
+ * Not thread safe: call {@link #tick(long)} and the accessors from one thread.
+ */
+public class FrameTimeMeter {
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Most characters {@link #format(char[], int)} writes, whatever the values.
+     */
+    public static final int MAX_FORMAT_LENGTH = 4 * 22 + 5 + 2 + 9 + 20;
+
+    private final long[] mIntervals;
+    private final long[] mScratch;
+    private int mCount;
+    private int mNext;
+    private long mSum;
+    private long mLastTick;
+    private long mTargetNanos;
+
+    private long mFrames;
+    private long mJanks;
+    private long mStutters;
+    private int mStreak;
+    private int mLongestStreak;
+
+    public FrameTimeMeter() {
+        this(120, 30);
+    }
+
+    /**
+     * @param window number of most recent frame intervals the statistics are computed over
+     * @param targetFps expected frame rate, used for jank detection
+     */
+    public FrameTimeMeter(int window, double targetFps) {
+        if (window < 1)
+            throw new IllegalArgumentException("window must be positive: " + window);
+        mIntervals = new long[window];
+        mScratch = new long[window];
+        setTargetFps(targetFps);
+        reset();
+    }
+
+    public void setTargetFps(double fps) {
+        if (!(fps > 0))
+            throw new IllegalArgumentException("fps must be positive: " + fps);
+        mTargetNanos = (long) (1e9 / fps);
+    }
+
+    public void reset() {
+        mCount = 0;
+        mNext = 0;
+        mSum = 0;
+        mLastTick = Long.MIN_VALUE;
+        mFrames = 0;
+        mJanks = 0;
+        mStutters = 0;
+        mStreak = 0;
+        mLongestStreak = 0;
+    }
+
+    /**
+     * Records a frame at {@code nanos}, a {@link System#nanoTime()} value.
+     */
+    public void tick(long nanos) {
+        if (mLastTick != Long.MIN_VALUE)
+            add(nanos - mLastTick);
+        mLastTick = nanos;
+    }
+
+    /**
+     * Records one duration directly, e.g. a per-frame processing time instead of an interval.
+     */
+    public void add(long intervalNanos) {
+        if (mCount == mIntervals.length)
+            mSum -= mIntervals[mNext];
+        else
+            mCount++;
+        mIntervals[mNext] = intervalNanos;
+        mSum += intervalNanos;
+        mNext = (mNext + 1) % mIntervals.length;
+        mFrames++;
+
+        if (intervalNanos > 2 * mTargetNanos) {
+            mJanks++;
+            if (++mStreak == 2)
+                mStutters++;
+            if (mStreak > mLongestStreak)
+                mLongestStreak = mStreak;
+        } else {
+            mStreak = 0;
+        }
+    }
+
+    public void tick() {
+        tick(System.nanoTime());
+    }
+
+    /**
+     * Number of intervals in the window.
+     */
+    public int getSampleCount() {
+        return mCount;
+    }
+
+    /**
+     * Number of frame intervals recorded since the last reset.
+     */
+    public long getFrameCount() {
+        return mFrames;
+    }
+
+    public double getMeanMillis() {
+        return mCount > 0 ? mSum / NANOS_PER_MILLI / mCount : 0;
+    }
+
+    public double getFps() {
+        return mSum > 0 ? 1e9 * mCount / mSum : 0;
+    }
+
+    /**
+     * Frame time below which {@code percentile} percent of the window's intervals fall, using
+     * the nearest-rank method.
+     */
+    public double getPercentileMillis(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("percentile must be in [0, 100]: " + percentile);
+        if (mCount == 0)
+            return 0;
+        int rank = (int) Math.ceil(percentile / 100 * mCount) - 1;
+        if (rank < 0)
+            rank = 0;
+        System.arraycopy(mIntervals, 0, mScratch, 0, mCount);
+        return select(mScratch, mCount, rank) / NANOS_PER_MILLI;
+    }
+
+    public double getP50Millis() {
+        return getPercentileMillis(50);
+    }
+
+    public double getP95Millis() {
+        return getPercentileMillis(95);
+    }
+
+    public double getP99Millis() {
+        return getPercentileMillis(99);
+    }
+
+    /**
+     * Frames since the last reset whose interval exceeded twice the target frame time.
+     */
+    public long getJankCount() {
+        return mJanks;
+    }
+
+    /**
+     * Runs of at least two consecutive janky frames since the last reset.
+     */
+    public long getStutterCount() {
+        return mStutters;
+    }
+
+    public int getLongestStutter() {
+        return mLongestStreak;
+    }
+
+    /**
+     * Writes a one-line summary ("29.9 FPS 33.4/35.1/41.0 ms jank 3") into {@code dst} starting
+     * at {@code offset} and returns the index after the last character written. {@code dst} needs
+     * room for about 48 characters, and for {@link #MAX_FORMAT_LENGTH} with extreme values.
+     */
+    public int format(char[] dst, int offset) {
+        int p = offset;
+        p = appendFixed(dst, p, getFps(), 1);
+        p = append(dst, p, " FPS ");
+        p = appendFixed(dst, p, getP50Millis(), 1);
+        dst[p++] = '/';
+        p = appendFixed(dst, p, getP95Millis(), 1);
+        dst[p++] = '/';
+        p = appendFixed(dst, p, getP99Millis(), 1);
+        p = append(dst, p, " ms jank ");
+        p = appendLong(dst, p, mJanks);
+        return p;
+    }
+
+    @Override
+    public String toString() {
+        char[] buf = new char[MAX_FORMAT_LENGTH];
+        return new String(buf, 0, format(buf, 0)) + " stutters " + mStutters + " longest " + mLongestStreak;
+    }
+
+    static int append(char[] dst, int p, String s) {
+        int n = s.length();
+        s.getChars(0, n, dst, p);
+        return p + n;
+    }
+
+    static int appendLong(char[] dst, int p, long v) {
+        if (v < 0) {
+            dst[p++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long t = v / 10; t != 0; t /= 10)
+            digits++;
+        for (int i = p + digits - 1; i >= p; i--) {
+            dst[i] = (char) ('0' + v % 10);
+            v /= 10;
+        }
+        return p + digits;
+    }
+
+    static int appendFixed(char[] dst, int p, double v, int decimals) {
+        if (Double.isNaN(v) || Double.isInfinite(v)) {
+            dst[p++] = '-';
+            dst[p++] = '-';
+            return p;
+        }
+        long scale = 1;
+        for (int i = 0; i < decimals; i++)
+            scale *= 10;
+        long scaled = Math.round(Math.abs(v) * scale);
+        if (v < 0 && scaled != 0)
+            dst[p++] = '-';
+        p = appendLong(dst, p, scaled / scale);
+        if (decimals > 0) {
+            dst[p++] = '.';
+            long frac = scaled % scale;
+            for (long d = scale / 10; d > 0; d /= 10) {
+                dst[p++] = (char) ('0' + frac / d);
+                frac %= d;
+            }
+        }
+        return p;
+    }
+
+    // k-th smallest of a[0..n), reorders a
+    private static long select(long[] a, int n, int k) {
+        int lo = 0, hi = n - 1;
+        while (hi > lo) {
+            long pivot = a[(lo + hi) >>> 1];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (a[i] < pivot) i++;
+                while (a[j] > pivot) j--;
+                if (i <= j) {
+                    long t = a[i];
+                    a[i] = a[j];
+                    a[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j)
+                hi = j;
+            else if (k >= i)
+                lo = i;
+            else
+                break;
+        }
+        return a[k];
+    }
+}
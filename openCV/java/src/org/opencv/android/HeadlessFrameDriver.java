@@ -0,0 +1,162 @@
+package org.opencv.android;
+
+import java.util.List;
+
+import org.opencv.android.CameraBridgeViewBase.CvCameraViewListener2;
+import org.opencv.android.CameraBridgeViewBase.YuvCameraFrame;
+import org.opencv.android.FrameDriver.FrameSource;
+import org.opencv.core.Mat;
+
+/**
+ * Drives a {@link CvCameraViewListener2} without a camera or a view, for benchmarks and tests.
+ *
+ * This is a thin adapter over {@link FrameDriver}, which produces the frames and takes the
+ * measurements without depending on any Android class. The listener is called like the views
+ * call it: onCameraViewStarted with the frame size, then onCameraFrame for every frame with a
+ * {@link YuvCameraFrame} whose rgba()/gray() are converted on demand and memoized, then
+ * onCameraViewStopped. Frames are delivered unrotated.
+ *
+ * Example use:
+ *
+ * HeadlessFrameDriver driver = new HeadlessFrameDriver(HeadlessFrameDriver.patternSource(640, 480), listener);
+ * driver.setFrameRate(30);
+ * driver.run(300);
+ * System.out.println(driver);
+ */
+public class HeadlessFrameDriver {
+
+    public static final int FORMAT_NV21 = FrameDriver.FORMAT_NV21;
+    public static final int FORMAT_I420 = FrameDriver.FORMAT_I420;
+
+    private final FrameDriver mDriver;
+
+    public HeadlessFrameDriver(FrameSource source, final CvCameraViewListener2 listener) {
+        if (listener == null)
+            throw new IllegalArgumentException("source and listener are required");
+        mDriver = new FrameDriver(source, new FrameDriver.Listener() {
+            private final HeadlessFrame mFrame = new HeadlessFrame();
+
+            @Override
+            public void onStarted(int width, int height) {
+                listener.onCameraViewStarted(width, height);
+            }
+
+            @Override
+            public void onFrame(FrameDriver.Frame frame) {
+                mFrame.mFrame = frame;
+                listener.onCameraFrame(mFrame);
+            }
+
+            @Override
+            public void onStopped() {
+                listener.onCameraViewStopped();
+            }
+        });
+    }
+
+    /**
+     * The underlying driver, e.g. for its measurements.
+     */
+    public FrameDriver getDriver() {
+        return mDriver;
+    }
+
+    /**
+     * See {@link FrameDriver#setFrameRate(double)}.
+     */
+    public void setFrameRate(double fps) {
+        mDriver.setFrameRate(fps);
+    }
+
+    /**
+     * See {@link FrameDriver#run(long)}.
+     */
+    public long run(long maxFrames) {
+        return mDriver.run(maxFrames);
+    }
+
+    public void stop() {
+        mDriver.stop();
+    }
+
+    public void release() {
+        mDriver.release();
+    }
+
+    public long getFrameCount() {
+        return mDriver.getFrameCount();
+    }
+
+    public double getThroughputFps() {
+        return mDriver.getThroughputFps();
+    }
+
+    /**
+     * Statistics of the onCameraFrame durations over the most recent frames.
+     */
+    public FrameTimeMeter getLatency() {
+        return mDriver.getLatency();
+    }
+
+    /**
+     * Statistics of the intervals between consecutive onCameraFrame calls.
+     */
+    public FrameTimeMeter getIntervals() {
+        return mDriver.getIntervals();
+    }
+
+    public double getMeanSourceMillis() {
+        return mDriver.getMeanSourceMillis();
+    }
+
+    @Override
+    public String toString() {
+        return "Headless" + mDriver;
+    }
+
+    public static FrameSource patternSource(int width, int height) {
+        return FrameDriver.patternSource(width, height);
+    }
+
+    public static FrameSource imageSequenceSource(List<String> paths, int width, int height, boolean loop) {
+        return FrameDriver.imageSequenceSource(paths, width, height, loop);
+    }
+
+    public static FrameSource rawYuvSource(String path, int width, int height, int format, boolean loop) {
+        return FrameDriver.rawYuvSource(path, width, height, format, loop);
+    }
+
+    private static class HeadlessFrame implements YuvCameraFrame {
+        FrameDriver.Frame mFrame;
+
+        @Override
+        public Mat gray() {
+            return mFrame.gray();
+        }
+
+        @Override
+        public Mat rgba() {
+            return mFrame.rgba();
+        }
+
+        @Override
+        public Mat yPlane() {
+            return mFrame.yPlane();
+        }
+
+        @Override
+        public Mat uvPlane() {
+            return mFrame.uvPlane();
+        }
+
+        @Override
+        public int rgbaConversion() {
+            return mFrame.rgbaConversion();
+        }
+
+        @Override
+        public void release() {
+            // frames are owned by the driver, see HeadlessFrameDriver#release()
+        }
+    }
+}
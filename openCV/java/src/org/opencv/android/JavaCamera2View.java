@@ -1,6 +1,7 @@
 package org.opencv.android;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.List;
 
@@ -25,6 +26,7 @@ import android.view.ViewGroup.LayoutParams;
 
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
+import org.opencv.core.MatArena;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
@@ -46,6 +48,7 @@ public class JavaCamera2View extends CameraBridgeViewBase {
     protected ImageReader mImageReader;
     protected int mPreviewFormat = ImageFormat.YUV_420_888;
     protected int mRequestTemplate = CameraDevice.TEMPLATE_PREVIEW;
+    protected int mMaxImages = 2;
     private int mFrameRotation;
 
     protected CameraDevice mCameraDevice;
@@ -57,6 +60,13 @@ public class JavaCamera2View extends CameraBridgeViewBase {
     private HandlerThread mBackgroundThread;
     protected Handler mBackgroundHandler;
 
+    // Used from the background thread only, closed once it has stopped
+    private final MatArena mFrameArena = new MatArena();
+    private byte[] mYuvBytes;
+    // Frame wrappers are recycled; at most mMaxImages images can be acquired at once
+    private final ArrayDeque<JavaCamera2Frame> mFramePool = new ArrayDeque<JavaCamera2Frame>();
+    private int mFramesAllocated;
+
     public JavaCamera2View(Context context, int cameraId) {
         super(context, cameraId);
     }
@@ -197,7 +207,7 @@ public class JavaCamera2View extends CameraBridgeViewBase {
                 return;
             }
 
-            mImageReader = ImageReader.newInstance(w, h, mPreviewFormat, 2);
+            mImageReader = ImageReader.newInstance(w, h, mPreviewFormat, mMaxImages);
             mImageReader.setOnImageAvailableListener(new ImageReader.OnImageAvailableListener() {
                 @Override
                 public void onImageAvailable(ImageReader reader) {
@@ -211,10 +221,11 @@ public class JavaCamera2View extends CameraBridgeViewBase {
                     assert (planes.length == 3);
                     assert (image.getFormat() == mPreviewFormat);
 
-                    RotatedCameraFrame tempFrame = new RotatedCameraFrame(new JavaCamera2Frame(image), mFrameRotation);
-                    deliverAndDrawFrame(tempFrame);
-                    tempFrame.mFrame.release();
-                    tempFrame.release();
+                    JavaCamera2Frame frame = obtainFrame(image);
+                    deliverAndDrawFrame(frame.mRotated);
+                    frame.mRotated.release();
+                    frame.release();
+                    recycleFrame(frame);
                     image.close();
                 }
             }, mBackgroundHandler);
@@ -249,6 +260,13 @@ public class JavaCamera2View extends CameraBridgeViewBase {
                 mImageReader.close();
                 mImageReader = null;
             }
+            for (JavaCamera2Frame frame : mFramePool)
+                frame.dispose();
+            mFramePool.clear();
+            Log.i(LOGTAG, "Frame wrappers allocated: " + mFramesAllocated + ", memory: " + mFrameArena);
+            mFramesAllocated = 0;
+            mFrameArena.close();
+            mYuvBytes = null;
         }
         Log.i(LOGTAG, "camera closed!");
     }
@@ -348,53 +366,107 @@ public class JavaCamera2View extends CameraBridgeViewBase {
         return true;
     }
 
-    private class JavaCamera2Frame implements CvCameraViewFrame {
+    private JavaCamera2Frame obtainFrame(Image image) {
+        JavaCamera2Frame frame = mFramePool.poll();
+        if (frame == null || frame.mRotation != mFrameRotation) {
+            if (frame != null)
+                frame.dispose();
+            frame = new JavaCamera2Frame(mFrameRotation);
+            mFramesAllocated++;
+        }
+        frame.mImage = image;
+        return frame;
+    }
+
+    private void recycleFrame(JavaCamera2Frame frame) {
+        if (mFramePool.size() < mMaxImages)
+            mFramePool.push(frame);
+        else
+            frame.dispose();
+    }
+
+    /**
+     * Wrapper over one acquired Image. Instances are pooled: release() ends the current frame,
+     * the RGBA Mat is kept for the next image until dispose(). Each representation is computed
+     * at most once per frame.
+     */
+    private class JavaCamera2Frame implements YuvCameraFrame {
         @Override
         public Mat gray() {
-            Image.Plane[] planes = mImage.getPlanes();
-            int w = mImage.getWidth();
-            int h = mImage.getHeight();
-            assert(planes[0].getPixelStride() == 1);
-            ByteBuffer y_plane = planes[0].getBuffer();
-            int y_plane_step = planes[0].getRowStride();
-            mGray = new Mat(h, w, CvType.CV_8UC1, y_plane, y_plane_step);
-            return mGray;
+            return yPlane();
         }
 
         @Override
-        public Mat rgba() {
-            Image.Plane[] planes = mImage.getPlanes();
-            int w = mImage.getWidth();
-            int h = mImage.getHeight();
-            int chromaPixelStride = planes[1].getPixelStride();
-
-
-            if (chromaPixelStride == 2) { // Chroma channels are interleaved
+        public Mat yPlane() {
+            if (mYMat == null) {
+                Image.Plane[] planes = mImage.getPlanes();
                 assert(planes[0].getPixelStride() == 1);
-                assert(planes[2].getPixelStride() == 2);
                 ByteBuffer y_plane = planes[0].getBuffer();
                 int y_plane_step = planes[0].getRowStride();
-                ByteBuffer uv_plane1 = planes[1].getBuffer();
-                int uv_plane1_step = planes[1].getRowStride();
-                ByteBuffer uv_plane2 = planes[2].getBuffer();
-                int uv_plane2_step = planes[2].getRowStride();
-                Mat y_mat = new Mat(h, w, CvType.CV_8UC1, y_plane, y_plane_step);
-                Mat uv_mat1 = new Mat(h / 2, w / 2, CvType.CV_8UC2, uv_plane1, uv_plane1_step);
-                Mat uv_mat2 = new Mat(h / 2, w / 2, CvType.CV_8UC2, uv_plane2, uv_plane2_step);
+                mYMat = new Mat(mImage.getHeight(), mImage.getWidth(), CvType.CV_8UC1, y_plane, y_plane_step);
+            }
+            return mYMat;
+        }
+
+        @Override
+        public Mat uvPlane() {
+            if (mUvMat == null && !mUvChecked) {
+                mUvChecked = true;
+                Image.Plane[] planes = mImage.getPlanes();
+                if (planes[1].getPixelStride() != 2) // Chroma channels are not interleaved
+                    return null;
+                assert(planes[2].getPixelStride() == 2);
+                int w = mImage.getWidth();
+                int h = mImage.getHeight();
+                Mat uv_mat1 = new Mat(h / 2, w / 2, CvType.CV_8UC2, planes[1].getBuffer(), planes[1].getRowStride());
+                Mat uv_mat2 = new Mat(h / 2, w / 2, CvType.CV_8UC2, planes[2].getBuffer(), planes[2].getRowStride());
                 long addr_diff = uv_mat2.dataAddr() - uv_mat1.dataAddr();
                 if (addr_diff > 0) {
                     assert(addr_diff == 1);
-                    Imgproc.cvtColorTwoPlane(y_mat, uv_mat1, mRgba, Imgproc.COLOR_YUV2RGBA_NV12);
+                    mUvMat = uv_mat1;
+                    mUvConversion = Imgproc.COLOR_YUV2RGBA_NV12;
+                    uv_mat2.release();
                 } else {
                     assert(addr_diff == -1);
-                    Imgproc.cvtColorTwoPlane(y_mat, uv_mat2, mRgba, Imgproc.COLOR_YUV2RGBA_NV21);
+                    mUvMat = uv_mat2;
+                    mUvConversion = Imgproc.COLOR_YUV2RGBA_NV21;
+                    uv_mat1.release();
                 }
+            }
+            return mUvMat;
+        }
+
+        @Override
+        public int rgbaConversion() {
+            uvPlane();
+            return mUvConversion;
+        }
+
+        @Override
+        public Mat rgba() {
+            if (mRgbaValid)
+                return mRgba;
+            Image.Plane[] planes = mImage.getPlanes();
+            int w = mImage.getWidth();
+            int h = mImage.getHeight();
+            int chromaPixelStride = planes[1].getPixelStride();
+            if (mRgba == null)
+                mRgba = mFrameArena.acquire(h, w, CvType.CV_8UC4);
+
+            // mRgbaValid is only set once the conversion succeeded, a failed one is not memoized
+            if (chromaPixelStride == 2) { // Chroma channels are interleaved
+                assert(planes[0].getPixelStride() == 1);
+                Imgproc.cvtColorTwoPlane(yPlane(), uvPlane(), mRgba, mUvConversion);
+                mRgbaValid = true;
                 return mRgba;
             } else { // Chroma channels are not interleaved
-                byte[] yuv_bytes = new byte[w*(h+h/2)];
-                ByteBuffer y_plane = planes[0].getBuffer();
-                ByteBuffer u_plane = planes[1].getBuffer();
-                ByteBuffer v_plane = planes[2].getBuffer();
+                if (mYuvBytes == null || mYuvBytes.length != w*(h+h/2))
+                    mYuvBytes = new byte[w*(h+h/2)];
+                byte[] yuv_bytes = mYuvBytes;
+                // duplicates, so that a retry after a failed conversion reads the planes from the start
+                ByteBuffer y_plane = planes[0].getBuffer().duplicate();
+                ByteBuffer u_plane = planes[1].getBuffer().duplicate();
+                ByteBuffer v_plane = planes[2].getBuffer().duplicate();
 
                 int yuv_bytes_offset = 0;
 
@@ -441,29 +513,58 @@ public class JavaCamera2View extends CameraBridgeViewBase {
                     }
                 }
 
-                Mat yuv_mat = new Mat(h+h/2, w, CvType.CV_8UC1);
-                yuv_mat.put(0, 0, yuv_bytes);
-                Imgproc.cvtColor(yuv_mat, mRgba, Imgproc.COLOR_YUV2RGBA_I420, 4);
+                Mat yuv_mat = mFrameArena.acquire(h+h/2, w, CvType.CV_8UC1);
+                try {
+                    yuv_mat.put(0, 0, yuv_bytes);
+                    Imgproc.cvtColor(yuv_mat, mRgba, Imgproc.COLOR_YUV2RGBA_I420, 4);
+                } finally {
+                    mFrameArena.recycle(yuv_mat);
+                }
+                mRgbaValid = true;
                 return mRgba;
             }
         }
 
 
-        public JavaCamera2Frame(Image image) {
+        public JavaCamera2Frame(int rotation) {
             super();
-            mImage = image;
-            mRgba = new Mat();
-            mGray = new Mat();
+            mRotation = rotation;
+            mRotated = new RotatedCameraFrame(this, rotation, mFrameArena);
         }
 
         @Override
         public void release() {
-            mRgba.release();
-            mGray.release();
+            // the plane headers point into the image, which is closed after this frame
+            if (mYMat != null) {
+                mYMat.release();
+                mYMat = null;
+            }
+            if (mUvMat != null) {
+                mUvMat.release();
+                mUvMat = null;
+            }
+            mUvChecked = false;
+            mRgbaValid = false;
+            mImage = null;
+        }
+
+        void dispose() {
+            release();
+            mRotated.release();
+            if (mRgba != null) {
+                mFrameArena.recycle(mRgba);
+                mRgba = null;
+            }
         }
 
+        final int mRotation;
+        final RotatedCameraFrame mRotated;
         private Image mImage;
         private Mat mRgba;
-        private Mat mGray;
+        private boolean mRgbaValid;
+        private Mat mYMat;
+        private Mat mUvMat;
+        private boolean mUvChecked;
+        private int mUvConversion;
     };
 }
@@ -1,6 +1,8 @@
 package org.opencv.android;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 import android.content.Context;
 import android.graphics.ImageFormat;
@@ -35,11 +37,23 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
     private static final int MAGIC_TEXTURE_ID = 10;
     private static final String TAG = "JavaCameraView";
 
+    private static final int FRAME_FRESH = 4;
+    private static final int FRAME_INDEX_MASK = 3;
+
     private byte mBuffer[];
     private Mat[] mFrameChain;
-    private int mChainIdx = 0;
-    private Thread mThread;
-    private boolean mStopThread;
+    // Triple buffer: the preview callback owns mBackIdx, the worker owns mFrontIdx and the third
+    // slot is exchanged through mMiddle, tagged with FRAME_FRESH when it holds an unread frame.
+    private int mBackIdx;
+    private int mFrontIdx;
+    private final AtomicInteger mMiddle = new AtomicInteger();
+    private volatile Thread mThread;
+    private volatile boolean mStopThread;
+
+    // each counter has a single writer thread
+    private volatile long mFramesProduced;
+    private volatile long mFramesConsumed;
+    private volatile long mFramesOverwritten;
 
     protected Camera mCamera;
     protected RotatedCameraFrame[] mCameraFrame;
@@ -204,16 +218,20 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
                     mCamera.addCallbackBuffer(mBuffer);
                     mCamera.setPreviewCallbackWithBuffer(this);
 
-                    mFrameChain = new Mat[2];
-                    mFrameChain[0] = new Mat(rawFrameHeight + (rawFrameHeight/2), rawFrameWidth, CvType.CV_8UC1);
-                    mFrameChain[1] = new Mat(rawFrameHeight + (rawFrameHeight/2), rawFrameWidth, CvType.CV_8UC1);
+                    mFrameChain = new Mat[3];
+                    mCameraFrame = new RotatedCameraFrame[3];
+                    for (int i = 0; i < mFrameChain.length; i++) {
+                        mFrameChain[i] = new Mat(rawFrameHeight + (rawFrameHeight/2), rawFrameWidth, CvType.CV_8UC1);
+                        // geometry is fixed and only written with put(), so per-frame checks can skip JNI
+                        mFrameChain[i].setHeaderCaching(true);
+                        mCameraFrame[i] = new RotatedCameraFrame(new JavaCameraFrame(mFrameChain[i], rawFrameWidth, rawFrameHeight), frameRotation);
+                    }
+                    mBackIdx = 0;
+                    mMiddle.set(1);
+                    mFrontIdx = 2;
 
                     AllocateCache();
 
-                    mCameraFrame = new RotatedCameraFrame[2];
-                    mCameraFrame[0] = new RotatedCameraFrame(new JavaCameraFrame(mFrameChain[0], rawFrameWidth, rawFrameHeight), frameRotation);
-                    mCameraFrame[1] = new RotatedCameraFrame(new JavaCameraFrame(mFrameChain[1], rawFrameWidth, rawFrameHeight), frameRotation);
-
                     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
                         mSurfaceTexture = new SurfaceTexture(MAGIC_TEXTURE_ID);
                         mCamera.setPreviewTexture(mSurfaceTexture);
@@ -245,20 +263,18 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
             }
             mCamera = null;
             if (mFrameChain != null) {
-                mFrameChain[0].release();
-                mFrameChain[1].release();
+                for (Mat m : mFrameChain)
+                    m.release();
             }
             if (mCameraFrame != null) {
-                mCameraFrame[0].mFrame.release();
-                mCameraFrame[0].release();
-                mCameraFrame[1].mFrame.release();
-                mCameraFrame[1].release();
+                for (RotatedCameraFrame f : mCameraFrame) {
+                    f.mFrame.release();
+                    f.release();
+                }
             }
         }
     }
 
-    private boolean mCameraFrameReady = false;
-
     @Override
     protected boolean connectCamera(int width, int height) {
 
@@ -270,13 +286,16 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
         if (!initializeCamera(width, height))
             return false;
 
-        mCameraFrameReady = false;
+        mFramesProduced = 0;
+        mFramesConsumed = 0;
+        mFramesOverwritten = 0;
 
         /* now we can start update thread */
         Log.d(TAG, "Starting processing thread");
         mStopThread = false;
-        mThread = new Thread(new CameraWorker());
-        mThread.start();
+        Thread thread = new Thread(new CameraWorker());
+        mThread = thread;
+        thread.start();
 
         return true;
     }
@@ -290,41 +309,96 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
         try {
             mStopThread = true;
             Log.d(TAG, "Notify thread");
-            synchronized (this) {
-                this.notify();
+            Thread thread = mThread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+                Log.d(TAG, "Waiting for thread");
+                thread.join();
             }
-            Log.d(TAG, "Waiting for thread");
-            if (mThread != null)
-                mThread.join();
         } catch (InterruptedException e) {
             e.printStackTrace();
         } finally {
             mThread =  null;
         }
 
+        Log.i(TAG, "Frames produced: " + mFramesProduced + ", consumed: " + mFramesConsumed
+                + ", overwritten: " + mFramesOverwritten);
+
         /* Now release camera */
         releaseCamera();
+    }
 
-        mCameraFrameReady = false;
+    /**
+     * Number of preview frames received from the camera since the last connect.
+     */
+    public long getProducedFrameCount() {
+        return mFramesProduced;
+    }
+
+    /**
+     * Number of frames delivered to the listener since the last connect.
+     */
+    public long getConsumedFrameCount() {
+        return mFramesConsumed;
+    }
+
+    /**
+     * Number of frames replaced by a newer one before the processing thread picked them up.
+     */
+    public long getOverwrittenFrameCount() {
+        return mFramesOverwritten;
     }
 
     @Override
     public void onPreviewFrame(byte[] frame, Camera arg1) {
         if (BuildConfig.DEBUG)
             Log.d(TAG, "Preview Frame received. Frame size: " + frame.length);
-        synchronized (this) {
-            mFrameChain[mChainIdx].put(0, 0, frame);
-            mCameraFrameReady = true;
-            this.notify();
+        Mat[] chain = mFrameChain;
+        if (chain != null) {
+            // never waits for the worker: publish the written slot and take back the older one
+            chain[mBackIdx].put(0, 0, frame);
+            int prev = mMiddle.getAndSet(mBackIdx | FRAME_FRESH);
+            mBackIdx = prev & FRAME_INDEX_MASK;
+            mFramesProduced++;
+            if ((prev & FRAME_FRESH) != 0)
+                mFramesOverwritten++;
+            Thread thread = mThread;
+            if (thread != null)
+                LockSupport.unpark(thread);
         }
         if (mCamera != null)
             mCamera.addCallbackBuffer(mBuffer);
     }
 
-    private class JavaCameraFrame implements CvCameraViewFrame {
+    private class JavaCameraFrame implements YuvCameraFrame {
         @Override
         public Mat gray() {
-            return mYuvFrameData.submat(0, mHeight, 0, mWidth);
+            return yPlane();
+        }
+
+        // the frame buffer never moves, so the plane headers are built once
+        @Override
+        public Mat yPlane() {
+            if (mYPlane == null)
+                mYPlane = mYuvFrameData.submat(0, mHeight, 0, mWidth);
+            return mYPlane;
+        }
+
+        @Override
+        public Mat uvPlane() {
+            if (mPreviewFormat != ImageFormat.NV21)
+                return null;
+            if (mUvPlane == null) {
+                Mat rows = mYuvFrameData.submat(mHeight, mHeight + mHeight / 2, 0, mWidth);
+                mUvPlane = rows.reshape(2);
+                rows.release();
+            }
+            return mUvPlane;
+        }
+
+        @Override
+        public int rgbaConversion() {
+            return Imgproc.COLOR_YUV2RGBA_NV21;
         }
 
         @Override
@@ -350,10 +424,20 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
         @Override
         public void release() {
             mRgba.release();
+            if (mYPlane != null) {
+                mYPlane.release();
+                mYPlane = null;
+            }
+            if (mUvPlane != null) {
+                mUvPlane.release();
+                mUvPlane = null;
+            }
         }
 
         private Mat mYuvFrameData;
         private Mat mRgba;
+        private Mat mYPlane;
+        private Mat mUvPlane;
         private int mWidth;
         private int mHeight;
     };
@@ -363,26 +447,17 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
         @Override
         public void run() {
             do {
-                boolean hasFrame = false;
-                synchronized (JavaCameraView.this) {
-                    try {
-                        while (!mCameraFrameReady && !mStopThread) {
-                            JavaCameraView.this.wait();
-                        }
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
+                while ((mMiddle.get() & FRAME_FRESH) == 0 && !mStopThread)
+                    LockSupport.park(this);
+
+                if (!mStopThread) {
+                    // take the newest complete frame, the producer gets our previous slot
+                    mFrontIdx = mMiddle.getAndSet(mFrontIdx) & FRAME_INDEX_MASK;
+                    mFramesConsumed++;
+                    if (!mFrameChain[mFrontIdx].empty()) {
+                        mCameraFrame[mFrontIdx].invalidate();
+                        deliverAndDrawFrame(mCameraFrame[mFrontIdx]);
                     }
-                    if (mCameraFrameReady)
-                    {
-                        mChainIdx = 1 - mChainIdx;
-                        mCameraFrameReady = false;
-                        hasFrame = true;
-                    }
-                }
-
-                if (!mStopThread && hasFrame) {
-                    if (!mFrameChain[1 - mChainIdx].empty())
-                        deliverAndDrawFrame(mCameraFrame[1 - mChainIdx]);
                 }
             } while (!mStopThread);
             Log.d(TAG, "Finish processing thread");
@@ -5,6 +5,7 @@ import org.opencv.core.Size;
 
 import org.opencv.imgproc.Imgproc;
 
+import org.opencv.videoio.PrefetchingCapture;
 import org.opencv.videoio.Videoio;
 import org.opencv.videoio.VideoCapture;
 import org.opencv.videoio.VideoWriter;
@@ -22,12 +23,17 @@ import android.view.ViewGroup.LayoutParams;
 public class NativeCameraView extends CameraBridgeViewBase {
 
     public static final String TAG = "NativeCameraView";
-    private boolean mStopThread;
+    private volatile boolean mStopThread;
     private Thread mThread;
 
     protected VideoCapture mCamera;
     protected RotatedCameraFrame mFrame;
 
+    private int mPrefetchFrames;
+    private PrefetchingCapture.Policy mPrefetchPolicy;
+    private PrefetchingCapture mPrefetch;
+    private PrefetchedFrame mPrefetchedFrame;
+
     public NativeCameraView(Context context, int cameraId) {
         super(context, cameraId);
     }
@@ -47,6 +53,8 @@ public class NativeCameraView extends CameraBridgeViewBase {
             return false;
 
         /* now we can start update thread */
+        if (mPrefetch != null)
+            mPrefetch.start();
         mThread = new Thread(new CameraWorker());
         mThread.start();
 
@@ -61,6 +69,8 @@ public class NativeCameraView extends CameraBridgeViewBase {
         if (mThread != null) {
             try {
                 mStopThread = true;
+                if (mPrefetch != null)
+                    mPrefetch.stop();
                 mThread.join();
             } catch (InterruptedException e) {
                 e.printStackTrace();
@@ -74,6 +84,19 @@ public class NativeCameraView extends CameraBridgeViewBase {
         releaseCamera();
     }
 
+    /**
+     * Grabs and decodes frames on a separate thread into a ring of {@code frames} reusable Mats,
+     * so capture goes on while a frame is processed. With {@code dropFrames} the oldest decoded
+     * frame is overwritten when processing falls behind, otherwise capture waits for it.
+     * Takes effect at the next camera start; pass 0 frames to capture on the processing thread.
+     */
+    public void setPrefetch(int frames, boolean dropFrames) {
+        if (frames != 0 && frames < 2)
+            throw new IllegalArgumentException("At least 2 frames are needed for prefetching: " + frames);
+        mPrefetchFrames = frames;
+        mPrefetchPolicy = dropFrames ? PrefetchingCapture.Policy.DROP_OLDEST : PrefetchingCapture.Policy.BLOCK;
+    }
+
     public static class OpenCvSizeAccessor implements ListItemAccessor {
 
         public int getWidth(Object obj) {
@@ -137,7 +160,15 @@ public class NativeCameraView extends CameraBridgeViewBase {
                     cameraInfo.facing == Camera.CameraInfo.CAMERA_FACING_FRONT,
                     cameraInfo.orientation);
 
-            mFrame = new RotatedCameraFrame(new NativeCameraFrame(mCamera), frameRotation);
+            if (mPrefetchFrames > 0) {
+                // the grab thread always decodes RGB, gray and RGBA are derived from it
+                mCamera.set(Videoio.CAP_PROP_FOURCC, VideoWriter.fourcc('R','G','B','3'));
+                mPrefetch = new PrefetchingCapture(PrefetchingCapture.of(mCamera), mPrefetchFrames, mPrefetchPolicy);
+                mPrefetchedFrame = new PrefetchedFrame();
+                mFrame = new RotatedCameraFrame(mPrefetchedFrame, frameRotation);
+            } else {
+                mFrame = new RotatedCameraFrame(new NativeCameraFrame(mCamera), frameRotation);
+            }
 
             mCamera.set(Videoio.CAP_PROP_FRAME_WIDTH, width);
             mCamera.set(Videoio.CAP_PROP_FRAME_HEIGHT, height);
@@ -169,6 +200,12 @@ public class NativeCameraView extends CameraBridgeViewBase {
 
     private void releaseCamera() {
         synchronized (this) {
+            if (mPrefetch != null) {
+                Log.i(TAG, mPrefetch.toString());
+                mPrefetch.close();
+                mPrefetch = null;
+                mPrefetchedFrame = null;
+            }
             if (mFrame != null) {
                 mFrame.mFrame.release();
                 mFrame.release();
@@ -216,18 +253,69 @@ public class NativeCameraView extends CameraBridgeViewBase {
         private Mat mBgr;
     };
 
+    private static class PrefetchedFrame implements CvCameraViewFrame {
+
+        @Override
+        public Mat rgba() {
+            Imgproc.cvtColor(mRgb, mRgba, Imgproc.COLOR_RGB2RGBA);
+            return mRgba;
+        }
+
+        @Override
+        public Mat gray() {
+            Imgproc.cvtColor(mRgb, mGray, Imgproc.COLOR_RGB2GRAY);
+            return mGray;
+        }
+
+        @Override
+        public void release() {
+            mRgba.release();
+            mGray.release();
+        }
+
+        private Mat mRgb;
+        private final Mat mRgba = new Mat();
+        private final Mat mGray = new Mat();
+    };
+
     private class CameraWorker implements Runnable {
 
         public void run() {
+            if (mPrefetch != null) {
+                runPrefetched();
+                return;
+            }
             do {
                 if (!mCamera.grab()) {
                     Log.e(TAG, "Camera frame grab failed");
                     break;
                 }
 
+                mFrame.invalidate();
                 deliverAndDrawFrame(mFrame);
             } while (!mStopThread);
         }
+
+        private void runPrefetched() {
+            PrefetchingCapture capture = mPrefetch;
+            while (!mStopThread) {
+                Mat rgb;
+                try {
+                    rgb = capture.acquire();
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (rgb == null) {
+                    if (!mStopThread)
+                        Log.e(TAG, "Camera frame grab failed");
+                    break;
+                }
+                mPrefetchedFrame.mRgb = rgb;
+                mFrame.invalidate();
+                deliverAndDrawFrame(mFrame);
+                capture.recycle(rgb);
+            }
+        }
     }
 
 }
@@ -0,0 +1,492 @@
+package org.opencv.core;
+
+import java.util.Arrays;
+
+/**
+ * List of integer contours kept in three primitive arrays: all points in one interleaved array
+ * (x0, y0, x1, y1, ...), an offsets array giving the first point of each contour, and the
+ * hierarchy with four entries per contour (next, previous, first child, parent) as produced by
+ * {@code findContours}.
+ *
+ * Filling the buffer from {@code Imgproc.findContours} copies each native contour straight into
+ * the point array and frees it, so no {@link MatOfPoint} is created per contour. Area, perimeter
+ * and bounding box are computed on the packed data. For calls that need contours as Mats the
+ * buffer owns a pool of {@link MatOfPoint} that is reused across calls; call {@link #release()}
+ * when done to free their native memory deterministically.
+ */
+public class ContourBuffer {
+    private static final int _channels = 2;
+    private static final int _hierarchy = 4;
+
+    /**
+     * Receives one contour from {@link #forEach(Visitor)}. The points are
+     * {@code points[offset .. offset + 2 * length)}; the array must not be kept.
+     */
+    public interface Visitor {
+        void contour(int index, int[] points, int offset, int length);
+    }
+
+    private int[] points;
+    private int[] offsets;
+    private int[] hierarchy;
+    private int size;
+    private int[] addrScratch;
+    private int[] intScratch;
+    private Mat contoursMat;
+    private Mat hierarchyMat;
+    private MatOfPoint[] contourMats;
+    private MatOfPoint mat;
+    private MatOfPoint2f mat2f;
+    private float[] floatScratch;
+
+    public ContourBuffer() {
+        this(64, 4096);
+    }
+
+    public ContourBuffer(int contourCapacity, int pointCapacity) {
+        points = new int[Math.max(pointCapacity, 1) * _channels];
+        offsets = new int[Math.max(contourCapacity, 1) + 1];
+        hierarchy = new int[Math.max(contourCapacity, 1) * _hierarchy];
+    }
+
+    /**
+     * Number of contours.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Number of points in all contours together.
+     */
+    public int totalPoints() {
+        return offsets[size];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void ensureCapacity(int contourCapacity, int pointCapacity) {
+        // grow from the current capacity, the counts are not up to date while fromNative fills in
+        if (contourCapacity + 1 > offsets.length) {
+            int n = Math.max(contourCapacity, (offsets.length - 1) * 2);
+            offsets = Arrays.copyOf(offsets, n + 1);
+            hierarchy = Arrays.copyOf(hierarchy, n * _hierarchy);
+        }
+        if (pointCapacity * _channels > points.length)
+            points = Arrays.copyOf(points, Math.max(pointCapacity, points.length / _channels * 2) * _channels);
+    }
+
+    /**
+     * Index of the first point of contour {@code i} in the point array, counted in points.
+     */
+    public int start(int i) {
+        checkIndex(i);
+        return offsets[i];
+    }
+
+    /**
+     * Number of points of contour {@code i}.
+     */
+    public int length(int i) {
+        checkIndex(i);
+        return offsets[i + 1] - offsets[i];
+    }
+
+    public int x(int i, int k) {
+        return points[pointIndex(i, k) * _channels];
+    }
+
+    public int y(int i, int k) {
+        return points[pointIndex(i, k) * _channels + 1];
+    }
+
+    public int next(int i) {
+        checkIndex(i);
+        return hierarchy[i * _hierarchy];
+    }
+
+    public int previous(int i) {
+        checkIndex(i);
+        return hierarchy[i * _hierarchy + 1];
+    }
+
+    public int firstChild(int i) {
+        checkIndex(i);
+        return hierarchy[i * _hierarchy + 2];
+    }
+
+    public int parent(int i) {
+        checkIndex(i);
+        return hierarchy[i * _hierarchy + 3];
+    }
+
+    /**
+     * Raw interleaved point storage; only the first {@code totalPoints() * 2} entries are
+     * meaningful.
+     */
+    public int[] pointArray() {
+        return points;
+    }
+
+    /**
+     * Raw offsets in points; contour {@code i} spans {@code [offsets[i], offsets[i + 1])}, only
+     * the first {@code size() + 1} entries are meaningful.
+     */
+    public int[] offsetArray() {
+        return offsets;
+    }
+
+    /**
+     * Raw hierarchy storage, four entries per contour; only the first {@code size() * 4} entries
+     * are meaningful.
+     */
+    public int[] hierarchyArray() {
+        return hierarchy;
+    }
+
+    /**
+     * Appends a contour with no hierarchy links.
+     *
+     * @param xy interleaved coordinates
+     * @param offset index of the first coordinate in {@code xy}
+     * @param length number of points
+     */
+    public void add(int[] xy, int offset, int length) {
+        if (length < 0 || offset < 0 || offset + length * _channels > xy.length)
+            throw new IndexOutOfBoundsException("Points [" + offset + ", " + (offset + length * _channels)
+                    + ") out of range [0, " + xy.length + ")");
+        int base = totalPoints();
+        ensureCapacity(size + 1, base + length);
+        System.arraycopy(xy, offset, points, base * _channels, length * _channels);
+        int h = size * _hierarchy;
+        hierarchy[h] = hierarchy[h + 1] = hierarchy[h + 2] = hierarchy[h + 3] = -1;
+        offsets[++size] = base + length;
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < size; i++)
+            visitor.contour(i, points, offsets[i] * _channels, offsets[i + 1] - offsets[i]);
+    }
+
+    /**
+     * Same result as {@code Imgproc.contourArea(contour, oriented)}.
+     */
+    public double area(int i, boolean oriented) {
+        checkIndex(i);
+        int from = offsets[i] * _channels;
+        int to = offsets[i + 1] * _channels;
+        if (to - from < 3 * _channels)
+            return 0;
+        long a = 0;
+        int px = points[to - 2];
+        int py = points[to - 1];
+        for (int o = from; o < to; o += _channels) {
+            int x = points[o];
+            int y = points[o + 1];
+            a += (long) px * y - (long) x * py;
+            px = x;
+            py = y;
+        }
+        double area = a * 0.5;
+        return oriented ? area : Math.abs(area);
+    }
+
+    public double area(int i) {
+        return area(i, false);
+    }
+
+    /**
+     * Same result as {@code Imgproc.arcLength(curve, closed)}.
+     */
+    public double perimeter(int i, boolean closed) {
+        checkIndex(i);
+        int from = offsets[i] * _channels;
+        int to = offsets[i + 1] * _channels;
+        if (to - from < 2 * _channels)
+            return 0;
+        double len = 0;
+        int px = closed ? points[to - 2] : points[from];
+        int py = closed ? points[to - 1] : points[from + 1];
+        for (int o = closed ? from : from + _channels; o < to; o += _channels) {
+            double dx = points[o] - px;
+            double dy = points[o + 1] - py;
+            len += Math.sqrt(dx * dx + dy * dy);
+            px = points[o];
+            py = points[o + 1];
+        }
+        return len;
+    }
+
+    /**
+     * Same result as {@code Imgproc.boundingRect(points)}.
+     */
+    public Rect boundingRect(int i) {
+        Rect r = new Rect();
+        boundingRect(i, r);
+        return r;
+    }
+
+    public void boundingRect(int i, Rect r) {
+        checkIndex(i);
+        int from = offsets[i] * _channels;
+        int to = offsets[i + 1] * _channels;
+        if (from == to) {
+            r.x = r.y = r.width = r.height = 0;
+            return;
+        }
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (int o = from; o < to; o += _channels) {
+            int x = points[o];
+            int y = points[o + 1];
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+        }
+        r.x = minX;
+        r.y = minY;
+        r.width = maxX - minX + 1;
+        r.height = maxY - minY + 1;
+    }
+
+    /**
+     * Replaces the contents of {@code rects} with the bounding boxes of all contours.
+     */
+    public void boundingRects(RectBufferI rects) {
+        Rect r = new Rect();
+        rects.clear();
+        rects.ensureCapacity(size);
+        for (int i = 0; i < size; i++) {
+            boundingRect(i, r);
+            rects.add(r.x, r.y, r.width, r.height);
+        }
+    }
+
+    /**
+     * Replaces the contents with the contours of a {@code vector<vector<Point>>} returned by native
+     * code, and frees the native contour Mats it refers to. {@code hierarchy} may be empty.
+     */
+    public ContourBuffer fromNative(Mat contours, Mat hierarchy) {
+        size = 0;
+        offsets[0] = 0;
+        if (contours.empty())
+            return this;
+        int count = contours.rows();
+        if (CvType.CV_32SC2 != contours.type() || contours.cols() != 1)
+            throw new IllegalArgumentException("CvType.CV_32SC2 != contours.type() || contours.cols() != 1");
+        if (addrScratch == null || addrScratch.length < count * 2)
+            addrScratch = new int[count * 2];
+        contours.get(0, 0, addrScratch);
+        int done = 0;
+        try {
+            ensureCapacity(count, 0);
+            for (; done < count; done++) {
+                long addr = (((long) addrScratch[done * 2]) << 32) | (((long) addrScratch[done * 2 + 1]) & 0xffffffffL);
+                int n = (int) Mat.totalOf(addr);
+                int base = offsets[done];
+                ensureCapacity(count, base + n);
+                if (n > 0) {
+                    if (base == 0) {
+                        Mat.getInts(addr, n * _channels, points);
+                    } else {
+                        // the native copy always starts at index 0 of the array
+                        int[] tmp = intScratch(n * _channels);
+                        Mat.getInts(addr, n * _channels, tmp);
+                        System.arraycopy(tmp, 0, points, base * _channels, n * _channels);
+                    }
+                }
+                offsets[done + 1] = base + n;
+                Mat.deleteNative(addr);
+            }
+        } finally {
+            // on failure, free the contours that were not unpacked
+            for (int i = done; i < count; i++)
+                Mat.deleteNative((((long) addrScratch[i * 2]) << 32) | (((long) addrScratch[i * 2 + 1]) & 0xffffffffL));
+        }
+        size = count;
+        if (hierarchy.empty()) {
+            Arrays.fill(this.hierarchy, 0, count * _hierarchy, -1);
+        } else {
+            if (hierarchy.checkVector(_hierarchy, CvType.CV_32S) != count)
+                throw new IllegalArgumentException("Hierarchy does not match the contours");
+            hierarchy.get(0, 0, this.hierarchy);
+        }
+        return this;
+    }
+
+    private int[] intScratch(int n) {
+        if (intScratch == null || intScratch.length < n)
+            intScratch = new int[Math.max(n, 256)];
+        return intScratch;
+    }
+
+    /**
+     * Copies contour {@code i} into the buffer-owned {@link MatOfPoint} and returns it. The
+     * returned Mat stays valid until the next call or {@link #release()}.
+     */
+    public MatOfPoint toMatOfPoint(int i) {
+        checkIndex(i);
+        if (mat == null)
+            mat = new MatOfPoint();
+        fill(mat, i);
+        return mat;
+    }
+
+    /**
+     * Copies contour {@code i} into the buffer-owned {@link MatOfPoint2f} and returns it, e.g. as
+     * the input of {@code approxPolyDP}. The returned Mat stays valid until the next call or
+     * {@link #release()}.
+     */
+    public MatOfPoint2f toMatOfPoint2f(int i) {
+        checkIndex(i);
+        if (mat2f == null)
+            mat2f = new MatOfPoint2f();
+        int n = offsets[i + 1] - offsets[i];
+        mat2f.create(n, 1, CvType.CV_32FC2);
+        if (n > 0) {
+            if (floatScratch == null || floatScratch.length < n * _channels)
+                floatScratch = new float[Math.max(n * _channels, 256)];
+            int from = offsets[i] * _channels;
+            for (int k = 0; k < n * _channels; k++)
+                floatScratch[k] = points[from + k];
+            mat2f.putRaw(0, 0, n * _channels, floatScratch);
+        }
+        return mat2f;
+    }
+
+    /**
+     * Replaces the contents of {@code dst} with the points of contour {@code i}.
+     */
+    public void copyTo(int i, PointBufferF dst) {
+        checkIndex(i);
+        dst.clear();
+        dst.ensureCapacity(offsets[i + 1] - offsets[i]);
+        for (int o = offsets[i] * _channels; o < offsets[i + 1] * _channels; o += _channels)
+            dst.add(points[o], points[o + 1]);
+    }
+
+    /**
+     * Returns the contours as a native {@code vector<vector<Point>>}, built from a pool of
+     * buffer-owned {@link MatOfPoint} that is reused across calls. Intended as the contours argument
+     * of native calls such as {@code drawContours}; the returned Mat stays valid until the next call
+     * or {@link #release()}.
+     */
+    public Mat toContoursMat() {
+        if (contoursMat == null)
+            contoursMat = new Mat();
+        if (size == 0) {
+            contoursMat.create(0, 1, CvType.CV_32SC2);
+            return contoursMat;
+        }
+        if (contourMats == null || contourMats.length < size)
+            contourMats = contourMats == null ? new MatOfPoint[size] : Arrays.copyOf(contourMats, Math.max(size, contourMats.length * 2));
+        int[] addrs = addrScratch == null || addrScratch.length < size * 2 ? (addrScratch = new int[size * 2]) : addrScratch;
+        for (int i = 0; i < size; i++) {
+            if (contourMats[i] == null)
+                contourMats[i] = new MatOfPoint();
+            fill(contourMats[i], i);
+            long addr = contourMats[i].nativeObj;
+            addrs[i * 2] = (int) (addr >> 32);
+            addrs[i * 2 + 1] = (int) (addr & 0xffffffff);
+        }
+        contoursMat.create(size, 1, CvType.CV_32SC2);
+        contoursMat.putRaw(0, 0, size * 2, addrs);
+        return contoursMat;
+    }
+
+    /**
+     * Returns the hierarchy as a buffer-owned CV_32SC4 Mat. The returned Mat stays valid until the
+     * next call or {@link #release()}.
+     */
+    public Mat toHierarchyMat() {
+        if (hierarchyMat == null)
+            hierarchyMat = new Mat();
+        if (size == 0) {
+            hierarchyMat.release();
+            return hierarchyMat;
+        }
+        hierarchyMat.create(1, size, CvType.CV_32SC4);
+        hierarchyMat.putRaw(0, 0, size * _hierarchy, hierarchy);
+        return hierarchyMat;
+    }
+
+    /**
+     * Returns the buffer-owned Mat that native code can write a {@code vector<vector<Point>>} into,
+     * to be read back with {@link #fromNative(Mat, Mat)}.
+     */
+    public Mat nativeContoursMat() {
+        if (contoursMat == null)
+            contoursMat = new Mat();
+        return contoursMat;
+    }
+
+    /**
+     * Returns the buffer-owned Mat that native code can write the hierarchy into, to be read back
+     * with {@link #fromNative(Mat, Mat)}.
+     */
+    public Mat nativeHierarchyMat() {
+        if (hierarchyMat == null)
+            hierarchyMat = new Mat();
+        return hierarchyMat;
+    }
+
+    public void release() {
+        if (contourMats != null) {
+            for (MatOfPoint m : contourMats)
+                if (m != null)
+                    m.release();
+            contourMats = null;
+        }
+        if (contoursMat != null) {
+            contoursMat.release();
+            contoursMat = null;
+        }
+        if (hierarchyMat != null) {
+            hierarchyMat.release();
+            hierarchyMat = null;
+        }
+        if (mat != null) {
+            mat.release();
+            mat = null;
+        }
+        if (mat2f != null) {
+            mat2f.release();
+            mat2f = null;
+        }
+    }
+
+    private void fill(MatOfPoint m, int i) {
+        int n = offsets[i + 1] - offsets[i];
+        m.create(n, 1, CvType.CV_32SC2);
+        if (n == 0)
+            return;
+        if (offsets[i] == 0) {
+            m.putRaw(0, 0, n * _channels, points);
+        } else {
+            // the native copy always starts at index 0 of the array
+            int[] tmp = intScratch(n * _channels);
+            System.arraycopy(points, offsets[i] * _channels, tmp, 0, n * _channels);
+            m.putRaw(0, 0, n * _channels, tmp);
+        }
+    }
+
+    private int pointIndex(int i, int k) {
+        checkIndex(i);
+        int n = offsets[i + 1] - offsets[i];
+        if (k < 0 || k >= n)
+            throw new IndexOutOfBoundsException("Point " + k + " out of range [0, " + n + ")");
+        return offsets[i] + k;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("Index " + i + " out of range [0, " + size + ")");
+    }
+}
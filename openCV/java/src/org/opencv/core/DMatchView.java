@@ -0,0 +1,39 @@
+package org.opencv.core;
+
+/**
+ * Lazy read-only view over a {@link MatOfDMatch}, see {@link MatRowView}.
+ */
+public class DMatchView extends MatRowView {
+    public static final int QUERY_IDX = 0;
+    public static final int TRAIN_IDX = 1;
+    public static final int IMG_IDX = 2;
+    public static final int DISTANCE = 3;
+
+    public DMatchView(MatOfDMatch m) {
+        this(m, DEFAULT_CHUNK_ROWS);
+    }
+
+    public DMatchView(MatOfDMatch m, int chunkRows) {
+        super(m, 4, CvType.CV_32F, chunkRows);
+    }
+
+    public int queryIdx(int i) {
+        return getInt(i, QUERY_IDX);
+    }
+
+    public int trainIdx(int i) {
+        return getInt(i, TRAIN_IDX);
+    }
+
+    public int imgIdx(int i) {
+        return getInt(i, IMG_IDX);
+    }
+
+    public float distance(int i) {
+        return getFloat(i, DISTANCE);
+    }
+
+    public DMatch get(int i) {
+        return new DMatch(queryIdx(i), trainIdx(i), imgIdx(i), distance(i));
+    }
+}
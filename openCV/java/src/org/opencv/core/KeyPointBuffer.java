@@ -0,0 +1,160 @@
+package org.opencv.core;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of keypoints kept in a single primitive array, seven floats per keypoint
+ * (x, y, size, angle, response, octave, class_id).
+ *
+ * The layout matches {@link MatOfKeyPoint}, so moving keypoints between Java and native code is
+ * one bulk copy instead of one {@link KeyPoint} object per element. The buffer owns a
+ * {@link MatOfKeyPoint} that is reused across calls; call {@link #release()} when done to free
+ * its native memory deterministically.
+ */
+public class KeyPointBuffer {
+    private static final int _channels = 7;
+
+    private float[] data;
+    private int size;
+    private MatOfKeyPoint mat;
+
+    public KeyPointBuffer() {
+        this(256);
+    }
+
+    public KeyPointBuffer(int capacity) {
+        data = new float[Math.max(capacity, 1) * _channels];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity * _channels > data.length)
+            data = Arrays.copyOf(data, Math.max(capacity, size * 2) * _channels);
+    }
+
+    public float x(int i) {
+        return field(i, 0);
+    }
+
+    public float y(int i) {
+        return field(i, 1);
+    }
+
+    public float size(int i) {
+        return field(i, 2);
+    }
+
+    public float angle(int i) {
+        return field(i, 3);
+    }
+
+    public float response(int i) {
+        return field(i, 4);
+    }
+
+    public int octave(int i) {
+        return (int) field(i, 5);
+    }
+
+    public int classId(int i) {
+        return (int) field(i, 6);
+    }
+
+    public void set(int i, float x, float y, float size, float angle, float response, int octave, int classId) {
+        checkIndex(i);
+        write(i, x, y, size, angle, response, octave, classId);
+    }
+
+    public void add(float x, float y, float size, float angle, float response, int octave, int classId) {
+        ensureCapacity(this.size + 1);
+        write(this.size, x, y, size, angle, response, octave, classId);
+        this.size++;
+    }
+
+    /**
+     * Raw interleaved storage; only the first {@code size() * 7} entries are meaningful.
+     */
+    public float[] array() {
+        return data;
+    }
+
+    /**
+     * Replaces the contents with the keypoints of a CV_32FC7 vector.
+     */
+    public KeyPointBuffer fromMat(Mat m) {
+        if (m.empty()) {
+            size = 0;
+            return this;
+        }
+        int num = m.checkVector(_channels, CvType.CV_32F);
+        if (num < 0)
+            throw new IllegalArgumentException("Incompatible Mat");
+        size = 0;
+        ensureCapacity(num);
+        m.get(0, 0, data);
+        size = num;
+        return this;
+    }
+
+    /**
+     * Copies the keypoints into the buffer-owned {@link MatOfKeyPoint} and returns it. The
+     * returned Mat stays valid until the next call or {@link #release()}.
+     */
+    public MatOfKeyPoint toMatOfKeyPoint() {
+        MatOfKeyPoint m = matOfKeyPoint();
+        m.create(size, 1, CvType.makeType(CvType.CV_32F, _channels));
+        if (size > 0)
+            m.put(0, 0, data);
+        return m;
+    }
+
+    /**
+     * Returns the buffer-owned {@link MatOfKeyPoint} without copying the current contents into it.
+     * Intended as an output argument of a native call followed by {@link #fromMat(Mat)};
+     * keeping the same Mat lets native code reuse its memory from frame to frame.
+     */
+    public MatOfKeyPoint matOfKeyPoint() {
+        if (mat == null)
+            mat = new MatOfKeyPoint();
+        return mat;
+    }
+
+    public void release() {
+        if (mat != null) {
+            mat.release();
+            mat = null;
+        }
+    }
+
+    private float field(int i, int c) {
+        checkIndex(i);
+        return data[i * _channels + c];
+    }
+
+    private void write(int i, float x, float y, float size, float angle, float response, int octave, int classId) {
+        int o = i * _channels;
+        data[o] = x;
+        data[o + 1] = y;
+        data[o + 2] = size;
+        data[o + 3] = angle;
+        data[o + 4] = response;
+        data[o + 5] = octave;
+        data[o + 6] = classId;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("Index " + i + " out of range [0, " + size + ")");
+    }
+}
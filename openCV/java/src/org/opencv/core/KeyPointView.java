@@ -0,0 +1,59 @@
+package org.opencv.core;
+
+/**
+ * Lazy read-only view over a {@link MatOfKeyPoint}, see {@link MatRowView}.
+ *
+ * <pre>
+ * KeyPointView kps = new KeyPointView(keypoints);
+ * int n = kps.topK(KeyPointView.RESPONSE, 50, true, best);
+ * </pre>
+ */
+public class KeyPointView extends MatRowView {
+    public static final int X = 0;
+    public static final int Y = 1;
+    public static final int SIZE = 2;
+    public static final int ANGLE = 3;
+    public static final int RESPONSE = 4;
+    public static final int OCTAVE = 5;
+    public static final int CLASS_ID = 6;
+
+    public KeyPointView(MatOfKeyPoint m) {
+        this(m, DEFAULT_CHUNK_ROWS);
+    }
+
+    public KeyPointView(MatOfKeyPoint m, int chunkRows) {
+        super(m, 7, CvType.CV_32F, chunkRows);
+    }
+
+    public float x(int i) {
+        return getFloat(i, X);
+    }
+
+    public float y(int i) {
+        return getFloat(i, Y);
+    }
+
+    public float size(int i) {
+        return getFloat(i, SIZE);
+    }
+
+    public float angle(int i) {
+        return getFloat(i, ANGLE);
+    }
+
+    public float response(int i) {
+        return getFloat(i, RESPONSE);
+    }
+
+    public int octave(int i) {
+        return getInt(i, OCTAVE);
+    }
+
+    public int classId(int i) {
+        return getInt(i, CLASS_ID);
+    }
+
+    public KeyPoint get(int i) {
+        return new KeyPoint(x(i), y(i), size(i), angle(i), response(i), octave(i), classId(i));
+    }
+}
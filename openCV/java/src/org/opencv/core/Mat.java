@@ -8,10 +8,34 @@ public class Mat {
 
     public final long nativeObj;
 
+    private boolean cacheHeader;
+    private MatHeader header;
+    private long headerCacheHits;
+
+    // Mats are freed by NativeCleaner instead of finalize(), see NativeMemoryTracker for accounting
+    private static final NativeCleaner.Deleter DELETER = new NativeCleaner.Deleter() {
+        @Override
+        public void delete(long addr) {
+            n_delete(addr);
+        }
+
+        // Reads only fields stored in the cv::Mat itself. total() would follow size.p, which
+        // create() frees and reallocates for dims > 2 while another thread may be resizing the
+        // Mat, so those Mats are not counted.
+        @Override
+        public long bytes(long addr) {
+            if (n_dims(addr) > 2)
+                return 0;
+            long rows = n_rows(addr);
+            long cols = n_cols(addr);
+            return rows > 0 && cols > 0 ? rows * cols * n_elemSize(addr) : 0;
+        }
+    };
+
     public Mat(long addr) {
         if (addr == 0)
             throw new UnsupportedOperationException("Native object address is NULL");
-        nativeObj = addr;
+        nativeObj = NativeCleaner.register(this, addr, DELETER);
     }
 
     //
@@ -20,7 +44,7 @@ public class Mat {
 
     // javadoc: Mat::Mat()
     public Mat() {
-        nativeObj = n_Mat();
+        nativeObj = NativeCleaner.register(this, n_Mat(), DELETER);
     }
 
     //
@@ -29,7 +53,7 @@ public class Mat {
 
     // javadoc: Mat::Mat(rows, cols, type)
     public Mat(int rows, int cols, int type) {
-        nativeObj = n_Mat(rows, cols, type);
+        nativeObj = NativeCleaner.register(this, n_Mat(rows, cols, type), DELETER);
     }
 
     //
@@ -38,7 +62,7 @@ public class Mat {
 
     // javadoc: Mat::Mat(rows, cols, type, data)
     public Mat(int rows, int cols, int type, ByteBuffer data) {
-        nativeObj = n_Mat(rows, cols, type, data);
+        nativeObj = NativeCleaner.register(this, n_Mat(rows, cols, type, data), DELETER);
     }
 
     //
@@ -47,7 +71,7 @@ public class Mat {
 
     // javadoc: Mat::Mat(rows, cols, type, data, step)
     public Mat(int rows, int cols, int type, ByteBuffer data, long step) {
-        nativeObj = n_Mat(rows, cols, type, data, step);
+        nativeObj = NativeCleaner.register(this, n_Mat(rows, cols, type, data, step), DELETER);
     }
 
     //
@@ -56,7 +80,7 @@ public class Mat {
 
     // javadoc: Mat::Mat(size, type)
     public Mat(Size size, int type) {
-        nativeObj = n_Mat(size.width, size.height, type);
+        nativeObj = NativeCleaner.register(this, n_Mat(size.width, size.height, type), DELETER);
     }
 
     //
@@ -65,7 +89,7 @@ public class Mat {
 
     // javadoc: Mat::Mat(sizes, type)
     public Mat(int[] sizes, int type) {
-        nativeObj = n_Mat(sizes.length, sizes, type);
+        nativeObj = NativeCleaner.register(this, n_Mat(sizes.length, sizes, type), DELETER);
     }
 
     //
@@ -74,7 +98,7 @@ public class Mat {
 
     // javadoc: Mat::Mat(rows, cols, type, s)
     public Mat(int rows, int cols, int type, Scalar s) {
-        nativeObj = n_Mat(rows, cols, type, s.val[0], s.val[1], s.val[2], s.val[3]);
+        nativeObj = NativeCleaner.register(this, n_Mat(rows, cols, type, s.val[0], s.val[1], s.val[2], s.val[3]), DELETER);
     }
 
     //
@@ -83,7 +107,7 @@ public class Mat {
 
     // javadoc: Mat::Mat(size, type, s)
     public Mat(Size size, int type, Scalar s) {
-        nativeObj = n_Mat(size.width, size.height, type, s.val[0], s.val[1], s.val[2], s.val[3]);
+        nativeObj = NativeCleaner.register(this, n_Mat(size.width, size.height, type, s.val[0], s.val[1], s.val[2], s.val[3]), DELETER);
     }
 
     //
@@ -92,7 +116,7 @@ public class Mat {
 
     // javadoc: Mat::Mat(sizes, type, s)
     public Mat(int[] sizes, int type, Scalar s) {
-        nativeObj = n_Mat(sizes.length, sizes, type, s.val[0], s.val[1], s.val[2], s.val[3]);
+        nativeObj = NativeCleaner.register(this, n_Mat(sizes.length, sizes, type, s.val[0], s.val[1], s.val[2], s.val[3]), DELETER);
     }
 
     //
@@ -101,12 +125,12 @@ public class Mat {
 
     // javadoc: Mat::Mat(m, rowRange, colRange)
     public Mat(Mat m, Range rowRange, Range colRange) {
-        nativeObj = n_Mat(m.nativeObj, rowRange.start, rowRange.end, colRange.start, colRange.end);
+        nativeObj = NativeCleaner.register(this, n_Mat(m.nativeObj, rowRange.start, rowRange.end, colRange.start, colRange.end), DELETER);
     }
 
     // javadoc: Mat::Mat(m, rowRange)
     public Mat(Mat m, Range rowRange) {
-        nativeObj = n_Mat(m.nativeObj, rowRange.start, rowRange.end);
+        nativeObj = NativeCleaner.register(this, n_Mat(m.nativeObj, rowRange.start, rowRange.end), DELETER);
     }
 
     //
@@ -115,7 +139,7 @@ public class Mat {
 
     // javadoc: Mat::Mat(m, ranges)
     public Mat(Mat m, Range[] ranges) {
-        nativeObj = n_Mat(m.nativeObj, ranges);
+        nativeObj = NativeCleaner.register(this, n_Mat(m.nativeObj, ranges), DELETER);
     }
 
     //
@@ -124,7 +148,7 @@ public class Mat {
 
     // javadoc: Mat::Mat(m, roi)
     public Mat(Mat m, Rect roi) {
-        nativeObj = n_Mat(m.nativeObj, roi.y, roi.y + roi.height, roi.x, roi.x + roi.width);
+        nativeObj = NativeCleaner.register(this, n_Mat(m.nativeObj, roi.y, roi.y + roi.height, roi.x, roi.x + roi.width), DELETER);
     }
 
     //
@@ -133,6 +157,7 @@ public class Mat {
 
     // javadoc: Mat::adjustROI(dtop, dbottom, dleft, dright)
     public Mat adjustROI(int dtop, int dbottom, int dleft, int dright) {
+        header = null;
         return new Mat(n_adjustROI(nativeObj, dtop, dbottom, dleft, dright));
     }
 
@@ -143,11 +168,13 @@ public class Mat {
     // javadoc: Mat::assignTo(m, type)
     public void assignTo(Mat m, int type) {
         n_assignTo(nativeObj, m.nativeObj, type);
+        m.header = null;
     }
 
     // javadoc: Mat::assignTo(m)
     public void assignTo(Mat m) {
         n_assignTo(nativeObj, m.nativeObj);
+        m.header = null;
     }
 
     //
@@ -156,7 +183,8 @@ public class Mat {
 
     // javadoc: Mat::channels()
     public int channels() {
-        return n_channels(nativeObj);
+        MatHeader h = cachedHeader();
+        return h != null ? h.channels() : n_channels(nativeObj);
     }
 
     //
@@ -166,17 +194,20 @@ public class Mat {
 
     // javadoc: Mat::checkVector(elemChannels, depth, requireContinuous)
     public int checkVector(int elemChannels, int depth, boolean requireContinuous) {
-        return n_checkVector(nativeObj, elemChannels, depth, requireContinuous);
+        MatHeader h = cachedHeader();
+        return h != null ? h.checkVector(elemChannels, depth, requireContinuous) : n_checkVector(nativeObj, elemChannels, depth, requireContinuous);
     }
 
     // javadoc: Mat::checkVector(elemChannels, depth)
     public int checkVector(int elemChannels, int depth) {
-        return n_checkVector(nativeObj, elemChannels, depth);
+        MatHeader h = cachedHeader();
+        return h != null ? h.checkVector(elemChannels, depth, true) : n_checkVector(nativeObj, elemChannels, depth);
     }
 
     // javadoc: Mat::checkVector(elemChannels)
     public int checkVector(int elemChannels) {
-        return n_checkVector(nativeObj, elemChannels);
+        MatHeader h = cachedHeader();
+        return h != null ? h.checkVector(elemChannels, -1, true) : n_checkVector(nativeObj, elemChannels);
     }
 
     //
@@ -221,7 +252,8 @@ public class Mat {
 
     // javadoc: Mat::dims()
     public int dims() {
-        return n_dims(nativeObj);
+        MatHeader h = cachedHeader();
+        return h != null ? h.dims() : n_dims(nativeObj);
     }
 
     //
@@ -230,7 +262,8 @@ public class Mat {
 
     // javadoc: Mat::cols()
     public int cols() {
-        return n_cols(nativeObj);
+        MatHeader h = cachedHeader();
+        return h != null ? h.cols() : n_cols(nativeObj);
     }
 
     //
@@ -241,16 +274,19 @@ public class Mat {
     // javadoc: Mat::convertTo(m, rtype, alpha, beta)
     public void convertTo(Mat m, int rtype, double alpha, double beta) {
         n_convertTo(nativeObj, m.nativeObj, rtype, alpha, beta);
+        m.header = null;
     }
 
     // javadoc: Mat::convertTo(m, rtype, alpha)
     public void convertTo(Mat m, int rtype, double alpha) {
         n_convertTo(nativeObj, m.nativeObj, rtype, alpha);
+        m.header = null;
     }
 
     // javadoc: Mat::convertTo(m, rtype)
     public void convertTo(Mat m, int rtype) {
         n_convertTo(nativeObj, m.nativeObj, rtype);
+        m.header = null;
     }
 
     //
@@ -260,6 +296,7 @@ public class Mat {
     // javadoc: Mat::copyTo(m)
     public void copyTo(Mat m) {
         n_copyTo(nativeObj, m.nativeObj);
+        m.header = null;
     }
 
     //
@@ -269,6 +306,7 @@ public class Mat {
     // javadoc: Mat::copyTo(m, mask)
     public void copyTo(Mat m, Mat mask) {
         n_copyTo(nativeObj, m.nativeObj, mask.nativeObj);
+        m.header = null;
     }
 
     //
@@ -278,6 +316,7 @@ public class Mat {
     // javadoc: Mat::create(rows, cols, type)
     public void create(int rows, int cols, int type) {
         n_create(nativeObj, rows, cols, type);
+        header = null;
     }
 
     //
@@ -287,6 +326,7 @@ public class Mat {
     // javadoc: Mat::create(size, type)
     public void create(Size size, int type) {
         n_create(nativeObj, size.width, size.height, type);
+        header = null;
     }
 
     //
@@ -296,6 +336,7 @@ public class Mat {
     // javadoc: Mat::create(sizes, type)
     public void create(int[] sizes, int type) {
         n_create(nativeObj, sizes.length, sizes, type);
+        header = null;
     }
 
     //
@@ -305,6 +346,7 @@ public class Mat {
     // javadoc: Mat::copySize(m)
     public void copySize(Mat m) {
         n_copySize(nativeObj, m.nativeObj);
+        header = null;
     }
 
     //
@@ -331,7 +373,8 @@ public class Mat {
 
     // javadoc: Mat::depth()
     public int depth() {
-        return n_depth(nativeObj);
+        MatHeader h = cachedHeader();
+        return h != null ? h.depth() : n_depth(nativeObj);
     }
 
     //
@@ -372,7 +415,8 @@ public class Mat {
 
     // javadoc: Mat::elemSize()
     public long elemSize() {
-        return n_elemSize(nativeObj);
+        MatHeader h = cachedHeader();
+        return h != null ? h.elemSize() : n_elemSize(nativeObj);
     }
 
     //
@@ -381,7 +425,8 @@ public class Mat {
 
     // javadoc: Mat::elemSize1()
     public long elemSize1() {
-        return n_elemSize1(nativeObj);
+        MatHeader h = cachedHeader();
+        return h != null ? h.elemSize1() : n_elemSize1(nativeObj);
     }
 
     //
@@ -390,7 +435,8 @@ public class Mat {
 
     // javadoc: Mat::empty()
     public boolean empty() {
-        return n_empty(nativeObj);
+        MatHeader h = cachedHeader();
+        return h != null ? h.empty() : n_empty(nativeObj);
     }
 
     //
@@ -431,7 +477,8 @@ public class Mat {
 
     // javadoc: Mat::isContinuous()
     public boolean isContinuous() {
-        return n_isContinuous(nativeObj);
+        MatHeader h = cachedHeader();
+        return h != null ? h.isContinuous() : n_isContinuous(nativeObj);
     }
 
     //
@@ -440,7 +487,8 @@ public class Mat {
 
     // javadoc: Mat::isSubmatrix()
     public boolean isSubmatrix() {
-        return n_isSubmatrix(nativeObj);
+        MatHeader h = cachedHeader();
+        return h != null ? h.isSubmatrix() : n_isSubmatrix(nativeObj);
     }
 
     //
@@ -529,6 +577,7 @@ public class Mat {
     // javadoc: Mat::push_back(m)
     public void push_back(Mat m) {
         n_push_back(nativeObj, m.nativeObj);
+        header = null;
     }
 
     //
@@ -538,6 +587,7 @@ public class Mat {
     // javadoc: Mat::release()
     public void release() {
         n_release(nativeObj);
+        header = null;
     }
 
     //
@@ -596,7 +646,8 @@ public class Mat {
 
     // javadoc: Mat::rows()
     public int rows() {
-        return n_rows(nativeObj);
+        MatHeader h = cachedHeader();
+        return h != null ? h.rows() : n_rows(nativeObj);
     }
 
     //
@@ -637,6 +688,9 @@ public class Mat {
 
     // javadoc: Mat::size()
     public Size size() {
+        MatHeader h = cachedHeader();
+        if (h != null && h.dims() <= 2)
+            return new Size(h.cols(), h.rows());
         return new Size(n_size(nativeObj));
     }
 
@@ -646,7 +700,8 @@ public class Mat {
 
     // javadoc: Mat::size(int i)
     public int size(int i) {
-        return n_size_i(nativeObj, i);
+        MatHeader h = cachedHeader();
+        return h != null ? h.size(i) : n_size_i(nativeObj, i);
     }
 
     //
@@ -655,12 +710,14 @@ public class Mat {
 
     // javadoc: Mat::step1(i)
     public long step1(int i) {
-        return n_step1(nativeObj, i);
+        MatHeader h = cachedHeader();
+        return h != null ? h.step1(i) : n_step1(nativeObj, i);
     }
 
     // javadoc: Mat::step1()
     public long step1() {
-        return n_step1(nativeObj);
+        MatHeader h = cachedHeader();
+        return h != null ? h.step1(0) : n_step1(nativeObj);
     }
 
     //
@@ -715,7 +772,8 @@ public class Mat {
 
     // javadoc: Mat::total()
     public long total() {
-        return n_total(nativeObj);
+        MatHeader h = cachedHeader();
+        return h != null ? h.total() : n_total(nativeObj);
     }
 
     //
@@ -724,7 +782,8 @@ public class Mat {
 
     // javadoc: Mat::type()
     public int type() {
-        return n_type(nativeObj);
+        MatHeader h = cachedHeader();
+        return h != null ? h.type() : n_type(nativeObj);
     }
 
     //
@@ -754,12 +813,6 @@ public class Mat {
         return new Mat(n_zeros(sizes.length, sizes, type));
     }
 
-    @Override
-    protected void finalize() throws Throwable {
-        n_delete(nativeObj);
-        super.finalize();
-    }
-
     // javadoc:Mat::toString()
     @Override
     public String toString() {
@@ -965,6 +1018,23 @@ public class Mat {
         throw new UnsupportedOperationException("Mat data type is not compatible: " + t);
     }
 
+    // Unchecked transfers of the first count elements, used by MatCursor with reusable buffers
+    int getRaw(int row, int col, int count, byte[] data) { return nGetB(nativeObj, row, col, count, data); }
+    int getRaw(int row, int col, int count, short[] data) { return nGetS(nativeObj, row, col, count, data); }
+    int getRaw(int row, int col, int count, int[] data) { return nGetI(nativeObj, row, col, count, data); }
+    int getRaw(int row, int col, int count, float[] data) { return nGetF(nativeObj, row, col, count, data); }
+    int getRaw(int row, int col, int count, double[] data) { return nGetD(nativeObj, row, col, count, data); }
+    int putRaw(int row, int col, int count, byte[] data) { return nPutB(nativeObj, row, col, count, data); }
+    int putRaw(int row, int col, int count, short[] data) { return nPutS(nativeObj, row, col, count, data); }
+    int putRaw(int row, int col, int count, int[] data) { return nPutI(nativeObj, row, col, count, data); }
+    int putRaw(int row, int col, int count, float[] data) { return nPutF(nativeObj, row, col, count, data); }
+    int putRaw(int row, int col, int count, double[] data) { return nPutD(nativeObj, row, col, count, data); }
+
+    // Native Mats without a Java wrapper, used by ContourBuffer to unpack vector<vector<Point>>
+    static long totalOf(long addr) { return n_total(addr); }
+    static int getInts(long addr, int count, int[] data) { return nGetI(addr, 0, 0, count, data); }
+    static void deleteNative(long addr) { n_delete(addr); }
+
     // javadoc:Mat::get(row,col,data)
     public int get(int row, int col, byte[] data) {
         int t = type();
@@ -1147,6 +1217,77 @@ public class Mat {
         return cols();
     }
 
+    /**
+     * Enables or disables header caching for this Mat. While enabled, {@link #rows()},
+     * {@link #cols()}, {@link #type()}, {@link #total()}, {@link #checkVector(int)} and the other
+     * geometry accessors are answered from a {@link MatHeader} snapshot taken on first use
+     * instead of one native call each.
+     *
+     * The snapshot is dropped by the methods of this class that can change the header
+     * ({@code create}, {@code release}, {@code push_back}, {@code copySize}, {@code adjustROI},
+     * and {@code copyTo}, {@code convertTo} or {@code assignTo} for their destination). Native
+     * functions that reallocate the Mat as an output argument cannot be seen from Java, so only
+     * enable caching for Mats with a fixed geometry, or call {@link #invalidateHeader()} after
+     * passing the Mat as an output.
+     */
+    public void setHeaderCaching(boolean enable) {
+        cacheHeader = enable;
+        header = null;
+    }
+
+    public boolean isHeaderCaching() {
+        return cacheHeader;
+    }
+
+    /**
+     * Drops the cached header so that it is read again from native code on next use.
+     */
+    public void invalidateHeader() {
+        header = null;
+    }
+
+    /**
+     * Returns the header snapshot; the cached one when caching is enabled and valid, a fresh one
+     * otherwise.
+     */
+    public MatHeader header() {
+        MatHeader h = cachedHeader();
+        return h != null ? h : captureHeader();
+    }
+
+    /**
+     * Number of accessor calls on this Mat answered from its cached header, i.e. native calls
+     * saved.
+     */
+    public long headerCacheHits() {
+        return headerCacheHits;
+    }
+
+    private MatHeader cachedHeader() {
+        if (!cacheHeader)
+            return null;
+        MatHeader h = header;
+        if (h == null) {
+            h = captureHeader();
+            header = h;
+        } else {
+            headerCacheHits++;
+        }
+        return h;
+    }
+
+    private MatHeader captureHeader() {
+        int dims = n_dims(nativeObj);
+        int[] sizes = new int[dims];
+        long[] steps1 = new long[dims];
+        for (int i = 0; i < dims; i++) {
+            sizes[i] = n_size_i(nativeObj, i);
+            steps1[i] = n_step1(nativeObj, i);
+        }
+        return new MatHeader(dims, n_rows(nativeObj), n_cols(nativeObj), n_type(nativeObj),
+                n_isContinuous(nativeObj), n_isSubmatrix(nativeObj), n_dataAddr(nativeObj) != 0, sizes, steps1);
+    }
+
     // javadoc:Mat::at(clazz, row, col)
     @SuppressWarnings("unchecked")
     public <T> Atable<T> at(Class<T> clazz, int row, int col) {
@@ -1834,7 +1975,7 @@ public class Mat {
     // C++: static Mat Mat::zeros(int ndims, const int* sizes, int type)
     private static native long n_zeros(int ndims, int[] sizes, int type);
 
-    // native support for java finalize()
+    // native support for NativeCleaner
     private static native void n_delete(long nativeObj);
 
     private static native int nPutD(long self, int row, int col, int count, double[] data);
@@ -0,0 +1,189 @@
+package org.opencv.core;
+
+import java.util.ArrayList;
+
+/**
+ * Pool of Mats for per-frame workloads with deterministic release of native memory.
+ *
+ * {@link #acquire(int, int, int)} hands out a Mat of the requested size and type, reusing a
+ * previously recycled one with the same geometry when available. Mats go back to the pool with
+ * {@link #recycle(Mat)}, or all at once with {@link #recycleAll()} at the end of a frame, so a
+ * steady stream of equally sized frames runs without any native allocation after the first one.
+ * {@link #close()} frees every Mat the arena has handed out, whether it is in use or pooled.
+ *
+ * Mats are re-keyed by their geometry at the time they are recycled, so a Mat that native code
+ * reallocated as an output goes back into the pool under its new size and type.
+ *
+ * The arena is not thread safe; use one arena per processing thread. Lookups are linear, which
+ * is the cheapest option for the handful of Mats a frame typically needs.
+ */
+public class MatArena implements AutoCloseable {
+
+    private final ArrayList<Mat> inUse = new ArrayList<Mat>();
+    private final ArrayList<Mat> pooled = new ArrayList<Mat>();
+    private final int maxPooled;
+
+    private long liveBytes;
+    private long peakBytes;
+    private int peakInUse;
+    private long allocations;
+    private long reuses;
+
+    public MatArena() {
+        this(32);
+    }
+
+    /**
+     * @param maxPooled number of idle Mats kept for reuse; any extra recycled Mat is released
+     */
+    public MatArena(int maxPooled) {
+        if (maxPooled < 0)
+            throw new IllegalArgumentException("maxPooled must not be negative: " + maxPooled);
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Returns a Mat with the given geometry. Its contents are undefined.
+     */
+    public Mat acquire(int rows, int cols, int type) {
+        if (rows < 0 || cols < 0)
+            throw new IllegalArgumentException("Invalid Mat size: " + rows + "x" + cols);
+        Mat m = null;
+        for (int i = pooled.size() - 1; i >= 0; i--) {
+            Mat p = pooled.get(i);
+            if (p.rows() == rows && p.cols() == cols && p.type() == type) {
+                m = removeAt(pooled, i);
+                break;
+            }
+        }
+        if (m != null) {
+            reuses++;
+        } else {
+            m = new Mat(rows, cols, type);
+            allocations++;
+            liveBytes += bytes(m);
+            if (liveBytes > peakBytes)
+                peakBytes = liveBytes;
+        }
+        inUse.add(m);
+        if (inUse.size() > peakInUse)
+            peakInUse = inUse.size();
+        return m;
+    }
+
+    public Mat acquire(Size size, int type) {
+        return acquire((int) size.height, (int) size.width, type);
+    }
+
+    /**
+     * Returns a Mat acquired from this arena to the pool. Mats that were not acquired here are
+     * ignored.
+     */
+    public void recycle(Mat m) {
+        for (int i = inUse.size() - 1; i >= 0; i--) {
+            if (inUse.get(i) == m) {
+                removeAt(inUse, i);
+                toPool(m);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns every Mat currently in use to the pool, typically at the end of a frame. The Mats
+     * must not be used by the caller afterwards.
+     */
+    public void recycleAll() {
+        for (int i = inUse.size() - 1; i >= 0; i--)
+            toPool(inUse.remove(i));
+    }
+
+    /**
+     * Releases the native memory of all Mats handed out by this arena, including those still in
+     * use. The arena stays usable and starts over empty; the statistics are kept.
+     */
+    @Override
+    public void close() {
+        for (int i = 0; i < inUse.size(); i++)
+            inUse.get(i).release();
+        for (int i = 0; i < pooled.size(); i++)
+            pooled.get(i).release();
+        inUse.clear();
+        pooled.clear();
+        liveBytes = 0;
+    }
+
+    public int inUseCount() {
+        return inUse.size();
+    }
+
+    public int pooledCount() {
+        return pooled.size();
+    }
+
+    /**
+     * Native bytes held by the arena, in use and pooled, as of the last acquire or recycle.
+     */
+    public long liveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * High-water mark of {@link #liveBytes()}.
+     */
+    public long peakBytes() {
+        return peakBytes;
+    }
+
+    /**
+     * High-water mark of {@link #inUseCount()}.
+     */
+    public int peakInUseCount() {
+        return peakInUse;
+    }
+
+    public long allocations() {
+        return allocations;
+    }
+
+    public long reuses() {
+        return reuses;
+    }
+
+    @Override
+    public String toString() {
+        return "MatArena [ inUse=" + inUse.size() + ", pooled=" + pooled.size()
+                + ", liveBytes=" + liveBytes + ", peakBytes=" + peakBytes + ", peakInUse=" + peakInUse
+                + ", allocations=" + allocations + ", reuses=" + reuses + " ]";
+    }
+
+    private void toPool(Mat m) {
+        if (pooled.size() < maxPooled && !m.empty()) {
+            pooled.add(m);
+        } else {
+            m.release();
+        }
+        // native code may have reallocated the Mat since it was acquired
+        long total = 0;
+        for (int i = 0; i < inUse.size(); i++)
+            total += bytes(inUse.get(i));
+        for (int i = 0; i < pooled.size(); i++)
+            total += bytes(pooled.get(i));
+        liveBytes = total;
+        if (liveBytes > peakBytes)
+            peakBytes = liveBytes;
+    }
+
+    private static Mat removeAt(ArrayList<Mat> list, int i) {
+        // order does not matter, avoid shifting the tail
+        int last = list.size() - 1;
+        Mat m = list.get(i);
+        list.set(i, list.get(last));
+        list.remove(last);
+        return m;
+    }
+
+    private static long bytes(Mat m) {
+        return m.empty() ? 0 : m.total() * m.elemSize();
+    }
+}
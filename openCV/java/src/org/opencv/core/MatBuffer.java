@@ -0,0 +1,231 @@
+package org.opencv.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * A {@link Mat} whose pixel data lives in a direct {@link ByteBuffer} owned by Java, so Java
+ * code can read and write pixels through NIO buffers without any {@code get}/{@code put} copy.
+ *
+ * The memory is allocated on the Java side and the Mat header is built on top of it with
+ * {@link Mat#Mat(int, int, int, ByteBuffer)}; native functions that write into {@link #mat()}
+ * in place therefore write straight into the buffer. Buffers handed out by this class are
+ * bounds-checked by NIO and always point at valid memory, even after {@link #release()}.
+ *
+ * The aliasing breaks if native code reallocates the Mat, e.g. when it is passed as an output
+ * of a different size or type, or when {@code mat().release()} is called. Every accessor checks
+ * for that and for {@link #release()} and throws {@link IllegalStateException} instead of
+ * returning a stale view.
+ *
+ * Submatrices created with {@link #submat(int, int, int, int)} are not continuous; use
+ * {@link #row(int)} to walk them row by row. They share the lifetime of their parent.
+ */
+public class MatBuffer {
+
+    private static final class Lifetime {
+        volatile boolean released;
+    }
+
+    // Keeps the buffer reachable for as long as the Mat is, so the memory is not freed under a
+    // Mat that outlives its MatBuffer.
+    static final class BufferMat extends Mat {
+        private final ByteBuffer buffer;
+
+        BufferMat(int rows, int cols, int type, ByteBuffer buffer) {
+            super(rows, cols, type, buffer);
+            this.buffer = buffer;
+        }
+
+        BufferMat(BufferMat m, Rect roi) {
+            super(m, roi);
+            this.buffer = m.buffer;
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final BufferMat mat;
+    private final Lifetime lifetime;
+    private final boolean root;
+    private volatile boolean released;
+    private final long dataAddr;
+    private final int rows;
+    private final int cols;
+    private final int type;
+    private final int elemSize;
+    private final int step;
+    private final int origin;
+
+    private MatBuffer(ByteBuffer buffer, BufferMat mat, Lifetime lifetime, boolean root, int rows, int cols, int type, int step, int origin) {
+        this.buffer = buffer;
+        this.mat = mat;
+        this.lifetime = lifetime;
+        this.root = root;
+        this.dataAddr = mat.dataAddr();
+        this.rows = rows;
+        this.cols = cols;
+        this.type = type;
+        this.elemSize = CvType.ELEM_SIZE(type);
+        this.step = step;
+        this.origin = origin;
+    }
+
+    public static MatBuffer allocate(int rows, int cols, int type) {
+        long bytes = (long) rows * cols * CvType.ELEM_SIZE(type);
+        if (rows <= 0 || cols <= 0 || bytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Unsupported Mat size: " + rows + "x" + cols + " " + CvType.typeToString(type));
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+        return wrap(buffer, rows, cols, type);
+    }
+
+    public static MatBuffer allocate(Size size, int type) {
+        return allocate((int) size.height, (int) size.width, type);
+    }
+
+    /**
+     * Builds a Mat over an existing direct buffer, starting at its current position.
+     */
+    public static MatBuffer wrap(ByteBuffer buffer, int rows, int cols, int type) {
+        if (buffer == null || !buffer.isDirect())
+            throw new IllegalArgumentException("Direct ByteBuffer is required");
+        long bytes = (long) rows * cols * CvType.ELEM_SIZE(type);
+        if (rows <= 0 || cols <= 0 || bytes > buffer.remaining())
+            throw new IllegalArgumentException("Buffer has " + buffer.remaining() + " bytes, " + bytes + " required");
+        ByteBuffer data = buffer.slice().order(ByteOrder.nativeOrder());
+        data.limit((int) bytes);
+        BufferMat mat = new BufferMat(rows, cols, type, data);
+        return new MatBuffer(data, mat, new Lifetime(), true, rows, cols, type, cols * CvType.ELEM_SIZE(type), 0);
+    }
+
+    /**
+     * The Mat aliasing this buffer. It must not be reallocated, see the class description.
+     *
+     * The Mat keeps the buffer memory alive, so it stays usable after this MatBuffer becomes
+     * unreachable. Mats derived from it, e.g. with {@link Mat#submat(Rect)} or
+     * {@link Mat#row(int)}, do not; keep the MatBuffer or this Mat referenced while using them.
+     */
+    public Mat mat() {
+        checkValid();
+        return mat;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    public int type() {
+        return type;
+    }
+
+    public boolean isContinuous() {
+        return rows == 1 || step == cols * elemSize;
+    }
+
+    public boolean isReleased() {
+        return released || lifetime.released;
+    }
+
+    /**
+     * All pixel bytes in row-major order. Only available for continuous data.
+     */
+    public ByteBuffer bytes() {
+        checkValid();
+        if (!isContinuous())
+            throw new UnsupportedOperationException("Data is not continuous, use row(int)");
+        return region(origin, rows * cols * elemSize);
+    }
+
+    /**
+     * The bytes of a single row.
+     */
+    public ByteBuffer row(int r) {
+        checkValid();
+        if (r < 0 || r >= rows)
+            throw new IndexOutOfBoundsException("Row " + r + " out of range [0, " + rows + ")");
+        return region(origin + r * step, cols * elemSize);
+    }
+
+    public FloatBuffer floats() {
+        checkDepth(CvType.CV_32F);
+        return bytes().asFloatBuffer();
+    }
+
+    public DoubleBuffer doubles() {
+        checkDepth(CvType.CV_64F);
+        return bytes().asDoubleBuffer();
+    }
+
+    public IntBuffer ints() {
+        checkDepth(CvType.CV_32S);
+        return bytes().asIntBuffer();
+    }
+
+    public ShortBuffer shorts() {
+        int depth = CvType.depth(type);
+        if (depth != CvType.CV_16U && depth != CvType.CV_16S && depth != CvType.CV_16F)
+            throw new UnsupportedOperationException("Mat data type is not compatible: " + type);
+        return bytes().asShortBuffer();
+    }
+
+    /**
+     * A view of a region that shares memory and lifetime with this one.
+     */
+    public MatBuffer submat(int rowStart, int rowEnd, int colStart, int colEnd) {
+        checkValid();
+        if (rowStart < 0 || rowEnd > rows || rowStart >= rowEnd || colStart < 0 || colEnd > cols || colStart >= colEnd)
+            throw new IndexOutOfBoundsException("Region [" + rowStart + ", " + rowEnd + ") x [" + colStart + ", " + colEnd + ") is out of " + rows + "x" + cols);
+        BufferMat sub = new BufferMat(mat, new Rect(colStart, rowStart, colEnd - colStart, rowEnd - rowStart));
+        return new MatBuffer(buffer, sub, lifetime, false, rowEnd - rowStart, colEnd - colStart, type, step,
+                origin + rowStart * step + colStart * elemSize);
+    }
+
+    /**
+     * Copies {@code src} into this buffer with a single native copy. The source must have the
+     * same size and type, otherwise the Mat would be reallocated away from the buffer.
+     */
+    public void copyFrom(Mat src) {
+        checkValid();
+        if (src.rows() != rows || src.cols() != cols || src.type() != type)
+            throw new IllegalArgumentException("Source must be " + rows + "x" + cols + " " + CvType.typeToString(type) + ": " + src);
+        src.copyTo(mat);
+    }
+
+    /**
+     * Invalidates this view. Releasing the buffer returned by {@link #allocate} or {@link #wrap}
+     * also invalidates every submatrix created from it.
+     */
+    public void release() {
+        if (released)
+            return;
+        released = true;
+        if (root)
+            lifetime.released = true;
+        mat.release();
+    }
+
+    private ByteBuffer region(int offset, int length) {
+        ByteBuffer b = buffer.duplicate();
+        b.position(offset);
+        b.limit(offset + length);
+        return b.slice().order(ByteOrder.nativeOrder());
+    }
+
+    private void checkDepth(int depth) {
+        if (CvType.depth(type) != depth)
+            throw new UnsupportedOperationException("Mat data type is not compatible: " + type);
+    }
+
+    private void checkValid() {
+        if (isReleased())
+            throw new IllegalStateException("MatBuffer has been released");
+        if (mat.dataAddr() != dataAddr)
+            throw new IllegalStateException("Mat data was reallocated and no longer aliases the buffer");
+    }
+}
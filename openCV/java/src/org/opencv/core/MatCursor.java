@@ -0,0 +1,476 @@
+package org.opencv.core;
+
+import java.lang.reflect.Array;
+
+/**
+ * Bulk pixel access to a 2D {@link Mat} through a reusable primitive buffer.
+ *
+ * The cursor loads a window of the Mat - a band of full rows with {@link #rows(int, int)} or a
+ * rectangular tile with {@link #tile(int, int, int, int)} - into a Java array with a single
+ * native call. Pixels are then read and written in Java, and the modified range is written back
+ * with a single call when the cursor moves, on {@link #flush()} or on {@link #close()}. This
+ * replaces one JNI round trip and one array allocation per element of {@link Mat#at(Class, int, int)}.
+ *
+ * Coordinates passed to the getters and setters are relative to the current window. The
+ * backing array is available for tight loops, see {@link #index(int, int, int)} and
+ * {@link #markDirty(int, int)}. The cursor does not see native writes made to the window after
+ * it was loaded; reload it with {@link #reload()}.
+ */
+public class MatCursor implements AutoCloseable {
+
+    private final Mat mat;
+    private final int rows;
+    private final int cols;
+    private final int type;
+    private final int channels;
+
+    private byte[] bytes;
+    private short[] shorts;
+    private int[] ints;
+    private float[] floats;
+    private double[] doubles;
+    // holds the dirty range while it is written back
+    private Object scratch;
+
+    private Mat tile;
+    private int winRow;
+    private int winCol;
+    private int winRows;
+    private int winCols;
+    private int dirtyStart = Integer.MAX_VALUE;
+    private int dirtyEnd;
+
+    public MatCursor(Mat mat) {
+        if (mat.dims() > 2)
+            throw new IllegalArgumentException("Only 2D Mats are supported: " + mat);
+        this.mat = mat;
+        this.rows = mat.rows();
+        this.cols = mat.cols();
+        this.type = mat.type();
+        this.channels = CvType.channels(type);
+        switch (CvType.depth(type)) {
+        case CvType.CV_8U:
+        case CvType.CV_8S:
+        case CvType.CV_16U:
+        case CvType.CV_16S:
+        case CvType.CV_16F:
+        case CvType.CV_32S:
+        case CvType.CV_32F:
+        case CvType.CV_64F:
+            break;
+        default:
+            throw new UnsupportedOperationException("Mat data type is not compatible: " + type);
+        }
+    }
+
+    public Mat mat() {
+        return mat;
+    }
+
+    public int matRows() {
+        return rows;
+    }
+
+    public int matCols() {
+        return cols;
+    }
+
+    public int channels() {
+        return channels;
+    }
+
+    public int depth() {
+        return CvType.depth(type);
+    }
+
+    /**
+     * Loads rows {@code [start, start + count)} at full width. Pending changes of the previous
+     * window are written back first.
+     */
+    public MatCursor rows(int start, int count) {
+        if (start < 0 || count <= 0 || start + count > rows)
+            throw new IndexOutOfBoundsException("Rows [" + start + ", " + (start + count) + ") out of " + rows);
+        flush();
+        releaseTile();
+        winRow = start;
+        winCol = 0;
+        winRows = count;
+        winCols = cols;
+        load();
+        return this;
+    }
+
+    public MatCursor row(int r) {
+        return rows(r, 1);
+    }
+
+    /**
+     * Loads the tile with top-left corner ({@code row}, {@code col}). Pending changes of the
+     * previous window are written back first.
+     */
+    public MatCursor tile(int row, int col, int tileRows, int tileCols) {
+        if (row < 0 || col < 0 || tileRows <= 0 || tileCols <= 0 || row + tileRows > rows || col + tileCols > cols)
+            throw new IndexOutOfBoundsException("Tile " + tileCols + "x" + tileRows + " at (" + col + ", " + row + ") out of " + cols + "x" + rows);
+        if (tileCols == cols)
+            return rows(row, tileRows);
+        flush();
+        releaseTile();
+        tile = mat.submat(row, row + tileRows, col, col + tileCols);
+        winRow = row;
+        winCol = col;
+        winRows = tileRows;
+        winCols = tileCols;
+        load();
+        return this;
+    }
+
+    /**
+     * Discards pending changes and reads the current window again.
+     */
+    public void reload() {
+        clearDirty();
+        load();
+    }
+
+    public int windowRow() {
+        return winRow;
+    }
+
+    public int windowCol() {
+        return winCol;
+    }
+
+    public int windowRows() {
+        return winRows;
+    }
+
+    public int windowCols() {
+        return winCols;
+    }
+
+    /**
+     * Index of ({@code r}, {@code c}, {@code ch}) of the window in the backing array.
+     */
+    public int index(int r, int c, int ch) {
+        if (r < 0 || r >= winRows || c < 0 || c >= winCols || ch < 0 || ch >= channels)
+            throw new IndexOutOfBoundsException("(" + r + ", " + c + ", " + ch + ") out of window " + winRows + "x" + winCols + "x" + channels);
+        return (r * winCols + c) * channels + ch;
+    }
+
+    /** Backing array of CV_8U and CV_8S data; the window occupies the first rows*cols*channels entries. */
+    public byte[] byteArray() {
+        checkArray(bytes);
+        return bytes;
+    }
+
+    /** Backing array of CV_16U, CV_16S and CV_16F data. */
+    public short[] shortArray() {
+        checkArray(shorts);
+        return shorts;
+    }
+
+    /** Backing array of CV_32S data. */
+    public int[] intArray() {
+        checkArray(ints);
+        return ints;
+    }
+
+    /** Backing array of CV_32F data. */
+    public float[] floatArray() {
+        checkArray(floats);
+        return floats;
+    }
+
+    /** Backing array of CV_64F data. */
+    public double[] doubleArray() {
+        checkArray(doubles);
+        return doubles;
+    }
+
+    /**
+     * Records that entries {@code [from, to)} of the backing array were modified directly.
+     */
+    public void markDirty(int from, int to) {
+        if (from < 0 || to > winRows * winCols * channels || from > to)
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of window");
+        if (from < dirtyStart)
+            dirtyStart = from;
+        if (to > dirtyEnd)
+            dirtyEnd = to;
+    }
+
+    public boolean isDirty() {
+        return dirtyStart < dirtyEnd;
+    }
+
+    public int getUByte(int r, int c, int ch) {
+        return byteArray()[index(r, c, ch)] & 0xff;
+    }
+
+    public byte getByte(int r, int c, int ch) {
+        return byteArray()[index(r, c, ch)];
+    }
+
+    public int getUShort(int r, int c, int ch) {
+        return shortArray()[index(r, c, ch)] & 0xffff;
+    }
+
+    public short getShort(int r, int c, int ch) {
+        return shortArray()[index(r, c, ch)];
+    }
+
+    public int getInt(int r, int c, int ch) {
+        return intArray()[index(r, c, ch)];
+    }
+
+    public float getFloat(int r, int c, int ch) {
+        return floatArray()[index(r, c, ch)];
+    }
+
+    /**
+     * Reads any depth as a double; 8U and 16U values are unsigned and CV_16F values are converted
+     * from half precision.
+     */
+    public double getDouble(int r, int c, int ch) {
+        return getAt(index(r, c, ch));
+    }
+
+    public void setByte(int r, int c, int ch, int v) {
+        int i = index(r, c, ch);
+        byteArray()[i] = (byte) v;
+        markDirty(i, i + 1);
+    }
+
+    public void setShort(int r, int c, int ch, int v) {
+        int i = index(r, c, ch);
+        shortArray()[i] = (short) v;
+        markDirty(i, i + 1);
+    }
+
+    public void setInt(int r, int c, int ch, int v) {
+        int i = index(r, c, ch);
+        intArray()[i] = v;
+        markDirty(i, i + 1);
+    }
+
+    public void setFloat(int r, int c, int ch, float v) {
+        int i = index(r, c, ch);
+        floatArray()[i] = v;
+        markDirty(i, i + 1);
+    }
+
+    /**
+     * Writes any depth; integer depths are rounded and saturated like {@code Mat.convertTo} and
+     * CV_16F values are rounded to the nearest half precision value.
+     */
+    public void setDouble(int r, int c, int ch, double v) {
+        int i = index(r, c, ch);
+        setAt(i, v);
+        markDirty(i, i + 1);
+    }
+
+    /**
+     * Element {@code i} of the backing array as a double, see {@link #getDouble(int, int, int)}.
+     */
+    public double getAt(int i) {
+        switch (CvType.depth(type)) {
+        case CvType.CV_8U:
+            return bytes[i] & 0xff;
+        case CvType.CV_8S:
+            return bytes[i];
+        case CvType.CV_16U:
+            return shorts[i] & 0xffff;
+        case CvType.CV_16S:
+            return shorts[i];
+        case CvType.CV_16F:
+            return halfToFloat(shorts[i]);
+        case CvType.CV_32S:
+            return ints[i];
+        case CvType.CV_32F:
+            return floats[i];
+        default:
+            return doubles[i];
+        }
+    }
+
+    /**
+     * Stores {@code v} into element {@code i} of the backing array without marking it dirty,
+     * see {@link #setDouble(int, int, int, double)}.
+     */
+    public void setAt(int i, double v) {
+        switch (CvType.depth(type)) {
+        case CvType.CV_8U:
+            bytes[i] = (byte) saturate(v, 0, 255);
+            break;
+        case CvType.CV_8S:
+            bytes[i] = (byte) saturate(v, Byte.MIN_VALUE, Byte.MAX_VALUE);
+            break;
+        case CvType.CV_16U:
+            shorts[i] = (short) saturate(v, 0, 65535);
+            break;
+        case CvType.CV_16S:
+            shorts[i] = (short) saturate(v, Short.MIN_VALUE, Short.MAX_VALUE);
+            break;
+        case CvType.CV_16F:
+            shorts[i] = floatToHalf((float) v);
+            break;
+        case CvType.CV_32S:
+            ints[i] = (int) Math.rint(v);
+            break;
+        case CvType.CV_32F:
+            floats[i] = (float) v;
+            break;
+        default:
+            doubles[i] = v;
+        }
+    }
+
+    /**
+     * Writes the modified range of the current window back to the Mat in one call.
+     */
+    public void flush() {
+        if (!isDirty())
+            return;
+        // put() works in whole pixels
+        int start = dirtyStart - dirtyStart % channels;
+        int end = (dirtyEnd + channels - 1) / channels * channels;
+        int pixel = start / channels;
+        int r = pixel / winCols;
+        int c = pixel % winCols;
+        Mat target = tile != null ? tile : mat;
+        int baseRow = tile != null ? 0 : winRow;
+        int count = end - start;
+        switch (CvType.depth(type)) {
+        case CvType.CV_8U:
+        case CvType.CV_8S:
+            target.putRaw(baseRow + r, c, count, start == 0 ? bytes : (byte[]) dirtyCopy(bytes, start, count));
+            break;
+        case CvType.CV_16U:
+        case CvType.CV_16S:
+        case CvType.CV_16F:
+            target.putRaw(baseRow + r, c, count, start == 0 ? shorts : (short[]) dirtyCopy(shorts, start, count));
+            break;
+        case CvType.CV_32S:
+            target.putRaw(baseRow + r, c, count, start == 0 ? ints : (int[]) dirtyCopy(ints, start, count));
+            break;
+        case CvType.CV_32F:
+            target.putRaw(baseRow + r, c, count, start == 0 ? floats : (float[]) dirtyCopy(floats, start, count));
+            break;
+        default:
+            target.putRaw(baseRow + r, c, count, start == 0 ? doubles : (double[]) dirtyCopy(doubles, start, count));
+        }
+        clearDirty();
+    }
+
+    /**
+     * Writes back pending changes and releases the tile header. The buffers are kept, so the
+     * cursor can still be moved to another window.
+     */
+    @Override
+    public void close() {
+        flush();
+        releaseTile();
+    }
+
+    private void load() {
+        int count = winRows * winCols * channels;
+        Mat source = tile != null ? tile : mat;
+        int row = tile != null ? 0 : winRow;
+        switch (CvType.depth(type)) {
+        case CvType.CV_8U:
+        case CvType.CV_8S:
+            if (bytes == null || bytes.length < count)
+                bytes = new byte[count];
+            source.getRaw(row, 0, count, bytes);
+            break;
+        case CvType.CV_16U:
+        case CvType.CV_16S:
+        case CvType.CV_16F:
+            if (shorts == null || shorts.length < count)
+                shorts = new short[count];
+            source.getRaw(row, 0, count, shorts);
+            break;
+        case CvType.CV_32S:
+            if (ints == null || ints.length < count)
+                ints = new int[count];
+            source.getRaw(row, 0, count, ints);
+            break;
+        case CvType.CV_32F:
+            if (floats == null || floats.length < count)
+                floats = new float[count];
+            source.getRaw(row, 0, count, floats);
+            break;
+        default:
+            if (doubles == null || doubles.length < count)
+                doubles = new double[count];
+            source.getRaw(row, 0, count, doubles);
+        }
+    }
+
+    /**
+     * Converts the IEEE 754 half precision bits of a CV_16F element to a float.
+     */
+    public static float halfToFloat(short h) {
+        int exp = (h >>> 10) & 0x1f;
+        int mant = h & 0x3ff;
+        float v;
+        if (exp == 0)
+            v = mant * 0x1p-24f; // zero and subnormals
+        else if (exp == 31)
+            v = mant == 0 ? Float.POSITIVE_INFINITY : Float.NaN;
+        else
+            v = Float.intBitsToFloat((exp + 112) << 23 | mant << 13);
+        return h < 0 ? -v : v;
+    }
+
+    /**
+     * Converts a float to the IEEE 754 half precision bits of a CV_16F element, rounding to
+     * nearest even like {@code Mat.convertTo}.
+     */
+    public static short floatToHalf(float f) {
+        int bits = Float.floatToRawIntBits(f);
+        int sign = (bits >>> 16) & 0x8000;
+        int abs = bits & 0x7fffffff;
+        if (abs >= 0x7f800000) // infinity and NaN
+            return (short) (sign | 0x7c00 | (abs > 0x7f800000 ? 0x200 : 0));
+        if (abs >= 0x477ff000) // 65520 and above round to infinity
+            return (short) (sign | 0x7c00);
+        if (abs < 0x38800000) // below 2^-14 the result is subnormal
+            return (short) (sign | (int) Math.rint(Float.intBitsToFloat(abs) * 0x1p24f));
+        int h = ((abs >>> 23) - 112) << 10 | (abs >>> 13) & 0x3ff;
+        int rest = abs & 0x1fff;
+        if (rest > 0x1000 || (rest == 0x1000 && (h & 1) != 0))
+            h++; // may carry into the exponent, which is still correct
+        return (short) (sign | h);
+    }
+
+    private Object dirtyCopy(Object src, int start, int count) {
+        // only the first count entries are written back, so a larger scratch array is fine
+        if (scratch == null || scratch.getClass() != src.getClass() || Array.getLength(scratch) < count)
+            scratch = Array.newInstance(src.getClass().getComponentType(), Array.getLength(src));
+        System.arraycopy(src, start, scratch, 0, count);
+        return scratch;
+    }
+
+    private void clearDirty() {
+        dirtyStart = Integer.MAX_VALUE;
+        dirtyEnd = 0;
+    }
+
+    private void releaseTile() {
+        if (tile != null) {
+            tile.release();
+            tile = null;
+        }
+    }
+
+    private void checkArray(Object array) {
+        if (array == null)
+            throw new UnsupportedOperationException(winRows == 0 ? "No window loaded" : "Mat data type is not compatible: " + type);
+    }
+
+    private static int saturate(double v, int min, int max) {
+        long x = (long) Math.rint(v);
+        return x < min ? min : x > max ? max : (int) x;
+    }
+}
@@ -0,0 +1,278 @@
+package org.opencv.core
+
+/***
+ *  Lazy matrix expressions. The operators only build a tree; eval() lowers it to as few native
+ *  calls as possible and writes the result into the destination Mat:
+ *
+ *   alpha * (A * B) + beta * C    ->  Core.gemm, transposes become GEMM_*_T flags
+ *   alpha * A + beta * B + gamma  ->  Core.addWeighted
+ *   alpha * A + gamma             ->  Mat.convertTo
+ *   further terms                 ->  Core.scaleAdd into the destination
+ *
+ *  Example use:
+ *
+ *  val evaluator = MatExprEvaluator()   // keep it across frames to reuse temporaries
+ *  evaluator.eval(2.0 * (a.lazy() * b.lazy().t()) + c.lazy() - 1.0, dst)
+ *
+ *  `*` between expressions is the matrix product, `mul` the per-element product. Scalars apply
+ *  to every channel. Matrix products go through gemm and need CV_32F or CV_64F data.
+ *
+ */
+sealed class MatExpr {
+    class Ref internal constructor(val mat: Mat) : MatExpr()
+    class Sum internal constructor(val a: MatExpr, val b: MatExpr, val subtract: Boolean) : MatExpr()
+    class Scaled internal constructor(val e: MatExpr, val alpha: Double) : MatExpr()
+    class Offset internal constructor(val e: MatExpr, val gamma: Double) : MatExpr()
+    class Product internal constructor(val a: MatExpr, val b: MatExpr) : MatExpr()
+    class ElemMul internal constructor(val a: MatExpr, val b: MatExpr) : MatExpr()
+    class Transposed internal constructor(val e: MatExpr) : MatExpr()
+
+    operator fun plus(other: MatExpr): MatExpr = Sum(this, other, false)
+    operator fun plus(other: Mat): MatExpr = Sum(this, Ref(other), false)
+    operator fun plus(s: Double): MatExpr = Offset(this, s)
+    operator fun minus(other: MatExpr): MatExpr = Sum(this, other, true)
+    operator fun minus(other: Mat): MatExpr = Sum(this, Ref(other), true)
+    operator fun minus(s: Double): MatExpr = Offset(this, -s)
+    operator fun times(other: MatExpr): MatExpr = Product(this, other)
+    operator fun times(other: Mat): MatExpr = Product(this, Ref(other))
+    operator fun times(s: Double): MatExpr = Scaled(this, s)
+    operator fun div(s: Double): MatExpr = Scaled(this, 1.0 / s)
+    operator fun unaryMinus(): MatExpr = Scaled(this, -1.0)
+
+    fun t(): MatExpr = Transposed(this)
+    fun mul(other: MatExpr): MatExpr = ElemMul(this, other)
+    fun mul(other: Mat): MatExpr = ElemMul(this, Ref(other))
+
+    /**
+     * Evaluates with a one-shot evaluator. Use a long-lived [MatExprEvaluator] in loops.
+     */
+    fun eval(dst: Mat = Mat()): Mat {
+        val evaluator = MatExprEvaluator()
+        try {
+            return evaluator.eval(this, dst)
+        } finally {
+            evaluator.close()
+        }
+    }
+}
+
+fun Mat.lazy(): MatExpr = MatExpr.Ref(this)
+
+operator fun Double.times(e: MatExpr): MatExpr = e * this
+operator fun Double.plus(e: MatExpr): MatExpr = e + this
+operator fun Double.minus(e: MatExpr): MatExpr = -e + this
+
+/**
+ * Evaluates [MatExpr] trees. Temporaries are kept between calls, so evaluating the same
+ * expression shape every frame reuses their native memory instead of allocating new Mats.
+ * Not thread safe.
+ */
+class MatExprEvaluator : AutoCloseable {
+
+    private class Term(var coef: Double, val node: MatExpr)
+
+    private val temps = ArrayList<Mat>()
+    private var used = 0
+    private val empty = Mat()
+    private var lastTransposed = false
+
+    /** Number of native operations issued by the last [eval]. */
+    var lastCallCount = 0
+        private set
+
+    /** Number of temporary Mats held for reuse. */
+    val temporaries: Int
+        get() = temps.size
+
+    fun eval(e: MatExpr, dst: Mat): Mat {
+        used = 0
+        lastCallCount = 0
+        val n = normalize(e, false)
+        if (references(n, dst)) {
+            // dst is also an operand, it must not be overwritten before the last read
+            val tmp = temp()
+            evalInto(n, tmp)
+            tmp.copyTo(dst)
+            lastCallCount++
+        } else {
+            evalInto(n, dst)
+        }
+        return dst
+    }
+
+    override fun close() {
+        for (m in temps)
+            m.release()
+        temps.clear()
+        empty.release()
+    }
+
+    private fun temp(): Mat {
+        if (used == temps.size)
+            temps.add(Mat())
+        return temps[used++]
+    }
+
+    // pushes transposes down to the leaves: t(A + B) = tA + tB, t(A * B) = tB * tA
+    private fun normalize(e: MatExpr, t: Boolean): MatExpr = when (e) {
+        is MatExpr.Ref -> if (t) MatExpr.Transposed(e) else e
+        is MatExpr.Transposed -> normalize(e.e, !t)
+        is MatExpr.Sum -> MatExpr.Sum(normalize(e.a, t), normalize(e.b, t), e.subtract)
+        is MatExpr.Scaled -> MatExpr.Scaled(normalize(e.e, t), e.alpha)
+        is MatExpr.Offset -> MatExpr.Offset(normalize(e.e, t), e.gamma)
+        is MatExpr.Product ->
+            if (t) MatExpr.Product(normalize(e.b, true), normalize(e.a, true))
+            else MatExpr.Product(normalize(e.a, false), normalize(e.b, false))
+        is MatExpr.ElemMul -> MatExpr.ElemMul(normalize(e.a, t), normalize(e.b, t))
+    }
+
+    private fun references(e: MatExpr, m: Mat): Boolean = when (e) {
+        is MatExpr.Ref -> overlaps(e.mat, m)
+        is MatExpr.Transposed -> references(e.e, m)
+        is MatExpr.Sum -> references(e.a, m) || references(e.b, m)
+        is MatExpr.Scaled -> references(e.e, m)
+        is MatExpr.Offset -> references(e.e, m)
+        is MatExpr.Product -> references(e.a, m) || references(e.b, m)
+        is MatExpr.ElemMul -> references(e.a, m) || references(e.b, m)
+    }
+
+    // true if the two Mats share any memory, e.g. one is a view of the other or both are views
+    // of overlapping regions of a third Mat
+    private fun overlaps(a: Mat, b: Mat): Boolean {
+        if (a.nativeObj == b.nativeObj)
+            return true
+        val aStart = a.dataAddr()
+        val bStart = b.dataAddr()
+        if (aStart == 0L || bStart == 0L)
+            return false
+        return aStart < dataEnd(b, bStart) && bStart < dataEnd(a, aStart)
+    }
+
+    // one past the last byte of the data of m
+    private fun dataEnd(m: Mat, start: Long): Long {
+        val elemSize1 = m.elemSize1()
+        var end = start + m.elemSize()
+        for (i in 0 until m.dims())
+            end += (m.size(i) - 1).toLong() * m.step1(i) * elemSize1
+        return end
+    }
+
+    // flattens sums, scales and offsets into coef * node terms, returns the constant part
+    private fun linearize(e: MatExpr, coef: Double, terms: ArrayList<Term>): Double = when (e) {
+        is MatExpr.Sum -> linearize(e.a, coef, terms) + linearize(e.b, if (e.subtract) -coef else coef, terms)
+        is MatExpr.Scaled -> linearize(e.e, coef * e.alpha, terms)
+        is MatExpr.Offset -> linearize(e.e, coef, terms) + coef * e.gamma
+        else -> {
+            addTerm(terms, coef, e)
+            0.0
+        }
+    }
+
+    private fun addTerm(terms: ArrayList<Term>, coef: Double, node: MatExpr) {
+        val leaf = leafOf(node)
+        if (leaf != null) {
+            for (t in terms) {
+                if (leafOf(t.node) === leaf && (t.node is MatExpr.Transposed) == (node is MatExpr.Transposed)) {
+                    t.coef += coef
+                    return
+                }
+            }
+        }
+        terms.add(Term(coef, node))
+    }
+
+    private fun leafOf(node: MatExpr): Mat? = when (node) {
+        is MatExpr.Ref -> node.mat
+        is MatExpr.Transposed -> (node.e as? MatExpr.Ref)?.mat
+        else -> null
+    }
+
+    private fun evalInto(e: MatExpr, dst: Mat) {
+        val terms = ArrayList<Term>()
+        val gamma = linearize(e, 1.0, terms)
+        var gammaDone = false
+        var started = false
+
+        val p = terms.indexOfFirst { it.node is MatExpr.Product }
+        if (p >= 0) {
+            val prod = terms.removeAt(p)
+            val node = prod.node as MatExpr.Product
+            val a = gemmOperand(node.a)
+            var flags = if (lastTransposed) Core.GEMM_1_T else 0
+            val b = gemmOperand(node.b)
+            if (lastTransposed)
+                flags = flags or Core.GEMM_2_T
+            val c = terms.indexOfFirst { leafOf(it.node) != null }
+            if (c >= 0) {
+                val addend = terms.removeAt(c)
+                if (addend.node is MatExpr.Transposed)
+                    flags = flags or Core.GEMM_3_T
+                Core.gemm(a, b, prod.coef, leafOf(addend.node)!!, addend.coef, dst, flags)
+            } else {
+                Core.gemm(a, b, prod.coef, empty, 0.0, dst, flags)
+            }
+            lastCallCount++
+            started = true
+        }
+
+        if (!started) {
+            val first = terms.removeAt(0)
+            val node = first.node
+            if (node is MatExpr.ElemMul) {
+                Core.multiply(plain(node.a), plain(node.b), dst, first.coef)
+                lastCallCount++
+            } else if (terms.isNotEmpty()) {
+                val second = terms.removeAt(0)
+                Core.addWeighted(plain(node), first.coef, plain(second.node), second.coef, gamma, dst)
+                lastCallCount++
+                gammaDone = true
+            } else {
+                val src = plain(node)
+                if (first.coef == 1.0 && gamma == 0.0)
+                    src.copyTo(dst)
+                else
+                    src.convertTo(dst, -1, first.coef, gamma)
+                lastCallCount++
+                gammaDone = true
+            }
+        }
+
+        for (t in terms) {
+            Core.scaleAdd(plain(t.node), t.coef, dst, dst)
+            lastCallCount++
+        }
+        if (!gammaDone && gamma != 0.0) {
+            Core.add(dst, Scalar.all(gamma), dst)
+            lastCallCount++
+        }
+    }
+
+    // a leaf, possibly transposed (reported through lastTransposed), or an evaluated temporary
+    private fun gemmOperand(e: MatExpr): Mat {
+        lastTransposed = false
+        if (e is MatExpr.Ref)
+            return e.mat
+        if (e is MatExpr.Transposed && e.e is MatExpr.Ref) {
+            lastTransposed = true
+            return e.e.mat
+        }
+        val tmp = temp()
+        evalInto(e, tmp)
+        lastTransposed = false
+        return tmp
+    }
+
+    // the value of e as an untransposed Mat
+    private fun plain(e: MatExpr): Mat {
+        if (e is MatExpr.Ref)
+            return e.mat
+        val tmp = temp()
+        if (e is MatExpr.Transposed && e.e is MatExpr.Ref) {
+            Core.transpose(e.e.mat, tmp)
+            lastCallCount++
+        } else {
+            evalInto(e, tmp)
+        }
+        return tmp
+    }
+}
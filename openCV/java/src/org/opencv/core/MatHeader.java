@@ -0,0 +1,128 @@
+package org.opencv.core;
+
+/**
+ * Immutable snapshot of the header of a {@link Mat}: dimensions, sizes, steps, type and
+ * continuity.
+ *
+ * Obtained with {@link Mat#header()}. When header caching is enabled on a Mat with
+ * {@link Mat#setHeaderCaching(boolean)}, its geometry accessors answer from the snapshot instead
+ * of calling into native code; see there for the validity rules.
+ */
+public final class MatHeader {
+
+    private final int dims;
+    private final int rows;
+    private final int cols;
+    private final int type;
+    private final boolean continuous;
+    private final boolean submatrix;
+    private final boolean hasData;
+    private final int[] sizes;
+    private final long[] steps1;
+    private final long total;
+
+    MatHeader(int dims, int rows, int cols, int type, boolean continuous, boolean submatrix, boolean hasData,
+            int[] sizes, long[] steps1) {
+        this.dims = dims;
+        this.rows = rows;
+        this.cols = cols;
+        this.type = type;
+        this.continuous = continuous;
+        this.submatrix = submatrix;
+        this.hasData = hasData;
+        this.sizes = sizes;
+        this.steps1 = steps1;
+        long t = dims > 0 ? 1 : 0;
+        for (int s : sizes)
+            t *= s;
+        this.total = t;
+    }
+
+    public int dims() {
+        return dims;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    public int type() {
+        return type;
+    }
+
+    public int depth() {
+        return CvType.depth(type);
+    }
+
+    public int channels() {
+        return CvType.channels(type);
+    }
+
+    public long elemSize() {
+        return CvType.ELEM_SIZE(type);
+    }
+
+    public long elemSize1() {
+        return CvType.ELEM_SIZE(type) / CvType.channels(type);
+    }
+
+    public long total() {
+        return total;
+    }
+
+    public boolean empty() {
+        return !hasData || total == 0;
+    }
+
+    public boolean isContinuous() {
+        return continuous;
+    }
+
+    public boolean isSubmatrix() {
+        return submatrix;
+    }
+
+    public int size(int i) {
+        return sizes[i];
+    }
+
+    /**
+     * Step of dimension {@code i} in channels, as {@link Mat#step1(int)}.
+     */
+    public long step1(int i) {
+        return steps1[i];
+    }
+
+    /**
+     * Same result as {@link Mat#checkVector(int, int, boolean)}, computed from the snapshot.
+     */
+    public int checkVector(int elemChannels, int depth, boolean requireContinuous) {
+        int cn = channels();
+        boolean ok = hasData && (depth() == depth || depth <= 0) && (continuous || !requireContinuous);
+        if (ok) {
+            if (dims == 2) {
+                ok = ((rows == 1 || cols == 1) && cn == elemChannels) || (cols == elemChannels && cn == 1);
+            } else if (dims == 3) {
+                ok = cn == 1 && sizes[2] == elemChannels && (sizes[0] == 1 || sizes[1] == 1)
+                        && (continuous || steps1[1] == steps1[2] * sizes[2]);
+            } else {
+                ok = false;
+            }
+        }
+        return ok ? (int) (total * cn / elemChannels) : -1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("MatHeader [ ");
+        for (int i = 0; i < dims; i++)
+            sb.append(sizes[i]).append(i + 1 < dims ? "*" : "");
+        sb.append(dims > 0 ? "*" : "").append(CvType.typeToString(type))
+          .append(", isCont=").append(continuous).append(", isSubmat=").append(submatrix).append(" ]");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,85 @@
+package org.opencv.core
+
+/***
+ *  Bulk pixel iteration built on MatCursor: rows are loaded in chunks of rowsPerChunk with one
+ *  native call each, and modified chunks are written back with one call.
+ *
+ *  Example use:
+ *
+ *  var sum = 0.0
+ *  mat.forEachPixel { row, col, cursor, i -> sum += cursor.getAt(i) }
+ *  mat.mapPixels { channel, v -> if (channel < 3) 255.0 - v else v }
+ *  gray.mapPixelsUByte { _, v -> if (v > 128u) 255u else 0u }
+ *
+ */
+inline fun Mat.forEachPixel(rowsPerChunk: Int = 16, action: (row: Int, col: Int, cursor: MatCursor, index: Int) -> Unit) {
+    require(rowsPerChunk > 0) { "rowsPerChunk must be positive: $rowsPerChunk" }
+    val cursor = MatCursor(this)
+    val rows = cursor.matRows()
+    val cols = cursor.matCols()
+    val cn = cursor.channels()
+    try {
+        var start = 0
+        while (start < rows) {
+            val n = minOf(rowsPerChunk, rows - start)
+            cursor.rows(start, n)
+            var i = 0
+            for (r in 0 until n) {
+                for (c in 0 until cols) {
+                    action(start + r, c, cursor, i)
+                    i += cn
+                }
+            }
+            start += n
+        }
+    } finally {
+        cursor.close()
+    }
+}
+
+inline fun Mat.mapPixels(rowsPerChunk: Int = 16, transform: (channel: Int, value: Double) -> Double) {
+    require(rowsPerChunk > 0) { "rowsPerChunk must be positive: $rowsPerChunk" }
+    val cursor = MatCursor(this)
+    val rows = cursor.matRows()
+    val cn = cursor.channels()
+    val rowLen = cursor.matCols() * cn
+    try {
+        var start = 0
+        while (start < rows) {
+            val n = minOf(rowsPerChunk, rows - start)
+            cursor.rows(start, n)
+            val len = n * rowLen
+            for (i in 0 until len)
+                cursor.setAt(i, transform(i % cn, cursor.getAt(i)))
+            cursor.markDirty(0, len)
+            start += n
+        }
+    } finally {
+        cursor.close()
+    }
+}
+
+inline fun Mat.mapPixelsUByte(rowsPerChunk: Int = 16, transform: (channel: Int, value: UByte) -> UByte) {
+    require(rowsPerChunk > 0) { "rowsPerChunk must be positive: $rowsPerChunk" }
+    if (CvType.depth(this.type()) != CvType.CV_8U)
+        throw UnsupportedOperationException("Mat data type is not compatible: " + this.type())
+    val cursor = MatCursor(this)
+    val rows = cursor.matRows()
+    val cn = cursor.channels()
+    val rowLen = cursor.matCols() * cn
+    try {
+        var start = 0
+        while (start < rows) {
+            val n = minOf(rowsPerChunk, rows - start)
+            cursor.rows(start, n)
+            val data = cursor.byteArray()
+            val len = n * rowLen
+            for (i in 0 until len)
+                data[i] = transform(i % cn, data[i].toUByte()).toByte()
+            cursor.markDirty(0, len)
+            start += n
+        }
+    } finally {
+        cursor.close()
+    }
+}
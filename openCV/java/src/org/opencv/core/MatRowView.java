@@ -0,0 +1,194 @@
+package org.opencv.core;
+
+/**
+ * Read-only, lazily loaded view over the rows of a point/rect/keypoint style vector Mat
+ * (N x 1 or 1 x N with one element per entry, or N x channels single-channel, continuous).
+ *
+ * Rows are fetched from native memory in chunks the first time they are touched and exposed
+ * through primitive getters in the subclasses, so no element objects are created. Sorting and
+ * top-K selection work on row indices and never materialize elements either.
+ *
+ * The view caches the most recently loaded chunk; if the underlying Mat is modified while the
+ * view is in use call {@link #invalidate()}.
+ */
+public abstract class MatRowView {
+    public static final int DEFAULT_CHUNK_ROWS = 64;
+
+    private final Mat mat;
+    private final int size;
+    private final int channels;
+    private final int chunkRows;
+    private final boolean columnVector;
+    private final float[] floatChunk;
+    private final int[] intChunk;
+    private int chunkStart = -1;
+    private int chunkLen;
+    private double[] keyScratch;
+
+    protected MatRowView(Mat mat, int channels, int depth, int chunkRows) {
+        if (chunkRows <= 0)
+            throw new IllegalArgumentException("chunkRows must be positive: " + chunkRows);
+        int num = mat.empty() ? 0 : mat.checkVector(channels, depth);
+        if (num < 0)
+            throw new IllegalArgumentException("Incompatible Mat");
+        this.mat = mat;
+        this.size = num;
+        this.channels = channels;
+        this.chunkRows = Math.max(1, Math.min(chunkRows, num));
+        // an N x channels single-channel Mat is laid out like a column vector of elements
+        this.columnVector = mat.empty() || mat.cols() == 1 || (mat.channels() == 1 && mat.cols() == channels);
+        if (depth == CvType.CV_32F) {
+            floatChunk = new float[this.chunkRows * channels];
+            intChunk = null;
+        } else if (depth == CvType.CV_32S) {
+            floatChunk = null;
+            intChunk = new int[this.chunkRows * channels];
+        } else {
+            throw new IllegalArgumentException("Unsupported depth: " + depth);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Drops the cached chunk so the next access re-reads native memory.
+     */
+    public void invalidate() {
+        chunkStart = -1;
+        chunkLen = 0;
+    }
+
+    /**
+     * Value used for ordering by {@code field}. Fields are element channels unless a subclass
+     * defines derived ones.
+     */
+    protected double key(int row, int field) {
+        if (field < 0 || field >= channels)
+            throw new IllegalArgumentException("Unknown field: " + field);
+        return floatChunk != null ? getFloat(row, field) : getInt(row, field);
+    }
+
+    protected final float getFloat(int row, int channel) {
+        int o = offset(row) + channel;
+        return floatChunk != null ? floatChunk[o] : intChunk[o];
+    }
+
+    protected final int getInt(int row, int channel) {
+        int o = offset(row) + channel;
+        return intChunk != null ? intChunk[o] : (int) floatChunk[o];
+    }
+
+    /**
+     * Returns all row indices ordered by {@code field}. Ties keep ascending row order.
+     */
+    public int[] sortedIndices(int field, boolean descending) {
+        int[] idx = new int[size];
+        double[] keys = keys(size);
+        for (int i = 0; i < size; i++) {
+            idx[i] = i;
+            keys[i] = key(i, field);
+        }
+        for (int i = size / 2 - 1; i >= 0; i--)
+            siftDown(idx, keys, i, size, descending);
+        heapSort(idx, keys, size, descending);
+        return idx;
+    }
+
+    /**
+     * Writes the indices of the best {@code k} rows by {@code field} into {@code out}, best first.
+     *
+     * @return number of indices written, {@code min(k, size())}
+     */
+    public int topK(int field, int k, boolean descending, int[] out) {
+        if (k < 0 || out.length < Math.min(k, size))
+            throw new IllegalArgumentException("Output array is too small for k=" + k);
+        int n = Math.min(k, size);
+        if (n == 0)
+            return 0;
+        double[] keys = keys(n);
+        // max-heap on rank: the root is the worst row kept so far
+        for (int i = 0; i < n; i++) {
+            out[i] = i;
+            keys[i] = key(i, field);
+        }
+        for (int i = n / 2 - 1; i >= 0; i--)
+            siftDown(out, keys, i, n, descending);
+        for (int i = n; i < size; i++) {
+            double v = key(i, field);
+            if (ranksBefore(v, i, keys[0], out[0], descending)) {
+                out[0] = i;
+                keys[0] = v;
+                siftDown(out, keys, 0, n, descending);
+            }
+        }
+        heapSort(out, keys, n, descending);
+        return n;
+    }
+
+    private int offset(int row) {
+        if (row < 0 || row >= size)
+            throw new IndexOutOfBoundsException("Index " + row + " out of range [0, " + size + ")");
+        if (row < chunkStart || row >= chunkStart + chunkLen)
+            load(row - row % chunkRows);
+        return (row - chunkStart) * channels;
+    }
+
+    private void load(int start) {
+        int r = columnVector ? start : 0;
+        int c = columnVector ? 0 : start;
+        // get() stops at the end of the Mat, so the last chunk may be partially filled
+        if (floatChunk != null)
+            mat.get(r, c, floatChunk);
+        else
+            mat.get(r, c, intChunk);
+        chunkStart = start;
+        chunkLen = Math.min(chunkRows, size - start);
+    }
+
+    private double[] keys(int n) {
+        if (keyScratch == null || keyScratch.length < n)
+            keyScratch = new double[n];
+        return keyScratch;
+    }
+
+    private static boolean ranksBefore(double ka, int ia, double kb, int ib, boolean descending) {
+        int c = Double.compare(ka, kb);
+        if (c != 0)
+            return descending ? c > 0 : c < 0;
+        return ia < ib;
+    }
+
+    private static void siftDown(int[] idx, double[] keys, int i, int n, boolean descending) {
+        while (true) {
+            int worst = i;
+            int l = 2 * i + 1;
+            int r = l + 1;
+            if (l < n && ranksBefore(keys[worst], idx[worst], keys[l], idx[l], descending))
+                worst = l;
+            if (r < n && ranksBefore(keys[worst], idx[worst], keys[r], idx[r], descending))
+                worst = r;
+            if (worst == i)
+                return;
+            swap(idx, keys, i, worst);
+            i = worst;
+        }
+    }
+
+    private static void heapSort(int[] idx, double[] keys, int n, boolean descending) {
+        for (int end = n - 1; end > 0; end--) {
+            swap(idx, keys, 0, end);
+            siftDown(idx, keys, 0, end, descending);
+        }
+    }
+
+    private static void swap(int[] idx, double[] keys, int a, int b) {
+        int ti = idx[a];
+        idx[a] = idx[b];
+        idx[b] = ti;
+        double tk = keys[a];
+        keys[a] = keys[b];
+        keys[b] = tk;
+    }
+}
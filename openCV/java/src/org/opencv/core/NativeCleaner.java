@@ -0,0 +1,157 @@
+package org.opencv.core;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Frees native objects once their Java wrapper becomes unreachable, replacing
+ * {@code finalize()}.
+ *
+ * Wrappers register their native address together with a {@link Deleter} when they are
+ * constructed. A phantom reference is queued by the GC after the wrapper is collected, and a
+ * single daemon thread then calls the deleter. Unlike finalizable objects, registered wrappers
+ * are reclaimed in one GC cycle and do not go through the finalizer queue, which is what used
+ * to pile up under high frame rates.
+ *
+ * Registration is also where {@link NativeMemoryTracker} hooks in when tracking is enabled.
+ */
+public final class NativeCleaner {
+
+    /**
+     * Releases one kind of native object.
+     */
+    public interface Deleter {
+        void delete(long addr);
+
+        /**
+         * Native bytes currently owned by the object, or 0 if unknown. Called under the
+         * cleaner lock, possibly while another thread is modifying the object, so the result
+         * is only an estimate, and must not be computed from memory the object may free.
+         */
+        long bytes(long addr);
+    }
+
+    static final class Ref extends PhantomReference<Object> {
+        final long addr;
+        final Deleter deleter;
+        final NativeMemoryTracker.Site site;
+        final long bornNanos;
+        final RefList list;
+        Ref prev;
+        Ref next;
+
+        Ref(Object owner, long addr, Deleter deleter, NativeMemoryTracker.Site site, RefList list) {
+            super(owner, queue);
+            this.addr = addr;
+            this.deleter = deleter;
+            this.site = site;
+            this.bornNanos = site != null ? System.nanoTime() : 0;
+            this.list = list;
+        }
+    }
+
+    // registered references must stay strongly reachable until they are processed
+    static final class RefList {
+        Ref head;
+
+        void add(Ref r) {
+            r.next = head;
+            if (head != null)
+                head.prev = r;
+            head = r;
+        }
+
+        void remove(Ref r) {
+            if (r.prev != null)
+                r.prev.next = r.next;
+            else
+                head = r.next;
+            if (r.next != null)
+                r.next.prev = r.prev;
+            r.prev = r.next = null;
+        }
+    }
+
+    private static final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+    private static final Logger logger = Logger.getLogger("org.opencv.core");
+
+    // tracked objects, and the NativeMemoryTracker statistics, are guarded by lock
+    static final Object lock = new Object();
+    static final RefList tracked = new RefList();
+
+    // untracked objects are spread over lists guarded by themselves, so threads allocating Mats
+    // rarely contend
+    private static final int STRIPES = 16;
+    private static final RefList[] untracked = new RefList[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++)
+            untracked[i] = new RefList();
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    try {
+                        clean((Ref) queue.remove());
+                    } catch (InterruptedException e) {
+                        // keep running, the cleaner lives as long as the process
+                    } catch (Throwable e) {
+                        logger.log(Level.SEVERE, "Failed to free a native object", e);
+                    }
+                }
+            }
+        }, "OpenCV-NativeCleaner");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private NativeCleaner() {}
+
+    /**
+     * Arranges for {@code deleter} to free {@code addr} after {@code owner} is collected.
+     * A {@code null} deleter only tracks the object; use it for wrappers that still free their
+     * native object in {@code finalize()}.
+     *
+     * @return {@code addr}, so it can be assigned directly to the wrapper field
+     */
+    public static long register(Object owner, long addr, Deleter deleter) {
+        NativeMemoryTracker.Site site = NativeMemoryTracker.onAllocate(owner);
+        if (deleter == null && site == null)
+            return addr;
+        if (site != null) {
+            Ref r = new Ref(owner, addr, deleter, site, tracked);
+            synchronized (lock) {
+                tracked.add(r);
+            }
+        } else {
+            // native objects are at least 8 byte aligned, mix the higher bits into the stripe
+            int h = (int) (addr >>> 3) ^ (int) (addr >>> 11);
+            RefList list = untracked[h & (STRIPES - 1)];
+            Ref r = new Ref(owner, addr, deleter, null, list);
+            synchronized (list) {
+                list.add(r);
+            }
+        }
+        return addr;
+    }
+
+    private static void clean(Ref r) {
+        if (r.site != null) {
+            synchronized (lock) {
+                tracked.remove(r);
+                // tracked objects are deleted under the lock so reports never read freed objects
+                boolean leaked = r.deleter != null && r.deleter.bytes(r.addr) > 0;
+                if (r.deleter != null)
+                    r.deleter.delete(r.addr);
+                NativeMemoryTracker.onFree(r.site, System.nanoTime() - r.bornNanos, leaked);
+            }
+            return;
+        }
+        synchronized (r.list) {
+            r.list.remove(r);
+        }
+        r.deleter.delete(r.addr);
+    }
+}
@@ -0,0 +1,216 @@
+package org.opencv.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Opt-in accounting of native objects owned by Java wrappers.
+ *
+ * While enabled, every wrapper registered with {@link NativeCleaner} is attributed to an
+ * allocation site: the first stack frame outside the OpenCV bindings, sampled every
+ * {@link #setSampleInterval(int) n-th} allocation because capturing stacks is expensive.
+ * Allocations that are not sampled are still counted, under an "(unsampled)" site per wrapper
+ * class.
+ *
+ * For each site the tracker keeps live and freed object counts, mean lifetime, live native bytes
+ * (rows * cols * elemSize for Mats with up to 2 dimensions, queried when a report is taken;
+ * Mats with more dimensions count as 0 bytes) and the number of
+ * {@link Mat}s that reached the garbage collector still holding data, i.e. that were never
+ * {@link Mat#release() released}. Objects created before tracking was enabled are not tracked.
+ */
+public final class NativeMemoryTracker {
+
+    public static final String UNSAMPLED = "(unsampled)";
+
+    static final class Site {
+        final String name;
+        long live;
+        long allocated;
+        long freed;
+        long leaked;
+        long lifetimeNanos;
+
+        Site(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Statistics of one allocation site at the time of {@link #snapshot()}.
+     */
+    public static final class SiteStats {
+        public final String site;
+        public final long liveObjects;
+        public final long liveBytes;
+        public final long allocated;
+        public final long freed;
+        public final long leaked;
+        public final double meanLifetimeMs;
+
+        SiteStats(Site s, long liveBytes) {
+            this.site = s.name;
+            this.liveObjects = s.live;
+            this.liveBytes = liveBytes;
+            this.allocated = s.allocated;
+            this.freed = s.freed;
+            this.leaked = s.leaked;
+            this.meanLifetimeMs = s.freed > 0 ? s.lifetimeNanos / 1e6 / s.freed : 0;
+        }
+
+        @Override
+        public String toString() {
+            return site + " [ liveBytes=" + liveBytes + ", live=" + liveObjects + ", allocated=" + allocated
+                    + ", freed=" + freed + ", leaked=" + leaked + ", meanLifetimeMs=" + meanLifetimeMs + " ]";
+        }
+    }
+
+    private static volatile boolean enabled;
+    private static volatile int sampleInterval = 16;
+    private static int sampleCounter;
+    private static final HashMap<String, Site> sites = new HashMap<String, Site>();
+
+    private NativeMemoryTracker() {}
+
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Captures the allocation stack for every {@code interval}-th tracked object; 1 samples all.
+     */
+    public static void setSampleInterval(int interval) {
+        if (interval <= 0)
+            throw new IllegalArgumentException("Sample interval must be positive: " + interval);
+        sampleInterval = interval;
+    }
+
+    /**
+     * Forgets all collected statistics. Objects that are still alive keep being tracked.
+     */
+    public static void reset() {
+        synchronized (NativeCleaner.lock) {
+            for (Site s : sites.values()) {
+                s.allocated = s.live;
+                s.freed = 0;
+                s.leaked = 0;
+                s.lifetimeNanos = 0;
+            }
+        }
+    }
+
+    /**
+     * Per-site statistics sorted by live bytes, then by live objects, largest first.
+     *
+     * Live bytes are approximate: the Mat headers are read while other threads may be
+     * reallocating them, so a Mat resized during the snapshot can be counted with either its old
+     * or its new size. Only the fields stored in the header itself are read, never the size
+     * array that a reallocation can free, so Mats with more than 2 dimensions are not counted.
+     * Object counts are exact.
+     */
+    public static List<SiteStats> snapshot() {
+        HashMap<Site, long[]> bytes = new HashMap<Site, long[]>();
+        ArrayList<SiteStats> result = new ArrayList<SiteStats>();
+        synchronized (NativeCleaner.lock) {
+            for (NativeCleaner.Ref r = NativeCleaner.tracked.head; r != null; r = r.next) {
+                if (r.site == null || r.deleter == null)
+                    continue;
+                long[] b = bytes.get(r.site);
+                if (b == null) {
+                    b = new long[1];
+                    bytes.put(r.site, b);
+                }
+                b[0] += r.deleter.bytes(r.addr);
+            }
+            for (Site s : sites.values()) {
+                long[] b = bytes.get(s);
+                result.add(new SiteStats(s, b != null ? b[0] : 0));
+            }
+        }
+        Collections.sort(result, new Comparator<SiteStats>() {
+            @Override
+            public int compare(SiteStats a, SiteStats b) {
+                if (a.liveBytes != b.liveBytes)
+                    return a.liveBytes > b.liveBytes ? -1 : 1;
+                if (a.liveObjects != b.liveObjects)
+                    return a.liveObjects > b.liveObjects ? -1 : 1;
+                return a.site.compareTo(b.site);
+            }
+        });
+        return result;
+    }
+
+    public static long liveBytes() {
+        long total = 0;
+        for (SiteStats s : snapshot())
+            total += s.liveBytes;
+        return total;
+    }
+
+    /**
+     * Human readable report of the {@code maxSites} sites holding the most native memory.
+     */
+    public static String report(int maxSites) {
+        List<SiteStats> stats = snapshot();
+        long totalBytes = 0, totalLive = 0, totalLeaked = 0;
+        for (SiteStats s : stats) {
+            totalBytes += s.liveBytes;
+            totalLive += s.liveObjects;
+            totalLeaked += s.leaked;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("Native memory: ").append(totalBytes).append(" bytes in ").append(totalLive)
+          .append(" live objects, ").append(totalLeaked).append(" collected without release\n");
+        for (int i = 0; i < stats.size() && i < maxSites; i++)
+            sb.append("  ").append(stats.get(i)).append('\n');
+        return sb.toString();
+    }
+
+    static Site onAllocate(Object owner) {
+        if (!enabled)
+            return null;
+        boolean sample;
+        synchronized (NativeCleaner.lock) {
+            sample = ++sampleCounter >= sampleInterval;
+            if (sample)
+                sampleCounter = 0;
+        }
+        String cls = owner.getClass().getSimpleName();
+        String name = cls + " @ " + (sample ? callerFrame() : UNSAMPLED);
+        synchronized (NativeCleaner.lock) {
+            Site s = sites.get(name);
+            if (s == null) {
+                s = new Site(name);
+                sites.put(name, s);
+            }
+            s.live++;
+            s.allocated++;
+            return s;
+        }
+    }
+
+    // called with NativeCleaner.lock held
+    static void onFree(Site s, long lifetimeNanos, boolean leaked) {
+        s.live--;
+        s.freed++;
+        s.lifetimeNanos += lifetimeNanos;
+        if (leaked)
+            s.leaked++;
+    }
+
+    private static String callerFrame() {
+        StackTraceElement[] stack = new Throwable().getStackTrace();
+        for (StackTraceElement e : stack) {
+            String c = e.getClassName();
+            if (!c.startsWith("org.opencv.") || c.startsWith("org.opencv.android."))
+                return e.toString();
+        }
+        return stack.length > 0 ? stack[stack.length - 1].toString() : UNSAMPLED;
+    }
+}
@@ -0,0 +1,172 @@
+package org.opencv.core;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of 2D float points kept in a single primitive array (x0, y0, x1, y1, ...).
+ *
+ * The layout matches {@link MatOfPoint2f}, so moving points between Java and native code is one
+ * bulk copy instead of one {@link Point} object per element. The buffer owns a {@link MatOfPoint2f}
+ * and a {@link MatOfPoint} that are reused across calls; call {@link #release()} when done to
+ * free their native memory deterministically.
+ */
+public class PointBufferF {
+    private static final int _channels = 2;
+
+    private float[] data;
+    private int size;
+    private int[] intScratch;
+    private MatOfPoint2f mat2f;
+    private MatOfPoint mat;
+
+    public PointBufferF() {
+        this(64);
+    }
+
+    public PointBufferF(int capacity) {
+        data = new float[Math.max(capacity, 1) * _channels];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity * _channels > data.length)
+            data = Arrays.copyOf(data, Math.max(capacity, size * 2) * _channels);
+    }
+
+    public float x(int i) {
+        checkIndex(i);
+        return data[i * _channels];
+    }
+
+    public float y(int i) {
+        checkIndex(i);
+        return data[i * _channels + 1];
+    }
+
+    public void set(int i, float x, float y) {
+        checkIndex(i);
+        data[i * _channels] = x;
+        data[i * _channels + 1] = y;
+    }
+
+    public void add(float x, float y) {
+        ensureCapacity(size + 1);
+        data[size * _channels] = x;
+        data[size * _channels + 1] = y;
+        size++;
+    }
+
+    /**
+     * Raw interleaved storage; only the first {@code size() * 2} entries are meaningful.
+     */
+    public float[] array() {
+        return data;
+    }
+
+    /**
+     * Replaces the contents with the points of a CV_32FC2 or CV_32SC2 point vector.
+     */
+    public PointBufferF fromMat(Mat m) {
+        if (m.empty()) {
+            size = 0;
+            return this;
+        }
+        int num = m.checkVector(_channels, CvType.CV_32F);
+        if (num >= 0) {
+            size = 0;
+            ensureCapacity(num);
+            m.get(0, 0, data);
+        } else {
+            num = m.checkVector(_channels, CvType.CV_32S);
+            if (num < 0)
+                throw new IllegalArgumentException("Incompatible Mat");
+            size = 0;
+            ensureCapacity(num);
+            if (intScratch == null || intScratch.length < num * _channels)
+                intScratch = new int[data.length];
+            m.get(0, 0, intScratch);
+            for (int i = 0; i < num * _channels; i++)
+                data[i] = intScratch[i];
+        }
+        size = num;
+        return this;
+    }
+
+    /**
+     * Copies the points into the buffer-owned {@link MatOfPoint2f} and returns it. The returned Mat
+     * stays valid until the next call or {@link #release()}.
+     */
+    public MatOfPoint2f toMatOfPoint2f() {
+        MatOfPoint2f m = matOfPoint2f();
+        m.create(size, 1, CvType.CV_32FC2);
+        if (size > 0)
+            m.put(0, 0, data);
+        return m;
+    }
+
+    /**
+     * Copies the points, truncated to integers, into the buffer-owned {@link MatOfPoint} and
+     * returns it. The returned Mat stays valid until the next call or {@link #release()}.
+     */
+    public MatOfPoint toMatOfPoint() {
+        MatOfPoint m = matOfPoint();
+        m.create(size, 1, CvType.CV_32SC2);
+        if (size > 0) {
+            if (intScratch == null || intScratch.length < size * _channels)
+                intScratch = new int[data.length];
+            for (int i = 0; i < size * _channels; i++)
+                intScratch[i] = (int) data[i];
+            m.put(0, 0, intScratch);
+        }
+        return m;
+    }
+
+    /**
+     * Returns the buffer-owned {@link MatOfPoint2f} without copying the current contents into it.
+     * Intended as an output argument of a native call followed by {@link #fromMat(Mat)};
+     * keeping the same Mat lets native code reuse its memory from frame to frame.
+     */
+    public MatOfPoint2f matOfPoint2f() {
+        if (mat2f == null)
+            mat2f = new MatOfPoint2f();
+        return mat2f;
+    }
+
+    /**
+     * Returns the buffer-owned {@link MatOfPoint} without copying the current contents into it.
+     * Intended as an output argument of a native call followed by {@link #fromMat(Mat)};
+     * keeping the same Mat lets native code reuse its memory from frame to frame.
+     */
+    public MatOfPoint matOfPoint() {
+        if (mat == null)
+            mat = new MatOfPoint();
+        return mat;
+    }
+
+    public void release() {
+        if (mat2f != null) {
+            mat2f.release();
+            mat2f = null;
+        }
+        if (mat != null) {
+            mat.release();
+            mat = null;
+        }
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("Index " + i + " out of range [0, " + size + ")");
+    }
+}
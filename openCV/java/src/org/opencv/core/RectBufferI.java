@@ -0,0 +1,149 @@
+package org.opencv.core;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of integer rectangles kept in a single primitive array (x, y, width, height per
+ * rectangle).
+ *
+ * The layout matches {@link MatOfRect}, so moving rectangles between Java and native code is one
+ * bulk copy instead of one {@link Rect} object per element. The buffer owns a {@link MatOfRect}
+ * that is reused across calls; call {@link #release()} when done to free its native memory
+ * deterministically.
+ */
+public class RectBufferI {
+    private static final int _channels = 4;
+
+    private int[] data;
+    private int size;
+    private MatOfRect mat;
+
+    public RectBufferI() {
+        this(16);
+    }
+
+    public RectBufferI(int capacity) {
+        data = new int[Math.max(capacity, 1) * _channels];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity * _channels > data.length)
+            data = Arrays.copyOf(data, Math.max(capacity, size * 2) * _channels);
+    }
+
+    public int x(int i) {
+        checkIndex(i);
+        return data[i * _channels];
+    }
+
+    public int y(int i) {
+        checkIndex(i);
+        return data[i * _channels + 1];
+    }
+
+    public int width(int i) {
+        checkIndex(i);
+        return data[i * _channels + 2];
+    }
+
+    public int height(int i) {
+        checkIndex(i);
+        return data[i * _channels + 3];
+    }
+
+    public int area(int i) {
+        checkIndex(i);
+        return data[i * _channels + 2] * data[i * _channels + 3];
+    }
+
+    public void set(int i, int x, int y, int width, int height) {
+        checkIndex(i);
+        int o = i * _channels;
+        data[o] = x;
+        data[o + 1] = y;
+        data[o + 2] = width;
+        data[o + 3] = height;
+    }
+
+    public void add(int x, int y, int width, int height) {
+        ensureCapacity(size + 1);
+        int o = size * _channels;
+        data[o] = x;
+        data[o + 1] = y;
+        data[o + 2] = width;
+        data[o + 3] = height;
+        size++;
+    }
+
+    /**
+     * Raw interleaved storage; only the first {@code size() * 4} entries are meaningful.
+     */
+    public int[] array() {
+        return data;
+    }
+
+    /**
+     * Replaces the contents with the rectangles of a CV_32SC4 vector.
+     */
+    public RectBufferI fromMat(Mat m) {
+        if (m.empty()) {
+            size = 0;
+            return this;
+        }
+        int num = m.checkVector(_channels, CvType.CV_32S);
+        if (num < 0)
+            throw new IllegalArgumentException("Incompatible Mat");
+        size = 0;
+        ensureCapacity(num);
+        m.get(0, 0, data);
+        size = num;
+        return this;
+    }
+
+    /**
+     * Copies the rectangles into the buffer-owned {@link MatOfRect} and returns it. The returned
+     * Mat stays valid until the next call or {@link #release()}.
+     */
+    public MatOfRect toMatOfRect() {
+        MatOfRect m = matOfRect();
+        m.create(size, 1, CvType.CV_32SC4);
+        if (size > 0)
+            m.put(0, 0, data);
+        return m;
+    }
+
+    /**
+     * Returns the buffer-owned {@link MatOfRect} without copying the current contents into it.
+     * Intended as an output argument of a native call followed by {@link #fromMat(Mat)};
+     * keeping the same Mat lets native code reuse its memory from frame to frame.
+     */
+    public MatOfRect matOfRect() {
+        if (mat == null)
+            mat = new MatOfRect();
+        return mat;
+    }
+
+    public void release() {
+        if (mat != null) {
+            mat.release();
+            mat = null;
+        }
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("Index " + i + " out of range [0, " + size + ")");
+    }
+}
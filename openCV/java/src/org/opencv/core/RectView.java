@@ -0,0 +1,52 @@
+package org.opencv.core;
+
+/**
+ * Lazy read-only view over a {@link MatOfRect}, see {@link MatRowView}. Besides the stored
+ * fields it can be ordered by {@link #AREA}.
+ */
+public class RectView extends MatRowView {
+    public static final int X = 0;
+    public static final int Y = 1;
+    public static final int WIDTH = 2;
+    public static final int HEIGHT = 3;
+    public static final int AREA = 4;
+
+    public RectView(MatOfRect m) {
+        this(m, DEFAULT_CHUNK_ROWS);
+    }
+
+    public RectView(MatOfRect m, int chunkRows) {
+        super(m, 4, CvType.CV_32S, chunkRows);
+    }
+
+    public int x(int i) {
+        return getInt(i, X);
+    }
+
+    public int y(int i) {
+        return getInt(i, Y);
+    }
+
+    public int width(int i) {
+        return getInt(i, WIDTH);
+    }
+
+    public int height(int i) {
+        return getInt(i, HEIGHT);
+    }
+
+    public int area(int i) {
+        return width(i) * height(i);
+    }
+
+    public Rect get(int i) {
+        return new Rect(x(i), y(i), width(i), height(i));
+    }
+
+    @Override
+    protected double key(int row, int field) {
+        if (field == AREA)
+            return area(row);
+        return super.key(row, field);
+    }
+}
@@ -0,0 +1,57 @@
+package org.opencv.core;
+
+/**
+ * Lazy read-only view over a {@link MatOfRotatedRect}, see {@link MatRowView}. Besides the
+ * stored fields it can be ordered by {@link #AREA}.
+ */
+public class RotatedRectView extends MatRowView {
+    public static final int CENTER_X = 0;
+    public static final int CENTER_Y = 1;
+    public static final int WIDTH = 2;
+    public static final int HEIGHT = 3;
+    public static final int ANGLE = 4;
+    public static final int AREA = 5;
+
+    public RotatedRectView(MatOfRotatedRect m) {
+        this(m, DEFAULT_CHUNK_ROWS);
+    }
+
+    public RotatedRectView(MatOfRotatedRect m, int chunkRows) {
+        super(m, 5, CvType.CV_32F, chunkRows);
+    }
+
+    public float centerX(int i) {
+        return getFloat(i, CENTER_X);
+    }
+
+    public float centerY(int i) {
+        return getFloat(i, CENTER_Y);
+    }
+
+    public float width(int i) {
+        return getFloat(i, WIDTH);
+    }
+
+    public float height(int i) {
+        return getFloat(i, HEIGHT);
+    }
+
+    public float angle(int i) {
+        return getFloat(i, ANGLE);
+    }
+
+    public float area(int i) {
+        return width(i) * height(i);
+    }
+
+    public RotatedRect get(int i) {
+        return new RotatedRect(new Point(centerX(i), centerY(i)), new Size(width(i), height(i)), angle(i));
+    }
+
+    @Override
+    protected double key(int row, int field) {
+        if (field == AREA)
+            return area(row);
+        return super.key(row, field);
+    }
+}
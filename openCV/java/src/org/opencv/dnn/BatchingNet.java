@@ -0,0 +1,409 @@
+package org.opencv.dnn;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.opencv.core.Mat;
+
+/**
+ * Combines inference requests from several threads into batched forward passes of one
+ * {@link Net}.
+ *
+ * Each {@link #submit(Mat)} queues an image and returns a {@link Future} of the network outputs
+ * for that image. A dedicated thread takes the first queued request, then keeps collecting until
+ * {@code maxBatch} requests are queued or {@code maxDelayMicros} have passed since the first one
+ * arrived. The images are packed into one blob with
+ * {@link Dnn#blobFromImagesWithParams(List, Mat, Image2BlobParams)}, forwarded once, and every
+ * output blob is split along its first dimension, so each request receives outputs with a batch
+ * dimension of 1, the same as a forward pass of that image alone would produce.
+ *
+ * {@code maxDelayMicros} trades latency for throughput: 0 forwards whatever is queued at once,
+ * larger values wait for fuller batches. {@link #getMeanBatchSize()} and
+ * {@link #getMeanQueueMillis()} show the effect of the setting. The network must accept a
+ * variable batch size; models exported with a fixed batch of 1 need {@code maxBatch} 1.
+ *
+ * The Net is used by the batching thread only and must not be used elsewhere while the
+ * BatchingNet is running. An exception from the network fails the requests of that batch only;
+ * an Error also fails them, then closes the BatchingNet, failing the queued requests and any
+ * later submit().
+ */
+public class BatchingNet implements AutoCloseable {
+
+    private final class Request implements Future<List<Mat>> {
+        private final Mat image;
+        private final long enqueued = System.nanoTime();
+        private List<Mat> outputs;
+        private Throwable failure;
+        private boolean done;
+        private boolean cancelled;
+
+        Request(Mat image) {
+            this.image = image;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            synchronized (lock) {
+                if (!queue.remove(this))
+                    return false; // already taken into a batch, or done
+                lock.notifyAll(); // the batching thread may be waiting on this request's deadline
+            }
+            synchronized (this) {
+                cancelled = true;
+                done = true;
+                notifyAll();
+            }
+            return true;
+        }
+
+        @Override
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public synchronized boolean isDone() {
+            return done;
+        }
+
+        @Override
+        public synchronized List<Mat> get() throws InterruptedException, ExecutionException {
+            while (!done)
+                wait();
+            return result();
+        }
+
+        @Override
+        public synchronized List<Mat> get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (!done) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                    throw new TimeoutException();
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return result();
+        }
+
+        private List<Mat> result() throws ExecutionException {
+            if (cancelled)
+                throw new CancellationException();
+            if (failure != null)
+                throw new ExecutionException(failure);
+            return outputs;
+        }
+
+        synchronized void complete(List<Mat> outputs, Throwable failure) {
+            this.outputs = outputs;
+            this.failure = failure;
+            done = true;
+            notifyAll();
+        }
+    }
+
+    private final Net net;
+    private final Image2BlobParams params;
+    private final List<String> outputNames;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final Object lock = new Object();
+    private final ArrayDeque<Request> queue = new ArrayDeque<Request>();
+    private final Thread thread;
+    private boolean closed;
+
+    // batching thread only
+    private final ArrayList<Request> batch = new ArrayList<Request>();
+    private final ArrayList<Mat> images = new ArrayList<Mat>();
+    private final ArrayList<Mat> outputs = new ArrayList<Mat>();
+    private final Mat blob = new Mat();
+
+    // guarded by lock
+    private long requests;
+    private long batches;
+    private long failedBatches;
+    private int largestBatch;
+    private long queueNanos;
+    private long maxQueueNanos;
+    private long forwardNanos;
+    private final long[] batchSizes;
+
+    /**
+     * @param params preprocessing applied to every image, see {@link Image2BlobParams}
+     * @param outputNames outputs to compute, or null for the unconnected output layers
+     * @param maxBatch largest number of requests forwarded together
+     * @param maxDelayMicros longest time the first request of a batch waits for more requests
+     */
+    public BatchingNet(Net net, Image2BlobParams params, List<String> outputNames, int maxBatch, long maxDelayMicros) {
+        if (net == null || params == null)
+            throw new IllegalArgumentException("net and params are required");
+        if (maxBatch < 1)
+            throw new IllegalArgumentException("maxBatch must be positive: " + maxBatch);
+        if (maxDelayMicros < 0)
+            throw new IllegalArgumentException("maxDelayMicros must not be negative: " + maxDelayMicros);
+        this.net = net;
+        this.params = params;
+        this.outputNames = new ArrayList<String>(outputNames != null ? outputNames : net.getUnconnectedOutLayersNames());
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = maxDelayMicros * 1000;
+        batchSizes = new long[maxBatch + 1];
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                batchLoop();
+            }
+        }, "OpenCV-Batch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues {@code image} for inference. The image must not be modified until the returned
+     * future is done. The outputs are in the order of the output names and belong to the caller.
+     */
+    public Future<List<Mat>> submit(Mat image) {
+        if (image == null || image.empty())
+            throw new IllegalArgumentException("image is empty");
+        Request r = new Request(image);
+        synchronized (lock) {
+            if (closed)
+                throw new IllegalStateException("BatchingNet has been closed");
+            queue.addLast(r);
+            requests++;
+            lock.notifyAll();
+        }
+        return r;
+    }
+
+    /**
+     * Submits {@code image} and waits for its outputs.
+     */
+    public List<Mat> forward(Mat image) throws InterruptedException, ExecutionException {
+        return submit(image).get();
+    }
+
+    /**
+     * Stops the batching thread after the batch in progress. Requests still queued fail with an
+     * IllegalStateException.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            // the batching thread may have closed already after an Error, the blob is still freed
+            closed = true;
+            lock.notifyAll();
+        }
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        blob.release();
+    }
+
+    public long getRequestCount() {
+        synchronized (lock) {
+            return requests;
+        }
+    }
+
+    public long getBatchCount() {
+        synchronized (lock) {
+            return batches;
+        }
+    }
+
+    public long getFailedBatchCount() {
+        synchronized (lock) {
+            return failedBatches;
+        }
+    }
+
+    public double getMeanBatchSize() {
+        synchronized (lock) {
+            long items = 0;
+            for (int i = 1; i < batchSizes.length; i++)
+                items += i * batchSizes[i];
+            return batches > 0 ? (double) items / batches : 0;
+        }
+    }
+
+    public int getLargestBatchSize() {
+        synchronized (lock) {
+            return largestBatch;
+        }
+    }
+
+    /**
+     * Number of batches of each size; element {@code i} counts the batches of {@code i} requests.
+     */
+    public long[] getBatchSizeHistogram() {
+        synchronized (lock) {
+            return batchSizes.clone();
+        }
+    }
+
+    /**
+     * Mean time from {@link #submit(Mat)} until the request's batch was started.
+     */
+    public double getMeanQueueMillis() {
+        synchronized (lock) {
+            long items = 0;
+            for (int i = 1; i < batchSizes.length; i++)
+                items += i * batchSizes[i];
+            return items > 0 ? queueNanos / 1e6 / items : 0;
+        }
+    }
+
+    public double getMaxQueueMillis() {
+        synchronized (lock) {
+            return maxQueueNanos / 1e6;
+        }
+    }
+
+    /**
+     * Mean duration of a batch, from packing the blob to splitting the outputs.
+     */
+    public double getMeanForwardMillis() {
+        synchronized (lock) {
+            return batches > 0 ? forwardNanos / 1e6 / batches : 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BatchingNet [ maxBatch=" + maxBatch + ", maxDelay=" + maxDelayNanos / 1000 + "us"
+                + ", requests=" + getRequestCount() + ", batches=" + getBatchCount()
+                + ", batch mean=" + String.format("%.2f", getMeanBatchSize()) + " max=" + getLargestBatchSize()
+                + ", queue mean=" + String.format("%.2f", getMeanQueueMillis())
+                + "ms max=" + String.format("%.2f", getMaxQueueMillis())
+                + "ms, forward mean=" + String.format("%.2f", getMeanForwardMillis()) + "ms ]";
+    }
+
+    private void batchLoop() {
+        try {
+            while (true) {
+                long start;
+                synchronized (lock) {
+                    try {
+                        while (!closed) {
+                            if (queue.isEmpty()) {
+                                lock.wait();
+                                continue;
+                            }
+                            // cancel() can remove the head while waiting, so the deadline follows
+                            // the current oldest request and an emptied queue starts over
+                            long remaining = queue.peekFirst().enqueued + maxDelayNanos - System.nanoTime();
+                            if (queue.size() >= maxBatch || remaining <= 0)
+                                break;
+                            TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                        }
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                    if (closed)
+                        return;
+                    start = System.nanoTime();
+                    while (batch.size() < maxBatch && !queue.isEmpty()) {
+                        Request r = queue.pollFirst();
+                        batch.add(r);
+                        long waited = start - r.enqueued;
+                        queueNanos += waited;
+                        if (waited > maxQueueNanos)
+                            maxQueueNanos = waited;
+                    }
+                }
+                runBatch(start);
+            }
+        } finally {
+            // also reached when an Error ends the thread: nothing would process later requests
+            synchronized (lock) {
+                closed = true;
+                Request r;
+                while ((r = queue.pollFirst()) != null)
+                    r.complete(null, new IllegalStateException("BatchingNet has been closed"));
+            }
+        }
+    }
+
+    private void runBatch(long start) {
+        int n = batch.size();
+        Throwable failure = null;
+        try {
+            images.clear();
+            for (Request r : batch)
+                images.add(r.image);
+            Dnn.blobFromImagesWithParams(images, blob, params);
+            net.setInput(blob);
+            outputs.clear();
+            net.forward(outputs, outputNames);
+            List<List<Mat>> split = new ArrayList<List<Mat>>(n);
+            for (int i = 0; i < n; i++)
+                split.add(new ArrayList<Mat>(outputs.size()));
+            for (Mat out : outputs) {
+                splitBatch(out, n, split);
+                out.release();
+            }
+            for (int i = 0; i < n; i++)
+                batch.get(i).complete(Collections.unmodifiableList(split.get(i)), null);
+        } catch (Throwable e) {
+            failure = e;
+            for (Request r : batch)
+                if (!r.isDone())
+                    r.complete(null, e);
+        } finally {
+            images.clear();
+            batch.clear();
+        }
+        long elapsed = System.nanoTime() - start;
+        synchronized (lock) {
+            batches++;
+            batchSizes[n]++;
+            if (n > largestBatch)
+                largestBatch = n;
+            forwardNanos += elapsed;
+            if (failure != null)
+                failedBatches++;
+        }
+        // the batch has been failed; an Error still ends the batching thread
+        if (failure instanceof Error)
+            throw (Error) failure;
+    }
+
+    // appends item i of the batch blob, with a batch dimension of 1, to split.get(i)
+    private static void splitBatch(Mat out, int n, List<List<Mat>> split) {
+        int dims = out.dims();
+        int[] shape = new int[Math.max(dims, 2)];
+        for (int d = 0; d < dims; d++)
+            shape[d] = out.size(d);
+        if (dims < 2)
+            shape[1] = 1;
+        if (shape[0] != n)
+            throw new IllegalStateException("Output batch size " + shape[0] + " does not match the input batch size " + n);
+        shape[0] = 1;
+        Mat rows = out.reshape(1, n);
+        try {
+            for (int i = 0; i < n; i++) {
+                Mat row = rows.row(i);
+                Mat item = row.reshape(out.channels(), shape);
+                split.get(i).add(item.clone());
+                item.release();
+                row.release();
+            }
+        } finally {
+            rows.release();
+        }
+    }
+}
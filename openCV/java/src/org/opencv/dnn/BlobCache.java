@@ -0,0 +1,294 @@
+package org.opencv.dnn;
+
+import java.util.ArrayList;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Cache of network input blobs for images that are fed to several models or reprocessed
+ * unchanged.
+ *
+ * {@link #blobFromImage(Mat, long, Image2BlobParams)} returns the blob
+ * {@link Dnn#blobFromImageWithParams(Mat, Mat, Image2BlobParams)} would compute, keyed by the
+ * source Mat, a caller-supplied version of its contents and the preprocessing parameters:
+ *
+ * - the same image, version and parameters return the cached blob without any work,
+ * - the same image and version with other parameters but the same target size share one resize
+ *   of the source, so models with the same input size but different mean, scale or channel order
+ *   only pay for the normalization,
+ * - otherwise the blob is computed into a preallocated Mat, reusing the least recently used
+ *   entry's memory once the cache is full.
+ *
+ * Native code can write a Mat without Java noticing, so the version must change whenever the
+ * image contents change; a frame counter is the usual choice. Only the parameters visible from
+ * Java are part of the key; the data layout and padding mode are assumed to be their defaults
+ * (NCHW, no padding), as Image2BlobParams created from Java always has them.
+ *
+ * Returned blobs belong to the cache and stay valid until the entry is evicted or the cache is
+ * closed. The cache is not thread safe.
+ */
+public class BlobCache implements AutoCloseable {
+
+    private static final class Key {
+        long image;
+        long data;
+        int rows;
+        int cols;
+        int type;
+        long version;
+
+        void set(Mat m, long version) {
+            image = m.getNativeObjAddr();
+            data = m.dataAddr();
+            rows = m.rows();
+            cols = m.cols();
+            type = m.type();
+            this.version = version;
+        }
+
+        boolean matches(Key o) {
+            return image == o.image && data == o.data && rows == o.rows && cols == o.cols && type == o.type
+                    && version == o.version;
+        }
+    }
+
+    private static final class BlobEntry {
+        final Key source = new Key();
+        final double[] params = new double[PARAM_COUNT];
+        final Mat blob = new Mat();
+        long lastUse;
+    }
+
+    private static final class ResizeEntry {
+        final Key source = new Key();
+        int width;
+        int height;
+        final Mat resized = new Mat();
+        long lastUse;
+    }
+
+    // scale[4], width, height, mean[4], swapRB, ddepth, border[4]
+    private static final int PARAM_COUNT = 16;
+
+    private final int maxBlobs;
+    private final ArrayList<BlobEntry> blobs = new ArrayList<BlobEntry>();
+    private final ArrayList<ResizeEntry> resizes = new ArrayList<ResizeEntry>();
+    private final Key key = new Key();
+    private final double[] params = new double[PARAM_COUNT];
+    private long clock;
+
+    private long requests;
+    private long blobHits;
+    private long resizeHits;
+    private long bytesSaved;
+    private long bytesComputed;
+
+    public BlobCache() {
+        this(8);
+    }
+
+    /**
+     * @param maxBlobs number of blobs kept; the same number of resized images is kept
+     */
+    public BlobCache(int maxBlobs) {
+        if (maxBlobs < 1)
+            throw new IllegalArgumentException("maxBlobs must be positive: " + maxBlobs);
+        this.maxBlobs = maxBlobs;
+    }
+
+    /**
+     * Returns the blob of {@code image} for {@code params}, computing it only if it is not cached.
+     *
+     * @param version identifies the contents of {@code image}; must change when they change
+     */
+    public Mat blobFromImage(Mat image, long version, Image2BlobParams params) {
+        if (image == null || image.empty())
+            throw new IllegalArgumentException("image is empty");
+        if (params == null)
+            throw new IllegalArgumentException("params is null");
+        requests++;
+        clock++;
+        key.set(image, version);
+        readParams(params, this.params);
+
+        BlobEntry entry = null;
+        for (BlobEntry e : blobs) {
+            if (e.source.matches(key) && sameParams(e.params, this.params)) {
+                entry = e;
+                break;
+            }
+        }
+        if (entry != null) {
+            blobHits++;
+            long saved = bytes(entry.blob);
+            ResizeEntry r = findResize(key, this.params);
+            if (r != null)
+                saved += bytes(r.resized);
+            bytesSaved += saved;
+            entry.lastUse = clock;
+            return entry.blob;
+        }
+
+        Mat input = image;
+        int width = (int) this.params[4], height = (int) this.params[5];
+        if (width > 0 && height > 0 && (width != image.cols() || height != image.rows())) {
+            ResizeEntry r = findResize(key, this.params);
+            if (r != null) {
+                resizeHits++;
+                bytesSaved += bytes(r.resized);
+            } else {
+                r = resizes.size() < maxBlobs ? newResizeEntry() : leastRecentlyUsedResize();
+                r.source.set(image, version);
+                r.width = width;
+                r.height = height;
+                // the same interpolation blobFromImage uses without padding
+                Imgproc.resize(image, r.resized, new Size(width, height), 0, 0, Imgproc.INTER_LINEAR);
+                bytesComputed += bytes(r.resized);
+            }
+            r.lastUse = clock;
+            input = r.resized;
+        }
+
+        entry = blobs.size() < maxBlobs ? newBlobEntry() : leastRecentlyUsedBlob();
+        entry.source.set(image, version);
+        System.arraycopy(this.params, 0, entry.params, 0, PARAM_COUNT);
+        entry.lastUse = clock;
+        Dnn.blobFromImageWithParams(input, entry.blob, params);
+        bytesComputed += bytes(entry.blob);
+        return entry.blob;
+    }
+
+    /**
+     * Forgets every entry computed from {@code image}, e.g. before its memory is reused for
+     * other contents under the same version.
+     */
+    public void invalidate(Mat image) {
+        long addr = image.getNativeObjAddr();
+        for (BlobEntry e : blobs)
+            if (e.source.image == addr)
+                e.source.image = 0;
+        for (ResizeEntry r : resizes)
+            if (r.source.image == addr)
+                r.source.image = 0;
+    }
+
+    /**
+     * Frees all cached blobs and resized images.
+     */
+    @Override
+    public void close() {
+        for (BlobEntry e : blobs)
+            e.blob.release();
+        for (ResizeEntry r : resizes)
+            r.resized.release();
+        blobs.clear();
+        resizes.clear();
+    }
+
+    public long getRequestCount() {
+        return requests;
+    }
+
+    /**
+     * Requests answered with a cached blob.
+     */
+    public long getBlobHitCount() {
+        return blobHits;
+    }
+
+    /**
+     * Requests that computed a blob from a cached resize.
+     */
+    public long getResizeHitCount() {
+        return resizeHits;
+    }
+
+    public double getHitRate() {
+        return requests > 0 ? (double) blobHits / requests : 0;
+    }
+
+    /**
+     * Bytes of blobs and resized images that were reused instead of being computed again.
+     */
+    public long getBytesSaved() {
+        return bytesSaved;
+    }
+
+    /**
+     * Bytes of blobs and resized images computed.
+     */
+    public long getBytesComputed() {
+        return bytesComputed;
+    }
+
+    @Override
+    public String toString() {
+        return "BlobCache [ entries=" + blobs.size() + "/" + maxBlobs + ", requests=" + requests
+                + ", blob hits=" + blobHits + ", resize hits=" + resizeHits
+                + ", hit rate=" + String.format("%.1f", 100 * getHitRate())
+                + "%, saved=" + bytesSaved / 1024 + "KiB, computed=" + bytesComputed / 1024 + "KiB ]";
+    }
+
+    private ResizeEntry findResize(Key source, double[] p) {
+        for (ResizeEntry r : resizes)
+            if (r.source.matches(source) && r.width == (int) p[4] && r.height == (int) p[5])
+                return r;
+        return null;
+    }
+
+    private BlobEntry newBlobEntry() {
+        BlobEntry e = new BlobEntry();
+        blobs.add(e);
+        return e;
+    }
+
+    private ResizeEntry newResizeEntry() {
+        ResizeEntry r = new ResizeEntry();
+        resizes.add(r);
+        return r;
+    }
+
+    private BlobEntry leastRecentlyUsedBlob() {
+        BlobEntry lru = blobs.get(0);
+        for (BlobEntry e : blobs)
+            if (e.lastUse < lru.lastUse)
+                lru = e;
+        return lru;
+    }
+
+    private ResizeEntry leastRecentlyUsedResize() {
+        ResizeEntry lru = resizes.get(0);
+        for (ResizeEntry r : resizes)
+            if (r.lastUse < lru.lastUse)
+                lru = r;
+        return lru;
+    }
+
+    private static void readParams(Image2BlobParams params, double[] dst) {
+        Scalar scale = params.get_scalefactor();
+        Size size = params.get_size();
+        Scalar mean = params.get_mean();
+        Scalar border = params.get_borderValue();
+        System.arraycopy(scale.val, 0, dst, 0, 4);
+        dst[4] = size.width;
+        dst[5] = size.height;
+        System.arraycopy(mean.val, 0, dst, 6, 4);
+        dst[10] = params.get_swapRB() ? 1 : 0;
+        dst[11] = params.get_ddepth();
+        System.arraycopy(border.val, 0, dst, 12, 4);
+    }
+
+    private static boolean sameParams(double[] a, double[] b) {
+        for (int i = 0; i < PARAM_COUNT; i++)
+            if (Double.doubleToLongBits(a[i]) != Double.doubleToLongBits(b[i]))
+                return false;
+        return true;
+    }
+
+    private static long bytes(Mat m) {
+        return m.total() * m.elemSize();
+    }
+}
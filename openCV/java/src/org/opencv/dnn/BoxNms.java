@@ -0,0 +1,542 @@
+package org.opencv.dnn;
+
+import java.util.Arrays;
+
+/**
+ * Non-maximum suppression on boxes held in primitive arrays, one array per coordinate.
+ *
+ * The methods follow {@link Dnn#NMSBoxes}, {@link Dnn#NMSBoxesBatched} and
+ * {@link Dnn#softNMSBoxes} step by step, including the stable score order, {@code eta} and
+ * {@code top_k} handling and the single precision overlap, so they keep the same boxes, but read
+ * the boxes straight from the caller's arrays and write the kept indices into a caller-provided
+ * {@code int[]} instead of marshalling MatOfRect2d, MatOfFloat and MatOfInt on every frame.
+ *
+ * Two boxes that do not intersect have an overlap of 0 and never suppress each other, so with
+ * many candidates the boxes are registered in a hashed uniform grid, with cells about the size
+ * of an average box, and each candidate is only compared with the boxes sharing a grid cell.
+ * Boxes spanning many cells are kept on a separate list that every candidate is compared with.
+ * Small inputs and boxes with negative or non-finite coordinates are processed with the plain
+ * quadratic loop.
+ *
+ * An instance keeps its scratch arrays between calls, so steady-state use does not allocate.
+ * It is not thread safe; use one instance per thread.
+ */
+public class BoxNms {
+    private static final int GRID_MIN_BOXES = 64;
+    private static final int MAX_CELLS_PER_BOX = 16;
+    // std::numeric_limits<double>::epsilon(), used by cv::jaccardDistance
+    private static final double EPSILON = Math.ulp(1.0);
+
+    private long[] keys = new long[0];
+    private int[] order = new int[0];
+    private int[] near = new int[0];
+    private int[] seen = new int[0];
+    private int stamp;
+    private double[] offsetX = new double[0];
+    private double[] offsetY = new double[0];
+
+    // hashed grid: open addressing from cell key to a list of entries
+    private double invCell;
+    private long[] cellKeys = new long[0];
+    private int[] cellHeads = new int[0];
+    private int[] cellGens = new int[0];
+    private int gridGen;
+    private int cellsUsed;
+    private int[] entryBox = new int[0];
+    private int[] entryNext = new int[0];
+    private int entries;
+    private int[] large = new int[0];
+    private int largeCount;
+    private int[] tiny = new int[0];
+    private int tinyCount;
+
+    // soft-NMS
+    private float[] work = new float[0];
+    private int[] heap = new int[0];
+    private int[] heapPos = new int[0];
+    private int heapSize;
+
+    // number of overlaps computed so far, lets tests check the grid without timing it
+    long overlapCount;
+
+    /**
+     * Greedy NMS, the same as {@link Dnn#NMSBoxes} with {@code eta} 1 and no {@code top_k}.
+     */
+    public int nms(double[] x, double[] y, double[] w, double[] h, float[] scores, int count,
+                   float scoreThreshold, float nmsThreshold, int[] indices) {
+        return nms(x, y, w, h, scores, count, scoreThreshold, nmsThreshold, 1f, 0, indices);
+    }
+
+    /**
+     * Greedy NMS, the same as {@link Dnn#NMSBoxes(org.opencv.core.MatOfRect2d, org.opencv.core.MatOfFloat, float, float, org.opencv.core.MatOfInt, float, int)}.
+     * Box {@code i} is ({@code x[i]}, {@code y[i]}, {@code w[i]}, {@code h[i]}).
+     *
+     * @param count number of boxes
+     * @param scoreThreshold boxes with a score not above this are skipped, must not be negative
+     * @param nmsThreshold overlap above which a box is suppressed, must not be negative
+     * @param eta factor applied to {@code nmsThreshold} after each kept box, must be positive
+     * @param indices receives the indices of the kept boxes, in descending score order; at most
+     *                {@code indices.length} boxes are kept
+     * @return number of kept boxes
+     */
+    public int nms(double[] x, double[] y, double[] w, double[] h, float[] scores, int count,
+                   float scoreThreshold, float nmsThreshold, float eta, int topK, int[] indices) {
+        checkBoxes(x, y, w, h, scores, count, indices);
+        checkGreedy(scoreThreshold, nmsThreshold, eta);
+        return greedy(x, y, w, h, scores, count, scoreThreshold, nmsThreshold, eta, topK, indices);
+    }
+
+    /**
+     * Greedy NMS per class, the same as {@link Dnn#NMSBoxesBatched}: boxes of different classes
+     * never suppress each other.
+     */
+    public int nmsBatched(double[] x, double[] y, double[] w, double[] h, float[] scores, int[] classIds, int count,
+                          float scoreThreshold, float nmsThreshold, float eta, int topK, int[] indices) {
+        checkBoxes(x, y, w, h, scores, count, indices);
+        if (classIds == null || classIds.length < count)
+            throw new IllegalArgumentException("classIds must hold " + count + " elements");
+        checkGreedy(scoreThreshold, nmsThreshold, eta);
+        // moves every class to its own region of the plane, exactly like NMSBoxesBatched
+        double maxCoord = 0;
+        for (int i = 0; i < count; i++) {
+            maxCoord = Math.max(x[i], maxCoord);
+            maxCoord = Math.max(y[i], maxCoord);
+            maxCoord = Math.max(x[i] + w[i], maxCoord);
+            maxCoord = Math.max(y[i] + h[i], maxCoord);
+        }
+        if (offsetX.length < count) {
+            offsetX = new double[count];
+            offsetY = new double[count];
+        }
+        for (int i = 0; i < count; i++) {
+            double offset = classIds[i] * (maxCoord + 1);
+            offsetX[i] = x[i] + offset;
+            offsetY[i] = y[i] + offset;
+        }
+        return greedy(offsetX, offsetY, w, h, scores, count, scoreThreshold, nmsThreshold, eta, topK, indices);
+    }
+
+    /**
+     * Soft-NMS, the same as {@link Dnn#softNMSBoxes} on integer boxes: instead of discarding
+     * overlapping boxes their scores are decayed, and boxes are picked while the best remaining
+     * score is at least {@code scoreThreshold}.
+     *
+     * @param topK maximum number of picked boxes, 0 for no limit
+     * @param method {@link Dnn#SoftNMSMethod_SOFTNMS_LINEAR} or {@link Dnn#SoftNMSMethod_SOFTNMS_GAUSSIAN}
+     * @param updatedScores receives the decayed score of each picked box
+     * @return number of picked boxes
+     */
+    public int softNms(double[] x, double[] y, double[] w, double[] h, float[] scores, int count,
+                       float scoreThreshold, float nmsThreshold, int topK, float sigma, int method,
+                       int[] indices, float[] updatedScores) {
+        checkBoxes(x, y, w, h, scores, count, indices);
+        if (!(scoreThreshold >= 0) || !(nmsThreshold >= 0) || !(sigma >= 0))
+            throw new IllegalArgumentException("Thresholds and sigma must not be negative");
+        if (method != Dnn.SoftNMSMethod_SOFTNMS_LINEAR && method != Dnn.SoftNMSMethod_SOFTNMS_GAUSSIAN)
+            throw new IllegalArgumentException("Unsupported soft-NMS method: " + method);
+        if (updatedScores == null)
+            throw new IllegalArgumentException("updatedScores is null");
+        int limit = topK <= 0 ? count : Math.min(topK, count);
+        limit = Math.min(limit, Math.min(indices.length, updatedScores.length));
+
+        ensureCapacity(count);
+        if (work.length < count) {
+            work = new float[count];
+            heap = new int[count];
+            heapPos = new int[count];
+        }
+        heapSize = 0;
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            float s = scores[i];
+            heapPos[i] = -1;
+            if (s >= scoreThreshold) {
+                work[i] = s;
+                order[n++] = i;
+                heap[heapSize] = i;
+                heapPos[i] = heapSize++;
+            }
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--)
+            siftDown(i);
+
+        // a Gaussian decay with sigma 0 is NaN even for disjoint boxes
+        boolean grid = n >= GRID_MIN_BOXES && (method == Dnn.SoftNMSMethod_SOFTNMS_LINEAR || sigma > 0)
+                && validGeometry(x, y, w, h, order, n);
+        if (grid) {
+            buildGrid(w, h, order, n);
+            for (int i = 0; i < n; i++)
+                register(x, y, w, h, order[i]);
+        }
+
+        int kept = 0;
+        while (kept < limit && heapSize > 0) {
+            int b = heap[0];
+            float bscore = work[b];
+            if (bscore < scoreThreshold)
+                break;
+            indices[kept] = b;
+            updatedScores[kept] = bscore;
+            kept++;
+            removeTop();
+
+            int m = grid ? gather(x, y, w, h, b) : -1;
+            if (m >= 0) {
+                for (int k = 0; k < m; k++) {
+                    int j = near[k];
+                    int pos = heapPos[j];
+                    if (pos >= 0 && decay(x, y, w, h, b, j, scoreThreshold, nmsThreshold, sigma, method))
+                        siftDown(pos);
+                }
+            } else {
+                boolean changed = false;
+                for (int k = 0; k < heapSize; k++)
+                    changed |= decay(x, y, w, h, b, heap[k], scoreThreshold, nmsThreshold, sigma, method);
+                if (changed)
+                    for (int i = heapSize / 2 - 1; i >= 0; i--)
+                        siftDown(i);
+            }
+        }
+        return kept;
+    }
+
+    private int greedy(double[] x, double[] y, double[] w, double[] h, float[] scores, int count,
+                       float scoreThreshold, float nmsThreshold, float eta, int topK, int[] indices) {
+        int n = selectCandidates(scores, count, scoreThreshold, topK);
+        int limit = indices.length;
+        boolean grid = n >= GRID_MIN_BOXES && validGeometry(x, y, w, h, order, n);
+        if (grid)
+            buildGrid(w, h, order, n);
+
+        float threshold = nmsThreshold;
+        int kept = 0;
+        for (int i = 0; i < n && kept < limit; i++) {
+            int idx = order[i];
+            boolean keep = true;
+            int m = grid ? gather(x, y, w, h, idx) : -1;
+            if (m >= 0) {
+                for (int k = 0; k < m && keep; k++)
+                    keep = overlap(x, y, w, h, idx, near[k]) <= threshold;
+            } else {
+                for (int k = 0; k < kept && keep; k++)
+                    keep = overlap(x, y, w, h, idx, indices[k]) <= threshold;
+            }
+            if (keep) {
+                indices[kept++] = idx;
+                if (grid)
+                    register(x, y, w, h, idx);
+                if (eta < 1 && threshold > 0.5)
+                    threshold *= eta;
+            }
+        }
+        return kept;
+    }
+
+    // decays the score of candidate j after box b was picked, returns true if it changed
+    private boolean decay(double[] x, double[] y, double[] w, double[] h, int b, int j,
+                          float scoreThreshold, float nmsThreshold, float sigma, int method) {
+        float s = work[j];
+        if (s < scoreThreshold)
+            return false;
+        float o = overlap(x, y, w, h, b, j);
+        float d;
+        if (method == Dnn.SoftNMSMethod_SOFTNMS_LINEAR)
+            d = o > nmsThreshold ? s * (1.f - o) : s;
+        else
+            d = s * (float) Math.exp(-(o * o) / sigma);
+        work[j] = d;
+        return d != s;
+    }
+
+    // 1 - cv::jaccardDistance(a, b) in float, as rectOverlap computes it
+    private float overlap(double[] x, double[] y, double[] w, double[] h, int a, int b) {
+        overlapCount++;
+        double aa = w[a] * h[a];
+        double ab = w[b] * h[b];
+        if (aa + ab <= EPSILON)
+            return 1.f;
+        double x1 = Math.max(x[a], x[b]);
+        double y1 = Math.max(y[a], y[b]);
+        double iw = Math.min(x[a] + w[a], x[b] + w[b]) - x1;
+        double ih = Math.min(y[a] + h[a], y[b] + h[b]) - y1;
+        double aab = iw <= 0 || ih <= 0 ? 0 : iw * ih;
+        return 1.f - (float) (1.0 - aab / (aa + ab - aab));
+    }
+
+    // indices of boxes scoring above the threshold into order[], by descending score, then index
+    private int selectCandidates(float[] scores, int count, float threshold, int topK) {
+        ensureCapacity(count);
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            float s = scores[i];
+            if (s > threshold) {
+                if (s == 0)
+                    s = 0f; // -0 and 0 compare equal
+                int bits = Float.floatToIntBits(s);
+                int ascending = bits ^ ((bits >> 31) & 0x7fffffff);
+                keys[n++] = ((long) ~ascending << 32) | i;
+            }
+        }
+        sort(keys, 0, n - 1);
+        if (topK > 0 && topK < n)
+            n = topK;
+        for (int i = 0; i < n; i++)
+            order[i] = (int) keys[i];
+        return n;
+    }
+
+    private void ensureCapacity(int count) {
+        if (order.length < count) {
+            keys = new long[count];
+            order = new int[count];
+            near = new int[count];
+            seen = new int[count];
+            stamp = 0;
+        }
+    }
+
+    private static boolean validGeometry(double[] x, double[] y, double[] w, double[] h, int[] boxes, int n) {
+        for (int i = 0; i < n; i++) {
+            int b = boxes[i];
+            if (!(w[b] >= 0 && h[b] >= 0) || Double.isInfinite(w[b]) || Double.isInfinite(h[b])
+                    || Double.isNaN(x[b]) || Double.isInfinite(x[b]) || Double.isNaN(y[b]) || Double.isInfinite(y[b]))
+                return false;
+        }
+        return true;
+    }
+
+    private void buildGrid(double[] w, double[] h, int[] boxes, int n) {
+        double sum = 0;
+        for (int i = 0; i < n; i++)
+            sum += Math.max(w[boxes[i]], h[boxes[i]]);
+        double cell = sum / n;
+        invCell = cell > 0 && !Double.isInfinite(cell) ? 1 / cell : 1;
+
+        int capacity = Integer.highestOneBit(Math.max(16, n * 4) - 1) << 1;
+        if (cellKeys.length < capacity) {
+            cellKeys = new long[capacity];
+            cellHeads = new int[capacity];
+            cellGens = new int[capacity];
+            gridGen = 0;
+        }
+        if (++gridGen == Integer.MAX_VALUE) {
+            Arrays.fill(cellGens, 0);
+            gridGen = 1;
+        }
+        cellsUsed = 0;
+        entries = 0;
+        largeCount = 0;
+        tinyCount = 0;
+        if (large.length < n) {
+            large = new int[n];
+            tiny = new int[n];
+        }
+    }
+
+    private void register(double[] x, double[] y, double[] w, double[] h, int b) {
+        long cx0 = cell(x[b]), cx1 = cell(x[b] + w[b]);
+        long cy0 = cell(y[b]), cy1 = cell(y[b] + h[b]);
+        if (w[b] * h[b] <= EPSILON)
+            tiny[tinyCount++] = b;
+        if (!fewCells(cx0, cx1, cy0, cy1)) {
+            large[largeCount++] = b;
+            return;
+        }
+        for (long cx = cx0; cx - cx0 <= cx1 - cx0; cx++) {
+            for (long cy = cy0; cy - cy0 <= cy1 - cy0; cy++) {
+                int s = findCell(cellKey(cx, cy), true);
+                if (entries == entryBox.length) {
+                    int size = Math.max(64, entries * 2);
+                    entryBox = Arrays.copyOf(entryBox, size);
+                    entryNext = Arrays.copyOf(entryNext, size);
+                }
+                entryBox[entries] = b;
+                entryNext[entries] = cellHeads[s];
+                cellHeads[s] = entries++;
+            }
+        }
+    }
+
+    // registered boxes that may overlap box b into near[], or -1 if b spans too many cells
+    private int gather(double[] x, double[] y, double[] w, double[] h, int b) {
+        long cx0 = cell(x[b]), cx1 = cell(x[b] + w[b]);
+        long cy0 = cell(y[b]), cy1 = cell(y[b] + h[b]);
+        if (!fewCells(cx0, cx1, cy0, cy1))
+            return -1;
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(seen, 0);
+            stamp = 1;
+        }
+        int m = 0;
+        for (long cx = cx0; cx - cx0 <= cx1 - cx0; cx++) {
+            for (long cy = cy0; cy - cy0 <= cy1 - cy0; cy++) {
+                int s = findCell(cellKey(cx, cy), false);
+                if (s < 0)
+                    continue;
+                for (int e = cellHeads[s]; e >= 0; e = entryNext[e])
+                    m = addNear(entryBox[e], b, m);
+            }
+        }
+        for (int i = 0; i < largeCount; i++)
+            m = addNear(large[i], b, m);
+        // two boxes of (almost) zero area have an overlap of 1 wherever they are
+        if (w[b] * h[b] <= EPSILON)
+            for (int i = 0; i < tinyCount; i++)
+                m = addNear(tiny[i], b, m);
+        return m;
+    }
+
+    private int addNear(int id, int b, int m) {
+        if (id != b && seen[id] != stamp) {
+            seen[id] = stamp;
+            near[m++] = id;
+        }
+        return m;
+    }
+
+    private long cell(double v) {
+        return (long) Math.floor(v * invCell);
+    }
+
+    private static boolean fewCells(long cx0, long cx1, long cy0, long cy1) {
+        long nx = cx1 - cx0 + 1, ny = cy1 - cy0 + 1;
+        return nx > 0 && ny > 0 && nx <= MAX_CELLS_PER_BOX && ny <= MAX_CELLS_PER_BOX && nx * ny <= MAX_CELLS_PER_BOX;
+    }
+
+    // distinct cells may share a key; that only adds comparisons
+    private static long cellKey(long cx, long cy) {
+        return (cx << 32) ^ (cy & 0xffffffffL);
+    }
+
+    private int findCell(long key, boolean create) {
+        int mask = cellKeys.length - 1;
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        int s = (int) (mixed ^ (mixed >>> 32)) & mask;
+        while (cellGens[s] == gridGen) {
+            if (cellKeys[s] == key)
+                return s;
+            s = (s + 1) & mask;
+        }
+        if (!create)
+            return -1;
+        if ((cellsUsed + 1) * 2 > cellKeys.length) {
+            growTable();
+            return findCell(key, true);
+        }
+        cellGens[s] = gridGen;
+        cellKeys[s] = key;
+        cellHeads[s] = -1;
+        cellsUsed++;
+        return s;
+    }
+
+    private void growTable() {
+        long[] oldKeys = cellKeys;
+        int[] oldHeads = cellHeads;
+        int[] oldGens = cellGens;
+        int oldGen = gridGen;
+        cellKeys = new long[oldKeys.length * 2];
+        cellHeads = new int[oldKeys.length * 2];
+        cellGens = new int[oldKeys.length * 2];
+        gridGen = 1;
+        cellsUsed = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldGens[i] == oldGen) {
+                int s = findCell(oldKeys[i], true);
+                cellHeads[s] = oldHeads[i];
+            }
+        }
+    }
+
+    // max-heap of candidates by work score, ties by lower index, as softNMSBoxes picks them
+    private boolean before(int a, int b) {
+        return work[a] > work[b] || (work[a] == work[b] && a < b);
+    }
+
+    private void siftDown(int pos) {
+        int item = heap[pos];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= heapSize)
+                break;
+            if (child + 1 < heapSize && before(heap[child + 1], heap[child]))
+                child++;
+            if (!before(heap[child], item))
+                break;
+            heap[pos] = heap[child];
+            heapPos[heap[pos]] = pos;
+            pos = child;
+        }
+        heap[pos] = item;
+        heapPos[item] = pos;
+    }
+
+    private void removeTop() {
+        heapPos[heap[0]] = -1;
+        heapSize--;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapPos[heap[0]] = 0;
+            siftDown(0);
+        }
+    }
+
+    // ascending sort of a[lo..hi], keys are distinct
+    private static void sort(long[] a, int lo, int hi) {
+        while (hi - lo > 16) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < a[lo]) swap(a, mid, lo);
+            if (a[hi] < a[lo]) swap(a, hi, lo);
+            if (a[hi] < a[mid]) swap(a, hi, mid);
+            long pivot = a[mid];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (a[i] < pivot) i++;
+                while (a[j] > pivot) j--;
+                if (i <= j) {
+                    swap(a, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            // recurse into the smaller part to bound the stack depth
+            if (j - lo < hi - i) {
+                sort(a, lo, j);
+                lo = i;
+            } else {
+                sort(a, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            long v = a[i];
+            int j = i - 1;
+            while (j >= lo && a[j] > v) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = v;
+        }
+    }
+
+    private static void swap(long[] a, int i, int j) {
+        long t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    // the CV_Assert checks of NMSBoxes; written so that NaN fails them too
+    private static void checkGreedy(float scoreThreshold, float nmsThreshold, float eta) {
+        if (!(scoreThreshold >= 0) || !(nmsThreshold >= 0))
+            throw new IllegalArgumentException("Thresholds must not be negative");
+        if (!(eta > 0))
+            throw new IllegalArgumentException("eta must be positive: " + eta);
+    }
+
+    private static void checkBoxes(double[] x, double[] y, double[] w, double[] h, float[] scores, int count, int[] indices) {
+        if (x == null || y == null || w == null || h == null || scores == null || indices == null)
+            throw new IllegalArgumentException("Box, score and index arrays are required");
+        if (count < 0 || x.length < count || y.length < count || w.length < count || h.length < count || scores.length < count)
+            throw new IllegalArgumentException("Box and score arrays must hold " + count + " elements");
+    }
+}
@@ -10,6 +10,7 @@ import org.opencv.core.MatOfByte;
 import org.opencv.core.MatOfDouble;
 import org.opencv.core.MatOfFloat;
 import org.opencv.core.MatOfInt;
+import org.opencv.core.NativeCleaner;
 import org.opencv.core.Scalar;
 import org.opencv.dnn.DictValue;
 import org.opencv.dnn.Layer;
@@ -31,7 +32,7 @@ import org.opencv.utils.Converters;
 public class Net {
 
     protected final long nativeObj;
-    protected Net(long addr) { nativeObj = addr; }
+    protected Net(long addr) { nativeObj = NativeCleaner.register(this, addr, DELETER); }
 
     public long getNativeObjAddr() { return nativeObj; }
 
@@ -43,7 +44,7 @@ public class Net {
     //
 
     public Net() {
-        nativeObj = Net_0();
+        nativeObj = NativeCleaner.register(this, Net_0(), DELETER);
     }
 
 
@@ -800,10 +801,18 @@ public class Net {
     }
 
 
-    @Override
-    protected void finalize() throws Throwable {
-        delete(nativeObj);
-    }
+    // freed by NativeCleaner instead of finalize()
+    private static final NativeCleaner.Deleter DELETER = new NativeCleaner.Deleter() {
+        @Override
+        public void delete(long addr) {
+            Net.delete(addr);
+        }
+
+        @Override
+        public long bytes(long addr) {
+            return 0;
+        }
+    };
 
 
 
@@ -944,7 +953,7 @@ public class Net {
     // C++:  int64 cv::dnn::Net::getPerfProfile(vector_double& timings)
     private static native long getPerfProfile_0(long nativeObj, long timings_mat_nativeObj);
 
-    // native support for java finalize()
+    // native support for NativeCleaner
     private static native void delete(long nativeObj);
 
 }
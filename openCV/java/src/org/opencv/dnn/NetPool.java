@@ -0,0 +1,430 @@
+package org.opencv.dnn;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.Scalar;
+
+/**
+ * Pool of {@link Net} instances of one model for use from several threads.
+ *
+ * A Net must not be used by two threads at the same time. The pool keeps the serialized model in
+ * memory and creates up to {@code maxNets} instances from it on demand, each one configured with
+ * the preferable backend and target and warmed up with a few forward passes on a zero input of
+ * the configured shape, so that the first real inference does not pay for the lazy allocation of
+ * layer buffers. Threads borrow a Net with {@link #acquire()}, which waits while all of them are
+ * leased, and give it back by closing the {@link Lease}:
+ *
+ * NetPool pool = NetPool.fromTFLite(modelBytes, 4);
+ * pool.setWarmup(new int[] { 1, 224, 224, 3 }, 2);
+ * ...
+ * try (NetPool.Lease lease = pool.acquire()) {
+ *     Net net = lease.net();
+ *     net.setInput(blob);
+ *     Mat out = net.forward();
+ * }
+ *
+ * Idle nets are handed out most recently used first, which keeps the working set of a lightly
+ * loaded pool small. The pool reports how long callers waited for a Net and which fraction of the
+ * created nets' lifetime was spent leased.
+ */
+public class NetPool implements AutoCloseable {
+
+    /**
+     * Creates one Net instance; called without the pool lock held, possibly from several threads.
+     */
+    public interface Factory {
+        public Net create();
+    }
+
+    /**
+     * A borrowed Net. Closing the lease returns the Net to the pool; closing it twice has no
+     * further effect.
+     */
+    public final class Lease implements AutoCloseable {
+        private Net net;
+        private final long start;
+
+        private Lease(Net net) {
+            this.net = net;
+            this.start = System.nanoTime();
+        }
+
+        public Net net() {
+            if (net == null)
+                throw new IllegalStateException("Lease has been closed");
+            return net;
+        }
+
+        @Override
+        public void close() {
+            if (net != null) {
+                release(net, System.nanoTime() - start);
+                net = null;
+            }
+        }
+    }
+
+    public static NetPool fromTFLite(final MatOfByte model, int maxNets) {
+        return new NetPool(new Factory() {
+            @Override
+            public Net create() {
+                return Dnn.readNetFromTFLite(model);
+            }
+        }, maxNets);
+    }
+
+    public static NetPool fromONNX(final MatOfByte model, int maxNets) {
+        return new NetPool(new Factory() {
+            @Override
+            public Net create() {
+                return Dnn.readNetFromONNX(model);
+            }
+        }, maxNets);
+    }
+
+    private final Factory factory;
+    private final int maxNets;
+    private final Object lock = new Object();
+    private final ArrayDeque<Net> idle = new ArrayDeque<Net>();
+    private int created;
+    private int creating;
+    private int leased;
+    private boolean closed;
+
+    private int backend = -1;
+    private int target = -1;
+    private int[] warmupShape;
+    private int warmupType = CvType.CV_32F;
+    private String warmupInput = "";
+    private int warmupRuns;
+
+    private long acquisitions;
+    private long waits;
+    private long waitNanos;
+    private long maxWaitNanos;
+    private long leasedNanos;
+    private long warmupNanos;
+    private long liveNetNanos;
+    private long liveSince;
+    private int peakLeased;
+
+    /**
+     * @param maxNets maximum number of Net instances, usually the number of worker threads
+     */
+    public NetPool(Factory factory, int maxNets) {
+        if (factory == null)
+            throw new IllegalArgumentException("factory is null");
+        if (maxNets < 1)
+            throw new IllegalArgumentException("maxNets must be positive: " + maxNets);
+        this.factory = factory;
+        this.maxNets = maxNets;
+    }
+
+    /**
+     * Backend and target applied to every Net created from now on, see
+     * {@link Net#setPreferableBackend(int)} and {@link Net#setPreferableTarget(int)}.
+     */
+    public void setPreferable(int backendId, int targetId) {
+        synchronized (lock) {
+            backend = backendId;
+            target = targetId;
+        }
+    }
+
+    /**
+     * Runs {@code runs} forward passes with a zero CV_32F blob of {@code shape} on every new Net
+     * before it is first handed out.
+     */
+    public void setWarmup(int[] shape, int runs) {
+        setWarmup("", shape, CvType.CV_32F, runs);
+    }
+
+    /**
+     * @param inputName input the warm-up blob is set to, "" for the first input
+     * @param type depth of the warm-up blob, e.g. CV_8U for quantized models
+     */
+    public void setWarmup(String inputName, int[] shape, int type, int runs) {
+        if (runs < 0)
+            throw new IllegalArgumentException("runs must not be negative: " + runs);
+        if (runs > 0 && (shape == null || shape.length == 0))
+            throw new IllegalArgumentException("A warm-up shape is required");
+        synchronized (lock) {
+            warmupInput = inputName != null ? inputName : "";
+            warmupShape = shape != null ? shape.clone() : null;
+            warmupType = type;
+            warmupRuns = runs;
+        }
+    }
+
+    /**
+     * Creates and warms up nets until {@code count} exist, e.g. during application start.
+     */
+    public void prestart(int count) {
+        if (count > maxNets)
+            throw new IllegalArgumentException("count exceeds maxNets: " + count + " > " + maxNets);
+        while (true) {
+            synchronized (lock) {
+                checkOpen();
+                if (created + creating >= count)
+                    return;
+                creating++;
+            }
+            Net net = createNet();
+            synchronized (lock) {
+                if (closed) {
+                    created--;
+                    return;
+                }
+                idle.addFirst(net);
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Borrows a Net, creating one if all are leased and fewer than {@code maxNets} exist, and
+     * waiting otherwise.
+     */
+    public Lease acquire() throws InterruptedException {
+        return acquire(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Like {@link #acquire()}, but returns null if no Net became available within the timeout.
+     */
+    public Lease acquire(long timeout, TimeUnit unit) throws InterruptedException {
+        long start = System.nanoTime();
+        long remaining = unit.toNanos(timeout);
+        boolean waited = false;
+        synchronized (lock) {
+            while (true) {
+                checkOpen();
+                Net net = idle.pollFirst();
+                if (net != null)
+                    return lease(net, start, waited);
+                if (created + creating < maxNets) {
+                    creating++;
+                    break;
+                }
+                if (remaining <= 0) {
+                    recordWait(start, true);
+                    return null;
+                }
+                waited = true;
+                TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                remaining = unit.toNanos(timeout) - (System.nanoTime() - start);
+            }
+        }
+        Net net = createNet();
+        synchronized (lock) {
+            if (closed) {
+                created--;
+                throw new IllegalStateException("NetPool has been closed");
+            }
+            return lease(net, start, waited);
+        }
+    }
+
+    /**
+     * Drops the idle nets and makes further {@link #acquire()} calls fail. Leased nets are
+     * dropped when their leases are closed.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed)
+                return;
+            closed = true;
+            updateLiveTime();
+            created -= idle.size();
+            idle.clear();
+            lock.notifyAll();
+        }
+    }
+
+    public int getMaxNets() {
+        return maxNets;
+    }
+
+    public int getCreatedCount() {
+        synchronized (lock) {
+            return created;
+        }
+    }
+
+    public int getLeasedCount() {
+        synchronized (lock) {
+            return leased;
+        }
+    }
+
+    public int getPeakLeasedCount() {
+        synchronized (lock) {
+            return peakLeased;
+        }
+    }
+
+    public long getAcquisitionCount() {
+        synchronized (lock) {
+            return acquisitions;
+        }
+    }
+
+    /**
+     * Acquisitions that had to wait for a Net to be returned.
+     */
+    public long getWaitCount() {
+        synchronized (lock) {
+            return waits;
+        }
+    }
+
+    /**
+     * Mean time spent in {@link #acquire()}, including Net creation and warm-up.
+     */
+    public double getMeanWaitMillis() {
+        synchronized (lock) {
+            return acquisitions > 0 ? waitNanos / 1e6 / acquisitions : 0;
+        }
+    }
+
+    public double getMaxWaitMillis() {
+        synchronized (lock) {
+            return maxWaitNanos / 1e6;
+        }
+    }
+
+    /**
+     * Total time spent in warm-up forward passes.
+     */
+    public double getWarmupMillis() {
+        synchronized (lock) {
+            return warmupNanos / 1e6;
+        }
+    }
+
+    /**
+     * Fraction of the created nets' lifetime during which they were leased, between 0 and 1.
+     * A value close to 1 together with waits means the pool is too small.
+     */
+    public double getUtilization() {
+        synchronized (lock) {
+            updateLiveTime();
+            return liveNetNanos > 0 ? Math.min(1.0, (double) leasedNanos / liveNetNanos) : 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (lock) {
+            return "NetPool [ nets=" + created + "/" + maxNets + ", leased=" + leased + ", peak=" + peakLeased
+                    + ", acquisitions=" + acquisitions + ", waits=" + waits
+                    + ", wait mean=" + String.format("%.2f", getMeanWaitMillis())
+                    + "ms max=" + String.format("%.2f", getMaxWaitMillis())
+                    + "ms, utilization=" + String.format("%.0f", 100 * getUtilization())
+                    + "%, warm-up=" + String.format("%.1f", getWarmupMillis()) + "ms ]";
+        }
+    }
+
+    // called with the slot reserved by creating++, without the lock held
+    private Net createNet() {
+        int backendId, targetId, runs, type;
+        int[] shape;
+        String input;
+        synchronized (lock) {
+            backendId = backend;
+            targetId = target;
+            shape = warmupShape;
+            type = warmupType;
+            input = warmupInput;
+            runs = warmupRuns;
+        }
+        Net net;
+        long warmup = 0;
+        try {
+            net = factory.create();
+            if (net == null || net.empty())
+                throw new IllegalStateException("Factory returned no network");
+            if (backendId >= 0)
+                net.setPreferableBackend(backendId);
+            if (targetId >= 0)
+                net.setPreferableTarget(targetId);
+            if (runs > 0) {
+                long t0 = System.nanoTime();
+                Mat blob = new Mat(shape, type, Scalar.all(0));
+                try {
+                    for (int i = 0; i < runs; i++) {
+                        net.setInput(blob, input);
+                        net.forward().release();
+                    }
+                } finally {
+                    blob.release();
+                }
+                warmup = System.nanoTime() - t0;
+            }
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                creating--;
+                lock.notifyAll();
+            }
+            throw e;
+        }
+        synchronized (lock) {
+            creating--;
+            updateLiveTime();
+            created++;
+            warmupNanos += warmup;
+        }
+        return net;
+    }
+
+    private Lease lease(Net net, long start, boolean waited) {
+        recordWait(start, waited);
+        acquisitions++;
+        updateLiveTime();
+        leased++;
+        if (leased > peakLeased)
+            peakLeased = leased;
+        return new Lease(net);
+    }
+
+    private void release(Net net, long heldNanos) {
+        synchronized (lock) {
+            updateLiveTime();
+            leased--;
+            leasedNanos += heldNanos;
+            if (closed) {
+                created--;
+                return;
+            }
+            idle.addFirst(net);
+            lock.notifyAll();
+        }
+    }
+
+    private void recordWait(long start, boolean waited) {
+        long w = System.nanoTime() - start;
+        waitNanos += w;
+        if (w > maxWaitNanos)
+            maxWaitNanos = w;
+        if (waited)
+            waits++;
+    }
+
+    // integrates the number of existing nets over time, for getUtilization()
+    private void updateLiveTime() {
+        long now = System.nanoTime();
+        if (liveSince != 0)
+            liveNetNanos += (now - liveSince) * created;
+        liveSince = now;
+    }
+
+    private void checkOpen() {
+        if (closed)
+            throw new IllegalStateException("NetPool has been closed");
+    }
+}
@@ -0,0 +1,398 @@
+package org.opencv.dnn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfDouble;
+import org.opencv.core.MatOfInt;
+
+/**
+ * Per-layer profile of a {@link Net}, built from {@link Net#getPerfProfile(MatOfDouble)},
+ * {@link Net#getFLOPS(int, MatOfInt)} and {@link Net#getMemoryConsumption(int, MatOfInt, long[], long[])}.
+ *
+ * {@link #profile(String, Mat)} runs the network a number of times on a representative input and
+ * averages the layer timings, then relates them to each layer's FLOPs and memory footprint:
+ * achieved GFLOP/s and arithmetic intensity (FLOPs per byte of weights and blobs). Optionally the
+ * network is also run with layer fusion and with Winograd convolution disabled, and the layer
+ * timings of those runs are reported next to the default ones. Layers are flagged as
+ *
+ * - {@code memory-bound}: below the configured arithmetic intensity while taking a noticeable
+ *   share of the time,
+ * - {@code not-fused}: an activation or normalization layer that still runs on its own with
+ *   fusion enabled,
+ * - {@code fusion-slower}: the layer and the layers fused into it are faster with fusion
+ *   disabled,
+ * - {@code winograd-slower}: a convolution that is faster with Winograd disabled.
+ *
+ * The report is available as a text table sorted by time ({@link Report#toString()}) and as JSON
+ * ({@link Report#toJson()}). Timings are reported by the OpenCV backend on the CPU target only.
+ * The comparison runs leave the network with fusion and Winograd enabled, their defaults.
+ */
+public class NetProfiler {
+
+    private static final Set<String> FUSABLE_TYPES = new HashSet<String>(Arrays.asList(
+            "BatchNorm", "Scale", "ReLU", "ReLU6", "ChannelsPReLU", "PReLU", "Sigmoid", "Swish", "Mish",
+            "ELU", "TanH", "Power", "HardSwish", "HardSigmoid", "Clip"));
+
+    public static final class LayerStats {
+        public final int id;
+        public final String name;
+        public final String type;
+        public final double millis;
+        public final long flops;
+        public final long weightBytes;
+        public final long blobBytes;
+        /** Mean time with fusion disabled, or NaN if not measured. */
+        public double unfusedMillis = Double.NaN;
+        /**
+         * Mean time with fusion disabled of this layer and of the layers fused into it, the
+         * counterpart of {@link #millis}, or NaN if not measured. A layer counts as fused into
+         * the closest preceding layer that still takes time when it reports none itself.
+         */
+        public double unfusedGroupMillis = Double.NaN;
+        /** Mean time with Winograd disabled, or NaN if not measured. */
+        public double noWinogradMillis = Double.NaN;
+        final List<String> flags = new ArrayList<String>();
+
+        LayerStats(int id, String name, String type, double millis, long flops, long weightBytes, long blobBytes) {
+            this.id = id;
+            this.name = name;
+            this.type = type;
+            this.millis = millis;
+            this.flops = flops;
+            this.weightBytes = weightBytes;
+            this.blobBytes = blobBytes;
+        }
+
+        /**
+         * Achieved GFLOP/s, 0 for layers that took no measurable time (e.g. fused ones).
+         */
+        public double gflops() {
+            return millis > 0 ? flops / (millis * 1e6) : 0;
+        }
+
+        /**
+         * FLOPs per byte of weights and blobs.
+         */
+        public double intensity() {
+            long bytes = weightBytes + blobBytes;
+            return bytes > 0 ? (double) flops / bytes : 0;
+        }
+
+        public List<String> flags() {
+            return Collections.unmodifiableList(flags);
+        }
+    }
+
+    public static final class Report {
+        public final int runs;
+        public final double totalMillis;
+        public final double unfusedTotalMillis;
+        public final double noWinogradTotalMillis;
+        public final long totalFlops;
+        private final List<LayerStats> layers;
+
+        Report(int runs, double totalMillis, double unfusedTotalMillis, double noWinogradTotalMillis,
+               long totalFlops, List<LayerStats> layers) {
+            this.runs = runs;
+            this.totalMillis = totalMillis;
+            this.unfusedTotalMillis = unfusedTotalMillis;
+            this.noWinogradTotalMillis = noWinogradTotalMillis;
+            this.totalFlops = totalFlops;
+            this.layers = layers;
+        }
+
+        /**
+         * Layers sorted by descending time.
+         */
+        public List<LayerStats> layers() {
+            return Collections.unmodifiableList(layers);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.US, "Total %.3f ms, %.3f GFLOP, %.2f GFLOP/s over %d runs",
+                    totalMillis, totalFlops / 1e9, totalMillis > 0 ? totalFlops / (totalMillis * 1e6) : 0, runs));
+            if (!Double.isNaN(unfusedTotalMillis))
+                sb.append(String.format(Locale.US, "; fusion off %.3f ms", unfusedTotalMillis));
+            if (!Double.isNaN(noWinogradTotalMillis))
+                sb.append(String.format(Locale.US, "; Winograd off %.3f ms", noWinogradTotalMillis));
+            sb.append('\n');
+            sb.append(String.format(Locale.US, "%-32s %-14s %9s %6s %10s %9s %8s %9s %9s  %s%n",
+                    "layer", "type", "ms", "%", "MFLOP", "GFLOP/s", "FLOP/B", "no-fuse", "no-wino", "flags"));
+            for (LayerStats l : layers) {
+                sb.append(String.format(Locale.US, "%-32s %-14s %9.3f %6.1f %10.2f %9.2f %8.2f %9s %9s  %s%n",
+                        l.name, l.type, l.millis, totalMillis > 0 ? 100 * l.millis / totalMillis : 0,
+                        l.flops / 1e6, l.gflops(), l.intensity(), optional(l.unfusedGroupMillis),
+                        optional(l.noWinogradMillis), join(l.flags)));
+            }
+            return sb.toString();
+        }
+
+        public String toJson() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("{\"runs\":").append(runs);
+            sb.append(",\"totalMillis\":").append(number(totalMillis));
+            sb.append(",\"unfusedTotalMillis\":").append(number(unfusedTotalMillis));
+            sb.append(",\"noWinogradTotalMillis\":").append(number(noWinogradTotalMillis));
+            sb.append(",\"totalFlops\":").append(totalFlops);
+            sb.append(",\"layers\":[");
+            for (int i = 0; i < layers.size(); i++) {
+                LayerStats l = layers.get(i);
+                if (i > 0)
+                    sb.append(',');
+                sb.append("{\"id\":").append(l.id);
+                sb.append(",\"name\":").append(string(l.name));
+                sb.append(",\"type\":").append(string(l.type));
+                sb.append(",\"millis\":").append(number(l.millis));
+                sb.append(",\"flops\":").append(l.flops);
+                sb.append(",\"weightBytes\":").append(l.weightBytes);
+                sb.append(",\"blobBytes\":").append(l.blobBytes);
+                sb.append(",\"gflops\":").append(number(l.gflops()));
+                sb.append(",\"intensity\":").append(number(l.intensity()));
+                sb.append(",\"unfusedMillis\":").append(number(l.unfusedMillis));
+                sb.append(",\"unfusedGroupMillis\":").append(number(l.unfusedGroupMillis));
+                sb.append(",\"noWinogradMillis\":").append(number(l.noWinogradMillis));
+                sb.append(",\"flags\":[");
+                for (int f = 0; f < l.flags.size(); f++) {
+                    if (f > 0)
+                        sb.append(',');
+                    sb.append(string(l.flags.get(f)));
+                }
+                sb.append("]}");
+            }
+            sb.append("]}");
+            return sb.toString();
+        }
+
+        private static String optional(double v) {
+            return Double.isNaN(v) ? "-" : String.format(Locale.US, "%.3f", v);
+        }
+
+        private static String join(List<String> items) {
+            StringBuilder sb = new StringBuilder();
+            for (String s : items) {
+                if (sb.length() > 0)
+                    sb.append(',');
+                sb.append(s);
+            }
+            return sb.toString();
+        }
+
+        private static String number(double v) {
+            return Double.isNaN(v) || Double.isInfinite(v) ? "null" : String.format(Locale.US, "%.6g", v);
+        }
+
+        private static String string(String s) {
+            StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '"' || c == '\\')
+                    sb.append('\\').append(c);
+                else if (c < 0x20)
+                    sb.append(String.format("\\u%04x", (int) c));
+                else
+                    sb.append(c);
+            }
+            return sb.append('"').toString();
+        }
+    }
+
+    private final Net net;
+    private int warmupRuns = 2;
+    private int runs = 10;
+    private boolean compareFusion = true;
+    private boolean compareWinograd = true;
+    private double memoryBoundIntensity = 4;
+    private double minTimeShare = 0.01;
+
+    public NetProfiler(Net net) {
+        if (net == null || net.empty())
+            throw new IllegalArgumentException("net is empty");
+        this.net = net;
+    }
+
+    /**
+     * @param warmup forward passes before measuring, not counted
+     * @param runs measured forward passes whose timings are averaged
+     */
+    public NetProfiler setRuns(int warmup, int runs) {
+        if (warmup < 0 || runs < 1)
+            throw new IllegalArgumentException("Invalid run counts: " + warmup + ", " + runs);
+        this.warmupRuns = warmup;
+        this.runs = runs;
+        return this;
+    }
+
+    /**
+     * Also profiles with {@link Net#enableFusion(boolean)} and {@link Net#enableWinograd(boolean)}
+     * turned off. Both are on by default.
+     */
+    public NetProfiler setComparisons(boolean fusion, boolean winograd) {
+        this.compareFusion = fusion;
+        this.compareWinograd = winograd;
+        return this;
+    }
+
+    /**
+     * Layers below {@code flopsPerByte} that take at least {@code minTimeShare} of the total time
+     * are flagged as memory-bound. Defaults are 4 FLOP/byte and 1%.
+     */
+    public NetProfiler setMemoryBound(double flopsPerByte, double minTimeShare) {
+        this.memoryBoundIntensity = flopsPerByte;
+        this.minTimeShare = minTimeShare;
+        return this;
+    }
+
+    public Report profile(Mat input) {
+        return profile("", input);
+    }
+
+    /**
+     * Profiles the network on {@code input}, set as the input named {@code inputName} ("" for
+     * the first input).
+     */
+    public Report profile(String inputName, Mat input) {
+        if (input == null || input.empty())
+            throw new IllegalArgumentException("input is empty");
+        List<String> names = net.getLayerNames();
+        int n = names.size();
+
+        double[] fusedTimes = new double[n];
+        double[] unfusedTimes = null;
+        double[] noWinogradTimes = null;
+        double total;
+        try {
+            net.enableFusion(true);
+            net.enableWinograd(true);
+            total = measure(inputName, input, fusedTimes);
+            double unfusedTotal = Double.NaN;
+            double noWinogradTotal = Double.NaN;
+            if (compareFusion) {
+                unfusedTimes = new double[n];
+                net.enableFusion(false);
+                unfusedTotal = measure(inputName, input, unfusedTimes);
+                net.enableFusion(true);
+            }
+            if (compareWinograd) {
+                noWinogradTimes = new double[n];
+                net.enableWinograd(false);
+                noWinogradTotal = measure(inputName, input, noWinogradTimes);
+                net.enableWinograd(true);
+            }
+            return buildReport(names, input, total, fusedTimes, unfusedTotal, unfusedTimes,
+                    noWinogradTotal, noWinogradTimes);
+        } finally {
+            net.enableFusion(true);
+            net.enableWinograd(true);
+        }
+    }
+
+    // mean milliseconds per layer into times[], returns the mean total
+    private double measure(String inputName, Mat input, double[] times) {
+        double msPerTick = 1000.0 / Core.getTickFrequency();
+        MatOfDouble timings = new MatOfDouble();
+        try {
+            for (int i = 0; i < warmupRuns; i++) {
+                net.setInput(input, inputName);
+                net.forward().release();
+            }
+            double total = 0;
+            for (int r = 0; r < runs; r++) {
+                net.setInput(input, inputName);
+                net.forward().release();
+                total += net.getPerfProfile(timings) * msPerTick;
+                double[] t = timings.toArray();
+                for (int i = 0; i < Math.min(t.length, times.length); i++)
+                    times[i] += t[i] * msPerTick;
+            }
+            for (int i = 0; i < times.length; i++)
+                times[i] /= runs;
+            return total / runs;
+        } finally {
+            timings.release();
+        }
+    }
+
+    private Report buildReport(List<String> names, Mat input, double total, double[] times,
+                               double unfusedTotal, double[] unfusedTimes,
+                               double noWinogradTotal, double[] noWinogradTimes) {
+        int[] sizes = new int[input.dims()];
+        for (int i = 0; i < sizes.length; i++)
+            sizes[i] = input.size(i);
+        MatOfInt shape = new MatOfInt(sizes);
+        long[] weights = new long[1];
+        long[] blobs = new long[1];
+        long totalFlops = 0;
+        double[] unfusedGroups = unfusedTimes != null ? groupFused(times, unfusedTimes) : null;
+        List<LayerStats> layers = new ArrayList<LayerStats>(names.size());
+        try {
+            for (int i = 0; i < names.size(); i++) {
+                // getLayerNames() and getPerfProfile() skip the input layer, id 0
+                int id = i + 1;
+                String type = net.getLayer(id).get_type();
+                long flops = net.getFLOPS(id, shape);
+                net.getMemoryConsumption(id, shape, weights, blobs);
+                totalFlops += flops;
+                LayerStats l = new LayerStats(id, names.get(i), type, times[i], flops, weights[0], blobs[0]);
+                if (unfusedTimes != null) {
+                    l.unfusedMillis = unfusedTimes[i];
+                    l.unfusedGroupMillis = unfusedGroups[i];
+                }
+                if (noWinogradTimes != null)
+                    l.noWinogradMillis = noWinogradTimes[i];
+                classify(l, total);
+                layers.add(l);
+            }
+        } finally {
+            shape.release();
+        }
+        Collections.sort(layers, new Comparator<LayerStats>() {
+            @Override
+            public int compare(LayerStats a, LayerStats b) {
+                return Double.compare(b.millis, a.millis);
+            }
+        });
+        return new Report(runs, total, unfusedTotal, noWinogradTotal, totalFlops, layers);
+    }
+
+    // With fusion a layer's time includes the layers it absorbed, which then report 0 ms, so the
+    // unfused time of each absorbed layer is added to the closest preceding layer that still
+    // runs. Layers are numbered in execution order.
+    static double[] groupFused(double[] fusedTimes, double[] unfusedTimes) {
+        double[] groups = unfusedTimes.clone();
+        int host = -1;
+        for (int i = 0; i < fusedTimes.length; i++) {
+            if (fusedTimes[i] > 0) {
+                host = i;
+            } else if (unfusedTimes[i] > 0 && host >= 0) {
+                groups[host] += unfusedTimes[i];
+                groups[i] = 0;
+            }
+        }
+        return groups;
+    }
+
+    private void classify(LayerStats l, double total) {
+        boolean noticeable = total > 0 && l.millis >= minTimeShare * total;
+        if (noticeable && l.intensity() < memoryBoundIntensity && l.weightBytes + l.blobBytes > 0)
+            l.flags.add("memory-bound");
+        if (l.millis > 0 && FUSABLE_TYPES.contains(l.type))
+            l.flags.add("not-fused");
+        // compare with a 10% margin, the timings of single layers are noisy
+        if (noticeable && !Double.isNaN(l.unfusedGroupMillis) && l.unfusedGroupMillis * 1.1 < l.millis)
+            l.flags.add("fusion-slower");
+        if (noticeable && "Convolution".equals(l.type) && !Double.isNaN(l.noWinogradMillis)
+                && l.noWinogradMillis * 1.1 < l.millis)
+            l.flags.add("winograd-slower");
+    }
+}
@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import java.util.List;
 import org.opencv.core.Algorithm;
 import org.opencv.core.Mat;
+import org.opencv.core.KeyPointBuffer;
 import org.opencv.core.MatOfKeyPoint;
 import org.opencv.utils.Converters;
 
@@ -247,6 +248,36 @@ public class Feature2D extends Algorithm {
     // Unknown type 'FileStorage' (I), skipping the function
 
 
+    //
+    // Overloads taking a KeyPointBuffer; the buffer's own MatOfKeyPoint is reused across calls
+    //
+
+    public void detect(Mat image, KeyPointBuffer keypoints, Mat mask) {
+        MatOfKeyPoint keypoints_mat = keypoints.matOfKeyPoint();
+        detect(image, keypoints_mat, mask);
+        keypoints.fromMat(keypoints_mat);
+    }
+
+    public void detect(Mat image, KeyPointBuffer keypoints) {
+        MatOfKeyPoint keypoints_mat = keypoints.matOfKeyPoint();
+        detect(image, keypoints_mat);
+        keypoints.fromMat(keypoints_mat);
+    }
+
+    // keypoints for which a descriptor cannot be computed are removed from the buffer
+    public void compute(Mat image, KeyPointBuffer keypoints, Mat descriptors) {
+        MatOfKeyPoint keypoints_mat = keypoints.toMatOfKeyPoint();
+        compute(image, keypoints_mat, descriptors);
+        keypoints.fromMat(keypoints_mat);
+    }
+
+    public void detectAndCompute(Mat image, Mat mask, KeyPointBuffer keypoints, Mat descriptors) {
+        MatOfKeyPoint keypoints_mat = keypoints.matOfKeyPoint();
+        detectAndCompute(image, mask, keypoints_mat, descriptors);
+        keypoints.fromMat(keypoints_mat);
+    }
+
+
     @Override
     protected void finalize() throws Throwable {
         delete(nativeObj);
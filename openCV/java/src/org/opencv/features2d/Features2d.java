@@ -5,6 +5,7 @@ package org.opencv.features2d;
 
 import java.util.ArrayList;
 import java.util.List;
+import org.opencv.core.KeyPointBuffer;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfByte;
 import org.opencv.core.MatOfDMatch;
@@ -88,6 +89,16 @@ public class Features2d {
         drawKeypoints_2(image.nativeObj, keypoints_mat.nativeObj, outImage.nativeObj);
     }
 
+    public static void drawKeypoints(Mat image, KeyPointBuffer keypoints, Mat outImage, Scalar color, int flags) {
+        Mat keypoints_mat = keypoints.toMatOfKeyPoint();
+        drawKeypoints_0(image.nativeObj, keypoints_mat.nativeObj, outImage.nativeObj, color.val[0], color.val[1], color.val[2], color.val[3], flags);
+    }
+
+    public static void drawKeypoints(Mat image, KeyPointBuffer keypoints, Mat outImage) {
+        Mat keypoints_mat = keypoints.toMatOfKeyPoint();
+        drawKeypoints_2(image.nativeObj, keypoints_mat.nativeObj, outImage.nativeObj);
+    }
+
 
     //
     // C++:  void cv::drawMatches(Mat img1, vector_KeyPoint keypoints1, Mat img2, vector_KeyPoint keypoints2, vector_DMatch matches1to2, Mat& outImg, Scalar matchColor = Scalar::all(-1), Scalar singlePointColor = Scalar::all(-1), vector_char matchesMask = std::vector<char>(), DrawMatchesFlags flags = DrawMatchesFlags::DEFAULT)
@@ -12,7 +12,10 @@ import org.opencv.core.MatOfInt4;
 import org.opencv.core.MatOfPoint;
 import org.opencv.core.MatOfPoint2f;
 import org.opencv.core.Point;
+import org.opencv.core.ContourBuffer;
+import org.opencv.core.PointBufferF;
 import org.opencv.core.Rect;
+import org.opencv.core.RectBufferI;
 import org.opencv.core.RotatedRect;
 import org.opencv.core.Scalar;
 import org.opencv.core.Size;
@@ -9698,6 +9701,116 @@ public static Size getTextSize(String text, int fontFace, double fontScale, int
 }
 
 
+// Overloads taking primitive point buffers. Each buffer reuses the MatOfPoint/MatOfPoint2f it
+// owns, so calling these per frame creates no Point objects and no new Mat wrappers.
+
+//javadoc:goodFeaturesToTrack(image, corners, maxCorners, qualityLevel, minDistance, mask)
+public static void goodFeaturesToTrack(Mat image, PointBufferF corners, int maxCorners, double qualityLevel, double minDistance, Mat mask) {
+    MatOfPoint corners_mat = corners.matOfPoint();
+    goodFeaturesToTrack(image, corners_mat, maxCorners, qualityLevel, minDistance, mask);
+    corners.fromMat(corners_mat);
+}
+
+//javadoc:goodFeaturesToTrack(image, corners, maxCorners, qualityLevel, minDistance)
+public static void goodFeaturesToTrack(Mat image, PointBufferF corners, int maxCorners, double qualityLevel, double minDistance) {
+    MatOfPoint corners_mat = corners.matOfPoint();
+    goodFeaturesToTrack(image, corners_mat, maxCorners, qualityLevel, minDistance);
+    corners.fromMat(corners_mat);
+}
+
+//javadoc:approxPolyDP(curve, approxCurve, epsilon, closed)
+public static void approxPolyDP(PointBufferF curve, PointBufferF approxCurve, double epsilon, boolean closed) {
+    if (curve == approxCurve)
+        throw new IllegalArgumentException("'curve' and 'approxCurve' must be different buffers");
+    MatOfPoint2f curve_mat = curve.toMatOfPoint2f();
+    MatOfPoint2f approxCurve_mat = approxCurve.matOfPoint2f();
+    approxPolyDP(curve_mat, approxCurve_mat, epsilon, closed);
+    approxCurve.fromMat(approxCurve_mat);
+}
+
+//javadoc:arcLength(curve, closed)
+public static double arcLength(PointBufferF curve, boolean closed) {
+    return arcLength(curve.toMatOfPoint2f(), closed);
+}
+
+//javadoc:contourArea(contour, oriented)
+public static double contourArea(PointBufferF contour, boolean oriented) {
+    return contourArea(contour.toMatOfPoint2f(), oriented);
+}
+
+//javadoc:contourArea(contour)
+public static double contourArea(PointBufferF contour) {
+    return contourArea(contour.toMatOfPoint2f());
+}
+
+//javadoc:boundingRect(array)
+public static Rect boundingRect(PointBufferF points) {
+    return boundingRect(points.toMatOfPoint2f());
+}
+
+//javadoc:minAreaRect(points)
+public static RotatedRect minAreaRect(PointBufferF points) {
+    return minAreaRect(points.toMatOfPoint2f());
+}
+
+//javadoc:convexHull(points, hull, clockwise)
+public static void convexHull(PointBufferF points, MatOfInt hull, boolean clockwise) {
+    convexHull(points.toMatOfPoint(), hull, clockwise);
+}
+
+//javadoc:fillConvexPoly(img, points, color)
+public static void fillConvexPoly(Mat img, PointBufferF points, Scalar color) {
+    fillConvexPoly(img, points.toMatOfPoint(), color);
+}
+
+//javadoc:rectangle(img, rec, color, thickness)
+public static void rectangle(Mat img, RectBufferI rects, Scalar color, int thickness) {
+    int[] r = rects.array();
+    for (int i = 0; i < rects.size(); i++) {
+        int o = i * 4;
+        rectangle_6(img.nativeObj, r[o], r[o + 1], r[o + 2], r[o + 3], color.val[0], color.val[1], color.val[2], color.val[3], thickness);
+    }
+}
+
+// Overloads taking packed contours. findContours unpacks every native contour straight into the
+// buffer and frees it, drawContours passes the buffer-owned Mats back without boxing.
+
+//javadoc:findContours(image, contours, hierarchy, mode, method, offset)
+public static void findContours(Mat image, ContourBuffer contours, int mode, int method, Point offset) {
+    Mat contours_mat = contours.nativeContoursMat();
+    Mat hierarchy = contours.nativeHierarchyMat();
+    findContours_0(image.nativeObj, contours_mat.nativeObj, hierarchy.nativeObj, mode, method, offset.x, offset.y);
+    contours.fromNative(contours_mat, hierarchy);
+}
+
+//javadoc:findContours(image, contours, hierarchy, mode, method)
+public static void findContours(Mat image, ContourBuffer contours, int mode, int method) {
+    Mat contours_mat = contours.nativeContoursMat();
+    Mat hierarchy = contours.nativeHierarchyMat();
+    findContours_1(image.nativeObj, contours_mat.nativeObj, hierarchy.nativeObj, mode, method);
+    contours.fromNative(contours_mat, hierarchy);
+}
+
+//javadoc:drawContours(image, contours, contourIdx, color, thickness, lineType, hierarchy, maxLevel, offset)
+public static void drawContours(Mat image, ContourBuffer contours, int contourIdx, Scalar color, int thickness, int lineType, int maxLevel, Point offset) {
+    Mat contours_mat = contours.toContoursMat();
+    Mat hierarchy = contours.toHierarchyMat();
+    drawContours_0(image.nativeObj, contours_mat.nativeObj, contourIdx, color.val[0], color.val[1], color.val[2], color.val[3], thickness, lineType, hierarchy.nativeObj, maxLevel, offset.x, offset.y);
+}
+
+//javadoc:drawContours(image, contours, contourIdx, color, thickness)
+public static void drawContours(Mat image, ContourBuffer contours, int contourIdx, Scalar color, int thickness) {
+    drawContours(image, contours, contourIdx, color, thickness, LINE_8, 0, new Point());
+}
+
+//javadoc:approxPolyDP(curve, approxCurve, epsilon, closed)
+public static void approxPolyDP(ContourBuffer curves, int index, PointBufferF approxCurve, double epsilon, boolean closed) {
+    MatOfPoint2f approxCurve_mat = approxCurve.matOfPoint2f();
+    approxPolyDP(curves.toMatOfPoint2f(index), approxCurve_mat, epsilon, closed);
+    approxCurve.fromMat(approxCurve_mat);
+}
+
+
 
 
     // C++:  Ptr_LineSegmentDetector cv::createLineSegmentDetector(int refine = LSD_REFINE_STD, double scale = 0.8, double sigma_scale = 0.6, double quant = 2.0, double ang_th = 22.5, double log_eps = 0, double density_th = 0.7, int n_bins = 1024)
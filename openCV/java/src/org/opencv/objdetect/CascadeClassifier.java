@@ -9,6 +9,8 @@ import org.opencv.core.Mat;
 import org.opencv.core.MatOfDouble;
 import org.opencv.core.MatOfInt;
 import org.opencv.core.MatOfRect;
+import org.opencv.core.NativeCleaner;
+import org.opencv.core.RectBufferI;
 import org.opencv.core.Size;
 import org.opencv.utils.Converters;
 
@@ -19,7 +21,7 @@ import org.opencv.utils.Converters;
 public class CascadeClassifier {
 
     protected final long nativeObj;
-    protected CascadeClassifier(long addr) { nativeObj = addr; }
+    protected CascadeClassifier(long addr) { nativeObj = NativeCleaner.register(this, addr, DELETER); }
 
     public long getNativeObjAddr() { return nativeObj; }
 
@@ -31,7 +33,7 @@ public class CascadeClassifier {
     //
 
     public CascadeClassifier() {
-        nativeObj = CascadeClassifier_0();
+        nativeObj = NativeCleaner.register(this, CascadeClassifier_0(), DELETER);
     }
 
 
@@ -45,7 +47,7 @@ public class CascadeClassifier {
      *     @param filename Name of the file from which the classifier is loaded.
      */
     public CascadeClassifier(String filename) {
-        nativeObj = CascadeClassifier_1(filename);
+        nativeObj = NativeCleaner.register(this, CascadeClassifier_1(filename), DELETER);
     }
 
 
@@ -583,12 +585,37 @@ public class CascadeClassifier {
     }
 
 
-    @Override
-    protected void finalize() throws Throwable {
-        delete(nativeObj);
+    //
+    // Overloads taking a RectBufferI; the buffer's own MatOfRect is reused across calls
+    //
+
+    public void detectMultiScale(Mat image, RectBufferI objects, double scaleFactor, int minNeighbors, int flags, Size minSize, Size maxSize) {
+        MatOfRect objects_mat = objects.matOfRect();
+        detectMultiScale(image, objects_mat, scaleFactor, minNeighbors, flags, minSize, maxSize);
+        objects.fromMat(objects_mat);
+    }
+
+    public void detectMultiScale(Mat image, RectBufferI objects) {
+        MatOfRect objects_mat = objects.matOfRect();
+        detectMultiScale(image, objects_mat);
+        objects.fromMat(objects_mat);
     }
 
 
+    // freed by NativeCleaner instead of finalize()
+    private static final NativeCleaner.Deleter DELETER = new NativeCleaner.Deleter() {
+        @Override
+        public void delete(long addr) {
+            CascadeClassifier.delete(addr);
+        }
+
+        @Override
+        public long bytes(long addr) {
+            return 0;
+        }
+    };
+
+
 
     // C++:   cv::CascadeClassifier::CascadeClassifier()
     private static native long CascadeClassifier_0();
@@ -639,7 +666,7 @@ public class CascadeClassifier {
     // C++: static bool cv::CascadeClassifier::convert(String oldcascade, String newcascade)
     private static native boolean convert_0(String oldcascade, String newcascade);
 
-    // native support for java finalize()
+    // native support for NativeCleaner
     private static native void delete(long nativeObj);
 
 }
@@ -1,5 +1,7 @@
 package org.opencv.utils;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -803,4 +805,318 @@ public class Converters {
             rs.add(new RotatedRect(new Point(buff[5 * i], buff[5 * i + 1]), new Size(buff[5 * i + 2], buff[5 * i + 3]), buff[5 * i + 4]));
         }
     }
+
+    // Primitive array overloads.
+    //
+    // These mirror the List based converters above but read from / write into caller-supplied
+    // arrays laid out exactly like the Mat elements (e.g. x0, y0, x1, y1, ... for points), so
+    // per-frame code can reuse both the arrays and the result Mat. Counts are in elements, not
+    // array entries. When offset is 0 and the array length is a multiple of the channel count
+    // the data is copied straight through Mat.put/get, otherwise it is staged in a per-thread
+    // direct buffer and moved by the direct buffer overloads below. The staging buffer grows to
+    // the largest such call up to SCRATCH_LIMIT bytes; larger calls allocate a buffer each time.
+
+    public static void vector_Point_to_Mat(int[] xy, int offset, int count, Mat res) {
+        putVector(res, CvType.CV_32SC2, xy, offset, count);
+    }
+
+    public static void vector_Point_to_Mat(float[] xy, int offset, int count, Mat res) {
+        putVector(res, CvType.CV_32FC2, xy, offset, count);
+    }
+
+    public static void vector_Point_to_Mat(double[] xy, int offset, int count, Mat res) {
+        putVector(res, CvType.CV_64FC2, xy, offset, count);
+    }
+
+    public static int Mat_to_vector_Point(Mat m, int[] xy, int offset) {
+        return getVector(m, CvType.CV_32SC2, xy, offset);
+    }
+
+    public static int Mat_to_vector_Point(Mat m, float[] xy, int offset) {
+        return getVector(m, CvType.CV_32FC2, xy, offset);
+    }
+
+    public static int Mat_to_vector_Point(Mat m, double[] xy, int offset) {
+        return getVector(m, CvType.CV_64FC2, xy, offset);
+    }
+
+    public static void vector_Point3_to_Mat(int[] xyz, int offset, int count, Mat res) {
+        putVector(res, CvType.CV_32SC3, xyz, offset, count);
+    }
+
+    public static void vector_Point3_to_Mat(float[] xyz, int offset, int count, Mat res) {
+        putVector(res, CvType.CV_32FC3, xyz, offset, count);
+    }
+
+    public static void vector_Point3_to_Mat(double[] xyz, int offset, int count, Mat res) {
+        putVector(res, CvType.CV_64FC3, xyz, offset, count);
+    }
+
+    public static int Mat_to_vector_Point3(Mat m, int[] xyz, int offset) {
+        return getVector(m, CvType.CV_32SC3, xyz, offset);
+    }
+
+    public static int Mat_to_vector_Point3(Mat m, float[] xyz, int offset) {
+        return getVector(m, CvType.CV_32FC3, xyz, offset);
+    }
+
+    public static int Mat_to_vector_Point3(Mat m, double[] xyz, int offset) {
+        return getVector(m, CvType.CV_64FC3, xyz, offset);
+    }
+
+    public static void vector_int_to_Mat(int[] is, int offset, int count, Mat res) {
+        putVector(res, CvType.CV_32SC1, is, offset, count);
+    }
+
+    public static int Mat_to_vector_int(Mat m, int[] is, int offset) {
+        return getVector(m, CvType.CV_32SC1, is, offset);
+    }
+
+    public static void vector_float_to_Mat(float[] fs, int offset, int count, Mat res) {
+        putVector(res, CvType.CV_32FC1, fs, offset, count);
+    }
+
+    public static int Mat_to_vector_float(Mat m, float[] fs, int offset) {
+        return getVector(m, CvType.CV_32FC1, fs, offset);
+    }
+
+    public static void vector_double_to_Mat(double[] ds, int offset, int count, Mat res) {
+        putVector(res, CvType.CV_64FC1, ds, offset, count);
+    }
+
+    public static int Mat_to_vector_double(Mat m, double[] ds, int offset) {
+        return getVector(m, CvType.CV_64FC1, ds, offset);
+    }
+
+    // x, y, width, height
+    public static void vector_Rect_to_Mat(int[] rs, int offset, int count, Mat res) {
+        putVector(res, CvType.CV_32SC4, rs, offset, count);
+    }
+
+    public static int Mat_to_vector_Rect(Mat m, int[] rs, int offset) {
+        return getVector(m, CvType.CV_32SC4, rs, offset);
+    }
+
+    // x, y, width, height
+    public static void vector_Rect2d_to_Mat(double[] rs, int offset, int count, Mat res) {
+        putVector(res, CvType.CV_64FC4, rs, offset, count);
+    }
+
+    public static int Mat_to_vector_Rect2d(Mat m, double[] rs, int offset) {
+        return getVector(m, CvType.CV_64FC4, rs, offset);
+    }
+
+    // center.x, center.y, size.width, size.height, angle
+    public static void vector_RotatedRect_to_Mat(float[] rs, int offset, int count, Mat res) {
+        putVector(res, CvType.CV_32FC(5), rs, offset, count);
+    }
+
+    public static int Mat_to_vector_RotatedRect(Mat m, float[] rs, int offset) {
+        return getVector(m, CvType.CV_32FC(5), rs, offset);
+    }
+
+    // pt.x, pt.y, size, angle, response, octave, class_id
+    public static void vector_KeyPoint_to_Mat(double[] kps, int offset, int count, Mat res) {
+        putVector(res, CvType.CV_64FC(7), kps, offset, count);
+    }
+
+    public static int Mat_to_vector_KeyPoint(Mat m, double[] kps, int offset) {
+        return getVector(m, CvType.CV_64FC(7), kps, offset);
+    }
+
+    // queryIdx, trainIdx, imgIdx, distance
+    public static void vector_DMatch_to_Mat(double[] matches, int offset, int count, Mat res) {
+        putVector(res, CvType.CV_64FC4, matches, offset, count);
+    }
+
+    public static int Mat_to_vector_DMatch(Mat m, double[] matches, int offset) {
+        return getVector(m, CvType.CV_64FC4, matches, offset);
+    }
+
+    // Direct buffer overloads.
+    //
+    // The buffer must be direct and hold the elements in native byte order starting at its
+    // current position; the position is not advanced. The data is moved by a single native
+    // copy through a temporary Mat header that aliases the buffer memory.
+
+    public static void vector_buffer_to_Mat(ByteBuffer data, int count, int type, Mat res) {
+        if (res == null)
+            throw new IllegalArgumentException("Output Mat can't be null");
+        checkBuffer(data, count, type);
+        if (count == 0) {
+            res.release();
+            return;
+        }
+        Mat header = new Mat(count, 1, type, data.slice());
+        header.copyTo(res);
+        header.release();
+    }
+
+    public static int Mat_to_vector_buffer(Mat m, int type, ByteBuffer data) {
+        int count = checkVectorMat(m, type);
+        checkBuffer(data, count, type);
+        if (count == 0)
+            return 0;
+        Mat header = new Mat(count, 1, type, data.slice());
+        m.copyTo(header);
+        header.release();
+        return count;
+    }
+
+    private static final int SCRATCH_LIMIT = 1 << 20;
+
+    private static final ThreadLocal<ByteBuffer> scratch = new ThreadLocal<ByteBuffer>();
+
+    // direct buffer in native byte order for count elements of type, positioned at 0
+    private static ByteBuffer scratch(int count, int type) {
+        long size = (long) count * CvType.ELEM_SIZE(type);
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(count + " elements of " + CvType.typeToString(type) + " do not fit in a buffer");
+        int bytes = (int) size;
+        ByteBuffer data = scratch.get();
+        if (data == null || data.capacity() < bytes) {
+            data = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+            if (bytes <= SCRATCH_LIMIT)
+                scratch.set(data);
+        }
+        data.clear();
+        return data;
+    }
+
+    private static int checkVectorMat(Mat m, int type) {
+        if (m == null)
+            throw new IllegalArgumentException("Input Mat can't be null");
+        if (m.empty())
+            return 0;
+        if (type != m.type() || m.cols() != 1)
+            throw new IllegalArgumentException(
+                    CvType.typeToString(type) + " != m.type() ||  m.cols()!=1\n" + m);
+        return m.rows();
+    }
+
+    // count is a long so that count * channels cannot wrap around before the check
+    private static void checkRange(int length, int offset, long count) {
+        if (offset < 0 || count < 0 || offset > length - count)
+            throw new IllegalArgumentException(
+                    "Range [" + offset + ", " + offset + "+" + count + ") is out of array bounds (" + length + ")");
+    }
+
+    private static void checkBuffer(ByteBuffer data, int count, int type) {
+        if (data == null || !data.isDirect())
+            throw new IllegalArgumentException("Direct ByteBuffer is required");
+        if (count < 0 || (long) count * CvType.ELEM_SIZE(type) > data.remaining())
+            throw new IllegalArgumentException(
+                    "Buffer has " + data.remaining() + " bytes, " + count + " elements of " + CvType.typeToString(type) + " required");
+    }
+
+    private static void putVector(Mat res, int type, int[] buff, int offset, int count) {
+        if (res == null)
+            throw new IllegalArgumentException("Output Mat can't be null");
+        int cn = CvType.channels(type);
+        checkRange(buff.length, offset, (long) count * cn);
+        if (count == 0) {
+            res.release();
+            return;
+        }
+        if (offset == 0 && buff.length % cn == 0) {
+            res.create(count, 1, type);
+            // put() copies no more than the Mat holds, so a larger array is fine
+            res.put(0, 0, buff);
+        } else {
+            ByteBuffer data = scratch(count, type);
+            data.asIntBuffer().put(buff, offset, count * cn);
+            vector_buffer_to_Mat(data, count, type, res);
+        }
+    }
+
+    private static void putVector(Mat res, int type, float[] buff, int offset, int count) {
+        if (res == null)
+            throw new IllegalArgumentException("Output Mat can't be null");
+        int cn = CvType.channels(type);
+        checkRange(buff.length, offset, (long) count * cn);
+        if (count == 0) {
+            res.release();
+            return;
+        }
+        if (offset == 0 && buff.length % cn == 0) {
+            res.create(count, 1, type);
+            // put() copies no more than the Mat holds, so a larger array is fine
+            res.put(0, 0, buff);
+        } else {
+            ByteBuffer data = scratch(count, type);
+            data.asFloatBuffer().put(buff, offset, count * cn);
+            vector_buffer_to_Mat(data, count, type, res);
+        }
+    }
+
+    private static void putVector(Mat res, int type, double[] buff, int offset, int count) {
+        if (res == null)
+            throw new IllegalArgumentException("Output Mat can't be null");
+        int cn = CvType.channels(type);
+        checkRange(buff.length, offset, (long) count * cn);
+        if (count == 0) {
+            res.release();
+            return;
+        }
+        if (offset == 0 && buff.length % cn == 0) {
+            res.create(count, 1, type);
+            // put() copies no more than the Mat holds, so a larger array is fine
+            res.put(0, 0, buff);
+        } else {
+            ByteBuffer data = scratch(count, type);
+            data.asDoubleBuffer().put(buff, offset, count * cn);
+            vector_buffer_to_Mat(data, count, type, res);
+        }
+    }
+
+    private static int getVector(Mat m, int type, int[] buff, int offset) {
+        int count = checkVectorMat(m, type);
+        int cn = CvType.channels(type);
+        checkRange(buff.length, offset, (long) count * cn);
+        if (count == 0)
+            return 0;
+        if (offset == 0 && buff.length % cn == 0) {
+            // get() copies no more than the Mat holds, so a larger array is fine
+            m.get(0, 0, buff);
+        } else {
+            ByteBuffer data = scratch(count, type);
+            Mat_to_vector_buffer(m, type, data);
+            data.asIntBuffer().get(buff, offset, count * cn);
+        }
+        return count;
+    }
+
+    private static int getVector(Mat m, int type, float[] buff, int offset) {
+        int count = checkVectorMat(m, type);
+        int cn = CvType.channels(type);
+        checkRange(buff.length, offset, (long) count * cn);
+        if (count == 0)
+            return 0;
+        if (offset == 0 && buff.length % cn == 0) {
+            // get() copies no more than the Mat holds, so a larger array is fine
+            m.get(0, 0, buff);
+        } else {
+            ByteBuffer data = scratch(count, type);
+            Mat_to_vector_buffer(m, type, data);
+            data.asFloatBuffer().get(buff, offset, count * cn);
+        }
+        return count;
+    }
+
+    private static int getVector(Mat m, int type, double[] buff, int offset) {
+        int count = checkVectorMat(m, type);
+        int cn = CvType.channels(type);
+        checkRange(buff.length, offset, (long) count * cn);
+        if (count == 0)
+            return 0;
+        if (offset == 0 && buff.length % cn == 0) {
+            // get() copies no more than the Mat holds, so a larger array is fine
+            m.get(0, 0, buff);
+        } else {
+            ByteBuffer data = scratch(count, type);
+            Mat_to_vector_buffer(m, type, data);
+            data.asDoubleBuffer().get(buff, offset, count * cn);
+        }
+        return count;
+    }
 }
@@ -0,0 +1,349 @@
+package org.opencv.videoio;
+
+import java.util.ArrayDeque;
+
+import org.opencv.core.Mat;
+
+/**
+ * Decodes frames on a dedicated thread into a bounded ring of reusable Mats, so that decoding
+ * runs ahead of processing instead of alternating with it.
+ *
+ * Frames come from a {@link FrameSource}; {@link #of(VideoCapture)} adapts a
+ * {@link VideoCapture}, and tests can supply a synthetic source. The consumer takes decoded
+ * frames with {@link #acquire()} and hands each one back with {@link #recycle(Mat)} when done,
+ * after which its memory is reused for a later frame. When every ring slot holds an unconsumed
+ * frame, the grab thread either waits ({@link Policy#BLOCK}) or overwrites the oldest one
+ * ({@link Policy#DROP_OLDEST}). With DROP_OLDEST one slot is kept free for the next read as long
+ * as the consumer holds fewer than {@code ringSize - 1} frames, so at most {@code ringSize - 1}
+ * frames are queued and the newest frame is never lost at the end of the stream.
+ *
+ * Example use:
+ *
+ * PrefetchingCapture capture = new PrefetchingCapture(PrefetchingCapture.of(videoCapture), 3, PrefetchingCapture.Policy.BLOCK);
+ * capture.start();
+ * Mat frame;
+ * while ((frame = capture.acquire()) != null) {
+ *     process(frame);
+ *     capture.recycle(frame);
+ * }
+ * capture.close();
+ */
+public class PrefetchingCapture implements AutoCloseable {
+
+    /**
+     * Supplier of frames, called on the grab thread only.
+     */
+    public interface FrameSource {
+        /**
+         * Writes the next frame into {@code dst}, reusing its memory when the geometry allows.
+         * Returns false at the end of the stream or on failure.
+         */
+        public boolean read(Mat dst);
+    }
+
+    public enum Policy {
+        /** The grab thread waits until the consumer recycles a frame. */
+        BLOCK,
+        /** The oldest unconsumed frame is overwritten; decoding never waits for the consumer. */
+        DROP_OLDEST
+    }
+
+    public static FrameSource of(final VideoCapture capture) {
+        return new FrameSource() {
+            @Override
+            public boolean read(Mat dst) {
+                return capture.read(dst);
+            }
+        };
+    }
+
+    private final FrameSource source;
+    private final Policy policy;
+    private final Mat[] slots;
+    private final ArrayDeque<Mat> free = new ArrayDeque<Mat>();
+    private final ArrayDeque<Mat> ready = new ArrayDeque<Mat>();
+    private final Object lock = new Object();
+    private Thread thread;
+    private boolean stopped;
+    private boolean endOfStream;
+
+    private long decoded;
+    private long dropped;
+    private Throwable failure;
+    private long decodeNanosSum;
+    private long decodeNanosMax;
+    private long grabWaitNanos;
+    private long consumerWaitNanos;
+
+    /**
+     * @param ringSize number of reusable Mats; one of them is written by the grab thread while
+     *                 the others hold decoded frames or are used by the consumer
+     */
+    public PrefetchingCapture(FrameSource source, int ringSize, Policy policy) {
+        if (source == null || policy == null)
+            throw new IllegalArgumentException("source and policy are required");
+        if (ringSize < 2)
+            throw new IllegalArgumentException("ringSize must be at least 2: " + ringSize);
+        this.source = source;
+        this.policy = policy;
+        slots = new Mat[ringSize];
+        for (int i = 0; i < ringSize; i++) {
+            slots[i] = new Mat();
+            free.add(slots[i]);
+        }
+    }
+
+    public void start() {
+        synchronized (lock) {
+            if (thread != null)
+                throw new IllegalStateException("Already started");
+            if (stopped)
+                throw new IllegalStateException("Already closed");
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    grabLoop();
+                }
+            }, "OpenCV-Prefetch");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Returns the oldest decoded frame, waiting for one if necessary, or null once the stream
+     * has ended and every decoded frame has been taken, or the capture is closed. The Mat belongs
+     * to the caller until it is passed to {@link #recycle(Mat)}.
+     */
+    public Mat acquire() throws InterruptedException {
+        synchronized (lock) {
+            long start = System.nanoTime();
+            while (ready.isEmpty() && !endOfStream && !stopped)
+                lock.wait();
+            consumerWaitNanos += System.nanoTime() - start;
+            return stopped ? null : ready.pollFirst();
+        }
+    }
+
+    /**
+     * Returns the oldest decoded frame if there is one, without waiting.
+     */
+    public Mat poll() {
+        synchronized (lock) {
+            return ready.pollFirst();
+        }
+    }
+
+    /**
+     * Returns a frame obtained from {@link #acquire()} to the ring.
+     */
+    public void recycle(Mat frame) {
+        synchronized (lock) {
+            boolean owned = false;
+            for (Mat m : slots)
+                owned |= m == frame;
+            if (!owned)
+                throw new IllegalArgumentException("Mat does not belong to this capture");
+            if (stopped) {
+                frame.release();
+                return;
+            }
+            free.addLast(frame);
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Exception or error thrown by the source, which also ends the stream, or null.
+     */
+    public Throwable getFailure() {
+        synchronized (lock) {
+            return failure;
+        }
+    }
+
+    /**
+     * True once the source has reported the end of the stream.
+     */
+    public boolean isEndOfStream() {
+        synchronized (lock) {
+            return endOfStream;
+        }
+    }
+
+    /**
+     * Stops the grab thread, waiting for a read in progress to finish, and wakes a consumer
+     * blocked in {@link #acquire()}. Frames held by the consumer stay valid until {@link #close()}.
+     */
+    public void stop() {
+        Thread t;
+        synchronized (lock) {
+            stopped = true;
+            lock.notifyAll();
+            t = thread;
+        }
+        if (t != null && t != Thread.currentThread()) {
+            boolean interrupted = false;
+            while (t.isAlive()) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the grab thread and frees every ring Mat, including frames still held by the
+     * consumer.
+     */
+    @Override
+    public void close() {
+        stop();
+        synchronized (lock) {
+            for (Mat m : slots)
+                m.release();
+            free.clear();
+            ready.clear();
+        }
+    }
+
+    public long getDecodedCount() {
+        synchronized (lock) {
+            return decoded;
+        }
+    }
+
+    /**
+     * Frames overwritten before the consumer took them ({@link Policy#DROP_OLDEST}).
+     */
+    public long getDroppedCount() {
+        synchronized (lock) {
+            return dropped;
+        }
+    }
+
+    public int getReadyCount() {
+        synchronized (lock) {
+            return ready.size();
+        }
+    }
+
+    public double getMeanDecodeMillis() {
+        synchronized (lock) {
+            return decoded > 0 ? decodeNanosSum / 1e6 / decoded : 0;
+        }
+    }
+
+    public double getMaxDecodeMillis() {
+        synchronized (lock) {
+            return decodeNanosMax / 1e6;
+        }
+    }
+
+    /**
+     * Time the grab thread spent waiting for a free slot.
+     */
+    public double getGrabWaitMillis() {
+        synchronized (lock) {
+            return grabWaitNanos / 1e6;
+        }
+    }
+
+    /**
+     * Time the consumer spent waiting in {@link #acquire()}.
+     */
+    public double getConsumerWaitMillis() {
+        synchronized (lock) {
+            return consumerWaitNanos / 1e6;
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (lock) {
+            return "PrefetchingCapture [ " + policy + ", ring=" + slots.length + ", decoded=" + decoded
+                    + ", dropped=" + dropped + ", ready=" + ready.size()
+                    + ", decode mean=" + String.format("%.2f", getMeanDecodeMillis())
+                    + "ms max=" + String.format("%.2f", getMaxDecodeMillis())
+                    + "ms, grab wait=" + String.format("%.1f", getGrabWaitMillis())
+                    + "ms, consumer wait=" + String.format("%.1f", getConsumerWaitMillis()) + "ms ]";
+        }
+    }
+
+    private void grabLoop() {
+        try {
+            grabFrames();
+        } finally {
+            // whatever ends the thread, a consumer must not wait for frames that never come
+            synchronized (lock) {
+                if (!stopped && !endOfStream) {
+                    endOfStream = true;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    private void grabFrames() {
+        while (true) {
+            Mat slot;
+            synchronized (lock) {
+                long start = System.nanoTime();
+                try {
+                    while (!stopped && free.isEmpty() && (policy == Policy.BLOCK || ready.isEmpty()))
+                        lock.wait();
+                } catch (InterruptedException e) {
+                    stopped = true;
+                }
+                grabWaitNanos += System.nanoTime() - start;
+                if (stopped)
+                    return;
+                slot = free.pollFirst();
+                if (slot == null) {
+                    slot = ready.pollFirst();
+                    dropped++;
+                }
+            }
+
+            long start = System.nanoTime();
+            boolean ok;
+            try {
+                ok = source.read(slot);
+            } catch (Throwable e) {
+                // also Errors such as an UnsatisfiedLinkError from the decoder
+                ok = false;
+                synchronized (lock) {
+                    failure = e;
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+
+            synchronized (lock) {
+                if (stopped)
+                    return;
+                if (!ok) {
+                    free.addFirst(slot);
+                    endOfStream = true;
+                    lock.notifyAll();
+                    return;
+                }
+                decoded++;
+                decodeNanosSum += elapsed;
+                if (elapsed > decodeNanosMax)
+                    decodeNanosMax = elapsed;
+                ready.addLast(slot);
+                if (policy == Policy.DROP_OLDEST && free.isEmpty() && ready.size() > 1) {
+                    // drop now rather than before the next read, which may hit the end of the
+                    // stream and would then lose a frame without replacing it
+                    free.addLast(ready.pollFirst());
+                    dropped++;
+                }
+                lock.notifyAll();
+            }
+        }
+    }
+}
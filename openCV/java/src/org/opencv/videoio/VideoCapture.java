@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import java.util.List;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfInt;
+import org.opencv.core.NativeCleaner;
 import org.opencv.utils.Converters;
 
 // C++: class VideoCapture
@@ -42,7 +43,7 @@ import org.opencv.utils.Converters;
 public class VideoCapture {
 
     protected final long nativeObj;
-    protected VideoCapture(long addr) { nativeObj = addr; }
+    protected VideoCapture(long addr) { nativeObj = NativeCleaner.register(this, addr, DELETER); }
 
     public long getNativeObjAddr() { return nativeObj; }
 
@@ -60,7 +61,7 @@ public class VideoCapture {
      *     destructor.
      */
     public VideoCapture() {
-        nativeObj = VideoCapture_0();
+        nativeObj = NativeCleaner.register(this, VideoCapture_0(), DELETER);
     }
 
 
@@ -95,7 +96,7 @@ public class VideoCapture {
      *     SEE: cv::VideoCaptureAPIs
      */
     public VideoCapture(String filename, int apiPreference) {
-        nativeObj = VideoCapture_1(filename, apiPreference);
+        nativeObj = NativeCleaner.register(this, VideoCapture_1(filename, apiPreference), DELETER);
     }
 
     /**
@@ -124,7 +125,7 @@ public class VideoCapture {
      *     SEE: cv::VideoCaptureAPIs
      */
     public VideoCapture(String filename) {
-        nativeObj = VideoCapture_2(filename);
+        nativeObj = NativeCleaner.register(this, VideoCapture_2(filename), DELETER);
     }
 
 
@@ -144,7 +145,7 @@ public class VideoCapture {
      */
     public VideoCapture(String filename, int apiPreference, MatOfInt params) {
         Mat params_mat = params;
-        nativeObj = VideoCapture_3(filename, apiPreference, params_mat.nativeObj);
+        nativeObj = NativeCleaner.register(this, VideoCapture_3(filename, apiPreference, params_mat.nativeObj), DELETER);
     }
 
 
@@ -164,7 +165,7 @@ public class VideoCapture {
      *     SEE: cv::VideoCaptureAPIs
      */
     public VideoCapture(int index, int apiPreference) {
-        nativeObj = VideoCapture_4(index, apiPreference);
+        nativeObj = NativeCleaner.register(this, VideoCapture_4(index, apiPreference), DELETER);
     }
 
     /**
@@ -178,7 +179,7 @@ public class VideoCapture {
      *     SEE: cv::VideoCaptureAPIs
      */
     public VideoCapture(int index) {
-        nativeObj = VideoCapture_5(index);
+        nativeObj = NativeCleaner.register(this, VideoCapture_5(index), DELETER);
     }
 
 
@@ -198,7 +199,7 @@ public class VideoCapture {
      */
     public VideoCapture(int index, int apiPreference, MatOfInt params) {
         Mat params_mat = params;
-        nativeObj = VideoCapture_6(index, apiPreference, params_mat.nativeObj);
+        nativeObj = NativeCleaner.register(this, VideoCapture_6(index, apiPreference, params_mat.nativeObj), DELETER);
     }
 
 
@@ -547,10 +548,18 @@ public class VideoCapture {
     // Unknown type 'vector_VideoCapture' (I), skipping the function
 
 
-    @Override
-    protected void finalize() throws Throwable {
-        delete(nativeObj);
-    }
+    // freed by NativeCleaner instead of finalize()
+    private static final NativeCleaner.Deleter DELETER = new NativeCleaner.Deleter() {
+        @Override
+        public void delete(long addr) {
+            VideoCapture.delete(addr);
+        }
+
+        @Override
+        public long bytes(long addr) {
+            return 0;
+        }
+    };
 
 
 
@@ -616,7 +625,7 @@ public class VideoCapture {
     // C++:  bool cv::VideoCapture::getExceptionMode()
     private static native boolean getExceptionMode_0(long nativeObj);
 
-    // native support for java finalize()
+    // native support for NativeCleaner
     private static native void delete(long nativeObj);
 
 }
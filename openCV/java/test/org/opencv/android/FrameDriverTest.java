@@ -0,0 +1,312 @@
+package org.opencv.android;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.test.NativeLibrary;
+
+public class FrameDriverTest {
+
+    private static class CountingSource implements FrameDriver.FrameSource {
+        private final int mFrames;
+        private final int mFormat;
+        int mNext;
+        boolean mClosed;
+
+        CountingSource(int frames, int format) {
+            mFrames = frames;
+            mFormat = format;
+        }
+
+        @Override
+        public int width() {
+            return 64;
+        }
+
+        @Override
+        public int height() {
+            return 48;
+        }
+
+        @Override
+        public int format() {
+            return mFormat;
+        }
+
+        @Override
+        public boolean next(Mat yuv) {
+            if (mNext == mFrames)
+                return false;
+            mNext++;
+            return true;
+        }
+
+        @Override
+        public void close() {
+            mClosed = true;
+        }
+    }
+
+    // time only moves when the driver sleeps or a listener advances it
+    private static class FakeClock implements FrameDriver.Clock {
+        long mNanos = 1000000000L;
+        long mSlept;
+
+        @Override
+        public long nanoTime() {
+            return mNanos;
+        }
+
+        @Override
+        public void sleepNanos(long nanos) {
+            mNanos += nanos;
+            mSlept += nanos;
+        }
+    }
+
+    private static class RecordingListener implements FrameDriver.Listener {
+        int mStartedWidth;
+        int mStartedHeight;
+        int mStopped;
+        long mFrames;
+        long mLastIndex = -1;
+        FakeClock mClock;
+        long mWorkNanos;
+
+        @Override
+        public void onStarted(int width, int height) {
+            mStartedWidth = width;
+            mStartedHeight = height;
+        }
+
+        @Override
+        public void onFrame(FrameDriver.Frame frame) {
+            assertEquals(mLastIndex + 1, frame.index());
+            mLastIndex = frame.index();
+            mFrames++;
+            // simulated processing
+            if (mClock != null)
+                mClock.mNanos += mWorkNanos;
+        }
+
+        @Override
+        public void onStopped() {
+            mStopped++;
+        }
+    }
+
+    private FrameDriver driver;
+
+    @After
+    public void tearDown() {
+        if (driver != null)
+            driver.release();
+    }
+
+    @Test
+    public void testDeliversUntilSourceEnds() {
+        NativeLibrary.assumeLoaded();
+        CountingSource source = new CountingSource(25, FrameDriver.FORMAT_NV21);
+        RecordingListener listener = new RecordingListener();
+        driver = new FrameDriver(source, listener);
+
+        assertEquals(25, driver.run(Long.MAX_VALUE));
+        assertEquals(64, listener.mStartedWidth);
+        assertEquals(48, listener.mStartedHeight);
+        assertEquals(25, listener.mFrames);
+        assertEquals(1, listener.mStopped);
+        assertEquals(25, driver.getFrameCount());
+        assertEquals(25, driver.getLatency().getFrameCount());
+
+        driver.release();
+        driver = null;
+        assertTrue(source.mClosed);
+    }
+
+    @Test
+    public void testMaxFrames() {
+        NativeLibrary.assumeLoaded();
+        RecordingListener listener = new RecordingListener();
+        driver = new FrameDriver(new CountingSource(100, FrameDriver.FORMAT_I420), listener);
+        assertEquals(10, driver.run(10));
+        assertEquals(10, listener.mFrames);
+
+        // a second run starts over
+        listener.mLastIndex = -1;
+        assertEquals(10, driver.run(10));
+        assertEquals(20, listener.mFrames);
+        assertEquals(2, listener.mStopped);
+    }
+
+    @Test
+    public void testStopFromListener() {
+        NativeLibrary.assumeLoaded();
+        RecordingListener listener = new RecordingListener() {
+            @Override
+            public void onFrame(FrameDriver.Frame frame) {
+                super.onFrame(frame);
+                if (frame.index() == 4)
+                    driver.stop();
+            }
+        };
+        driver = new FrameDriver(new CountingSource(100, FrameDriver.FORMAT_NV21), listener);
+        assertEquals(5, driver.run(Long.MAX_VALUE));
+        assertEquals(1, listener.mStopped);
+    }
+
+    @Test
+    public void testListenerFailureStillStops() {
+        NativeLibrary.assumeLoaded();
+        RecordingListener listener = new RecordingListener() {
+            @Override
+            public void onFrame(FrameDriver.Frame frame) {
+                throw new IllegalStateException("processing failed");
+            }
+        };
+        driver = new FrameDriver(new CountingSource(10, FrameDriver.FORMAT_NV21), listener);
+        try {
+            driver.run(10);
+            fail("exception expected");
+        } catch (IllegalStateException e) {
+            assertEquals("processing failed", e.getMessage());
+        }
+        assertEquals(1, listener.mStopped);
+    }
+
+    @Test
+    public void testPacing() {
+        NativeLibrary.assumeLoaded();
+        RecordingListener listener = new RecordingListener();
+        FakeClock clock = new FakeClock();
+        driver = new FrameDriver(new CountingSource(10, FrameDriver.FORMAT_NV21), listener);
+        driver.setClock(clock);
+        driver.setFrameRate(100);
+        assertEquals(10, driver.run(10));
+        assertEquals(10, listener.mFrames);
+        // every frame waits for its 10 ms slot
+        assertEquals(100000000L, clock.mSlept);
+        assertEquals(100, driver.getThroughputFps(), 1e-9);
+        assertEquals(9, driver.getIntervals().getFrameCount());
+        assertEquals(10, driver.getIntervals().getMeanMillis(), 1e-9);
+    }
+
+    @Test
+    public void testPacingDoesNotCatchUp() {
+        NativeLibrary.assumeLoaded();
+        RecordingListener listener = new RecordingListener();
+        FakeClock clock = new FakeClock();
+        listener.mClock = clock;
+        listener.mWorkNanos = 25000000;
+        driver = new FrameDriver(new CountingSource(4, FrameDriver.FORMAT_NV21), listener);
+        driver.setClock(clock);
+        driver.setFrameRate(100);
+        assertEquals(4, driver.run(10));
+        // only the first frame is on schedule, the slow listener delays the others
+        assertEquals(10000000L, clock.mSlept);
+        assertEquals(25, driver.getIntervals().getMeanMillis(), 1e-9);
+    }
+
+    @Test
+    public void testLatencyMeasuresListenerOnly() {
+        NativeLibrary.assumeLoaded();
+        RecordingListener listener = new RecordingListener();
+        FakeClock clock = new FakeClock();
+        listener.mClock = clock;
+        listener.mWorkNanos = 2000000;
+        driver = new FrameDriver(new CountingSource(20, FrameDriver.FORMAT_NV21), listener);
+        driver.setClock(clock);
+        driver.run(20);
+        assertEquals(2, driver.getLatency().getMeanMillis(), 1e-9);
+        assertEquals(0, driver.getMeanSourceMillis(), 1e-9);
+        assertTrue(driver.toString().contains("frames=20"));
+    }
+
+    @Test
+    public void testPatternFrames() {
+        NativeLibrary.assumeLoaded();
+        driver = new FrameDriver(FrameDriver.patternSource(320, 240), new RecordingListener() {
+            @Override
+            public void onFrame(FrameDriver.Frame frame) {
+                super.onFrame(frame);
+                Mat gray = frame.gray();
+                assertEquals(240, gray.rows());
+                assertEquals(320, gray.cols());
+                assertEquals(CvType.CV_8UC1, gray.type());
+                assertEquals(frame.yuv().dataAddr(), gray.dataAddr());
+
+                Mat uv = frame.uvPlane();
+                assertEquals(120, uv.rows());
+                assertEquals(160, uv.cols());
+                assertEquals(CvType.CV_8UC2, uv.type());
+
+                Mat rgba = frame.rgba();
+                assertEquals(CvType.CV_8UC4, rgba.type());
+                assertEquals(240, rgba.rows());
+                // memoized within the frame
+                assertSame(rgba, frame.rgba());
+                long data = rgba.dataAddr();
+                frame.rgba();
+                assertEquals(data, rgba.dataAddr());
+            }
+        });
+        assertEquals(3, driver.run(3));
+    }
+
+    @Test
+    public void testRawYuvSource() throws IOException {
+        NativeLibrary.assumeLoaded();
+        int width = 8, height = 4, frameBytes = width * height * 3 / 2;
+        File file = File.createTempFile("frames", ".yuv");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                for (int f = 0; f < 2; f++)
+                    for (int i = 0; i < frameBytes; i++)
+                        out.write(10 * (f + 1));
+                // a trailing partial frame is ignored
+                out.write(new byte[frameBytes / 2]);
+            } finally {
+                out.close();
+            }
+
+            final int[] firstY = new int[3];
+            RecordingListener listener = new RecordingListener() {
+                @Override
+                public void onFrame(FrameDriver.Frame frame) {
+                    super.onFrame(frame);
+                    byte[] px = new byte[1];
+                    frame.gray().get(0, 0, px);
+                    firstY[(int) frame.index()] = px[0];
+                    assertNull(frame.uvPlane());
+                }
+            };
+            driver = new FrameDriver(FrameDriver.rawYuvSource(file.getPath(), width, height, FrameDriver.FORMAT_I420, false), listener);
+            assertEquals(2, driver.run(10));
+            assertEquals(10, firstY[0]);
+            assertEquals(20, firstY[1]);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedFormat() {
+        new FrameDriver(new CountingSource(1, 3), new RecordingListener());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOddSize() {
+        FrameDriver.patternSource(63, 48);
+    }
+}
@@ -0,0 +1,143 @@
+package org.opencv.core
+
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.opencv.test.NativeLibrary
+
+class MatExprTest {
+
+    private val mats = ArrayList<Mat>()
+    private lateinit var evaluator: MatExprEvaluator
+
+    @Before
+    fun setUp() {
+        NativeLibrary.assumeLoaded()
+        evaluator = MatExprEvaluator()
+    }
+
+    @After
+    fun tearDown() {
+        if (this::evaluator.isInitialized)
+            evaluator.close()
+        for (m in mats)
+            m.release()
+    }
+
+    private fun mat(rows: Int, cols: Int, seed: Int): Mat {
+        val m = Mat(rows, cols, CvType.CV_32F)
+        val data = FloatArray(rows * cols) { ((it * 7 + seed * 13) % 17 - 8) / 4f }
+        m.put(0, 0, data)
+        mats.add(m)
+        return m
+    }
+
+    private fun track(m: Mat): Mat {
+        mats.add(m)
+        return m
+    }
+
+    private fun assertSameValues(expected: Mat, actual: Mat) {
+        assertEquals(expected.size(), actual.size())
+        assertEquals(0.0, Core.norm(expected, actual, Core.NORM_INF), 1e-4)
+    }
+
+    // 2 * (A * B) + C - 1 with one native call per operator and a new Mat per intermediate
+    private fun eager(a: Mat, b: Mat, c: Mat, dst: Mat): Int {
+        val product = track(Mat())
+        Core.gemm(a, b, 1.0, track(Mat()), 0.0, product)
+        val scaled = track(Mat())
+        product.convertTo(scaled, -1, 2.0)
+        val sum = track(Mat())
+        Core.add(scaled, c, sum)
+        Core.subtract(sum, Scalar.all(1.0), dst)
+        return 4
+    }
+
+    @Test
+    fun testFusedChainMatchesEager() {
+        val a = mat(8, 6, 1)
+        val b = mat(6, 5, 2)
+        val c = mat(8, 5, 3)
+        val expected = track(Mat())
+        val eagerCalls = eager(a, b, c, expected)
+
+        val dst = track(Mat())
+        evaluator.eval(2.0 * (a.lazy() * b.lazy()) + c.lazy() - 1.0, dst)
+        assertSameValues(expected, dst)
+        // gemm folds the scale and the addend, the offset is one add
+        assertEquals(2, evaluator.lastCallCount)
+        assertTrue(evaluator.lastCallCount < eagerCalls)
+        assertEquals(0, evaluator.temporaries)
+    }
+
+    @Test
+    fun testRepeatedEvalReusesMemory() {
+        val a = mat(16, 16, 1)
+        val b = mat(16, 16, 2)
+        val c = mat(16, 16, 3)
+        val dst = track(Mat())
+        val expr = (a.lazy() * b.lazy().t() + c.lazy()).mul(c.lazy()) * 0.5
+        evaluator.eval(expr, dst)
+        val data = dst.dataAddr()
+        val temporaries = evaluator.temporaries
+        for (i in 0 until 10)
+            evaluator.eval(expr, dst)
+        assertEquals(data, dst.dataAddr())
+        assertEquals(temporaries, evaluator.temporaries)
+    }
+
+    @Test
+    fun testDestinationIsOperand() {
+        val a = mat(4, 4, 1)
+        val b = mat(4, 4, 2)
+        val expected = track(Mat())
+        Core.addWeighted(a, 1.0, b, 2.0, 0.0, expected)
+
+        evaluator.eval(a.lazy() + 2.0 * b.lazy(), a)
+        assertSameValues(expected, a)
+    }
+
+    @Test
+    fun testDestinationIsViewOfOperand() {
+        val a = mat(4, 4, 1)
+        val b = mat(4, 4, 2)
+        val expected = track(Mat())
+        Core.gemm(a, b, 1.0, track(Mat()), 0.0, expected)
+
+        // a different header over the same data must still be detected
+        val view = track(a.submat(0, 4, 0, 4))
+        evaluator.eval(a.lazy() * b.lazy(), view)
+        assertSameValues(expected, a)
+        // the product went through a temporary and was copied into place
+        assertEquals(2, evaluator.lastCallCount)
+    }
+
+    @Test
+    fun testDisjointViewsAreNotAliases() {
+        val parent = mat(8, 4, 1)
+        val top = track(parent.submat(0, 4, 0, 4))
+        val bottom = track(parent.submat(4, 8, 0, 4))
+        val expected = track(Mat())
+        top.convertTo(expected, -1, 3.0)
+
+        evaluator.eval(3.0 * top.lazy(), bottom)
+        assertSameValues(expected, bottom)
+        assertEquals(1, evaluator.lastCallCount)
+    }
+
+    @Test
+    fun testOverlappingViewsAreAliases() {
+        val parent = mat(6, 4, 1)
+        val upper = track(parent.submat(0, 4, 0, 4))
+        val lower = track(parent.submat(2, 6, 0, 4))
+        val expected = track(Mat())
+        upper.convertTo(expected, -1, 3.0)
+
+        evaluator.eval(3.0 * upper.lazy(), lower)
+        assertSameValues(expected, lower)
+        assertEquals(2, evaluator.lastCallCount)
+    }
+}
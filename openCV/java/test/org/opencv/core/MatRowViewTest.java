@@ -0,0 +1,85 @@
+package org.opencv.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencv.test.NativeLibrary;
+
+public class MatRowViewTest {
+
+    private static final int COUNT = 10;
+
+    private Mat mat;
+    private MatOfRect rects;
+
+    @Before
+    public void setUp() {
+        NativeLibrary.assumeLoaded();
+    }
+
+    @After
+    public void tearDown() {
+        if (rects != null)
+            rects.release();
+        if (mat != null)
+            mat.release();
+    }
+
+    private RectView view(int chunkRows) {
+        rects = new MatOfRect(mat);
+        return new RectView(rects, chunkRows);
+    }
+
+    private static int[] rectData() {
+        int[] data = new int[COUNT * 4];
+        for (int i = 0; i < COUNT; i++) {
+            data[4 * i] = i;
+            data[4 * i + 1] = 10 * i;
+            data[4 * i + 2] = COUNT - i;
+            data[4 * i + 3] = 2;
+        }
+        return data;
+    }
+
+    private static void assertRects(RectView view) {
+        assertEquals(COUNT, view.size());
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(i, view.x(i));
+            assertEquals(10 * i, view.y(i));
+            assertEquals(COUNT - i, view.width(i));
+            assertEquals(2, view.height(i));
+        }
+        assertArrayEquals(new int[] { 0, 1, 2 }, topK(view, RectView.AREA, 3));
+    }
+
+    private static int[] topK(RectView view, int field, int k) {
+        int[] out = new int[k];
+        view.topK(field, k, true, out);
+        return out;
+    }
+
+    @Test
+    public void testColumnVector() {
+        mat = new Mat(COUNT, 1, CvType.CV_32SC4);
+        mat.put(0, 0, rectData());
+        assertRects(view(3));
+    }
+
+    @Test
+    public void testRowVector() {
+        mat = new Mat(1, COUNT, CvType.CV_32SC4);
+        mat.put(0, 0, rectData());
+        assertRects(view(3));
+    }
+
+    @Test
+    public void testSingleChannelRows() {
+        // one rect per row of four single-channel columns
+        mat = new Mat(COUNT, 4, CvType.CV_32SC1);
+        mat.put(0, 0, rectData());
+        assertRects(view(3));
+    }
+}
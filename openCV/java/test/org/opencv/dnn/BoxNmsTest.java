@@ -0,0 +1,499 @@
+package org.opencv.dnn;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.opencv.core.MatOfFloat;
+import org.opencv.core.MatOfInt;
+import org.opencv.core.MatOfRect;
+import org.opencv.core.MatOfRect2d;
+import org.opencv.core.Rect;
+import org.opencv.core.Rect2d;
+import org.opencv.test.NativeLibrary;
+
+/**
+ * Compares BoxNms with Dnn.NMSBoxes, NMSBoxesBatched and softNMSBoxes when the native library is
+ * available, and always with straight ports of their loops.
+ */
+public class BoxNmsTest {
+
+    private static final double EPSILON = Math.ulp(1.0);
+
+    // overlaps computed by the reference loops
+    private static long referenceOverlaps;
+
+    private static final class Boxes {
+        final int n;
+        final double[] x, y, w, h;
+        final float[] scores;
+        final int[] classIds;
+
+        Boxes(int n) {
+            this.n = n;
+            x = new double[n];
+            y = new double[n];
+            w = new double[n];
+            h = new double[n];
+            scores = new float[n];
+            classIds = new int[n];
+        }
+    }
+
+    // random boxes with tied scores, duplicates, zero-area and very large boxes mixed in
+    private static Boxes randomBoxes(Random r, int n) {
+        Boxes b = new Boxes(n);
+        boolean integer = r.nextBoolean();
+        double maxW = r.nextBoolean() ? 400 : 80;
+        for (int i = 0; i < n; i++) {
+            b.x[i] = r.nextDouble() * 1000;
+            b.y[i] = r.nextDouble() * 800;
+            b.w[i] = r.nextDouble() * maxW;
+            b.h[i] = r.nextDouble() * 80;
+            switch (r.nextInt(40)) {
+            case 0:
+                b.w[i] = 0;
+                break;
+            case 1:
+                b.h[i] = 0;
+                break;
+            case 2:
+                b.w[i] = 0;
+                b.h[i] = 0;
+                break;
+            case 3:
+                b.w[i] = 5000;
+                b.h[i] = 5000;
+                break;
+            case 4:
+                if (i > 0) {
+                    b.x[i] = b.x[i - 1];
+                    b.y[i] = b.y[i - 1];
+                    b.w[i] = b.w[i - 1];
+                    b.h[i] = b.h[i - 1];
+                }
+                break;
+            default:
+                break;
+            }
+            if (integer) {
+                b.x[i] = Math.floor(b.x[i]);
+                b.y[i] = Math.floor(b.y[i]);
+                b.w[i] = Math.floor(b.w[i]);
+                b.h[i] = Math.floor(b.h[i]);
+            }
+            b.scores[i] = r.nextInt(8) == 0 ? 0.5f : r.nextFloat();
+            b.classIds[i] = r.nextInt(5);
+        }
+        return b;
+    }
+
+    @Test
+    public void testNmsMatchesReference() {
+        Random r = new Random(1);
+        BoxNms nms = new BoxNms();
+        for (int t = 0; t < 300; t++) {
+            Boxes b = randomBoxes(r, 1 + r.nextInt(t % 5 == 0 ? 2000 : 200));
+            float scoreThreshold = r.nextFloat() * 0.3f;
+            float nmsThreshold = r.nextFloat();
+            float eta = r.nextBoolean() ? 1f : 0.5f + r.nextFloat() * 0.5f;
+            int topK = r.nextBoolean() ? 0 : r.nextInt(b.n + 5);
+
+            int[] indices = new int[b.n];
+            int kept = nms.nms(b.x, b.y, b.w, b.h, b.scores, b.n, scoreThreshold, nmsThreshold, eta, topK, indices);
+            int[] expected = referenceNms(b.x, b.y, b.w, b.h, b.scores, b.n, scoreThreshold, nmsThreshold, eta, topK);
+            assertArrayEquals("run " + t, expected, Arrays.copyOf(indices, kept));
+        }
+    }
+
+    @Test
+    public void testNmsBatchedMatchesReference() {
+        Random r = new Random(2);
+        BoxNms nms = new BoxNms();
+        for (int t = 0; t < 300; t++) {
+            Boxes b = randomBoxes(r, 1 + r.nextInt(t % 5 == 0 ? 2000 : 200));
+            float scoreThreshold = r.nextFloat() * 0.3f;
+            float nmsThreshold = r.nextFloat();
+            float eta = r.nextBoolean() ? 1f : 0.9f;
+            int topK = r.nextBoolean() ? 0 : r.nextInt(b.n + 5);
+
+            // NMSBoxesBatched offsets every class by classId * (max coordinate + 1)
+            double maxCoord = 0;
+            for (int i = 0; i < b.n; i++) {
+                maxCoord = Math.max(maxCoord, Math.max(b.x[i], b.y[i]));
+                maxCoord = Math.max(maxCoord, Math.max(b.x[i] + b.w[i], b.y[i] + b.h[i]));
+            }
+            double[] ox = new double[b.n];
+            double[] oy = new double[b.n];
+            for (int i = 0; i < b.n; i++) {
+                double offset = b.classIds[i] * (maxCoord + 1);
+                ox[i] = b.x[i] + offset;
+                oy[i] = b.y[i] + offset;
+            }
+
+            int[] indices = new int[b.n];
+            int kept = nms.nmsBatched(b.x, b.y, b.w, b.h, b.scores, b.classIds, b.n,
+                    scoreThreshold, nmsThreshold, eta, topK, indices);
+            int[] expected = referenceNms(ox, oy, b.w, b.h, b.scores, b.n, scoreThreshold, nmsThreshold, eta, topK);
+            assertArrayEquals("run " + t, expected, Arrays.copyOf(indices, kept));
+        }
+    }
+
+    @Test
+    public void testSoftNmsMatchesReference() {
+        Random r = new Random(3);
+        BoxNms nms = new BoxNms();
+        for (int t = 0; t < 300; t++) {
+            Boxes b = randomBoxes(r, 1 + r.nextInt(t % 5 == 0 ? 1000 : 200));
+            float scoreThreshold = r.nextFloat() * 0.3f;
+            float nmsThreshold = r.nextFloat();
+            int topK = r.nextBoolean() ? 0 : r.nextInt(b.n + 5);
+            int method = r.nextBoolean() ? Dnn.SoftNMSMethod_SOFTNMS_LINEAR : Dnn.SoftNMSMethod_SOFTNMS_GAUSSIAN;
+            float sigma = 0.1f + r.nextFloat();
+
+            int[] indices = new int[b.n];
+            float[] updated = new float[b.n];
+            int kept = nms.softNms(b.x, b.y, b.w, b.h, b.scores, b.n, scoreThreshold, nmsThreshold,
+                    topK, sigma, method, indices, updated);
+            List<Float> expectedScores = new ArrayList<Float>();
+            int[] expected = referenceSoftNms(b.x, b.y, b.w, b.h, b.scores, b.n, scoreThreshold, nmsThreshold,
+                    topK, sigma, method, expectedScores);
+            assertArrayEquals("run " + t, expected, Arrays.copyOf(indices, kept));
+            for (int i = 0; i < kept; i++)
+                assertEquals("run " + t, expectedScores.get(i), updated[i], 0f);
+        }
+    }
+
+    @Test
+    public void testNmsMatchesDnn() {
+        NativeLibrary.assumeLoaded();
+        Random r = new Random(11);
+        BoxNms nms = new BoxNms();
+        for (int t = 0; t < 100; t++) {
+            Boxes b = randomBoxes(r, 1 + r.nextInt(t % 5 == 0 ? 2000 : 200));
+            float scoreThreshold = r.nextFloat() * 0.3f;
+            float nmsThreshold = r.nextFloat();
+            float eta = r.nextBoolean() ? 1f : 0.5f + r.nextFloat() * 0.5f;
+            int topK = r.nextBoolean() ? 0 : r.nextInt(b.n + 5);
+
+            MatOfRect2d boxes = rect2d(b);
+            MatOfFloat scores = new MatOfFloat(b.scores);
+            MatOfInt expected = new MatOfInt();
+            try {
+                Dnn.NMSBoxes(boxes, scores, scoreThreshold, nmsThreshold, expected, eta, topK);
+                int[] indices = new int[b.n];
+                int kept = nms.nms(b.x, b.y, b.w, b.h, b.scores, b.n, scoreThreshold, nmsThreshold, eta, topK, indices);
+                assertArrayEquals("run " + t, expected.toArray(), Arrays.copyOf(indices, kept));
+            } finally {
+                boxes.release();
+                scores.release();
+                expected.release();
+            }
+        }
+    }
+
+    @Test
+    public void testNmsBatchedMatchesDnn() {
+        NativeLibrary.assumeLoaded();
+        Random r = new Random(12);
+        BoxNms nms = new BoxNms();
+        for (int t = 0; t < 100; t++) {
+            Boxes b = randomBoxes(r, 1 + r.nextInt(t % 5 == 0 ? 2000 : 200));
+            float scoreThreshold = r.nextFloat() * 0.3f;
+            float nmsThreshold = r.nextFloat();
+            float eta = r.nextBoolean() ? 1f : 0.9f;
+            int topK = r.nextBoolean() ? 0 : r.nextInt(b.n + 5);
+
+            MatOfRect2d boxes = rect2d(b);
+            MatOfFloat scores = new MatOfFloat(b.scores);
+            MatOfInt classIds = new MatOfInt(b.classIds);
+            MatOfInt expected = new MatOfInt();
+            try {
+                Dnn.NMSBoxesBatched(boxes, scores, classIds, scoreThreshold, nmsThreshold, expected, eta, topK);
+                int[] indices = new int[b.n];
+                int kept = nms.nmsBatched(b.x, b.y, b.w, b.h, b.scores, b.classIds, b.n,
+                        scoreThreshold, nmsThreshold, eta, topK, indices);
+                assertArrayEquals("run " + t, expected.toArray(), Arrays.copyOf(indices, kept));
+            } finally {
+                boxes.release();
+                scores.release();
+                classIds.release();
+                expected.release();
+            }
+        }
+    }
+
+    @Test
+    public void testSoftNmsMatchesDnn() {
+        NativeLibrary.assumeLoaded();
+        Random r = new Random(13);
+        BoxNms nms = new BoxNms();
+        for (int t = 0; t < 100; t++) {
+            // the Java binding of softNMSBoxes takes integer boxes and always decays with a Gaussian
+            Boxes b = randomBoxes(r, 1 + r.nextInt(t % 5 == 0 ? 1000 : 200));
+            Rect[] rects = new Rect[b.n];
+            for (int i = 0; i < b.n; i++) {
+                b.x[i] = Math.floor(b.x[i]);
+                b.y[i] = Math.floor(b.y[i]);
+                b.w[i] = Math.floor(b.w[i]);
+                b.h[i] = Math.floor(b.h[i]);
+                rects[i] = new Rect((int) b.x[i], (int) b.y[i], (int) b.w[i], (int) b.h[i]);
+            }
+            float scoreThreshold = r.nextFloat() * 0.3f;
+            float nmsThreshold = r.nextFloat();
+            int topK = r.nextBoolean() ? 0 : r.nextInt(b.n + 5);
+            float sigma = 0.1f + r.nextFloat();
+
+            MatOfRect boxes = new MatOfRect(rects);
+            MatOfFloat scores = new MatOfFloat(b.scores);
+            MatOfFloat expectedScores = new MatOfFloat();
+            MatOfInt expected = new MatOfInt();
+            try {
+                Dnn.softNMSBoxes(boxes, scores, expectedScores, scoreThreshold, nmsThreshold, expected, topK, sigma);
+                int[] indices = new int[b.n];
+                float[] updated = new float[b.n];
+                int kept = nms.softNms(b.x, b.y, b.w, b.h, b.scores, b.n, scoreThreshold, nmsThreshold,
+                        topK, sigma, Dnn.SoftNMSMethod_SOFTNMS_GAUSSIAN, indices, updated);
+                assertArrayEquals("run " + t, expected.toArray(), Arrays.copyOf(indices, kept));
+                // the native decay uses the float exp, which may differ from Math.exp in the last bit
+                float[] expectedUpdated = expectedScores.toArray();
+                for (int i = 0; i < kept; i++)
+                    assertEquals("run " + t, expectedUpdated[i], updated[i], 1e-6f);
+            } finally {
+                boxes.release();
+                scores.release();
+                expectedScores.release();
+                expected.release();
+            }
+        }
+    }
+
+    @Test
+    public void testTiedScoresKeepInputOrder() {
+        int n = 100;
+        Boxes b = new Boxes(n);
+        for (int i = 0; i < n; i++) {
+            // disjoint boxes, all with the same score
+            b.x[i] = i * 20;
+            b.y[i] = 0;
+            b.w[i] = 10;
+            b.h[i] = 10;
+            b.scores[i] = 0.7f;
+        }
+        int[] indices = new int[n];
+        BoxNms nms = new BoxNms();
+        assertEquals(n, nms.nms(b.x, b.y, b.w, b.h, b.scores, n, 0.5f, 0.5f, indices));
+        for (int i = 0; i < n; i++)
+            assertEquals(i, indices[i]);
+        assertEquals(10, nms.nms(b.x, b.y, b.w, b.h, b.scores, n, 0.5f, 0.5f, 1f, 10, indices));
+        assertEquals(9, indices[9]);
+    }
+
+    @Test
+    public void testZeroAreaBoxesSuppressEachOther() {
+        // two empty boxes have an overlap of 1 wherever they are, like cv::jaccardDistance
+        double[] x = { 0, 500, 10 };
+        double[] y = { 0, 500, 10 };
+        double[] w = { 0, 0, 20 };
+        double[] h = { 0, 0, 20 };
+        float[] scores = { 0.9f, 0.8f, 0.7f };
+        int[] indices = new int[3];
+        int kept = new BoxNms().nms(x, y, w, h, scores, 3, 0f, 0.5f, indices);
+        assertArrayEquals(new int[] { 0, 2 }, Arrays.copyOf(indices, kept));
+    }
+
+    @Test
+    public void testIndicesLengthLimitsResult() {
+        Random r = new Random(4);
+        Boxes b = randomBoxes(r, 500);
+        BoxNms nms = new BoxNms();
+        int[] all = new int[b.n];
+        int kept = nms.nms(b.x, b.y, b.w, b.h, b.scores, b.n, 0.1f, 0.5f, all);
+        assertTrue(kept > 5);
+        int[] few = new int[5];
+        assertEquals(5, nms.nms(b.x, b.y, b.w, b.h, b.scores, b.n, 0.1f, 0.5f, few));
+        assertArrayEquals(Arrays.copyOf(all, 5), few);
+    }
+
+    @Test
+    public void testEmptyInput() {
+        double[] none = new double[0];
+        assertEquals(0, new BoxNms().nms(none, none, none, none, new float[0], 0, 0f, 0.5f, new int[0]));
+    }
+
+    @Test
+    public void testInvalidParameters() {
+        double[] one = { 1 };
+        float[] score = { 1f };
+        int[] ids = { 0 };
+        int[] indices = new int[1];
+        BoxNms nms = new BoxNms();
+        float[][] invalid = {
+            { -0.1f, 0.5f, 1f },
+            { 0.1f, -0.5f, 1f },
+            { 0.1f, 0.5f, 0f },
+            { 0.1f, 0.5f, -1f },
+            { Float.NaN, 0.5f, 1f },
+            { 0.1f, Float.NaN, 1f },
+            { 0.1f, 0.5f, Float.NaN },
+        };
+        for (float[] p : invalid) {
+            try {
+                nms.nms(one, one, one, one, score, 1, p[0], p[1], p[2], 0, indices);
+                fail("nms accepted " + Arrays.toString(p));
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            try {
+                nms.nmsBatched(one, one, one, one, score, ids, 1, p[0], p[1], p[2], 0, indices);
+                fail("nmsBatched accepted " + Arrays.toString(p));
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        try {
+            nms.softNms(one, one, one, one, score, 1, 0.1f, 0.5f, 0, -1f,
+                    Dnn.SoftNMSMethod_SOFTNMS_GAUSSIAN, indices, new float[1]);
+            fail("softNms accepted a negative sigma");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testManyBoxesComputeFewOverlaps() {
+        Random r = new Random(5);
+        int n = 5000;
+        Boxes b = new Boxes(n);
+        for (int i = 0; i < n; i++) {
+            b.x[i] = r.nextDouble() * 1920;
+            b.y[i] = r.nextDouble() * 1080;
+            b.w[i] = 10 + r.nextDouble() * 60;
+            b.h[i] = 10 + r.nextDouble() * 60;
+            b.scores[i] = r.nextFloat();
+        }
+        BoxNms nms = new BoxNms();
+        int[] indices = new int[n];
+        referenceOverlaps = 0;
+        int[] expected = referenceNms(b.x, b.y, b.w, b.h, b.scores, n, 0.1f, 0.45f, 1f, 0);
+        int kept = nms.nms(b.x, b.y, b.w, b.h, b.scores, n, 0.1f, 0.45f, indices);
+        assertArrayEquals(expected, Arrays.copyOf(indices, kept));
+        // the grid only compares boxes sharing a cell; counted rather than timed, so it is stable
+        assertTrue("grid " + nms.overlapCount + ", quadratic loop " + referenceOverlaps,
+                nms.overlapCount * 20 < referenceOverlaps);
+    }
+
+    private static MatOfRect2d rect2d(Boxes b) {
+        Rect2d[] rects = new Rect2d[b.n];
+        for (int i = 0; i < b.n; i++)
+            rects[i] = new Rect2d(b.x[i], b.y[i], b.w[i], b.h[i]);
+        return new MatOfRect2d(rects);
+    }
+
+    // cv::rectOverlap on Rect2d: 1 - jaccardDistance, rounded to float
+    private static float overlap(double ax, double ay, double aw, double ah, double bx, double by, double bw, double bh) {
+        referenceOverlaps++;
+        double areaA = aw * ah;
+        double areaB = bw * bh;
+        if (areaA + areaB <= EPSILON)
+            return 1f;
+        double iw = Math.min(ax + aw, bx + bw) - Math.max(ax, bx);
+        double ih = Math.min(ay + ah, by + bh) - Math.max(ay, by);
+        double inter = iw <= 0 || ih <= 0 ? 0 : iw * ih;
+        return 1f - (float) (1.0 - inter / (areaA + areaB - inter));
+    }
+
+    // GetMaxScoreIndex and NMSFast_ from modules/dnn/src/nms.inl.hpp
+    private static int[] referenceNms(double[] x, double[] y, double[] w, double[] h, final float[] scores, int n,
+                                      float scoreThreshold, float nmsThreshold, float eta, int topK) {
+        List<Integer> candidates = new ArrayList<Integer>();
+        for (int i = 0; i < n; i++)
+            if (scores[i] > scoreThreshold)
+                candidates.add(i);
+        // descending score, stable like std::stable_sort
+        Integer[] order = candidates.toArray(new Integer[0]);
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Float.compare(scores[b], scores[a]);
+            }
+        });
+        int limit = topK > 0 ? Math.min(topK, order.length) : order.length;
+
+        List<Integer> kept = new ArrayList<Integer>();
+        float threshold = nmsThreshold;
+        for (int i = 0; i < limit; i++) {
+            int a = order[i];
+            boolean keep = true;
+            for (int k = 0; k < kept.size() && keep; k++) {
+                int b = kept.get(k);
+                keep = overlap(x[a], y[a], w[a], h[a], x[b], y[b], w[b], h[b]) <= threshold;
+            }
+            if (keep) {
+                kept.add(a);
+                if (eta < 1 && threshold > 0.5)
+                    threshold *= eta;
+            }
+        }
+        return toArray(kept);
+    }
+
+    // softNMSBoxes from modules/dnn/src/nms.cpp
+    private static int[] referenceSoftNms(double[] x, double[] y, double[] w, double[] h, float[] scores, int n,
+                                          float scoreThreshold, float nmsThreshold, int topK, float sigma, int method,
+                                          List<Float> updatedScores) {
+        float[] s = scores.clone();
+        int[] id = new int[n];
+        for (int i = 0; i < n; i++)
+            id[i] = i;
+        int limit = topK == 0 ? n : Math.min(topK, n);
+        List<Integer> picked = new ArrayList<Integer>();
+        for (int start = 0; picked.size() < limit && start < n; start++) {
+            // std::max_element with ties going to the lower index
+            int best = start;
+            for (int i = start + 1; i < n; i++) {
+                boolean less = s[best] == s[i] ? id[best] > id[i] : s[best] < s[i];
+                if (less)
+                    best = i;
+            }
+            float bestScore = s[best];
+            int b = id[best];
+            if (bestScore < scoreThreshold)
+                break;
+            picked.add(b);
+            updatedScores.add(bestScore);
+            s[best] = s[start];
+            s[start] = bestScore;
+            id[best] = id[start];
+            id[start] = b;
+            for (int i = start + 1; i < n; i++) {
+                if (s[i] < scoreThreshold)
+                    continue;
+                int j = id[i];
+                float o = overlap(x[b], y[b], w[b], h[b], x[j], y[j], w[j], h[j]);
+                if (method == Dnn.SoftNMSMethod_SOFTNMS_LINEAR) {
+                    if (o > nmsThreshold)
+                        s[i] *= 1.f - o;
+                } else {
+                    s[i] *= (float) Math.exp(-(o * o) / sigma);
+                }
+            }
+        }
+        return toArray(picked);
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] a = new int[list.size()];
+        for (int i = 0; i < a.length; i++)
+            a[i] = list.get(i);
+        return a;
+    }
+}
@@ -0,0 +1,25 @@
+package org.opencv.dnn;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+public class NetProfilerTest {
+
+    @Test
+    public void testFusedLayersAreAddedToTheirHost() {
+        // conv, bn, relu, conv, relu: bn and the first relu are fused into the first conv and
+        // the last relu into the second conv
+        double[] fused = { 5.0, 0, 0, 3.0, 0 };
+        double[] unfused = { 4.0, 1.0, 0.5, 2.5, 0.25 };
+        assertArrayEquals(new double[] { 5.5, 0, 0, 2.75, 0 }, NetProfiler.groupFused(fused, unfused), 1e-12);
+    }
+
+    @Test
+    public void testLayersWithoutTimeInBothRunsAreKept() {
+        // a reshape costs nothing either way, a leading absorbed layer has no host
+        double[] fused = { 0, 2.0, 0, 1.0 };
+        double[] unfused = { 0.5, 2.0, 0, 1.5 };
+        assertArrayEquals(new double[] { 0.5, 2.0, 0, 1.5 }, NetProfiler.groupFused(fused, unfused), 1e-12);
+    }
+}
@@ -0,0 +1,40 @@
+package org.opencv.test;
+
+import org.junit.Assume;
+import org.opencv.core.Core;
+
+/**
+ * Loads the OpenCV native library for JVM unit tests.
+ *
+ * The module only ships Android builds of the library, so tests that create Mats are skipped
+ * unless a host build is on {@code java.library.path}.
+ */
+public final class NativeLibrary {
+
+    private static Boolean loaded;
+
+    private NativeLibrary() {
+    }
+
+    public static synchronized boolean load() {
+        if (loaded == null)
+            loaded = tryLoad(Core.NATIVE_LIBRARY_NAME) || tryLoad("opencv_java4");
+        return loaded;
+    }
+
+    /**
+     * Skips the calling test if the native library is not available.
+     */
+    public static void assumeLoaded() {
+        Assume.assumeTrue("OpenCV native library is not available", load());
+    }
+
+    private static boolean tryLoad(String name) {
+        try {
+            System.loadLibrary(name);
+            return true;
+        } catch (UnsatisfiedLinkError e) {
+            return false;
+        }
+    }
+}
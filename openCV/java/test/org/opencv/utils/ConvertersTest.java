@@ -0,0 +1,200 @@
+package org.opencv.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.test.NativeLibrary;
+
+public class ConvertersTest {
+
+    private Mat mat;
+
+    @Before
+    public void setUp() {
+        NativeLibrary.assumeLoaded();
+        mat = new Mat();
+    }
+
+    @After
+    public void tearDown() {
+        if (mat != null)
+            mat.release();
+    }
+
+    @Test
+    public void testPointsWholeArray() {
+        int[] xy = { 1, 2, 3, 4, 5, 6 };
+        Converters.vector_Point_to_Mat(xy, 0, 3, mat);
+        assertEquals(3, mat.rows());
+        assertEquals(CvType.CV_32SC2, mat.type());
+
+        int[] out = new int[6];
+        assertEquals(3, Converters.Mat_to_vector_Point(mat, out, 0));
+        assertArrayEquals(xy, out);
+    }
+
+    @Test
+    public void testPointsWithOffset() {
+        float[] xy = { -1, -1, -1, 10, 20, 30, 40, -1 };
+        Converters.vector_Point_to_Mat(xy, 3, 2, mat);
+        assertEquals(2, mat.rows());
+        float[] row = new float[2];
+        mat.get(1, 0, row);
+        assertArrayEquals(new float[] { 30, 40 }, row, 0);
+
+        float[] out = { 7, 7, 7, 7, 7, 7, 7 };
+        assertEquals(2, Converters.Mat_to_vector_Point(mat, out, 2));
+        assertArrayEquals(new float[] { 7, 7, 10, 20, 30, 40, 7 }, out, 0);
+    }
+
+    @Test
+    public void testPrefixOfArray() {
+        double[] ds = { 1.5, 2.5, 3.5, 4.5, 5.5 };
+        Converters.vector_double_to_Mat(ds, 0, 3, mat);
+        assertEquals(3, mat.rows());
+
+        double[] out = new double[5];
+        assertEquals(3, Converters.Mat_to_vector_double(mat, out, 0));
+        assertArrayEquals(new double[] { 1.5, 2.5, 3.5, 0, 0 }, out, 0);
+    }
+
+    @Test
+    public void testLengthNotMultipleOfChannels() {
+        // 7 entries hold two full Point3s plus a stray value; put/get would reject the array
+        int[] xyz = { 1, 2, 3, 4, 5, 6, 99 };
+        Converters.vector_Point3_to_Mat(xyz, 0, 2, mat);
+        assertEquals(2, mat.rows());
+        assertEquals(CvType.CV_32SC3, mat.type());
+
+        int[] out = new int[7];
+        out[6] = -5;
+        assertEquals(2, Converters.Mat_to_vector_Point3(mat, out, 0));
+        assertArrayEquals(new int[] { 1, 2, 3, 4, 5, 6, -5 }, out);
+    }
+
+    @Test
+    public void testOffsetAtEnd() {
+        int[] rs = { 0, 0, 0, 0, 1, 2, 3, 4 };
+        Converters.vector_Rect_to_Mat(rs, 4, 1, mat);
+        int[] out = new int[4];
+        assertEquals(1, Converters.Mat_to_vector_Rect(mat, out, 0));
+        assertArrayEquals(new int[] { 1, 2, 3, 4 }, out);
+    }
+
+    @Test
+    public void testZeroCount() {
+        Converters.vector_int_to_Mat(new int[] { 1, 2 }, 0, 2, mat);
+        Converters.vector_int_to_Mat(new int[] { 1, 2 }, 2, 0, mat);
+        assertTrue(mat.empty());
+        assertEquals(0, Converters.Mat_to_vector_int(mat, new int[0], 0));
+    }
+
+    @Test
+    public void testRepeatedOffsetCallsReuseResult() {
+        float[] fs = new float[101];
+        for (int i = 0; i < fs.length; i++)
+            fs[i] = i;
+        Converters.vector_float_to_Mat(fs, 1, 100, mat);
+        long data = mat.dataAddr();
+        for (int i = 0; i < 10; i++)
+            Converters.vector_float_to_Mat(fs, 1, 100, mat);
+        assertEquals(data, mat.dataAddr());
+
+        float[] out = new float[101];
+        assertEquals(100, Converters.Mat_to_vector_float(mat, out, 1));
+        assertArrayEquals(fs, out, 0);
+    }
+
+    @Test
+    public void testLargeOffsetCall() {
+        // larger than the per-thread staging buffer
+        int count = 100000;
+        double[] xy = new double[2 * count + 1];
+        for (int i = 0; i < xy.length; i++)
+            xy[i] = i * 0.5;
+        Converters.vector_Point_to_Mat(xy, 1, count, mat);
+        assertEquals(count, mat.rows());
+
+        double[] out = new double[xy.length];
+        assertEquals(count, Converters.Mat_to_vector_Point(mat, out, 1));
+        for (int i = 1; i < xy.length; i++)
+            assertEquals(xy[i], out[i], 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCountBeyondArray() {
+        Converters.vector_Point_to_Mat(new int[] { 1, 2, 3, 4 }, 0, 3, mat);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOffsetBeyondArray() {
+        Converters.vector_Point_to_Mat(new int[] { 1, 2, 3, 4 }, 1, 2, mat);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeOffset() {
+        Converters.vector_int_to_Mat(new int[] { 1, 2 }, -1, 1, mat);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeCount() {
+        Converters.vector_int_to_Mat(new int[] { 1, 2 }, 0, -1, mat);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOverflowingRange() {
+        Converters.vector_int_to_Mat(new int[] { 1, 2 }, Integer.MAX_VALUE, 1, mat);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCountTimesChannelsWrapsAround() {
+        // 1431655766 * 3 wraps to 2 in int arithmetic, which would fit the array
+        Converters.vector_Point3_to_Mat(new int[] { 1, 2, 3 }, 1, 1431655766, mat);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOutputTooSmall() {
+        Converters.vector_Point_to_Mat(new int[] { 1, 2, 3, 4 }, 0, 2, mat);
+        Converters.Mat_to_vector_Point(mat, new int[5], 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTypeMismatch() {
+        Converters.vector_Point_to_Mat(new int[] { 1, 2, 3, 4 }, 0, 2, mat);
+        Converters.Mat_to_vector_Point(mat, new float[4], 0);
+    }
+
+    @Test
+    public void testDirectBuffer() {
+        ByteBuffer data = ByteBuffer.allocateDirect(16).order(ByteOrder.nativeOrder());
+        data.asIntBuffer().put(new int[] { 1, 2, 3, 4 });
+        Converters.vector_buffer_to_Mat(data, 2, CvType.CV_32SC2, mat);
+        assertEquals(2, mat.rows());
+
+        ByteBuffer out = ByteBuffer.allocateDirect(16).order(ByteOrder.nativeOrder());
+        assertEquals(2, Converters.Mat_to_vector_buffer(mat, CvType.CV_32SC2, out));
+        int[] values = new int[4];
+        out.asIntBuffer().get(values);
+        assertArrayEquals(new int[] { 1, 2, 3, 4 }, values);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHeapBufferRejected() {
+        Converters.vector_buffer_to_Mat(ByteBuffer.allocate(16), 2, CvType.CV_32SC2, mat);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBufferTooSmall() {
+        ByteBuffer data = ByteBuffer.allocateDirect(12).order(ByteOrder.nativeOrder());
+        Converters.vector_buffer_to_Mat(data, 2, CvType.CV_32SC2, mat);
+    }
+}
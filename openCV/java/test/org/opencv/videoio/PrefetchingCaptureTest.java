@@ -0,0 +1,328 @@
+package org.opencv.videoio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.IdentityHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencv.core.Mat;
+import org.opencv.test.NativeLibrary;
+
+public class PrefetchingCaptureTest {
+
+    /**
+     * Produces numbered frames. The frame number written into each slot is recorded by Mat
+     * identity, so the test does not depend on pixel access.
+     */
+    private static class SyntheticSource implements PrefetchingCapture.FrameSource {
+        private final int frames;
+        private final long delayMillis;
+        private final Semaphore gate;
+        private final IdentityHashMap<Mat, Integer> written = new IdentityHashMap<Mat, Integer>();
+        private int next;
+        private Throwable failAt;
+        private int failIndex = -1;
+
+        SyntheticSource(int frames, long delayMillis, Semaphore gate) {
+            this.frames = frames;
+            this.delayMillis = delayMillis;
+            this.gate = gate;
+        }
+
+        void failAt(int index, Throwable e) {
+            failIndex = index;
+            failAt = e;
+        }
+
+        @Override
+        public boolean read(Mat dst) {
+            if (gate != null)
+                gate.acquireUninterruptibly();
+            if (delayMillis > 0)
+                sleep(delayMillis);
+            synchronized (this) {
+                if (next == failIndex) {
+                    if (failAt instanceof Error)
+                        throw (Error) failAt;
+                    throw (RuntimeException) failAt;
+                }
+                if (next >= frames)
+                    return false;
+                written.put(dst, next++);
+                return true;
+            }
+        }
+
+        synchronized int frameOf(Mat m) {
+            Integer i = written.get(m);
+            return i != null ? i : -1;
+        }
+    }
+
+    private PrefetchingCapture capture;
+
+    @Before
+    public void setUp() {
+        NativeLibrary.assumeLoaded();
+    }
+
+    @After
+    public void tearDown() {
+        if (capture != null)
+            capture.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testBlockDeliversEveryFrameInOrder() throws InterruptedException {
+        SyntheticSource source = new SyntheticSource(50, 0, null);
+        capture = new PrefetchingCapture(source, 3, PrefetchingCapture.Policy.BLOCK);
+        capture.start();
+
+        int expected = 0;
+        Mat frame;
+        while ((frame = capture.acquire()) != null) {
+            assertEquals(expected++, source.frameOf(frame));
+            capture.recycle(frame);
+        }
+        assertEquals(50, expected);
+        assertTrue(capture.isEndOfStream());
+        assertNull(capture.getFailure());
+        assertEquals(50, capture.getDecodedCount());
+        assertEquals(0, capture.getDroppedCount());
+        assertNull(capture.acquire());
+    }
+
+    @Test(timeout = 10000)
+    public void testBlockWaitsForSlowConsumer() throws InterruptedException {
+        SyntheticSource source = new SyntheticSource(6, 0, null);
+        capture = new PrefetchingCapture(source, 2, PrefetchingCapture.Policy.BLOCK);
+        capture.start();
+
+        int expected = 0;
+        Mat frame;
+        while ((frame = capture.acquire()) != null) {
+            assertEquals(expected++, source.frameOf(frame));
+            // the grab thread fills the other slot and then has to wait for this one
+            sleep(20);
+            assertTrue(capture.getReadyCount() <= 1);
+            capture.recycle(frame);
+        }
+        assertEquals(6, expected);
+        assertEquals(0, capture.getDroppedCount());
+        assertTrue(capture.getGrabWaitMillis() > 0);
+    }
+
+    @Test(timeout = 10000)
+    public void testDropOldestKeepsNewestFrames() throws InterruptedException {
+        SyntheticSource source = new SyntheticSource(20, 0, null);
+        capture = new PrefetchingCapture(source, 3, PrefetchingCapture.Policy.DROP_OLDEST);
+        capture.start();
+        waitForEndOfStream();
+
+        // one slot is kept free for the grab thread, the newest frames are queued
+        assertEquals(2, capture.getReadyCount());
+        assertEquals(20, capture.getDecodedCount());
+        assertEquals(18, capture.getDroppedCount());
+
+        Mat a = capture.acquire();
+        Mat b = capture.acquire();
+        assertEquals(18, source.frameOf(a));
+        assertEquals(19, source.frameOf(b));
+        assertNull(capture.acquire());
+    }
+
+    @Test(timeout = 10000)
+    public void testDropOldestNeverOverwritesHeldFrames() throws InterruptedException {
+        Semaphore gate = new Semaphore(0);
+        SyntheticSource source = new SyntheticSource(10, 0, gate);
+        capture = new PrefetchingCapture(source, 3, PrefetchingCapture.Policy.DROP_OLDEST);
+        capture.start();
+
+        gate.release();
+        Mat held = capture.acquire();
+        assertEquals(0, source.frameOf(held));
+
+        gate.release(10);
+        waitForEndOfStream();
+        assertEquals(0, source.frameOf(held));
+        assertEquals(10, capture.getDecodedCount());
+        // every decoded frame was either taken, dropped or is still queued
+        assertEquals(10, 1 + capture.getDroppedCount() + capture.getReadyCount());
+        Mat newest = null;
+        Mat frame;
+        while ((frame = capture.poll()) != null)
+            newest = frame;
+        assertEquals(9, source.frameOf(newest));
+        capture.recycle(held);
+    }
+
+    @Test(timeout = 10000)
+    public void testStopWakesBlockedConsumer() throws Exception {
+        Semaphore gate = new Semaphore(0);
+        SyntheticSource source = new SyntheticSource(10, 0, gate);
+        capture = new PrefetchingCapture(source, 3, PrefetchingCapture.Policy.BLOCK);
+        capture.start();
+
+        final Mat[] result = { new Mat() };
+        Thread consumer = startConsumer(result);
+        waitUntilWaiting(consumer);
+
+        // the grab thread is stuck in read(), stop() must still wake the consumer
+        Thread stopper = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                capture.stop();
+            }
+        });
+        stopper.start();
+        consumer.join(5000);
+        assertTrue("consumer still blocked", !consumer.isAlive());
+        assertNull(result[0]);
+
+        gate.release(10);
+        stopper.join(5000);
+        assertTrue("stop() did not return", !stopper.isAlive());
+        assertNull(capture.acquire());
+        assertNull(capture.poll());
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseWakesBlockedConsumer() throws Exception {
+        SyntheticSource source = new SyntheticSource(0, 0, null);
+        // an empty stream would end the wait at once, so never start the grab thread
+        capture = new PrefetchingCapture(source, 2, PrefetchingCapture.Policy.DROP_OLDEST);
+
+        final Mat[] result = { new Mat() };
+        Thread consumer = startConsumer(result);
+        waitUntilWaiting(consumer);
+
+        capture.close();
+        consumer.join(5000);
+        assertTrue("consumer still blocked", !consumer.isAlive());
+        assertNull(result[0]);
+        assertTrue(capture.getConsumerWaitMillis() > 0);
+    }
+
+    @Test(timeout = 10000)
+    public void testEmptyStream() throws InterruptedException {
+        capture = new PrefetchingCapture(new SyntheticSource(0, 0, null), 2, PrefetchingCapture.Policy.BLOCK);
+        capture.start();
+        assertNull(capture.acquire());
+        assertTrue(capture.isEndOfStream());
+        assertEquals(0, capture.getDecodedCount());
+    }
+
+    @Test(timeout = 10000)
+    public void testSourceFailureEndsStream() throws InterruptedException {
+        SyntheticSource source = new SyntheticSource(10, 0, null);
+        IllegalStateException failure = new IllegalStateException("decoder failed");
+        source.failAt(3, failure);
+        capture = new PrefetchingCapture(source, 4, PrefetchingCapture.Policy.BLOCK);
+        capture.start();
+
+        int count = 0;
+        Mat frame;
+        while ((frame = capture.acquire()) != null) {
+            count++;
+            capture.recycle(frame);
+        }
+        assertEquals(3, count);
+        assertTrue(capture.isEndOfStream());
+        assertSame(failure, capture.getFailure());
+    }
+
+    @Test(timeout = 10000)
+    public void testSourceErrorEndsStream() throws InterruptedException {
+        SyntheticSource source = new SyntheticSource(10, 0, null);
+        AssertionError failure = new AssertionError("decoder broken");
+        source.failAt(2, failure);
+        capture = new PrefetchingCapture(source, 3, PrefetchingCapture.Policy.BLOCK);
+        capture.start();
+
+        int count = 0;
+        Mat frame;
+        while ((frame = capture.acquire()) != null) {
+            count++;
+            capture.recycle(frame);
+        }
+        assertEquals(2, count);
+        assertTrue(capture.isEndOfStream());
+        assertSame(failure, capture.getFailure());
+    }
+
+    @Test(timeout = 10000)
+    public void testTimingCounters() throws InterruptedException {
+        SyntheticSource source = new SyntheticSource(5, 5, null);
+        capture = new PrefetchingCapture(source, 2, PrefetchingCapture.Policy.BLOCK);
+        capture.start();
+
+        Mat frame;
+        while ((frame = capture.acquire()) != null)
+            capture.recycle(frame);
+        assertEquals(5, capture.getDecodedCount());
+        assertTrue(capture.getMeanDecodeMillis() >= 4);
+        assertTrue(capture.getMaxDecodeMillis() >= capture.getMeanDecodeMillis());
+        // the consumer is faster than the source and waits for every frame
+        assertTrue(capture.getConsumerWaitMillis() >= 10);
+        assertTrue(capture.toString().contains("decoded=5"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRecycleForeignMat() {
+        capture = new PrefetchingCapture(new SyntheticSource(0, 0, null), 2, PrefetchingCapture.Policy.BLOCK);
+        Mat foreign = new Mat();
+        try {
+            capture.recycle(foreign);
+        } finally {
+            foreign.release();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStartAfterClose() {
+        capture = new PrefetchingCapture(new SyntheticSource(0, 0, null), 2, PrefetchingCapture.Policy.BLOCK);
+        capture.close();
+        capture.start();
+    }
+
+    private Thread startConsumer(final Mat[] result) {
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result[0] = capture.acquire();
+                } catch (InterruptedException e) {
+                    fail("interrupted");
+                }
+            }
+        });
+        t.start();
+        return t;
+    }
+
+    private void waitForEndOfStream() {
+        while (!capture.isEndOfStream())
+            sleep(1);
+    }
+
+    private static void waitUntilWaiting(Thread t) {
+        while (t.getState() != Thread.State.WAITING)
+            sleep(1);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}